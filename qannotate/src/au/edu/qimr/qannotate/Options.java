@@ -118,7 +118,7 @@ public class Options {
 		}
 		
         
-        gap = (options.has("gap"))? (int)options.valueOf("gap") : 1000;  //CADD default is 1000
+        gap = (options.has("gap"))? (Integer) options.valueOf("gap") : 1000;  //CADD default is 1000
         bufferSize = (options.has("buffer"))? (Integer) options.valueOf("buffer") : 0; //TRF default is 0
         
         
@@ -209,7 +209,7 @@ public class Options {
             parser.accepts("buffer", "check TRF region on both side of indel within this nominated size" ).withRequiredArg().ofType(Integer.class);//.describedAs("integer");
  
          if(mm.equals(MODE.cadd))
-             parser.accepts("gap", "adjacant variants size").withRequiredArg().ofType(String.class).describedAs("gap size");
+             parser.accepts("gap", "adjacant variants size").withRequiredArg().ofType(Integer.class).describedAs("gap size");
 
          if(mm.equals(MODE.hom)){
  	        parser.accepts("window", "check homoplymers inside window size on both side of variants. Default value is " + HomoplymersMode.defaultWindow).withRequiredArg().ofType(String.class).describedAs("window size");
@@ -344,7 +344,7 @@ public class Options {
 	}
 	
 	public int getBufferSize(){ return (mode == MODE.trf)? bufferSize : -1; } //trf
-	public int getGapSize(){ return (mode == MODE.trf)? gap : -1; } //cadd
+	public int getGapSize(){ return (mode == MODE.cadd)? gap : -1; } //cadd
 	
 	//hom
 	public int getHomoplymersWindow(){ return (mode == MODE.hom) ? homWindow : -1; } //trf
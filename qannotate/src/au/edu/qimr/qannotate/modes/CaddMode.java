@@ -5,17 +5,21 @@
 */
 package au.edu.qimr.qannotate.modes;
 
+import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.tribble.readers.TabixReader;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.qcmg.common.log.QLogger;
 import org.qcmg.common.log.QLoggerFactory;
 import org.qcmg.common.model.ChrPosition;
-import org.qcmg.common.model.ChrPositionComparator;
 import org.qcmg.common.model.ChrRangePosition;
 import org.qcmg.common.util.TabTokenizer;
 import org.qcmg.common.vcf.VcfRecord;
@@ -25,39 +29,58 @@ import org.qcmg.vcf.VCFFileReader;
 import org.qcmg.vcf.VCFFileWriter;
 
 import au.edu.qimr.qannotate.Options;
+import au.edu.qimr.qannotate.utils.CachingSeekableStream;
+import au.edu.qimr.qannotate.utils.PositionCursor;
 
 
+/**
+ * Annotates variants with the first matching entry from each of the CADD databases.
+ * <p>
+ * Variants that are within <code>--gap</code> bases of each other are annotated from a single tabix query of each database,
+ * rather than a query per variant, and the databases are queried in parallel. Each database file is read through a
+ * {@link CachingSeekableStream} so that the bgzf blocks shared by neighbouring queries are not read from disk again.
+ */
 public class  CaddMode extends AbstractMode{
-	
-	private static final Comparator<ChrPosition> COMPARATOR = new ChrPositionComparator();
+
 	private final static String CADD = "CADD";
-	
+
+	/*
+	 * number of 64kb pages of each database to keep in memory
+	 */
+	static final int BLOCK_CACHE_PAGES = 64;
+
 	private static long outputNo = 0;
-	private static long blockNo = 0;	
+	private static long blockNo = 0;
 	private static long inputNo = 0;
 	private final QLogger logger= QLoggerFactory.getLogger(CaddMode.class);
-	
-	public static final String description = "query CADD library for this variant. Format: (Ref>Alt|isDerived|Consequence|ConsScore|ConsDetail|scoreSegDup|priPhyloP|GerpRS|mirSVR-E|cHmmTssA|motifDist|ESP_AFR|ESP_EUR|TG_AMR|FeatureID|FeatureID|CCDS|relcDNApos)";	
-		
-	public CaddMode( Options options) throws Exception {		
-		
+
+	public static final String description = "query CADD library for this variant. Format: (Ref>Alt|isDerived|Consequence|ConsScore|ConsDetail|scoreSegDup|priPhyloP|GerpRS|mirSVR-E|cHmmTssA|motifDist|ESP_AFR|ESP_EUR|TG_AMR|FeatureID|FeatureID|CCDS|relcDNApos)";
+
+	public CaddMode( Options options) throws Exception {
+
 		final String input = options.getInputFileName();
 		final File output =  new File( options.getOutputFileName() );
 		final int gap = options.getGapSize();
-		
+
 		final String[] database = options.getDatabaseFiles();
 		final TabixReader[] tabixs = new TabixReader[database.length];
 		for(int i = 0; i < database.length; i ++)
-			tabixs[i] = new TabixReader( database[i] );
-		
-		
+			tabixs[i] = new TabixReader( database[i], null, new CachingSeekableStream(new SeekableFileStream(new File(database[i])), BLOCK_CACHE_PAGES) );
+
+		final ExecutorService service = Executors.newFixedThreadPool(Math.max(1, database.length));
+
 		String chr = null;
-		int pos = 0; 
+		int pos = 0;
 		int start = 1;
-		
+
+		/*
+		 * the variants in the current window, in input order
+		 */
+		final List<VcfRecord> window = new ArrayList<>();
+
 		try (VCFFileReader reader = new VCFFileReader(input);
 				VCFFileWriter writer = new VCFFileWriter( output)){
-			
+
 			//reheader first
         	reheader(options.getCommandLine(),options.getInputFileName())	;
         	header.addInfo(VcfHeaderUtils.INFO_CADD, "1", "String", description);
@@ -65,85 +88,89 @@ public class  CaddMode extends AbstractMode{
         		writer.addHeader(record.toString());
         	}
 
-			//read chrunk and annotateion	 
-			for (final VcfRecord re : reader){ 
+			//read chrunk and annotateion
+			for (final VcfRecord re : reader){
 				//annotation
 				if( !re.getChromosome().equals(chr) || (re.getPosition() - pos) > gap){
 					//s1: annotate variants in hash map
-					if(chr != null) 
-						addAnnotation( chr, start-1, pos + 1, tabixs, writer );
-						
-					//s2: reset	hash map				
+					if(chr != null)
+						addAnnotation( chr, start-1, pos + 1, tabixs, service, window, writer );
+
+					//s2: reset	hash map
 					positionRecordMap.clear();
+					window.clear();
 					chr = re.getChromosome();
-					start = re.getPosition();						
+					start = re.getPosition();
+					pos = re.getPosition();
 				}
-				
-				//add every variants into hashmap
-				pos = re.getPosition();
-				add2Map(re); 
+
+				//add every variants into hashmap, keeping the window covering all of them should the input not be sorted
+				start = Math.min(start, re.getPosition());
+				pos = Math.max(pos, re.getPosition());
+				add2Map(re);
+				window.add(re);
 			}
-			
+
 			//last block
 			if(chr != null)
-		    		addAnnotation( chr, start-1, pos+1 , tabixs, writer );			
-		}//end try	
+		    		addAnnotation( chr, start-1, pos+1 , tabixs, service, window, writer );
+		} finally {
+			service.shutdown();
+			for (TabixReader tabix : tabixs) {
+				tabix.close();
+			}
+		}
 
-		logger.info("total input variants is  " + inputNo);		 
+		logger.info("total input variants is  " + inputNo);
 		logger.info("total annotated variants is  " + outputNo);
 		logger.info("total query CADD library time is " + blockNo);
 	}
-	
-	private void addAnnotation(String chr, int start, int end, TabixReader[] tabixs, VCFFileWriter writer) throws Exception {
-		
-	    	String line; 
-	    	String[] eles;
-	    	String last = null;
-	
-	    	int blockSize = 0; 
+
+	private void addAnnotation(String chr, int start, int end, TabixReader[] tabixs, ExecutorService service, List<VcfRecord> window, VCFFileWriter writer) throws Exception {
+
+	    	int blockSize = 0;
 	    	int outputSize = 0;
 	    	if(chr.startsWith("chr"))  chr = chr.substring(3);
-	    	if(chr.equalsIgnoreCase("m")) chr = "MT"; 
+	    	if(chr.equalsIgnoreCase("m")) chr = "MT";
 
-    	
-		for(TabixReader tabix : tabixs){	
-			TabixReader.Iterator it = tabix.query(chr, start, end);
-			while(( line = it.next())!= null){
-				blockSize ++;  
-				
-				//only retrive the first annotation entry from CADD library
-	    			eles = TabTokenizer.tokenize(line, '\t');	
-	 			String entry =  eles[0] + ":" + eles[1] + ":" +eles[2]+ ":" +  eles[4]; //chr:pos:ref:allel
-	 			if (entry.equals(last)) {
-	 				continue;
-	 			} else {
-	 				last = entry;
-	 			}
-	 			
-	
-		    		int s = Integer.parseInt(eles[1]);  //start position = second column
-		    		int e = s + eles[2].length() - 1;   //start position + length -1
-		    		
-		    		ChrPosition cp  = new ChrRangePosition(chr, s, e);
-		    		List<VcfRecord> inputVcfs = positionRecordMap.get(cp);	    
-				if ( (null == inputVcfs) || inputVcfs.size() == 0 ) {
-					continue; 
+	    	/*
+	    	 * query each database on its own thread - positionRecordMap is only read until all the queries are done
+	    	 */
+	    	List<Future<CaddQuery>> futures = new ArrayList<>(tabixs.length);
+		for(TabixReader tabix : tabixs){
+			futures.add(service.submit(new CaddQuery(tabix, chr, start, end, positionRecordMap)));
+		}
+
+		//only retrive the first annotation entry from CADD library - consecutive lines for the same chr:pos:ref:allel are skipped, including across databases
+		String last = null;
+		for (Future<CaddQuery> future : futures) {
+			CaddQuery query = future.get();
+			blockSize += query.lineCount;
+
+			for (int i = 0; i < query.matches.size(); i++) {
+				String[] eles = query.matches.get(i);
+				boolean duplicate = (i == 0 && query.firstLineMatched) ? (null != last && sameEntry(query.firstLine, last)) : query.duplicates.get(i);
+				if (duplicate) {
+					continue;
 				}
-				for(VcfRecord inputVcf: inputVcfs ){
+
+				int s = Integer.parseInt(eles[1]);  //start position = second column
+				int e = s + eles[2].length() - 1;   //start position + length -1
+
+				for(VcfRecord inputVcf: positionRecordMap.get(new ChrRangePosition(chr, s, e)) ){
 					if ( ! inputVcf.getRef().equalsIgnoreCase(eles[2]))  {
 						continue;
 					}
-				
-								
+
 					String[] allels = {inputVcf.getAlt()};
 			    		if(inputVcf.getAlt().contains(",")) {
 			    			 allels = TabTokenizer.tokenize(inputVcf.getAlt(), ',');
 			    		}
-		    		
+
 			    		for(String al : allels) {
 			    			if(al.equalsIgnoreCase(eles[4])){
 			    				String cadd =	String.format("(%s>%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s)", eles[2],eles[4],eles[8],eles[10],eles[11],eles[12],eles[17],
-			    						eles[21],eles[26],eles[35],eles[39],eles[72],eles[82],eles[83],eles[86],eles[92],eles[92],eles[93],eles[96]);  
+			    						eles[21],eles[26],eles[35],eles[39],eles[72],eles[82],eles[83],eles[86],eles[92],eles[92],eles[93],eles[96]);
 			    				String info = inputVcf.getInfoRecord().getField(CADD);
 			    				info = (info == null)? CADD + "=" + cadd : CADD + "=" + info + "," + cadd;
 			    				inputVcf.appendInfo( info);
@@ -152,31 +179,124 @@ public class  CaddMode extends AbstractMode{
 			    		}
 		    		}
 			}
-		}
-		
-		//output
-		final List<ChrPosition> orderedList = new ArrayList<>(positionRecordMap.keySet());
-		orderedList.sort(COMPARATOR);
-		for (final ChrPosition position : orderedList) {
-			for(VcfRecord re: positionRecordMap.get(position)) {
-				writer.add( re );
+			if (null != query.lastLine) {
+				last = query.lastLine;
 			}
 		}
-			 			
-		//get stats   			
-		logger.debug(String.format("%8d: query(%s, %8d, %8d) [ %8d,%8d,%8d ] ", blockNo++, chr, start, end, blockSize, positionRecordMap.size(), outputSize ));			
-	    	inputNo += positionRecordMap.size();   	
+
+		//output, in input order
+		for (VcfRecord re : window) {
+			writer.add( re );
+		}
+
+		//get stats
+		logger.debug(String.format("%8d: query(%s, %8d, %8d) [ %8d,%8d,%8d ] ", blockNo++, chr, start, end, blockSize, positionRecordMap.size(), outputSize ));
+	    	inputNo += positionRecordMap.size();
 	    	outputNo += outputSize;
 	}
-		
+
 	/**
-	 * it remove "chr" and change "chrM" to "MT"  for reference name 
+	 * Runs a tabix query against one CADD database, and keeps the lines that start at, and have the same reference length as, one of the input variants.
+	 * Only those lines are tokenised - the others are only scanned for their first few columns.
+	 */
+	static class CaddQuery implements Callable<CaddQuery> {
+		private final TabixReader tabix;
+		private final String chr;
+		private final int start;
+		private final int end;
+		private final Map<ChrPosition, List<VcfRecord>> positionRecordMap;
+
+		int lineCount;
+		String firstLine;
+		String lastLine;
+		boolean firstLineMatched;
+		final List<String[]> matches = new ArrayList<>();
+		/*
+		 * whether each match has the same chr:pos:ref:allel as the line before it in this database
+		 */
+		final List<Boolean> duplicates = new ArrayList<>();
+
+		CaddQuery(TabixReader tabix, String chr, int start, int end, Map<ChrPosition, List<VcfRecord>> positionRecordMap) {
+			this.tabix = tabix;
+			this.chr = chr;
+			this.start = start;
+			this.end = end;
+			this.positionRecordMap = positionRecordMap;
+		}
+
+		@Override
+		public CaddQuery call() throws Exception {
+			String line;
+			TabixReader.Iterator it = tabix.query(chr, start, end);
+			while(( line = it.next())!= null){
+				lineCount ++;
+				if (null == firstLine) {
+					firstLine = line;
+				}
+
+				int posStart = line.indexOf('\t') + 1;
+				int posEnd = line.indexOf('\t', posStart);
+				int refEnd = line.indexOf('\t', posEnd + 1);
+				if (posStart == 0 || posEnd < 0 || refEnd < 0) {
+					throw new IllegalArgumentException("invalid CADD record: " + line);
+				}
+
+				int s = PositionCursor.parsePosition(line, posStart, posEnd);
+				if (s < 0) {
+					s = Integer.parseInt(line.substring(posStart, posEnd));
+				}
+				int e = s + (refEnd - posEnd - 1) - 1;
+				List<VcfRecord> inputVcfs = positionRecordMap.get(new ChrRangePosition(chr, s, e));
+				if (null != inputVcfs && ! inputVcfs.isEmpty()) {
+					if (matches.isEmpty() && lineCount == 1) {
+						firstLineMatched = true;
+					}
+					duplicates.add(null != lastLine && sameEntry(line, lastLine));
+					matches.add(TabTokenizer.tokenize(line, '\t'));
+				}
+				lastLine = line;
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * @return true if the two CADD lines have the same chromosome, position, reference and alternate allele (the first, second, third and fifth columns)
+	 */
+	static boolean sameEntry(String a, String b) {
+		int aRefEnd = nthTab(a, 3);
+		int bRefEnd = nthTab(b, 3);
+		if (aRefEnd < 0 || aRefEnd != bRefEnd || ! a.regionMatches(0, b, 0, aRefEnd)) {
+			return false;
+		}
+		int aAltStart = nthTab(a, 4) + 1;
+		int bAltStart = nthTab(b, 4) + 1;
+		int aAltEnd = a.indexOf('\t', aAltStart);
+		int bAltEnd = b.indexOf('\t', bAltStart);
+		if (aAltEnd < 0) aAltEnd = a.length();
+		if (bAltEnd < 0) bAltEnd = b.length();
+		return aAltStart > 0 && bAltStart > 0 && aAltEnd - aAltStart == bAltEnd - bAltStart && a.regionMatches(aAltStart, b, bAltStart, aAltEnd - aAltStart);
+	}
+
+	private static int nthTab(String s, int n) {
+		int index = -1;
+		for (int i = 0; i < n; i++) {
+			index = s.indexOf('\t', index + 1);
+			if (index < 0) {
+				return -1;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * it remove "chr" and change "chrM" to "MT"  for reference name
 	 * @param re input vcf record
 	 */
 	private void add2Map(VcfRecord re){
 		ChrPosition pos = re.getChrPosition();
-		String chr = pos.getChromosome();	
-		boolean change = false; 
+		String chr = pos.getChromosome();
+		boolean change = false;
 	    	if (chr.startsWith("chr"))  	{
 	    		chr = chr.substring(3);
 	    		change = true;
@@ -185,14 +305,14 @@ public class  CaddMode extends AbstractMode{
 	    		chr = "MT";
 	    		change = true;
 	    	}
-		
+
 		if(change) {
 			pos =  new ChrRangePosition(chr, re.getChrPosition().getStartPosition(), re.getChrPosition().getEndPosition());
 		}
-		
+
 		positionRecordMap.computeIfAbsent(pos, v -> new ArrayList<>()).add(re) ;
 	}
-		
+
 	@Override
 	void addAnnotation(String database) throws Exception { }
 }
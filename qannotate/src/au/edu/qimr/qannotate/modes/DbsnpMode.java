@@ -7,9 +7,14 @@ package au.edu.qimr.qannotate.modes;
 
 import static org.qcmg.common.util.Constants.EQ;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.qcmg.common.log.QLogger;
 import org.qcmg.common.log.QLoggerFactory;
@@ -18,6 +23,7 @@ import org.qcmg.common.model.ChrRangePosition;
 import org.qcmg.common.string.StringUtils;
 import org.qcmg.common.util.ChrPositionUtils;
 import org.qcmg.common.util.Constants;
+import org.qcmg.common.util.FileUtils;
 import org.qcmg.common.util.IndelUtils;
 import org.qcmg.common.util.TabTokenizer;
 import org.qcmg.common.vcf.VcfRecord;
@@ -25,12 +31,22 @@ import org.qcmg.common.vcf.header.VcfHeaderRecord;
 import org.qcmg.common.vcf.header.VcfHeaderUtils;
 import org.qcmg.common.vcf.header.VcfHeaderUtils.VcfInfoType;
 import org.qcmg.vcf.VCFFileReader;
+import org.qcmg.vcf.VCFSerializer;
 
 import au.edu.qimr.qannotate.Options;
+import au.edu.qimr.qannotate.utils.PositionCursor;
+import htsjdk.tribble.readers.TabixReader;
 
 public class DbsnpMode extends AbstractMode{
 	private final static QLogger logger = QLoggerFactory.getLogger(DbsnpMode.class);
 	
+	static final String TABIX_INDEX_SUFFIX = ".tbi";
+	
+	/*
+	 * input variants closer together than this are looked up in the tabix index with a single query
+	 */
+	static final int TABIX_QUERY_GAP = 1000;
+	
 	//for unit Test
 	DbsnpMode(){}
 	
@@ -80,49 +96,146 @@ public class DbsnpMode extends AbstractMode{
 			if (reader.getHeader().getInfoRecord(VcfHeaderUtils.INFO_VLD) != null )	
 				header.addOrReplace( reader.getHeader().getInfoRecord(VcfHeaderUtils.INFO_VLD));
 		 
-			int dbSnpNo = 0;
-			for (final VcfRecord dbSNPVcf : reader) {
-				 
-				//each dbSNP check twice, since indel alleles followed by one reference base, eg. chr1 100 . TT T ...
-				ChrPosition dbSnpCP = dbSNPVcf.getChrPosition();
-				final String chr = IndelUtils.getFullChromosome(dbSNPVcf.getChromosome());
-				if ( ! chr.equals(dbSnpCP.getChromosome())) {
-					dbSnpCP = ChrPositionUtils.cloneWithNewChromosomeName(dbSnpCP, chr);
+		}
+		
+		PositionCursor cursor = new PositionCursor(positionRecordMap.keySet());
+		int dbSnpNo = 0;
+		if (new File(dbSNPFile + TABIX_INDEX_SUFFIX).exists()) {
+			dbSnpNo = annotateFromIndexedFile(dbSNPFile, cursor);
+		} else {
+			dbSnpNo = annotateFromFile(dbSNPFile, cursor);
+		}
+		logger.info(String.format("found %d matched dbSNP ", dbSnpNo));
+	}
+	
+	/**
+	 * Streams through the whole of the dbSNP file, only parsing the lines that could match an input variant
+	 */
+	private int annotateFromFile(String dbSNPFile, PositionCursor cursor) throws IOException {
+		int dbSnpNo = 0;
+		try (InputStream fileStream = new FileInputStream(dbSNPFile);
+				InputStream stream = FileUtils.isInputGZip(new File(dbSNPFile)) ? new GZIPInputStream(fileStream, 65536) : fileStream;
+				BufferedReader reader = new BufferedReader(new InputStreamReader(stream));) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(Constants.HASH_STRING) || ! isCandidate(line, cursor)) {
+					continue;
 				}
-				List<VcfRecord> inputVcfs = positionRecordMap.get(dbSnpCP);
-				if (null != inputVcfs && inputVcfs.size() != 0){
-					for(VcfRecord re: inputVcfs) {
-						if(annotateDBsnp(re, dbSNPVcf )) {
-							dbSnpNo ++;						
+				dbSnpNo += annotate(VCFSerializer.parseRecord(line));
+			}
+		}
+		return dbSnpNo;
+	}
+	
+	/**
+	 * Queries the tabix index of the dbSNP file for runs of nearby input variants, rather than reading the whole file.
+	 * <p>
+	 * A dbSNP record that overlaps more than one run is only annotated from the first, 
+	 * and runs are queried in order along each contig, so records are processed in the same order as {@link #annotateFromFile(String, PositionCursor)} would process them.
+	 */
+	private int annotateFromIndexedFile(String dbSNPFile, PositionCursor cursor) throws IOException {
+		int dbSnpNo = 0;
+		TabixReader tabix = new TabixReader(dbSNPFile);
+		try {
+			for (String dbContig : tabix.getChromosomes()) {
+				int[] starts = cursor.getStarts(IndelUtils.getFullChromosome(dbContig));
+				if (null == starts) {
+					continue;
+				}
+				int previousEnd = 0;
+				for (int i = 0; i < starts.length; ) {
+					/*
+					 * a dbSNP record can only match an input variant that starts within the record, 
+					 * so querying for records overlapping the starts of the run finds all the records that could match
+					 */
+					int runStart = starts[i];
+					int runEnd = starts[i];
+					while (++i < starts.length && starts[i] - runEnd <= TABIX_QUERY_GAP) {
+						runEnd = starts[i];
+					}
+					TabixReader.Iterator iter = tabix.query(dbContig, runStart - 1, runEnd);
+					String line;
+					while ((line = iter.next()) != null) {
+						if ( ! isCandidate(line, cursor)) {
+							continue;
 						}
+						VcfRecord dbSNPVcf = VCFSerializer.parseRecord(line);
+						if (dbSNPVcf.getPosition() <= previousEnd) {
+							continue;
+						}
+						dbSnpNo += annotate(dbSNPVcf);
 					}
+					previousEnd = runEnd;
 				}
-				
-				//check RSPOS for MNV only
-				if ( ! StringUtils.doesStringContainSubString(dbSNPVcf.getInfo(), "VC=MNV", false)) {
-					continue;
+			}
+		} finally {
+			tabix.close();
+		}
+		return dbSnpNo;
+	}
+	
+	/**
+	 * A dbSNP record can only match an input variant that starts somewhere between its POS and the end of its REF allele 
+	 * (at POS itself, or at RSPOS for MNVs), so lines without an input variant starting in that range are skipped before they are tokenised. 
+	 * Lines that can't be checked this way (eg. too few columns) are passed through, to be parsed (and rejected) as before.
+	 */
+	static boolean isCandidate(String line, PositionCursor cursor) {
+		int chrEnd = line.indexOf(Constants.TAB);
+		int posEnd = chrEnd < 0 ? -1 : line.indexOf(Constants.TAB, chrEnd + 1);
+		int idEnd = posEnd < 0 ? -1 : line.indexOf(Constants.TAB, posEnd + 1);
+		int refEnd = idEnd < 0 ? -1 : line.indexOf(Constants.TAB, idEnd + 1);
+		int position = refEnd < 0 ? -1 : PositionCursor.parsePosition(line, chrEnd + 1, posEnd);
+		if (position < 0) {
+			return true;
+		}
+		int refLength = Math.max(1, refEnd - idEnd - 1);
+		return cursor.hasStartBetween(cursor.getContig(line, chrEnd, true), position, position + refLength - 1);
+	}
+	
+	/**
+	 * annotates the input variants that match the supplied dbSNP record, either at its position, or at RSPOS for MNVs
+	 * @return the number of input variants that were annotated
+	 */
+	private int annotate(VcfRecord dbSNPVcf) {
+		int dbSnpNo = 0;
+		 
+		//each dbSNP check twice, since indel alleles followed by one reference base, eg. chr1 100 . TT T ...
+		ChrPosition dbSnpCP = dbSNPVcf.getChrPosition();
+		final String chr = IndelUtils.getFullChromosome(dbSNPVcf.getChromosome());
+		if ( ! chr.equals(dbSnpCP.getChromosome())) {
+			dbSnpCP = ChrPositionUtils.cloneWithNewChromosomeName(dbSnpCP, chr);
+		}
+		List<VcfRecord> inputVcfs = positionRecordMap.get(dbSnpCP);
+		if (null != inputVcfs && inputVcfs.size() != 0){
+			for(VcfRecord re: inputVcfs) {
+				if(annotateDBsnp(re, dbSNPVcf )) {
+					dbSnpNo ++;						
 				}
-				
-				//if RSPOS different to column 2
-				String rspos = dbSNPVcf.getInfoRecord().getField("RSPOS");
-				if( ! StringUtils.isNullOrEmpty(rspos)) {
-					int start = Integer.parseInt(rspos);
-					if(start == dbSnpCP.getStartPosition() || start > dbSnpCP.getEndPosition()) continue; 
-					
-					dbSnpCP = new ChrRangePosition(chr, start, dbSnpCP.getEndPosition() );	
-					inputVcfs = positionRecordMap.get(dbSnpCP);
-					if (null != inputVcfs && inputVcfs.size() != 0) {
-						for(VcfRecord re: inputVcfs) {
-							if(annotateDBsnp(re, dbSNPVcf )) {
-								dbSnpNo ++;					
-							}
-						}
+			}
+		}
+		
+		//check RSPOS for MNV only
+		if ( ! StringUtils.doesStringContainSubString(dbSNPVcf.getInfo(), "VC=MNV", false)) {
+			return dbSnpNo;
+		}
+		
+		//if RSPOS different to column 2
+		String rspos = dbSNPVcf.getInfoRecord().getField("RSPOS");
+		if( ! StringUtils.isNullOrEmpty(rspos)) {
+			int start = Integer.parseInt(rspos);
+			if(start == dbSnpCP.getStartPosition() || start > dbSnpCP.getEndPosition()) return dbSnpNo; 
+			
+			dbSnpCP = new ChrRangePosition(chr, start, dbSnpCP.getEndPosition() );	
+			inputVcfs = positionRecordMap.get(dbSnpCP);
+			if (null != inputVcfs && inputVcfs.size() != 0) {
+				for(VcfRecord re: inputVcfs) {
+					if(annotateDBsnp(re, dbSNPVcf )) {
+						dbSnpNo ++;					
 					}
 				}
 			}
-			 
-			logger.info(String.format("found %d matched dbSNP ", dbSnpNo));
 		}
+		return dbSnpNo;
 	}
 	
 	/**
@@ -30,6 +30,7 @@ import org.qcmg.common.vcf.VcfRecord;
 import org.qcmg.common.vcf.header.VcfHeaderUtils;
 
 import au.edu.qimr.qannotate.Options;
+import au.edu.qimr.qannotate.utils.PositionCursor;
 
 public class GermlineMode extends AbstractMode{
 	
@@ -88,6 +89,7 @@ public class GermlineMode extends AbstractMode{
 	 		String line;
 	 		int counter = 0;
 	 		short mCounter = 0;
+	 		PositionCursor cursor = new PositionCursor(positionRecordMap.keySet());
 	 		while ((line = buffered.readLine()) != null) {
 	 			counter++;
 	 			if (counter == 1000000) {
@@ -96,6 +98,10 @@ public class GermlineMode extends AbstractMode{
 	 				logger.info("Hit " + mCounter + "M germlinedb records");
 	 			}
 	 			
+	 			if ( ! isCandidate(line, cursor)) {
+	 				continue;
+	 			}
+	 			
 	 			String[] usParams = TabTokenizer.tokenize(line, '_');
 	 			if (null != usParams && usParams.length > 3) {
 	 				// contig is first followed by position
@@ -166,6 +172,22 @@ public class GermlineMode extends AbstractMode{
 //	 	}
 	 }
  	
+ 	/**
+ 	 * Germline database lines start with contig_position_ref_alt, and are looked up on their contig and position as they are, 
+ 	 * so lines without an input variant at that contig and position are skipped before they are tokenised.
+ 	 * Lines with fewer than 4 fields, or a position that isn't a number, are passed through to be rejected as before.
+ 	 */
+ 	static boolean isCandidate(String line, PositionCursor cursor) {
+ 		int chrEnd = line.indexOf('_');
+ 		int posEnd = chrEnd < 0 ? -1 : line.indexOf('_', chrEnd + 1);
+ 		int refEnd = posEnd < 0 ? -1 : line.indexOf('_', posEnd + 1);
+ 		int position = refEnd < 0 ? -1 : PositionCursor.parsePosition(line, chrEnd + 1, posEnd);
+ 		if (position < 0) {
+ 			return true;
+ 		}
+ 		return cursor.hasStartBetween(cursor.getContig(line, chrEnd, false), position, position);
+ 	}
+ 	
  	/**
  	 * 
  	 * @param inputVcf: a vcf record - INFO field will be updated if the ref and alts match
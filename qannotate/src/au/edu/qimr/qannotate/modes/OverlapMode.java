@@ -101,10 +101,11 @@ public class OverlapMode extends AbstractMode{
         // set up executor services
         ExecutorService pileupThreads = Executors.newFixedThreadPool( threadNo );        
      	//each time only throw threadNo thread, the loop finish until the last threadNo     
+        Map<String, List<VcfRecord>> vcfsByContig = getVcfsByContig();
                   
 	   for (SAMSequenceRecord contig : contigs ) 
 		   for(int i = 0 ; i< bamfiles.length; i ++ )      		   
-			pileupThreads.execute(new ContigPileup(contig, getVcfList(contig), new File(bamfiles[i]), query, queue, i+1, Thread.currentThread(), pileupLatch ));    		    	 
+			pileupThreads.execute(new ContigPileup(contig, getVcfList(vcfsByContig, contig), new File(bamfiles[i]), query, queue, i+1, Thread.currentThread(), pileupLatch ));    		    	 
     	pileupThreads.shutdown();
     	
 		// wait for threads to complete
@@ -139,26 +140,31 @@ public class OverlapMode extends AbstractMode{
 	}
 	
 	 /**
-	  * 
-	  * @param contig: contig name or null for whole reference
-	  * @param filter: only return indel vcf records with specified filter value. Put null here if ignor record filter column value
-	  * @return a sorted list of IndelPotion on this contig; return whole reference indels if contig is null
+	  * Splits the input variants by contig in a single pass, sorting each contig's variants by position,
+	  * rather than going through all the variants for each contig
+	  * @return a map of contig name to the sorted list of variants on that contig
 	  */
-	 private  AbstractQueue<VcfRecord>  getVcfList( SAMSequenceRecord contig ){
-		if (positionRecordMap == null || positionRecordMap.size() == 0)
-			return new ConcurrentLinkedQueue<VcfRecord>(); 	
-				  
-		List<VcfRecord> list = new ArrayList<> ();	
-		for(ChrPosition pos : positionRecordMap.keySet()){
-			//get variants from same contig
-			if(contig != null && !pos.getChromosome().equals(contig.getSequenceName())  )
-				continue; 
-			list.addAll(positionRecordMap.get(pos));
+	 private Map<String, List<VcfRecord>> getVcfsByContig() {
+		Map<String, List<VcfRecord>> vcfsByContig = new HashMap<>();
+		for (Map.Entry<ChrPosition, List<VcfRecord>> entry : positionRecordMap.entrySet()) {
+			vcfsByContig.computeIfAbsent(entry.getKey().getChromosome(), k -> new ArrayList<>()).addAll(entry.getValue());
 		}
-
-		// lambda expression to replace abstract method			 				 
-		list.sort( (VcfRecord o1,VcfRecord o2) ->  new ChrPositionComparator().compare( o1.getChrPosition(), o2.getChrPosition() ) );
-		 
-		return new ConcurrentLinkedQueue< VcfRecord>( list ); 
+		
+		final ChrPositionComparator comparator = new ChrPositionComparator();
+		for (List<VcfRecord> list : vcfsByContig.values()) {
+			list.sort( (VcfRecord o1,VcfRecord o2) ->  comparator.compare( o1.getChrPosition(), o2.getChrPosition() ) );
+		}
+		return vcfsByContig;
+	 }
+	 
+	 /**
+	  * 
+	  * @param vcfsByContig: sorted variants by contig, from {@link #getVcfsByContig()}
+	  * @param contig: contig name
+	  * @return a queue of the sorted variants on this contig, which is empty if there are none
+	  */
+	 private static AbstractQueue<VcfRecord> getVcfList(Map<String, List<VcfRecord>> vcfsByContig, SAMSequenceRecord contig) {
+		List<VcfRecord> list = vcfsByContig.get(contig.getSequenceName());
+		return null == list ? new ConcurrentLinkedQueue<VcfRecord>() : new ConcurrentLinkedQueue<VcfRecord>(list);
 	 }
 }
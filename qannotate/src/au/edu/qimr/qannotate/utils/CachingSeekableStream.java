@@ -0,0 +1,118 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+*/
+package au.edu.qimr.qannotate.utils;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+/**
+ * A {@link SeekableStream} that keeps the most recently used pages of the underlying stream in memory.
+ * <p>
+ * Tabix queries of neighbouring regions seek back into the bgzf blocks that the previous query has just read,
+ * so wrapping the database file in this stream means that those blocks are served from memory rather than being read from disk again.
+ * Pages are {@link #PAGE_SIZE} bytes, which is the maximum size of a bgzf block, and are evicted least recently used first.
+ * <p>
+ * Not thread safe.
+ */
+public class CachingSeekableStream extends SeekableStream {
+
+	public static final int PAGE_SIZE = 64 * 1024;
+
+	private final SeekableStream stream;
+	private final long length;
+	private final Map<Long, byte[]> pages;
+	private long position;
+
+	public CachingSeekableStream(SeekableStream stream, final int maxPages) {
+		this.stream = stream;
+		this.length = stream.length();
+		this.pages = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+				return size() > maxPages;
+			}
+		};
+	}
+
+	private byte[] getPage(long index) throws IOException {
+		byte[] page = pages.get(index);
+		if (null == page) {
+			long pageStart = index * PAGE_SIZE;
+			page = new byte[(int) Math.min(PAGE_SIZE, length - pageStart)];
+			stream.seek(pageStart);
+			int read = 0;
+			while (read < page.length) {
+				int n = stream.read(page, read, page.length - read);
+				if (n < 0) {
+					throw new IOException("Unexpected end of stream at " + (pageStart + read) + " in " + stream.getSource());
+				}
+				read += n;
+			}
+			pages.put(index, page);
+		}
+		return page;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (eof()) {
+			return -1;
+		}
+		byte[] page = getPage(position / PAGE_SIZE);
+		int pageOffset = (int) (position % PAGE_SIZE);
+		int n = Math.min(len, page.length - pageOffset);
+		System.arraycopy(page, pageOffset, buffer, offset, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (eof()) {
+			return -1;
+		}
+		byte[] page = getPage(position / PAGE_SIZE);
+		return page[(int) (position++ % PAGE_SIZE)] & 0xff;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public long position() {
+		return position;
+	}
+
+	@Override
+	public void seek(long position) {
+		this.position = position;
+	}
+
+	@Override
+	public boolean eof() {
+		return position >= length;
+	}
+
+	@Override
+	public String getSource() {
+		return stream.getSource();
+	}
+
+	@Override
+	public void close() throws IOException {
+		pages.clear();
+		stream.close();
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+*/
+package au.edu.qimr.qannotate.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.qcmg.common.model.ChrPosition;
+import org.qcmg.common.util.IndelUtils;
+
+/**
+ * Works out whether a line of an annotation database could match any of the input variants from the contig and position at the start of the line,
+ * so that modes that stream through a whole database only tokenise and parse the lines that might be of interest.
+ * <p>
+ * The start positions of the input variants are held in a sorted array per contig. When the database is sorted by position,
+ * lookups advance a cursor along the array, so the scan is a merge join of the two sorted inputs. A lookup that goes backwards
+ * (a new contig, or a database that isn't sorted) falls back to a binary search, so the answers don't depend on the order of the database.
+ * <p>
+ * Not thread safe.
+ */
+public class PositionCursor {
+
+	private final Map<String, int[]> startsByContig = new HashMap<>();
+
+	private String contig;
+	private int[] starts;
+	private int cursor;
+	private int lastFrom;
+
+	private String lastRawContig;
+	private String lastFullContig;
+
+	/**
+	 * @param positions the input variant positions, keyed by their {@link ChrPosition#getChromosome()}
+	 */
+	public PositionCursor(Collection<ChrPosition> positions) {
+		Map<String, List<Integer>> contigs = new HashMap<>();
+		for (ChrPosition cp : positions) {
+			contigs.computeIfAbsent(cp.getChromosome(), k -> new ArrayList<>()).add(cp.getStartPosition());
+		}
+		for (Map.Entry<String, List<Integer>> entry : contigs.entrySet()) {
+			int[] array = entry.getValue().stream().mapToInt(Integer::intValue).sorted().toArray();
+			startsByContig.put(entry.getKey(), array);
+		}
+	}
+
+	/**
+	 * @return true if an input variant on the supplied contig starts between <code>from</code> and <code>to</code> (inclusive)
+	 */
+	public boolean hasStartBetween(String contig, int from, int to) {
+		if ( ! contig.equals(this.contig)) {
+			this.contig = contig;
+			starts = startsByContig.get(contig);
+			cursor = 0;
+			lastFrom = Integer.MIN_VALUE;
+		}
+		if (null == starts) {
+			return false;
+		}
+
+		if (from < lastFrom) {
+			int i = Arrays.binarySearch(starts, from);
+			if (i < 0) {
+				cursor = -i - 1;
+			} else {
+				// there may be duplicates - move to the first
+				while (i > 0 && starts[i - 1] == from) {
+					i--;
+				}
+				cursor = i;
+			}
+		} else {
+			while (cursor < starts.length && starts[cursor] < from) {
+				cursor++;
+			}
+		}
+		lastFrom = from;
+		return cursor < starts.length && starts[cursor] <= to;
+	}
+
+	/**
+	 * @return the sorted start positions of the input variants on the supplied contig, or null if there are none
+	 */
+	public int[] getStarts(String contig) {
+		return startsByContig.get(contig);
+	}
+
+	/**
+	 * Returns the contig at the start of the supplied line, which ends at <code>contigEnd</code> (exclusive), converted using {@link IndelUtils#getFullChromosome(String)} if asked to.
+	 * The previous contig is returned if the line starts with the same one, so a sorted database only creates a new string once per contig rather than once per line.
+	 */
+	public String getContig(String line, int contigEnd, boolean fullChromosome) {
+		if (null == lastRawContig || contigEnd != lastRawContig.length() || ! line.regionMatches(0, lastRawContig, 0, contigEnd)) {
+			lastRawContig = line.substring(0, contigEnd);
+			lastFullContig = fullChromosome ? IndelUtils.getFullChromosome(lastRawContig) : lastRawContig;
+		}
+		return lastFullContig;
+	}
+
+	/**
+	 * @return the non-negative integer in the supplied range of the string, or -1 if the range is empty or contains anything other than digits
+	 */
+	public static int parsePosition(String s, int from, int to) {
+		if (from >= to || to - from > 9) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+}
@@ -0,0 +1,162 @@
+package au.edu.qimr.qannotate.modes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qcmg.common.vcf.VcfRecord;
+import org.qcmg.vcf.VCFFileReader;
+
+import au.edu.qimr.qannotate.Options;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.tribble.SimpleFeature;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+
+public class CaddModeTest {
+
+	@Rule
+	public final TemporaryFolder testFolder = new TemporaryFolder();
+
+	@Test
+	public void annotateWithGaps() throws Exception {
+		File input = createVcf();
+		File db = createCadd("cadd.tsv.gz", 100, 2000);
+
+		List<String> expected = null;
+		for (int gap : new int[] {0, 10, 1000, 100000}) {
+			File output = runCadd(input, gap, db);
+			List<String> lines = Files.readAllLines(output.toPath());
+			List<String> records = new ArrayList<>();
+			for (String line : lines) {
+				if ( ! line.startsWith("#")) records.add(line);
+			}
+			if (null == expected) {
+				expected = records;
+			} else {
+				assertEquals("gap " + gap, expected, records);
+			}
+		}
+
+		List<VcfRecord> vcfs = readVcfs(runCadd(input, 1000, db));
+		assertEquals(6, vcfs.size());
+		// input order is retained
+		assertEquals(150, vcfs.get(0).getPosition());
+		assertEquals(120, vcfs.get(1).getPosition());
+		assertEquals("CADD=(A>C|c8_150|c10_150|c11_150|c12_150|c17_150|c21_150|c26_150|c35_150|c39_150|c72_150|c82_150|c83_150|c86_150|c92_150|c92_150|c93_150|c96_150)", vcfs.get(0).getInfo());
+		assertEquals("CADD=(A>G|c8_120|c10_120|c11_120|c12_120|c17_120|c21_120|c26_120|c35_120|c39_120|c72_120|c82_120|c83_120|c86_120|c92_120|c92_120|c93_120|c96_120),(A>T|c8_120|c10_120|c11_120|c12_120|c17_120|c21_120|c26_120|c35_120|c39_120|c72_120|c82_120|c83_120|c86_120|c92_120|c92_120|c93_120|c96_120)", vcfs.get(1).getInfo());
+		// ref doesn't match
+		assertFalse(vcfs.get(2).getInfo().contains("CADD"));
+		// outside the database
+		assertFalse(vcfs.get(3).getInfo().contains("CADD"));
+		assertTrue(vcfs.get(4).getInfo().startsWith("CADD=(A>C|c8_1500|"));
+		assertTrue(vcfs.get(5).getInfo().startsWith("CADD=(A>C|c8_1501|"));
+	}
+
+	@Test
+	public void annotateFromMultipleDatabases() throws Exception {
+		File input = createVcf();
+		File db1 = createCadd("cadd1.tsv.gz", 100, 1400);
+		File db2 = createCadd("cadd2.tsv.gz", 1400, 2000);
+
+		List<VcfRecord> vcfs = readVcfs(runCadd(input, 1000, db1, db2));
+		assertTrue(vcfs.get(0).getInfo().startsWith("CADD=(A>C|c8_150|"));
+		assertTrue(vcfs.get(4).getInfo().startsWith("CADD=(A>C|c8_1500|"));
+
+		// each database adds its own entry
+		File db3 = new File(testFolder.getRoot(), "cadd3.tsv.gz");
+		Files.copy(db2.toPath(), db3.toPath());
+		Files.copy(new File(db2.getAbsolutePath() + ".tbi").toPath(), new File(db3.getAbsolutePath() + ".tbi").toPath());
+		vcfs = readVcfs(runCadd(input, 1000, db2, db3));
+		assertEquals("CADD=(A>C|c8_1500|c10_1500|c11_1500|c12_1500|c17_1500|c21_1500|c26_1500|c35_1500|c39_1500|c72_1500|c82_1500|c83_1500|c86_1500|c92_1500|c92_1500|c93_1500|c96_1500),"
+				+ "(A>C|c8_1500|c10_1500|c11_1500|c12_1500|c17_1500|c21_1500|c26_1500|c35_1500|c39_1500|c72_1500|c82_1500|c83_1500|c86_1500|c92_1500|c92_1500|c93_1500|c96_1500)", vcfs.get(4).getInfo());
+	}
+
+	@Test
+	public void sameEntry() {
+		assertTrue(CaddMode.sameEntry("1\t100\tA\tA\tC\tx", "1\t100\tA\tA\tC\ty"));
+		assertTrue(CaddMode.sameEntry("1\t100\tA\tA\tC", "1\t100\tA\tG\tC\ty"));
+		assertFalse(CaddMode.sameEntry("1\t100\tA\tA\tC\tx", "1\t100\tA\tA\tG\tx"));
+		assertFalse(CaddMode.sameEntry("1\t100\tA\tA\tC\tx", "1\t101\tA\tA\tC\tx"));
+		assertFalse(CaddMode.sameEntry("1\t100\tA\tA\tC\tx", "1\t100\tAT\tA\tC\tx"));
+		assertFalse(CaddMode.sameEntry("1\t100\tA", "1\t100\tA"));
+	}
+
+	private File runCadd(File input, int gap, File ... databases) throws Exception {
+		File output = new File(testFolder.getRoot(), "output." + gap + "." + databases.length + ".vcf");
+		List<String> args = new ArrayList<>(Arrays.asList("--mode", "cadd", "-i", input.getAbsolutePath(), "-o", output.getAbsolutePath(), "--gap", String.valueOf(gap)));
+		for (File db : databases) {
+			args.add("-d");
+			args.add(db.getAbsolutePath());
+		}
+		new CaddMode(new Options(args.toArray(new String[args.size()])));
+		return output;
+	}
+
+	private static List<VcfRecord> readVcfs(File f) throws IOException {
+		List<VcfRecord> vcfs = new ArrayList<>();
+		try (VCFFileReader reader = new VCFFileReader(f)) {
+			for (VcfRecord re : reader) {
+				vcfs.add(re);
+			}
+		}
+		return vcfs;
+	}
+
+	private File createVcf() throws IOException {
+		File f = testFolder.newFile("input.vcf");
+		List<String> data = Arrays.asList(
+				"##fileformat=VCFv4.0",
+				"#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO",
+				"chr1\t150\t.\tA\tC\t.\tPASS\t.",
+				"chr1\t120\t.\tA\tG,T\t.\tPASS\t.",
+				"chr1\t130\t.\tG\tC\t.\tPASS\t.",
+				"chr1\t3000\t.\tA\tC\t.\tPASS\t.",
+				"chr1\t1500\t.\tA\tC\t.\tPASS\t.",
+				"chr1\t1501\t.\tA\tC\t.\tPASS\t.");
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(f))) {
+			for (String line : data) {
+				out.write(line + "\n");
+			}
+		}
+		return f;
+	}
+
+	/**
+	 * Creates a bgzipped, tabix indexed database with an A reference and C, G and T alleles at each position in the range.
+	 * Column n of each line is "c&lt;n&gt;_&lt;position&gt;".
+	 */
+	private File createCadd(String name, int from, int to) throws IOException {
+		File f = new File(testFolder.getRoot(), name);
+		TabixIndexCreator indexCreator = new TabixIndexCreator(new TabixFormat(TabixFormat.GENERIC_FLAGS, 1, 2, 2, '#', 0));
+		try (BlockCompressedOutputStream out = new BlockCompressedOutputStream(f)) {
+			out.write("#Chrom\tPos\tRef\tAnc\tAlt\n".getBytes());
+			for (int pos = from; pos < to; pos++) {
+				for (String alt : new String[] {"C", "G", "T"}) {
+					StringBuilder sb = new StringBuilder("1\t" + pos + "\tA\tA\t" + alt);
+					for (int i = 5; i < 100; i++) {
+						sb.append("\tc").append(i).append('_').append(pos);
+					}
+					long filePointer = out.getFilePointer();
+					out.write((sb.toString() + "\n").getBytes());
+					indexCreator.addFeature(new SimpleFeature("1", pos, pos), filePointer);
+				}
+			}
+			out.flush();
+			indexCreator.finalizeIndex(out.getFilePointer()).writeBasedOnFeatureFile(f);
+		}
+		return f;
+	}
+}
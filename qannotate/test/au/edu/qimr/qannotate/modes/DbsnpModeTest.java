@@ -5,16 +5,23 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qcmg.common.model.ChrPointPosition;
+import org.qcmg.common.model.ChrRangePosition;
 import org.qcmg.common.util.Constants;
 import org.qcmg.common.vcf.VcfRecord;
 import org.qcmg.common.vcf.header.VcfHeader;
@@ -22,11 +29,21 @@ import org.qcmg.common.vcf.header.VcfHeaderRecord;
 import org.qcmg.common.vcf.header.VcfHeaderUtils;
 import org.qcmg.vcf.VCFFileReader;
 
+import au.edu.qimr.qannotate.utils.PositionCursor;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.variant.vcf.VCFCodec;
+
 public class DbsnpModeTest {
 	public final static String inputName = "./input.vcf";
 	final static String dbSNPName = "./dbSNP.vcf";
 	final static String outputName = "./output.vcf";
 	
+	@Rule
+	public final TemporaryFolder testFolder = new TemporaryFolder();
+	
 	 @BeforeClass
 	public static void createInput() throws IOException{
 		createVcf();
@@ -153,6 +170,72 @@ public class DbsnpModeTest {
 //		 }
 //	}
 	
+	@Test
+	public void annotationTest() throws Exception {
+		createDbsnp();
+		assertAnnotations(dbSNPName);
+	}
+	
+	@Test
+	public void annotationFromTabixIndexedFile() throws Exception {
+		createDbsnp();
+		File bgzipped = testFolder.newFile("dbSNP.vcf.gz");
+		try (BufferedReader reader = new BufferedReader(new FileReader(dbSNPName));
+				BlockCompressedOutputStream out = new BlockCompressedOutputStream(bgzipped)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				out.write((line + "\n").getBytes());
+			}
+		}
+		Index index = IndexFactory.createTabixIndex(bgzipped, new VCFCodec(), TabixFormat.VCF, null);
+		index.writeBasedOnFeatureFile(bgzipped);
+		assertTrue(new File(bgzipped.getAbsolutePath() + DbsnpMode.TABIX_INDEX_SUFFIX).exists());
+		
+		assertAnnotations(bgzipped.getAbsolutePath());
+	}
+	
+	private void assertAnnotations(String dbFile) throws Exception {
+		final DbsnpMode mode = new DbsnpMode();
+		mode.loadVcfRecordsFromFile(new File(inputName));
+		mode.addAnnotation(dbFile);
+		
+		assertEquals("rs71432129", getRecord(mode, 2675826).getId());
+		assertEquals("0.39", getRecord(mode, 2675826).getInfoRecord().getField(VcfHeaderUtils.INFO_VAF));
+		assertEquals("rs71432129", getRecord(mode, 2675825).getId());
+		assertEquals("0.23", getRecord(mode, 2675825).getInfoRecord().getField(VcfHeaderUtils.INFO_VAF));
+		assertEquals("rs111477956", getRecord(mode, 22012840).getId());
+		assertEquals("rs386662672", getRecord(mode, 77242678).getId());
+		assertEquals(null, getRecord(mode, 77242678).getInfoRecord().getField(VcfHeaderUtils.INFO_VAF));
+		assertEquals(".", getRecord(mode, 14923588).getId());
+	}
+	
+	private static VcfRecord getRecord(DbsnpMode mode, int position) {
+		for (List<VcfRecord> vcfs : mode.positionRecordMap.values()) {
+			for (VcfRecord vcf : vcfs) {
+				if (vcf.getPosition() == position) {
+					return vcf;
+				}
+			}
+		}
+		return null;
+	}
+	
+	@Test
+	public void isCandidate() {
+		PositionCursor cursor = new PositionCursor(Arrays.asList(new ChrPointPosition("chr1", 100), new ChrRangePosition("chr1", 205, 207)));
+		assertTrue(DbsnpMode.isCandidate("1\t100\trs1\tA\tC\t.\t.\t.", cursor));
+		assertFalse(DbsnpMode.isCandidate("1\t101\trs1\tA\tC\t.\t.\t.", cursor));
+		// MNV that could match at RSPOS
+		assertTrue(DbsnpMode.isCandidate("1\t204\trs2\tACCG\tATTG\t.\t.\tRSPOS=205;VC=MNV", cursor));
+		assertFalse(DbsnpMode.isCandidate("1\t201\trs2\tACCG\tATTG\t.\t.\tRSPOS=202;VC=MNV", cursor));
+		assertFalse(DbsnpMode.isCandidate("chr2\t100\trs1\tA\tC\t.\t.\t.", cursor));
+		// going backwards
+		assertTrue(DbsnpMode.isCandidate("chr1\t100\trs1\tA\tC\t.\t.\t.", cursor));
+		// malformed lines are left to the parser
+		assertTrue(DbsnpMode.isCandidate("1\tABC\trs1\tA\tC\t.\t.\t.", cursor));
+		assertTrue(DbsnpMode.isCandidate("1\t1000", cursor));
+	}
+	
 	/**
 	 * The VLD info should add to output vcf if it appear on the dbSNP header
 	 * @throws IOException
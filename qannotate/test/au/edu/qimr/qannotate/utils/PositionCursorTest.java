@@ -0,0 +1,81 @@
+package au.edu.qimr.qannotate.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.qcmg.common.model.ChrPointPosition;
+import org.qcmg.common.model.ChrRangePosition;
+
+public class PositionCursorTest {
+
+	private static PositionCursor getCursor() {
+		return new PositionCursor(Arrays.asList(
+				new ChrPointPosition("chr1", 300),
+				new ChrPointPosition("chr1", 100),
+				new ChrRangePosition("chr1", 200, 202),
+				new ChrRangePosition("chr1", 200, 201),
+				new ChrPointPosition("chr2", 50)));
+	}
+
+	@Test
+	public void getStarts() {
+		PositionCursor cursor = getCursor();
+		assertArrayEquals(new int[] {100, 200, 200, 300}, cursor.getStarts("chr1"));
+		assertArrayEquals(new int[] {50}, cursor.getStarts("chr2"));
+		assertNull(cursor.getStarts("chr3"));
+	}
+
+	@Test
+	public void sortedLookups() {
+		PositionCursor cursor = getCursor();
+		assertFalse(cursor.hasStartBetween("chr1", 1, 99));
+		assertTrue(cursor.hasStartBetween("chr1", 100, 100));
+		assertFalse(cursor.hasStartBetween("chr1", 101, 101));
+		assertTrue(cursor.hasStartBetween("chr1", 150, 200));
+		assertTrue(cursor.hasStartBetween("chr1", 200, 200));
+		assertFalse(cursor.hasStartBetween("chr1", 201, 299));
+		assertTrue(cursor.hasStartBetween("chr1", 300, 300));
+		assertFalse(cursor.hasStartBetween("chr1", 301, 1000));
+		assertTrue(cursor.hasStartBetween("chr2", 50, 50));
+		assertFalse(cursor.hasStartBetween("chr3", 50, 50));
+	}
+
+	@Test
+	public void backwardsLookups() {
+		PositionCursor cursor = getCursor();
+		assertTrue(cursor.hasStartBetween("chr1", 300, 300));
+		assertTrue(cursor.hasStartBetween("chr1", 200, 200));
+		assertTrue(cursor.hasStartBetween("chr1", 100, 100));
+		assertFalse(cursor.hasStartBetween("chr1", 150, 199));
+		assertTrue(cursor.hasStartBetween("chr2", 50, 50));
+		// back to a contig that has already been seen
+		assertTrue(cursor.hasStartBetween("chr1", 100, 100));
+	}
+
+	@Test
+	public void getContig() {
+		PositionCursor cursor = getCursor();
+		String contig = cursor.getContig("1\t100", 1, true);
+		assertEquals("chr1", contig);
+		assertSame(contig, cursor.getContig("1\t200", 1, true));
+		assertEquals("chr10", cursor.getContig("10\t100", 2, true));
+		assertEquals("10", new PositionCursor(Arrays.asList()).getContig("10\t100", 2, false));
+	}
+
+	@Test
+	public void parsePosition() {
+		assertEquals(12345, PositionCursor.parsePosition("1\t12345\t.", 2, 7));
+		assertEquals(0, PositionCursor.parsePosition("0", 0, 1));
+		assertEquals(-1, PositionCursor.parsePosition("1\t\t.", 2, 2));
+		assertEquals(-1, PositionCursor.parsePosition("1\t12a45\t.", 2, 7));
+		assertEquals(-1, PositionCursor.parsePosition("1\t-1\t.", 2, 4));
+		assertEquals(-1, PositionCursor.parsePosition("12345678901", 0, 11));
+	}
+}
@@ -33,13 +33,7 @@ public class IsizeFilter implements SamRecordFilter{
      */
     @Override 
     public boolean filterOut(final SAMRecord record){
-    	Integer ob = record.getInferredInsertSize();
-
-        if(ob != null){
-              return op.eval(ob, value );
-        }
-
-        return false;
+        return op.eval(record.getInferredInsertSize(), value );
     }
 
     
@@ -11,6 +11,7 @@ import java.util.regex.Pattern;
 
 import htsjdk.samtools.filter.SamRecordFilter;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTagUtil;
 
 
 public class MDFilter implements SamRecordFilter{
@@ -18,6 +19,7 @@ public class MDFilter implements SamRecordFilter{
     private final int value;
     private final Comparator op;
     private static final Pattern pa = Pattern.compile("\\d[ATGCN]");
+    private static final short MD_TAG = SAMTagUtil.getSingleton().MD;
     
     /**
      * Initialise cigar operator name, comparator and operator value
@@ -56,9 +58,16 @@ public class MDFilter implements SamRecordFilter{
     }
     
     private static int tallyMDMismatches(String mdData) {
+    	return tallyMDMismatches(mdData, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Stops counting once <code>limit</code> mismatches have been found
+     */
+    static int tallyMDMismatches(String mdData, int limit) {
     	int count = 0;
 		if (null != mdData) {
-			for (int i = 0, size = mdData.length() ; i < size ; ) {
+			for (int i = 0, size = mdData.length() ; i < size && count < limit ; ) {
 				char c = mdData.charAt(i);
 				if (isValidMismatch(c)) {
 					count++;
@@ -85,14 +94,17 @@ public class MDFilter implements SamRecordFilter{
      */
     @Override   
     public boolean filterOut(final SAMRecord record){
-    	String attribute = (String)record.getAttribute("MD");
+    	String attribute = (String)record.getAttribute(MD_TAG);
     	
         if( attribute == null){
             return false;          
         }
 
         if(MismatchFilter){
-            int mismatch = tallyMDMismatches(attribute);
+        	/*
+        	 * any count above the value gives the same result for all the comparators, so there is no need to count any further than that
+        	 */
+            int mismatch = tallyMDMismatches(attribute, value < Integer.MAX_VALUE ? value + 1 : value);
             return op.eval(mismatch, value );
         }
         return false;
@@ -38,12 +38,7 @@ public class MapQFilter implements SamRecordFilter{
     @Override
     public boolean filterOut(final SAMRecord record){
 
-    	Integer ob = record.getMappingQuality();
-        if(ob != null){
-              return op.eval(ob, value );
-        }
-
-        return false;
+        return op.eval(record.getMappingQuality(), value );
     }
 
     /**
@@ -40,9 +40,7 @@ public class PosFilter implements SamRecordFilter{
      */
     @Override
     public boolean filterOut(final SAMRecord record){
-        Integer ob = record.getAlignmentStart();
-
-        return op.eval(ob, value );
+        return op.eval(record.getAlignmentStart(), value );
        
 
     }
@@ -44,12 +44,13 @@ public class  SeqFilter implements SamRecordFilter {
      */
     @Override
 	public boolean filterOut(SAMRecord record) {    	
-	    	String base = record.getReadString();
+	    	byte[] bases = record.getReadBases();
 	
-	    	//traditional counting base is fast
+	    	//traditional counting base is fast, and any count above the value gives the same result for all the comparators
+	    	int limit = value < Integer.MAX_VALUE ? value + 1 : value;
 	    	int count = 0;
-	    	for(int i = 0; i < base.length(); i ++) {
-	    		if( base.charAt(i) == 'N' ) {
+	    	for(int i = 0; i < bases.length && count < limit; i ++) {
+	    		if( bases[i] == 'N' ) {
 	    			count ++;
 	    		}
 	    	}
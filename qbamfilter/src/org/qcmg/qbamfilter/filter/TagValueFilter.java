@@ -16,6 +16,12 @@ public final class TagValueFilter implements SamRecordFilter{
     private final short tagShort;
     private final String value;
     private final Comparator op;
+    
+    /*
+     * the value as an int, if it is one, so that integer tags can be compared without converting them to strings
+     */
+    private final boolean isIntValue;
+    private final int intValue;
 
 
     /**
@@ -29,6 +35,26 @@ public final class TagValueFilter implements SamRecordFilter{
         tagShort = stu.makeBinaryTag(tag);
         this.value = value;
         op = comp;
+        
+        Integer i = null;
+        try {
+        	i = Integer.valueOf(value);
+        } catch (NumberFormatException e) {}
+        
+        /*
+         * for == and != the string comparison of "01" and 1 is false, so only use the int when it is how the int would be written
+         */
+        if (null != i && (isNumericComparator(comp) || ((comp == Comparator.Equal || comp == Comparator.NotEqual) && i.toString().equals(value)))) {
+        	isIntValue = true;
+        	intValue = i.intValue();
+        } else {
+        	isIntValue = false;
+        	intValue = 0;
+        }
+    }
+    
+    private static boolean isNumericComparator(Comparator comp) {
+    	return comp == Comparator.Great || comp == Comparator.GreatEqual || comp == Comparator.Small || comp == Comparator.SmallEqual;
     }
 
     /**
@@ -45,6 +71,9 @@ public final class TagValueFilter implements SamRecordFilter{
         Object ob = record.getAttribute(tagShort);
 
         if(ob != null){
+        	if (isIntValue && (ob instanceof Integer || ob instanceof Short || ob instanceof Byte)) {
+        		return op.eval(((Number) ob).intValue(), intValue);
+        	}
             return op.eval(ob.toString(),value );
         }
 
@@ -7,10 +7,22 @@
 package org.qcmg.qbamfilter.grammars;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 import htsjdk.samtools.filter.SamRecordFilter;
 import htsjdk.samtools.SAMRecord;
 
+import org.qcmg.qbamfilter.filter.CigarFilter;
+import org.qcmg.qbamfilter.filter.FlagFilter;
+import org.qcmg.qbamfilter.filter.IsizeFilter;
+import org.qcmg.qbamfilter.filter.MDFilter;
+import org.qcmg.qbamfilter.filter.MRNMFilter;
+import org.qcmg.qbamfilter.filter.MapQFilter;
+import org.qcmg.qbamfilter.filter.PosFilter;
+import org.qcmg.qbamfilter.filter.RNameFilter;
+import org.qcmg.qbamfilter.filter.TagValueFilter;
+
 public class Expression implements SamRecordFilter{
 
 	queryTree.Operator operator = queryTree.Operator.NULL;
@@ -57,6 +69,68 @@ public class Expression implements SamRecordFilter{
 	    	}
     }
 
+	/**
+	 * Returns an equivalent filter that is cheaper to evaluate: nested expressions with the same operator are flattened into this one,
+	 * expressions with a single condition are replaced by that condition, and the conditions of each expression are ordered by their cost
+	 * (see {@link #getCost(SamRecordFilter)}), so that flag, mapq and position checks short circuit the tag and sequence checks.
+	 * The conditions of the query keep their relative order when they have the same cost.
+	 * <p>
+	 * This expression is not changed.
+	 */
+	public SamRecordFilter compile() {
+		queryTree.Operator op = (operator == queryTree.Operator.AND) ? queryTree.Operator.AND : queryTree.Operator.OR;
+		List<SamRecordFilter> compiled = new ArrayList<>();
+		for (SamRecordFilter con : conditions) {
+			SamRecordFilter f = (con instanceof Expression) ? ((Expression) con).compile() : con;
+			if (f instanceof Expression && ((Expression) f).operator == op) {
+				compiled.addAll(((Expression) f).conditions);
+			} else {
+				compiled.add(f);
+			}
+		}
+		if (compiled.size() == 1) {
+			return compiled.get(0);
+		}
+		
+		compiled.sort(Comparator.comparingInt(Expression::getCost));	// stable
+		Expression exp = new Expression();
+		exp.addOperator(op);
+		compiled.forEach(exp::addCondition);
+		return exp;
+	}
+	
+	/**
+	 * @return the relative cost of evaluating the filter for a record - those that only look at the fixed fields of the record are the cheapest,
+	 * followed by those that look at the reference names, cigar, tags and finally every base of the record. 
+	 * The cost of an expression is the sum of the costs of its conditions.
+	 */
+	static int getCost(SamRecordFilter filter) {
+		if (filter instanceof Expression) {
+			int cost = 0;
+			for (SamRecordFilter con : ((Expression) filter).conditions) {
+				cost += getCost(con);
+			}
+			return cost;
+		}
+		if (filter instanceof FlagFilter || filter instanceof MapQFilter || filter instanceof PosFilter || filter instanceof IsizeFilter) {
+			return 1;
+		}
+		if (filter instanceof RNameFilter || filter instanceof MRNMFilter) {
+			return 2;
+		}
+		if (filter instanceof CigarFilter) {
+			return 3;
+		}
+		if (filter instanceof TagValueFilter) {
+			return 4;
+		}
+		if (filter instanceof MDFilter) {
+			return 5;
+		}
+		// QualFilter, SeqFilter and anything else
+		return 6;
+	}
+
 	@Override
 	@Deprecated
 	public boolean filterOut(SAMRecord arg0, SAMRecord arg1) {
@@ -18,6 +18,7 @@ import org.antlr.runtime.RecognitionException;
 import org.qcmg.common.log.QLogger;
 import org.qcmg.common.log.QLoggerFactory;
 import org.qcmg.common.string.StringUtils;
+import org.qcmg.qbamfilter.grammars.Expression;
 import org.qcmg.qbamfilter.grammars.queryLexer;
 import org.qcmg.qbamfilter.grammars.queryParser;
 import org.qcmg.qbamfilter.grammars.queryTree;
@@ -33,6 +34,13 @@ public class QueryExecutor {
      * It Check the query and create an CommonTree. it run once for each query from command line.
      */
     public QueryExecutor(String query) throws Exception {
+    		this(query, true);
+    }
+    
+    /**
+     * @param compile if true, the parsed query is compiled into an equivalent filter with the cheapest conditions first - see {@link Expression#compile()}
+     */
+    QueryExecutor(String query, boolean compile) throws Exception {
     		if (StringUtils.isNullOrEmpty(query)) {
     			throw new IllegalArgumentException("Null or empty query passed to QueryExecutor");
     		}
@@ -54,7 +62,7 @@ public class QueryExecutor {
             CommonTreeNodeStream myStream = new CommonTreeNodeStream(ParserTree);
             queryTree  myAST = new queryTree(myStream);      
             queryTree.script_return result = myAST.script();
-            queryExecutor =  result.exp;
+            queryExecutor = (compile && result.exp instanceof Expression) ? ((Expression) result.exp).compile() : result.exp;
         } catch(RecognitionException e ){
         		logger.error("RecognitionException caught while instantiating QueryExecutor", e);
         		throw  e;
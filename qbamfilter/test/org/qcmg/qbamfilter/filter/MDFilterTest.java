@@ -5,6 +5,8 @@
 
 package org.qcmg.qbamfilter.filter;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -105,6 +107,28 @@ public class MDFilterTest {
 
          }
     
+    @Test
+    public void tallyWithLimit() throws Exception {
+    	String md = "10A5^AC6T0G12N3";
+    	assertEquals(4, MDFilter.tallyMDMismatches(md, Integer.MAX_VALUE));
+    	assertEquals(tallyMDMismatches(md), MDFilter.tallyMDMismatches(md, Integer.MAX_VALUE));
+    	assertEquals(4, MDFilter.tallyMDMismatches(md, 4));
+    	assertEquals(2, MDFilter.tallyMDMismatches(md, 2));
+    	assertEquals(0, MDFilter.tallyMDMismatches(md, 0));
+    	assertEquals(0, MDFilter.tallyMDMismatches(null, 2));
+    	
+    	// the counting stops at the limit, but the result of the comparison is the same
+    	SAMRecord record = new SAMRecord(null);
+    	record.setAttribute("MD", md);
+    	assertTrue(new MDFilter("mismatch", Comparator.Great, "3").filterOut(record));
+    	assertFalse(new MDFilter("mismatch", Comparator.Great, "4").filterOut(record));
+    	assertTrue(new MDFilter("mismatch", Comparator.SmallEqual, "4").filterOut(record));
+    	assertFalse(new MDFilter("mismatch", Comparator.Small, "4").filterOut(record));
+    	assertFalse(new MDFilter("mismatch", Comparator.Equal, "3").filterOut(record));
+    	assertTrue(new MDFilter("mismatch", Comparator.NotEqual, "3").filterOut(record));
+    	assertTrue(new MDFilter("mismatch", Comparator.Equal, "4").filterOut(record));
+    }
+    
     @Ignore
     public void testCompareOldAndNew() {
     	 Pattern p = Pattern.compile("\\d[ATGCN]");
@@ -17,6 +17,8 @@ import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SAMRecord;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 
 
@@ -77,6 +79,41 @@ public class TagValueFilterTest {
     	
     }
 
+    @Test
+    public void testNumericValues() throws Exception{
+        SamReader Inreader = SAMFileReaderFactory.createSAMFileReader(new File(TestFile.INPUT_FILE_NAME));
+        List<SAMRecord> records = new ArrayList<>();
+        for(SAMRecord re : Inreader){
+        	records.add(re);
+        }
+        Inreader.close();
+        
+        //ZM:i:1, no ZM, ZM:i:2, ZM:Z:2, no ZM
+        assertEquals(5, records.size());
+        TagValueFilter equal = new TagValueFilter("ZM", Comparator.Equal, "2");
+        TagValueFilter great = new TagValueFilter("ZM", Comparator.Great, "1");
+        TagValueFilter notEqual = new TagValueFilter("ZM", Comparator.NotEqual, "1");
+        //not the same string as the integer value, so compared as a string
+        TagValueFilter leadingZero = new TagValueFilter("ZM", Comparator.Equal, "01");
+        
+        boolean[] equalExpected = {false, false, true, true, false};
+        boolean[] greatExpected = {false, false, true, true, false};
+        boolean[] notEqualExpected = {false, false, true, true, false};
+        for (int i = 0 ; i < records.size() ; i++) {
+        	assertEquals(equalExpected[i], equal.filterOut(records.get(i)));
+        	assertEquals(greatExpected[i], great.filterOut(records.get(i)));
+        	assertEquals(notEqualExpected[i], notEqual.filterOut(records.get(i)));
+        	assertFalse(leadingZero.filterOut(records.get(i)));
+        }
+        
+        SAMRecord re = records.get(0);
+        re.setAttribute("ZM", (short) 300);
+        assertTrue(great.filterOut(re));
+        re.setAttribute("ZM", (byte) -1);
+        assertFalse(great.filterOut(re));
+        assertTrue(new TagValueFilter("ZM", Comparator.Small, "0").filterOut(re));
+    }
+    
     @After
     public void after(){
         new File(TestFile.INPUT_FILE_NAME).delete();
@@ -106,4 +106,121 @@ public class ExpressionTest {
     }
     
     
+    @Test
+    public void compileOrdersConditionsByCost() throws Exception {
+        SamRecordFilter tag = new Condition("option_ZM", "==", "1").getFilter();
+        SamRecordFilter md = new Condition("MD_mismatch", "<", "3").getFilter();
+        SamRecordFilter flag = new Condition("flag_DuplicateRead", "==", "false").getFilter();
+        SamRecordFilter mapq = new Condition("mapq", ">", "16").getFilter();
+        
+        Expression exp = new Expression();
+        exp.addOperator(queryTree.Operator.AND);
+        exp.addCondition(tag);
+        exp.addCondition(md);
+        exp.addCondition(flag);
+        exp.addCondition(mapq);
+        
+        Expression compiled = (Expression) exp.compile();
+        assertEquals(queryTree.Operator.AND, compiled.operator);
+        assertEquals(4, compiled.conditions.size());
+        // same cost conditions keep their order
+        assertSame(flag, compiled.conditions.get(0));
+        assertSame(mapq, compiled.conditions.get(1));
+        assertSame(tag, compiled.conditions.get(2));
+        assertSame(md, compiled.conditions.get(3));
+        
+        // original is unchanged
+        assertSame(tag, exp.conditions.get(0));
+        assertSame(mapq, exp.conditions.get(3));
+    }
+    
+    @Test
+    public void compileFlattensExpressions() throws Exception {
+        SamRecordFilter tag = new Condition("option_ZM", "==", "1").getFilter();
+        SamRecordFilter cigar = new Condition("cigar_M", ">", "35").getFilter();
+        SamRecordFilter mapq = new Condition("mapq", ">", "16").getFilter();
+        
+        // and(option_ZM == 1, and(cigar_M > 35, or(mapq > 16)))
+        Expression single = new Expression();
+        single.addOperator(queryTree.Operator.OR);
+        single.addCondition(mapq);
+        Expression inner = new Expression();
+        inner.addOperator(queryTree.Operator.AND);
+        inner.addCondition(cigar);
+        inner.addCondition(single);
+        Expression outer = new Expression();
+        outer.addOperator(queryTree.Operator.AND);
+        outer.addCondition(tag);
+        outer.addCondition(inner);
+        
+        Expression compiled = (Expression) outer.compile();
+        assertEquals(3, compiled.conditions.size());
+        assertSame(mapq, compiled.conditions.get(0));
+        assertSame(cigar, compiled.conditions.get(1));
+        assertSame(tag, compiled.conditions.get(2));
+        
+        // an expression with a single condition compiles to that condition
+        assertSame(mapq, single.compile());
+        
+        // sub trees with a different operator are kept, and ordered by their total cost
+        Expression or = new Expression();
+        or.addOperator(queryTree.Operator.OR);
+        or.addCondition(tag);
+        or.addCondition(cigar);
+        Expression and = new Expression();
+        and.addOperator(queryTree.Operator.AND);
+        and.addCondition(or);
+        and.addCondition(mapq);
+        compiled = (Expression) and.compile();
+        assertEquals(2, compiled.conditions.size());
+        assertSame(mapq, compiled.conditions.get(0));
+        assertTrue(compiled.conditions.get(1) instanceof Expression);
+        assertEquals(queryTree.Operator.OR, ((Expression) compiled.conditions.get(1)).operator);
+    }
+    
+    @Test
+    public void getCost() throws Exception {
+        assertTrue(Expression.getCost(new Condition("flag_DuplicateRead", "==", "false").getFilter()) 
+        		< Expression.getCost(new Condition("cigar_M", ">", "35").getFilter()));
+        assertTrue(Expression.getCost(new Condition("cigar_M", ">", "35").getFilter()) 
+        		< Expression.getCost(new Condition("option_SM", ">", "14").getFilter()));
+        assertTrue(Expression.getCost(new Condition("option_SM", ">", "14").getFilter()) 
+        		< Expression.getCost(new Condition("MD_mismatch", "<", "3").getFilter()));
+        
+        Expression exp = new Expression();
+        exp.addCondition(new Condition("mapq", ">", "16").getFilter());
+        exp.addCondition(new Condition("cigar_M", ">", "35").getFilter());
+        assertEquals(4, Expression.getCost(exp));
+    }
+    
+    @Test
+    public void compiledSameAsOriginal() throws Exception {
+        // or(and(option_ZM != 1, mapq > 16), and(flag_ReadPaired == true, option_ZM == 2, cigar_M > 10))
+        Expression and1 = new Expression();
+        and1.addOperator(queryTree.Operator.AND);
+        and1.addCondition(new Condition("option_ZM", "!=", "1").getFilter());
+        and1.addCondition(new Condition("mapq", ">", "16").getFilter());
+        Expression and2 = new Expression();
+        and2.addOperator(queryTree.Operator.AND);
+        and2.addCondition(new Condition("flag_ReadPaired", "==", "true").getFilter());
+        and2.addCondition(new Condition("option_ZM", "==", "2").getFilter());
+        and2.addCondition(new Condition("cigar_M", ">", "10").getFilter());
+        Expression or = new Expression();
+        or.addOperator(queryTree.Operator.OR);
+        or.addCondition(and1);
+        or.addCondition(and2);
+        
+        SamRecordFilter compiled = or.compile();
+        int passed = 0;
+        SamReader inreader = SAMFileReaderFactory.createSAMFileReader(new File(TestFile.INPUT_FILE_NAME));
+        for (SAMRecord record : inreader) {
+        	boolean expected = or.filterOut(record);
+        	assertEquals(expected, compiled.filterOut(record));
+        	assertEquals(expected, and1.compile().filterOut(record) || and2.compile().filterOut(record));
+        	if (expected) passed ++;
+        }
+        inreader.close();
+        assertTrue(passed > 0);
+    }
+
 }
@@ -0,0 +1,108 @@
+package org.qcmg.qbamfilter.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * JMH benchmark reporting the number of records per second that a query is executed against, when the query is run as parsed
+ * and when it is compiled with its cheapest conditions first.
+ * <p>
+ * The queries are those used by the pipelines, and the records are synthetic, with a spread of flags, mapping qualities, cigars and tags.
+ * <p>
+ * Not a unit test - run with: java -cp &lt;test classpath&gt; org.qcmg.qbamfilter.query.QueryExecutorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryExecutorBenchmark {
+
+	private static final int RECORDS = 100000;
+	private static final String[] MDS = new String[] {"50", "10A39", "5C10^AT20G13", "0T20A10C5G12", "N49", "12G7T3A8C2G15"};
+
+	@Param({"and(Cigar_M > 35, option_SM > 14, MD_mismatch < 3, flag_DuplicateRead == false)",
+			"and(Cigar_M > 35, MD_mismatch < 3, MAPQ > 0, flag_DuplicateRead == false)",
+			"and (mapq > 16 , cigar_M >= 40 , or (option_ZM == 0, option_ZM > 200))"})
+	public String query;
+
+	private final List<SAMRecord> records = new ArrayList<>(RECORDS);
+	private QueryExecutor parsed;
+	private QueryExecutor compiled;
+
+	@Setup
+	public void setup() throws Exception {
+		SAMFileHeader header = new SAMFileHeader();
+		header.setSequenceDictionary(new SAMSequenceDictionary(Arrays.asList(new SAMSequenceRecord("chr1", 249250621))));
+		Random random = new Random(42);
+		for (int i = 0; i < RECORDS; i++) {
+			SAMRecord record = new SAMRecord(header);
+			record.setReadName("read_" + i);
+			record.setReferenceName("chr1");
+			record.setAlignmentStart(10000 + i * 10);
+			record.setFlags(random.nextInt(10) == 0 ? 1024 + 99 : 99);
+			record.setMappingQuality(random.nextInt(10) == 0 ? 0 : random.nextInt(60));
+			int matched = 30 + random.nextInt(21);
+			record.setCigarString(matched == 50 ? "50M" : (50 - matched) + "S" + matched + "M");
+			record.setReadString("ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTAC");
+			record.setBaseQualityString("IIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIIII");
+			record.setAttribute("MD", MDS[random.nextInt(MDS.length)]);
+			record.setAttribute("SM", random.nextInt(100));
+			record.setAttribute("ZM", random.nextInt(300));
+			records.add(record);
+		}
+		parsed = new QueryExecutor(query, false);
+		compiled = new QueryExecutor(query, true);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORDS)
+	public int parsedQuery() throws Exception {
+		return execute(parsed);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORDS)
+	public int compiledQuery() throws Exception {
+		return execute(compiled);
+	}
+
+	private int execute(QueryExecutor executor) throws Exception {
+		int passed = 0;
+		for (SAMRecord record : records) {
+			if (executor.Execute(record)) {
+				passed++;
+			}
+		}
+		return passed;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(QueryExecutorBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -62,6 +62,7 @@ public class Options {
 	private Integer maxCoverage;
 	private Map<String, String[]> pindelMutations;
 	private Integer outputFormat = 1;
+	private Integer batchGap;
 
 	public Options(final String[] args) throws Exception {
 
@@ -87,6 +88,7 @@ public class Options {
 		parser.accepts("strand", Messages.getMessage("OPTION_STRAND")).withRequiredArg().ofType(String.class).describedAs("strand");
 		parser.accepts("novelstarts", Messages.getMessage("OPTION_NOVELSTARTS")).withRequiredArg().ofType(String.class).describedAs("novelstarts");
 		parser.accepts("hdf", Messages.getMessage("OPTION_HDF")).withRequiredArg().ofType(String.class).describedAs("hdf");
+		parser.accepts("batch", Messages.getMessage("OPTION_BATCH")).withOptionalArg().ofType(Integer.class).describedAs("max_gap");
 
 		//indel
 		parser.accepts("is", Messages.getMessage("OPTION_SOMATIC_INPUT")).withRequiredArg().ofType(String.class).describedAs("somatic_indel_file");
@@ -210,6 +212,13 @@ public class Options {
 
 			}		
 
+			if (options.has("batch")) {
+				batchGap = options.valueOf("batch") != null ? (Integer) options.valueOf("batch") : QBasePileupConstants.DEFAULT_BATCH_GAP;
+				if (batchGap < 0) {
+					throw new QBasePileupException("BATCH_GAP_ERROR", batchGap.toString());
+				}
+			}
+
 			if (options.has("p")) {
 				profile = (String) options.valueOf("p");
 			}			
@@ -379,6 +388,17 @@ public class Options {
 		return outputFormat;
 	}
 
+	public boolean isBatched() {
+		return batchGap != null;
+	}
+
+	/**
+	 * @return the largest gap between neighbouring positions that are piled up together in batched mode, or null if not in batched mode
+	 */
+	public Integer getBatchGap() {
+		return batchGap;
+	}
+
 	public Map<String, String[]> getPindelMutations() {
 		return pindelMutations;
 	}
@@ -119,10 +119,13 @@ public class QBasePileup {
 		logger.info("Qbamfilter query: " + options.getFilterQuery());
 		logger.info("Include duplicate " + options.includeDuplicates());
 		logger.info("Threads: " + options.getThreadNo() + " + 3");
+		if (options.isBatched()) {
+			logger.info("Batched pileup, max gap between positions: " + options.getBatchGap());
+		}
 		
 		int lineNumber = countLines(options.getPositionsFile());
 		
-		if (lineNumber > 50000) {
+		if (lineNumber > 50000 && ! options.isBatched()) {
 				SnpBasePileupByFileMT mt = new SnpBasePileupByFileMT(options);
 				return mt.getExitStatus();		
 		} else {
@@ -17,4 +17,8 @@ public class QBasePileupConstants {
 	public final static String INDEL_MODE = "indel";
 	
 	public final static String COVERAGE_MODE = "coverage";
+	
+	public final static int DEFAULT_BATCH_GAP = 1000;
+	
+	public final static int MAX_BATCH_SPAN = 1000000;
 }
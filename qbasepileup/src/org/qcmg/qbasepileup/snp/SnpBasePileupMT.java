@@ -26,6 +26,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -60,6 +61,12 @@ public class SnpBasePileupMT {
 	final int maxRecords = 100000;
 	final int checkPoint = 10000;
 	private List<String> headerLines = new ArrayList<>();
+	/*
+	 * batched mode: the output of positions that have been piled up but can't be written yet, as a position before them in the positions file
+	 * is still to be done, and the index of the next position to write
+	 */
+	private final Map<Integer, String[]> pendingResults = new HashMap<>();
+	private int nextToWrite;
 
 
 	public SnpBasePileupMT(Options options) throws IOException {		
@@ -84,7 +91,8 @@ public class SnpBasePileupMT {
 		final AbstractQueue<SnpPosition> readQueue = new ConcurrentLinkedQueue<>();    
 		final List<SnpPosition> positions = new ArrayList<>();
 
-		final AbstractQueue<String> writeQueue = new ConcurrentLinkedQueue<>();
+		// constant time size(), which batched mode checks for every window
+		final LinkedBlockingQueue<String> writeQueue = new LinkedBlockingQueue<>();
 
 		// thread
 		final CountDownLatch pileupLatch = new CountDownLatch(threadNo); // filtering thread
@@ -117,15 +125,31 @@ public class SnpBasePileupMT {
 			uniqueSnpPositions.addAll(positions);
 			
 
-			// kick-off pileup threads
-			for (int i = 0; i < threadNo; i++) {
-				pileupThreads.execute(new Pileup(readQueue,
-						writeQueue, Thread.currentThread(), 
-						pileupLatch, writeLatch, options.getInputBAMs(), uniqueSnpPositions));
+			if (options.isBatched()) {
+				/*
+				 * pile up a window of nearby positions at a time, taking the windows in the order that their first position appears in the positions file,
+				 * and queue the results up for writing in the order of the positions file as soon as all the positions before them are done
+				 */
+				List<SnpPositionWindow> windows = SnpPositionWindow.createWindows(positions, options.getBatchGap());
+				windows.sort(Comparator.comparingInt(SnpPositionWindow::getFirstIndex));
+				final AbstractQueue<SnpPositionWindow> windowQueue = new ConcurrentLinkedQueue<>(windows);
+				logger.info("no of windows: " + windowQueue.size() + " (max gap between positions: " + options.getBatchGap() + ")");
+				
+				for (int i = 0; i < threadNo; i++) {
+					pileupThreads.execute(new WindowPileup(windowQueue, writeQueue, Thread.currentThread(), pileupLatch, options.getInputBAMs()));
+				}
+				pileupThreads.shutdown();
+			} else {
+				// kick-off pileup threads
+				for (int i = 0; i < threadNo; i++) {
+					pileupThreads.execute(new Pileup(readQueue,
+							writeQueue, Thread.currentThread(), 
+							pileupLatch, writeLatch, options.getInputBAMs(), uniqueSnpPositions));
+				}
+	
+				pileupThreads.shutdown();
 			}
 
-			pileupThreads.shutdown();
-
 			// kick-off single writing thread to output the satisfied Records
 			writeThread.execute(new Writing(writeQueue, options.getOutput(), Thread.currentThread(), pileupLatch, writeLatch));
 			writeThread.shutdown();
@@ -322,23 +346,12 @@ public class SnpBasePileupMT {
 
 							SnpPositionPileup pileup = new SnpPositionPileup(i, position, options, exec);
 							pileup.pileup(sfReader);
-							totalExamined.addAndGet(pileup.getTotalExamined());
-							totalPassedFilters.addAndGet(pileup.getPassFiltersCount());
-							totalReadsNotMapped.addAndGet(pileup.getDoesntMapCount());
-							totalReadsBadBaseQual.addAndGet(pileup.getBasesNotPassBaseQual());
-							totalReadsBaseMapQual.addAndGet(pileup.getReadsNotPassMapQual());
-							if (options.getMode().equals("snp")) {
-								if (options.getOutputFormat() == 2) {
-									queueOut.add(pileup.toColumnString());
-								} else {
-									queueOut.add(pileup.toString() + "\n");
-								}                 			
-							}
+							updateTotals(pileup);
+							String output = getOutput(pileup);
 							if (options.getMode().equals(QBasePileupConstants.COMPOUND_SNP_MODE)) {
-								sb.append(pileup.toCompoundString() + "\n");
-							}
-							if (options.getMode().equals(QBasePileupConstants.SNP_CHECK_MODE)) {
-								queueOut.add(pileup.toMafString() + "\n");
+								sb.append(output);
+							} else if (null != output) {
+								queueOut.add(output);
 							}
 						}
 
@@ -389,6 +402,145 @@ public class SnpBasePileupMT {
 		}
 	}
 
+	private void updateTotals(SnpPositionPileup pileup) {
+		totalExamined.addAndGet(pileup.getTotalExamined());
+		totalPassedFilters.addAndGet(pileup.getPassFiltersCount());
+		totalReadsNotMapped.addAndGet(pileup.getDoesntMapCount());
+		totalReadsBadBaseQual.addAndGet(pileup.getBasesNotPassBaseQual());
+		totalReadsBaseMapQual.addAndGet(pileup.getReadsNotPassMapQual());
+	}
+
+	/**
+	 * @return the output for the supplied pileup according to the mode and output format, or null if the mode has no output
+	 */
+	private String getOutput(SnpPositionPileup pileup) {
+		if (options.getMode().equals(QBasePileupConstants.SNP_MODE)) {
+			if (options.getOutputFormat() == 2) {
+				return pileup.toColumnString();
+			}
+			return pileup.toString() + "\n";
+		}
+		if (options.getMode().equals(QBasePileupConstants.COMPOUND_SNP_MODE)) {
+			return pileup.toCompoundString() + "\n";
+		}
+		if (options.getMode().equals(QBasePileupConstants.SNP_CHECK_MODE)) {
+			return pileup.toMafString() + "\n";
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the output of each input for the positions in the window, and queues up for writing the output of the positions that are now next in the positions file
+	 */
+	private synchronized void addResults(SnpPositionWindow window, String[][] windowResults, AbstractQueue<String> writeQueue) {
+		for (int j = 0; j < window.size(); j++) {
+			pendingResults.put(window.getIndex(j), windowResults[j]);
+		}
+		String[] next;
+		while ((next = pendingResults.remove(nextToWrite)) != null) {
+			for (String s : next) {
+				if (null != s) {
+					writeQueue.add(s);
+				}
+			}
+			nextToWrite++;
+		}
+	}
+
+	/**
+	 * Whether to hold off on piling up the next window, as too many results are waiting for an earlier position, or for the writing thread.
+	 * The window that holds the next position to write is never held up, as nothing can be written until it is done.
+	 */
+	private synchronized boolean isBacklogged(SnpPositionWindow next, AbstractQueue<String> writeQueue) {
+		if (null == next || next.getFirstIndex() <= nextToWrite) {
+			return false;
+		}
+		return pendingResults.size() >= maxRecords || writeQueue.size() >= maxRecords;
+	}
+
+	/**
+	 * Piles up a window of positions at a time for each of the inputs, handing the output for the window to {@link SnpBasePileupMT#addResults(SnpPositionWindow, String[][], AbstractQueue)}
+	 */
+	private class WindowPileup implements Runnable {
+
+		private final AbstractQueue<SnpPositionWindow> queueIn;
+		private final AbstractQueue<String> queueOut;
+		private final Thread mainThread;
+		private final CountDownLatch pileupLatch;
+		private final List<InputBAM> currentInputs;
+		private int countOutputSleep;
+
+		public WindowPileup(AbstractQueue<SnpPositionWindow> queueIn, AbstractQueue<String> queueOut, Thread mainThread,
+				CountDownLatch pileupLatch, List<InputBAM> inputs) {
+			this.queueIn = queueIn;
+			this.queueOut = queueOut;
+			this.mainThread = mainThread;
+			this.pileupLatch = pileupLatch;
+			this.currentInputs = new ArrayList<>(inputs);
+		}
+
+		@Override
+		public void run() {
+			int count = 0;
+			Map<InputBAM, SamReader> samReaderCache = new HashMap<>();
+			try {
+				QueryExecutor exec = null;
+				if (options.getFilterQuery() != null) {
+					exec = new QueryExecutor(options.getFilterQuery());
+				}
+
+				SnpPositionWindow window;
+				while (true) {
+					while (isBacklogged(queueIn.peek(), queueOut)) {
+						Thread.sleep(sleepUnit);
+						countOutputSleep++;
+					}
+					if ((window = queueIn.poll()) == null) {
+						break;
+					}
+					String[][] windowResults = new String[window.size()][currentInputs.size()];
+					for (int i = 0; i < currentInputs.size(); i++) {
+						InputBAM input = currentInputs.get(i);
+						SamReader reader = samReaderCache.get(input);
+						if (null == reader) {
+							reader = input.getSAMFileReader();
+							samReaderCache.put(input, reader);
+						}
+
+						List<SnpPositionPileup> pileups = window.pileup(input, reader, options, exec);
+						for (int j = 0; j < pileups.size(); j++) {
+							SnpPositionPileup pileup = pileups.get(j);
+							updateTotals(pileup);
+							windowResults[j][i] = getOutput(pileup);
+						}
+					}
+					addResults(window, windowResults, queueOut);
+					count += window.size();
+					if (count % 1000 < window.size()) {
+						logger.info("Processed " + count + " records");
+					}
+				}
+				logger.info("Completed pileup thread: " + Thread.currentThread().getName());
+			} catch (Exception e) {
+				logger.error("Setting exit status in pileup thread to 1 as exception caught: " + QBasePileupUtil.getStrackTrace(e));
+				if (exitStatus.intValue() == 0) {
+					exitStatus.incrementAndGet();
+				}
+				mainThread.interrupt();
+			} finally {
+				logger.debug("total slept " + countOutputSleep + " times waiting for earlier positions or the writing thread");
+				for (SamReader reader : samReaderCache.values()) {
+					try {
+						reader.close();
+					} catch (IOException e) {
+						logger.warn("Could not close reader: " + e.getMessage());
+					}
+				}
+				pileupLatch.countDown();
+			}
+		}
+	}
+
 	private class Writing implements Runnable {
 		private final File resultsFile;
 		private final AbstractQueue<String> queue;
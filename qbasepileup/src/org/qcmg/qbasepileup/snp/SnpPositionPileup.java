@@ -248,7 +248,11 @@ public class SnpPositionPileup {
 	}
 	
 	public void addSAMRecord(SAMRecord record) throws Exception {
-		if (passesReadFilters(record, false)) {
+		addSAMRecord(record, false);
+	}
+	
+	public void addSAMRecord(SAMRecord record, boolean prefiltered) throws Exception {
+		if (passesReadFilters(record, prefiltered)) {
 			parseRecord(record);
 		}	
 	}
@@ -285,15 +289,21 @@ public class SnpPositionPileup {
 			if (prefiltered) {
 				return true;
 			}
-			if(exec != null )
-				return exec.Execute(r);
-			else
-				return !r.getReadUnmappedFlag() && (!r.getDuplicateReadFlag() || options.includeDuplicates());
-						
-			 			
+			return passesFilters(r, exec, options);
 		}
 		return false;
 	}
+	
+	/**
+	 * Applies the qbamfilter query if there is one, otherwise drops unmapped reads, and duplicates unless they have been asked for.
+	 * Does not look at the position, so {@link SnpPositionWindow} can filter a read once for all the positions that it covers.
+	 */
+	static boolean passesFilters(SAMRecord r, QueryExecutor exec, Options options) throws Exception {
+		if (exec != null) {
+			return exec.Execute(r);
+		}
+		return !r.getReadUnmappedFlag() && (!r.getDuplicateReadFlag() || options.includeDuplicates());
+	}
 
 	public void parseRecord(SAMRecord r) throws QBasePileupException {
 		
@@ -0,0 +1,181 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.qbasepileup.snp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SamReader;
+
+import org.qcmg.qbamfilter.query.QueryExecutor;
+import org.qcmg.qbasepileup.InputBAM;
+import org.qcmg.qbasepileup.Options;
+import org.qcmg.qbasepileup.QBasePileupConstants;
+
+/**
+ * A run of positions on a contig that are close enough together to be piled up from a single bam query.
+ * <p>
+ * Rather than querying the bam once per position, {@link #pileup(InputBAM, SamReader, Options, QueryExecutor)} queries the span of the window once,
+ * and hands each read to the positions that it covers, so reads that cover several positions are only decoded (and filtered) once.
+ * The counts for each position are the same as those from {@link SnpPositionPileup#pileup(SamReader)}.
+ */
+public class SnpPositionWindow {
+
+	private final String fullChromosome;
+	private final SnpPosition[] positions;
+	private final int[] indices;
+	private final int firstIndex;
+	private final int start;
+	private final int end;
+
+	SnpPositionWindow(String fullChromosome, SnpPosition[] positions, int[] indices) {
+		this.fullChromosome = fullChromosome;
+		this.positions = positions;
+		this.indices = indices;
+		int windowEnd = 0;
+		for (SnpPosition p : positions) {
+			windowEnd = Math.max(windowEnd, p.getEnd());
+		}
+		int lowestIndex = Integer.MAX_VALUE;
+		for (int i : indices) {
+			lowestIndex = Math.min(lowestIndex, i);
+		}
+		this.firstIndex = lowestIndex;
+		this.start = positions[0].getStart();
+		this.end = windowEnd;
+	}
+
+	/**
+	 * Groups the positions by contig, sorts them by start position, and splits each contig into windows,
+	 * starting a new window when the next position starts more than <code>maxGap</code> bases after the end of the current window
+	 * (or would take the window past {@link QBasePileupConstants#MAX_BATCH_SPAN} bases).
+	 * <p>
+	 * Each position keeps its index in the supplied list (see {@link #getIndex(int)}) so that results can be output in the original order.
+	 */
+	public static List<SnpPositionWindow> createWindows(List<SnpPosition> positions, int maxGap) {
+		Map<String, List<Integer>> contigs = new LinkedHashMap<>();
+		for (int i = 0; i < positions.size(); i++) {
+			contigs.computeIfAbsent(positions.get(i).getFullChromosome(), k -> new ArrayList<>()).add(i);
+		}
+
+		List<SnpPositionWindow> windows = new ArrayList<>();
+		for (Map.Entry<String, List<Integer>> entry : contigs.entrySet()) {
+			List<Integer> contigIndices = entry.getValue();
+			contigIndices.sort(Comparator.comparingInt((Integer i) -> positions.get(i).getStart()).thenComparingInt(i -> positions.get(i).getEnd()));
+
+			int from = 0;
+			int windowStart = positions.get(contigIndices.get(0)).getStart();
+			int windowEnd = positions.get(contigIndices.get(0)).getEnd();
+			for (int i = 1; i <= contigIndices.size(); i++) {
+				SnpPosition p = i < contigIndices.size() ? positions.get(contigIndices.get(i)) : null;
+				if (null != p && p.getStart() - windowEnd <= maxGap && Math.max(windowEnd, p.getEnd()) - windowStart < QBasePileupConstants.MAX_BATCH_SPAN) {
+					windowEnd = Math.max(windowEnd, p.getEnd());
+					continue;
+				}
+				windows.add(createWindow(entry.getKey(), positions, contigIndices.subList(from, i)));
+				if (null != p) {
+					from = i;
+					windowStart = p.getStart();
+					windowEnd = p.getEnd();
+				}
+			}
+		}
+		return windows;
+	}
+
+	private static SnpPositionWindow createWindow(String fullChromosome, List<SnpPosition> positions, List<Integer> windowIndices) {
+		SnpPosition[] windowPositions = new SnpPosition[windowIndices.size()];
+		int[] indices = new int[windowIndices.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = windowIndices.get(i);
+			windowPositions[i] = positions.get(indices[i]);
+		}
+		return new SnpPositionWindow(fullChromosome, windowPositions, indices);
+	}
+
+	/**
+	 * Piles up all the positions in this window from a single query of the reader.
+	 *
+	 * @return the pileups, in the same order as the positions in this window
+	 */
+	public List<SnpPositionPileup> pileup(InputBAM input, SamReader reader, Options options, QueryExecutor exec) throws Exception {
+		List<SnpPositionPileup> pileups = new ArrayList<>(positions.length);
+		for (SnpPosition p : positions) {
+			pileups.add(new SnpPositionPileup(input, p, options, exec));
+		}
+
+		/*
+		 * reads come back in alignment start order, and a read can only count towards positions that start at or after its alignment start,
+		 * so positions that start before the current read can be skipped for the rest of the window
+		 */
+		int first = 0;
+		try (SAMRecordIterator iter = reader.queryOverlapping(fullChromosome, start, end)) {
+			while (iter.hasNext()) {
+				SAMRecord r = iter.next();
+				int alignmentStart = r.getAlignmentStart();
+				int alignmentEnd = r.getAlignmentEnd();
+
+				while (first < positions.length && positions[first].getStart() < alignmentStart) {
+					first++;
+				}
+
+				Boolean passesFilters = null;
+				for (int i = first; i < positions.length && positions[i].getStart() <= alignmentEnd; i++) {
+					if (positions[i].getEnd() <= alignmentEnd) {
+						if (null == passesFilters) {
+							passesFilters = SnpPositionPileup.passesFilters(r, exec, options);
+						}
+						if ( ! passesFilters) {
+							break;
+						}
+						pileups.get(i).addSAMRecord(r, true);
+					}
+				}
+			}
+		}
+		return pileups;
+	}
+
+	public int size() {
+		return positions.length;
+	}
+
+	/**
+	 * @return the index, in the list that the windows were created from, of the i'th position in this window
+	 */
+	public int getIndex(int i) {
+		return indices[i];
+	}
+
+	/**
+	 * @return the lowest index, in the list that the windows were created from, of the positions in this window
+	 */
+	public int getFirstIndex() {
+		return firstIndex;
+	}
+
+	public String getFullChromosome() {
+		return fullChromosome;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getEnd() {
+		return end;
+	}
+
+	@Override
+	public String toString() {
+		return fullChromosome + ":" + start + "-" + end + " (" + positions.length + " positions)";
+	}
+}
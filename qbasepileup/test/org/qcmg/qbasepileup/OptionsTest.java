@@ -149,6 +149,13 @@ public class OptionsTest {
 		new Options(args);
 	}
 	
+	@Test(expected=QBasePileupException.class)
+	public void testBadBatchGap() throws Exception {
+		String[] args = {"--log", log, "-i", input, "-r", reference, "-o", output, "-s", snps, "-batch", "-1"};
+		
+		new Options(args);
+	}
+	
 	@Test(expected=QBasePileupException.class)
 	public void testBadFormat() throws Exception {
 		String[] args = {"--log", log, "-i", input, "-r", reference, "-o", output, "-s", snps, "-f", "dccw"};
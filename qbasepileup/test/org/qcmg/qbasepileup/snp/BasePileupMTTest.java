@@ -123,6 +123,63 @@ public class BasePileupMTTest {
 	}
 	
 	
+	@Test
+	public void testBasePileupMTBatched() throws Exception {
+		try (BufferedWriter w = new BufferedWriter(new FileWriter(new File(snps)))) {
+			w.write("test1\tchr1\t60\t60\n");
+			w.write("test2\tchr1\t6\t6\n");
+			w.write("test3\tchr1\t20\t22\n");
+			w.write("test4\tchr1\t7\t7\n");
+			w.write("test5\tchr1\t94\t94\n");
+			w.write("test2\tchr1\t6\t6\n");
+			w.write("test6\tchr1\t95\t95\n");
+		}
+		String[] args = {"--log", log, "-i", bamFile, "-r", reference, "-o", output, "-s", snps, "-f", "tab"};
+		new SnpBasePileupMT(new Options(args));
+		List<String> expected = readLines(output);
+		assertEquals(9, expected.size());
+		
+		for (String gap : new String[] {"0", "10", "1000"}) {
+			String batchedOutput = testFolder.getRoot().getAbsolutePath() + FILE_SEPERATOR + "pileup.batched." + gap + ".txt";
+			String[] batchedArgs = {"--log", log, "-i", bamFile, "-r", reference, "-o", batchedOutput, "-s", snps, "-f", "tab", "-t", "2", "-batch", gap};
+			Options options = new Options(batchedArgs);
+			assertTrue(options.isBatched());
+			assertEquals(Integer.valueOf(gap), options.getBatchGap());
+			SnpBasePileupMT mt = new SnpBasePileupMT(options);
+			assertEquals(0, mt.getExitStatus());
+			assertEquals(expected, readLines(batchedOutput));
+		}
+	}
+	
+	@Test
+	public void testBasePileupMTBatchedWithFilter() throws Exception {
+		try (BufferedWriter w = new BufferedWriter(new FileWriter(new File(snps)))) {
+			w.write("test1\tchr1\t60\t60\n");
+			w.write("test2\tchr1\t6\t6\n");
+			w.write("test3\tchr1\t7\t7\n");
+		}
+		String[] args = {"--log", log, "-i", bamFile, "-r", reference, "-o", output, "-s", snps, "-f", "tab", "-filter", "option_SM > 30"};
+		new SnpBasePileupMT(new Options(args));
+		
+		String batchedOutput = testFolder.getRoot().getAbsolutePath() + FILE_SEPERATOR + "pileup.batched.txt";
+		String[] batchedArgs = {"--log", log, "-i", bamFile, "-r", reference, "-o", batchedOutput, "-s", snps, "-f", "tab", "-filter", "option_SM > 30", "-batch"};
+		Options options = new Options(batchedArgs);
+		assertEquals(Integer.valueOf(1000), options.getBatchGap());
+		new SnpBasePileupMT(options);
+		assertEquals(readLines(output), readLines(batchedOutput));
+	}
+	
+	private static List<String> readLines(String file) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(new File(file)));) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+	
 	private void createBamFile() throws IOException {
 		
 		createSAMFile();
@@ -0,0 +1,81 @@
+package org.qcmg.qbasepileup.snp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.qcmg.qbasepileup.QBasePileupConstants;
+
+public class SnpPositionWindowTest {
+
+	@Test
+	public void createWindowsSortsAndSplitsOnGap() {
+		List<SnpPosition> positions = Arrays.asList(
+				new SnpPosition("a", "chr1", 5000, 5000),
+				new SnpPosition("b", "chr1", 100, 100),
+				new SnpPosition("c", "chr2", 100, 100),
+				new SnpPosition("d", "chr1", 150, 160),
+				new SnpPosition("e", "1", 1160, 1160));
+
+		List<SnpPositionWindow> windows = SnpPositionWindow.createWindows(positions, 1000);
+		assertEquals(3, windows.size());
+
+		SnpPositionWindow w = windows.get(0);
+		assertEquals("chr1", w.getFullChromosome());
+		assertEquals(100, w.getStart());
+		assertEquals(1160, w.getEnd());
+		assertEquals(3, w.size());
+		assertEquals(1, w.getIndex(0));
+		assertEquals(3, w.getIndex(1));
+		assertEquals(4, w.getIndex(2));
+		assertEquals(1, w.getFirstIndex());
+
+		w = windows.get(1);
+		assertEquals("chr1", w.getFullChromosome());
+		assertEquals(5000, w.getStart());
+		assertEquals(1, w.size());
+		assertEquals(0, w.getIndex(0));
+		assertEquals(0, w.getFirstIndex());
+
+		w = windows.get(2);
+		assertEquals("chr2", w.getFullChromosome());
+		assertEquals(2, w.getIndex(0));
+	}
+
+	@Test
+	public void createWindowsGapIsFromEndOfWindow() {
+		List<SnpPosition> positions = Arrays.asList(
+				new SnpPosition("a", "chr1", 100, 200),
+				new SnpPosition("b", "chr1", 150, 150),
+				new SnpPosition("c", "chr1", 210, 210),
+				new SnpPosition("d", "chr1", 221, 221));
+
+		List<SnpPositionWindow> windows = SnpPositionWindow.createWindows(positions, 10);
+		assertEquals(2, windows.size());
+		assertEquals(3, windows.get(0).size());
+		assertEquals(210, windows.get(0).getEnd());
+		assertEquals(1, windows.get(1).size());
+
+		assertEquals(3, SnpPositionWindow.createWindows(positions, -1).size());
+	}
+
+	@Test
+	public void createWindowsLimitsSpan() {
+		List<SnpPosition> positions = Arrays.asList(
+				new SnpPosition("a", "chr1", 1, 1),
+				new SnpPosition("b", "chr1", QBasePileupConstants.MAX_BATCH_SPAN - 1, QBasePileupConstants.MAX_BATCH_SPAN - 1),
+				new SnpPosition("c", "chr1", QBasePileupConstants.MAX_BATCH_SPAN + 1, QBasePileupConstants.MAX_BATCH_SPAN + 1));
+
+		List<SnpPositionWindow> windows = SnpPositionWindow.createWindows(positions, QBasePileupConstants.MAX_BATCH_SPAN);
+		assertEquals(2, windows.size());
+		assertEquals(2, windows.get(0).size());
+		assertEquals(1, windows.get(1).size());
+	}
+
+	@Test
+	public void createWindowsEmpty() {
+		assertEquals(0, SnpPositionWindow.createWindows(Arrays.asList(), 1000).size());
+	}
+}
@@ -6,8 +6,6 @@
  */
 package org.qcmg.common.model;
 
-import gnu.trove.list.TIntList;
-import gnu.trove.iterator.TIntIterator;
 import gnu.trove.map.TIntCharMap;
 import gnu.trove.map.hash.TIntCharHashMap;
 
@@ -63,17 +61,62 @@ public class Accumulator {
 	public static final String T_STRING = "T";
 	
 	private int nCount;
-	private final int position;
+	private int position;
 	
 	private short failedFiltedACount = 0;
 	private short failedFilterCCount = 0;
 	private short failedfilterGCount = 0;
 	private short failedFilterTCount = 0;
 	
+	/*
+	 * PileupElementLite instances left over from a previous position, available for re-use
+	 */
+	private PileupElementLite [] sparePels;
+	private int sparePelCount;
+	
 	public Accumulator(int position) {
 		this.position = position;
 	}
 	
+	/**
+	 * Clears all data held by this accumulator and sets it up to collect data for the supplied position.
+	 * Any PileupElementLite objects are held on to and re-used, saving on allocations when accumulators are recycled.
+	 * 
+	 * @param position
+	 */
+	public void reset(int position) {
+		this.position = position;
+		A = recyclePel(A);
+		C = recyclePel(C);
+		G = recyclePel(G);
+		T = recyclePel(T);
+		nCount = 0;
+		failedFiltedACount = 0;
+		failedFilterCCount = 0;
+		failedfilterGCount = 0;
+		failedFilterTCount = 0;
+	}
+	
+	private PileupElementLite recyclePel(PileupElementLite pel) {
+		if (null != pel) {
+			pel.reset();
+			if (null == sparePels) {
+				sparePels = new PileupElementLite[4];
+			}
+			sparePels[sparePelCount++] = pel;
+		}
+		return null;
+	}
+	
+	private PileupElementLite newPel() {
+		if (sparePelCount > 0) {
+			PileupElementLite pel = sparePels[--sparePelCount];
+			sparePels[sparePelCount] = null;
+			return pel;
+		}
+		return new PileupElementLite();
+	}
+	
 	public int getPosition() {
 		return position;
 	}
@@ -104,19 +147,19 @@ public class Accumulator {
 		
 		switch (base) {
 		case A_BYTE: 
-			if (null == A) A = new PileupElementLite();
+			if (null == A) A = newPel();
 			update(A, qual, forwardStrand, startPositionToUse, endOfRead, readId);
 			break;
 		case C_BYTE: 
-			if (null == C) C = new PileupElementLite();
+			if (null == C) C = newPel();
 			update(C, qual, forwardStrand, startPositionToUse, endOfRead, readId);
 			break;
 		case G_BYTE: 
-			if (null == G) G = new PileupElementLite();
+			if (null == G) G = newPel();
 			update(G, qual, forwardStrand, startPositionToUse, endOfRead, readId);
 			break;
 		case T_BYTE: 
-			if (null == T) T = new PileupElementLite();
+			if (null == T) T = newPel();
 			update(T, qual, forwardStrand, startPositionToUse, endOfRead, readId);
 			break;
 		case 'N':
@@ -543,9 +586,9 @@ public class Accumulator {
 		
 	}
 	
-	private void updateMap(TIntCharMap map, TIntIterator iter, char c) {
-		while(iter.hasNext()) {
-			map.put(iter.next(), c);
+	private static void updateMap(TIntCharMap map, PileupElementLite pel, boolean forwardStrand, char c) {
+		for (int i = 0, len = forwardStrand ? pel.getForwardCount() : pel.getReverseCount() ; i < len ; i++) {
+			map.put(pel.getReadId(forwardStrand, i), c);
 		}
 	}
 	
@@ -553,52 +596,20 @@ public class Accumulator {
 		final TIntCharMap map = new TIntCharHashMap();
 		
 		if (null != A) {
-			TIntList ids = A.getForwardReadIds();
-			if ( ! ids.isEmpty()) {
-				updateMap(map, ids.iterator(), A_CHAR);
-			}
-			
-			ids = A.getReverseReadIds();
-			
-			if ( ! ids.isEmpty()) {
-				updateMap(map, ids.iterator(), A_CHAR_LC);
-			}
+			updateMap(map, A, true, A_CHAR);
+			updateMap(map, A, false, A_CHAR_LC);
 		}
-		
 		if (null != C) {
-			TIntList ids = C.getForwardReadIds();
-			if ( ! ids.isEmpty()) {
-				updateMap(map, ids.iterator(), C_CHAR);
-			}
-			
-			 ids = C.getReverseReadIds();
-			 
-			if (ids != null) {
-				updateMap(map, ids.iterator(), C_CHAR_LC);
-			}
+			updateMap(map, C, true, C_CHAR);
+			updateMap(map, C, false, C_CHAR_LC);
 		}
-		
 		if (null != G) {
-			TIntList ids = G.getForwardReadIds();
-			if ( ! ids.isEmpty()) {
-				updateMap(map, ids.iterator(), G_CHAR);
-			}
-			 ids = G.getReverseReadIds();
-			 
-			if ( ! ids.isEmpty()) {
-				updateMap(map, ids.iterator(), G_CHAR_LC);
-			}
+			updateMap(map, G, true, G_CHAR);
+			updateMap(map, G, false, G_CHAR_LC);
 		}
-		
 		if (null != T) {
-			TIntList ids = T.getForwardReadIds();
-			if ( ! ids.isEmpty()) {
-				updateMap(map, ids.iterator(), T_CHAR);
-			}
-			 ids = T.getReverseReadIds();
-			if (ids != null) {
-				updateMap(map, ids.iterator(), T_CHAR_LC);
-			}
+			updateMap(map, T, true, T_CHAR);
+			updateMap(map, T, false, T_CHAR_LC);
 		}
 		return map;
 	}
@@ -46,6 +46,15 @@ public class MAPQMatrix {
 		}
 	}
 	
+	/**
+	 * Adds the counts held by the supplied matrix to this matrix
+	 */
+	public void addAll(MAPQMatrix other) {
+		for (MatrixType type : MatrixType.values()) {
+			SummaryByCycleUtils.addCounts(getMatrixByType(type), other.getMatrixByType(type));
+		}
+	}
+	
 	public Map<Integer, AtomicLong> getMatrixByType(MatrixType type) {
 		switch (type) {
 		case SM:
@@ -6,131 +6,180 @@
  */
 package org.qcmg.common.model;
 
-import org.qcmg.common.util.PileupElementLiteUtil;
+import java.util.Arrays;
 
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.set.hash.TIntHashSet;
 
 
 /**
  * Note: this class has a natural ordering that is inconsistent with equals.
  * The compareTo method only takes the total count into account
- * 
+ * <p>
+ * The read id, start position and base quality of each read is held in primitive arrays (one set per strand), with qualities stored as bytes,
+ * and start positions stored as short offsets from the first start position seen on that strand.
+ * Counts, quality totals and novel start counts are worked out as data is added (or cached), so that they can be retrieved without allocating.
+ * <p>
+ * Instances can be cleared down and re-used via the {@link #reset()} method, which keeps hold of the arrays.
+ *
  * @author oholmes
  *
  */
 public class PileupElementLite implements Comparable<PileupElementLite> {
-	
-	private TIntList reverseReadIdStartPositionsQualityList;
-	private TIntList forwardReadIdStartPositionsQualityList;
-	
-	private short endOfReadCountFS;
-	private short endOfReadCountRS;
+
+	private Strand forward;
+	private Strand reverse;
 
 	public TIntList getForwardReadIds() {
-		if (null == forwardReadIdStartPositionsQualityList) {
-			return new TIntArrayList(0);
-		}
-		return PileupElementLiteUtil.getDetailsFromCombinedList(forwardReadIdStartPositionsQualityList, 3, 0);
+		return null == forward ? new TIntArrayList(0) : forward.getReadIds();
 	}
 
 	public TIntList getReverseReadIds() {
-		if (null == reverseReadIdStartPositionsQualityList) {
-			return new TIntArrayList(0);
-		}
-		return PileupElementLiteUtil.getDetailsFromCombinedList(reverseReadIdStartPositionsQualityList, 3, 0);
+		return null == reverse ? new TIntArrayList(0) : reverse.getReadIds();
 	}
-	
+
 	public int getForwardCount() {
-		return forwardReadIdStartPositionsQualityList == null || forwardReadIdStartPositionsQualityList.isEmpty() ? 0 : forwardReadIdStartPositionsQualityList.size() / 3;
+		return null == forward ? 0 : forward.count;
 	}
-	
+
 	public int getReverseCount() {
-		return reverseReadIdStartPositionsQualityList == null || reverseReadIdStartPositionsQualityList.isEmpty() ? 0 : reverseReadIdStartPositionsQualityList.size() / 3;
+		return null == reverse ? 0 : reverse.count;
+	}
+
+	/**
+	 * Returns the read id at index <code>i</code> (where i is less than the forward/reverse count) for the requested strand
+	 */
+	public int getReadId(boolean fs, int i) {
+		return strand(fs).readIds[i];
+	}
+
+	/**
+	 * Returns the start position at index <code>i</code> (where i is less than the forward/reverse count) for the requested strand
+	 */
+	public int getStartPosition(boolean fs, int i) {
+		return strand(fs).getStartPosition(i);
+	}
+
+	/**
+	 * Returns the base quality at index <code>i</code> (where i is less than the forward/reverse count) for the requested strand
+	 */
+	public byte getQuality(boolean fs, int i) {
+		return strand(fs).qualities[i];
 	}
-	
+
+	private Strand strand(boolean fs) {
+		Strand s = fs ? forward : reverse;
+		if (null == s) {
+			throw new IndexOutOfBoundsException("No data for " + (fs ? "forward" : "reverse") + " strand");
+		}
+		return s;
+	}
+
+	/**
+	 * Returns a newly created list containing the read id, start position and quality of each read for the requested strand, one after the other.
+	 * Returns null if there is no data for this strand.
+	 */
 	public TIntList getReadIdStartPositionsQualityList(boolean fs) {
-		return fs ? forwardReadIdStartPositionsQualityList : reverseReadIdStartPositionsQualityList;
+		Strand s = fs ? forward : reverse;
+		if (null == s || s.count == 0) {
+			return null;
+		}
+		TIntList l = new TIntArrayList(s.count * 3);
+		for (int i = 0 ; i < s.count ; i++) {
+			l.add(s.readIds[i]);
+			l.add(s.getStartPosition(i));
+			l.add(s.qualities[i]);
+		}
+		return l;
 	}
-	
+
 	public int getTotalCount() {
 		return getForwardCount() + getReverseCount();
 	}
-	
+
 	public boolean isFoundOnBothStrands() {
 		return getForwardCount() > 0 && getReverseCount() > 0;
 	}
-	
+
 	public boolean isFoundOnBothStrandsMiddleOfRead() {
-		return getForwardCount() - endOfReadCountFS > 0 && getReverseCount() - endOfReadCountRS > 0;
+		return getForwardCount() - getEndOfReadCount(forward) > 0 && getReverseCount() - getEndOfReadCount(reverse) > 0;
 	}
-	
+
 	public void addForwardQuality(byte b, int startPosition, int readId) {
 		addForwardQuality(b, startPosition, readId, false);
 	}
 	public void addReverseQuality(byte b, int startPosition, int readId) {
 		addReverseQuality(b, startPosition, readId, false);
 	}
-	
+
 	public void addForwardQuality(byte b, int startPosition, int readId, boolean endOfRead) {
-		if (null == forwardReadIdStartPositionsQualityList) {
-			forwardReadIdStartPositionsQualityList = new TIntArrayList();
+		if (null == forward) {
+			forward = new Strand();
 		}
-		
-		forwardReadIdStartPositionsQualityList.add(readId);
-		forwardReadIdStartPositionsQualityList.add(startPosition);
-		forwardReadIdStartPositionsQualityList.add(b);
-		if (endOfRead) endOfReadCountFS++;
+		forward.add(b, startPosition, readId, endOfRead);
 	}
 
 	public void addReverseQuality(byte b, int startPosition, int readId, boolean endOfRead) {
-		if (null == reverseReadIdStartPositionsQualityList) {
-			reverseReadIdStartPositionsQualityList = new TIntArrayList();
+		if (null == reverse) {
+			reverse = new Strand();
 		}
-		
-		reverseReadIdStartPositionsQualityList.add(readId);
-		reverseReadIdStartPositionsQualityList.add(startPosition);
-		reverseReadIdStartPositionsQualityList.add(b);
-		if (endOfRead) endOfReadCountRS++;
+		reverse.add(b, startPosition, readId, endOfRead);
 	}
-	
+
+	/**
+	 * Removes all data from this object so that it can be re-used.
+	 * The underlying arrays are kept to save on allocations.
+	 */
+	public void reset() {
+		if (null != forward) {
+			forward.reset();
+		}
+		if (null != reverse) {
+			reverse.reset();
+		}
+	}
+
+	private static int getEndOfReadCount(Strand s) {
+		return null == s ? 0 : s.endOfReadCount;
+	}
+
 	public int getEndOfReadCount() {
-		return endOfReadCountFS + endOfReadCountRS;
+		return getEndOfReadCount(forward) + getEndOfReadCount(reverse);
 	}
-	
+
 	public String getEndOfReadString() {
-		return endOfReadCountFS + "[]" + endOfReadCountRS + "[]";
+		return getEndOfReadCount(forward) + "[]" + getEndOfReadCount(reverse) + "[]";
 	}
-	
+
 	public int getMiddleOfReadCount() {
 		return getTotalCount() - getEndOfReadCount();
 	}
-	
+
+	/**
+	 * The number of distinct start positions on the forward strand plus the number of distinct start positions on the reverse strand
+	 */
 	public int getNovelStartCount() {
 		int ns = 0;
-		if (null != reverseReadIdStartPositionsQualityList) {
-			ns = new TIntHashSet(PileupElementLiteUtil.getDetailsFromCombinedList(reverseReadIdStartPositionsQualityList, 3,1)).size();
+		if (null != reverse) {
+			ns = reverse.getNovelStartCount();
 		}
-		if (null != forwardReadIdStartPositionsQualityList) {
-			ns += new TIntHashSet(PileupElementLiteUtil.getDetailsFromCombinedList(forwardReadIdStartPositionsQualityList, 3, 1)).size();
+		if (null != forward) {
+			ns += forward.getNovelStartCount();
 		}
 		return ns;
 	}
-	
+
 	public int getTotalForwardQualityScore() {
-		return forwardReadIdStartPositionsQualityList == null || forwardReadIdStartPositionsQualityList.isEmpty() ? 0 : 
-			PileupElementLiteUtil.getDetailsFromCombinedList(forwardReadIdStartPositionsQualityList, 3,2).sum();
+		return null == forward ? 0 : forward.qualitySum;
 	}
 	public int getTotalReverseQualityScore() {
-		return reverseReadIdStartPositionsQualityList == null || reverseReadIdStartPositionsQualityList.isEmpty() ? 0 : 
-			PileupElementLiteUtil.getDetailsFromCombinedList(reverseReadIdStartPositionsQualityList, 3,2).sum();
+		return null == reverse ? 0 : reverse.qualitySum;
 	}
-	
+
 	public int getTotalQualityScore() {
 		return getTotalForwardQualityScore() + getTotalReverseQualityScore();
 	}
-	
+
 	/**
 	 * Note: this class has a natural ordering that is inconsistent with equals.
 	 */
@@ -140,4 +189,129 @@ public class PileupElementLite implements Comparable<PileupElementLite> {
 		return o.getTotalCount() - getTotalCount();
 	}
 
+	/**
+	 * Reads seen on a single strand.
+	 * <p>
+	 * Start positions are stored as offsets from the first start position in a short array.
+	 * Should an offset not fit into a short (very long reads/deletions), all start positions are moved into an int array.
+	 */
+	private static final class Strand {
+
+		private static final int INITIAL_CAPACITY = 4;
+
+		private int count;
+		private int [] readIds = new int[INITIAL_CAPACITY];
+		private byte [] qualities = new byte[INITIAL_CAPACITY];
+		private short [] startOffsets = new short[INITIAL_CAPACITY];
+		private int [] starts;
+		private int firstStart;
+
+		private int qualitySum;
+		private int endOfReadCount;
+
+		/*
+		 * reads generally arrive in start position order, in which case novel starts can be counted as they are added
+		 */
+		private boolean startsAscending = true;
+		private int lastStart;
+		private int ascendingNovelStarts;
+		private int novelStarts = -1;
+		private int [] sortBuffer;
+
+		void add(byte quality, int startPosition, int readId, boolean endOfRead) {
+			if (count == readIds.length) {
+				final int newCapacity = count << 1;
+				readIds = Arrays.copyOf(readIds, newCapacity);
+				qualities = Arrays.copyOf(qualities, newCapacity);
+				if (null != starts) {
+					starts = Arrays.copyOf(starts, newCapacity);
+				} else {
+					startOffsets = Arrays.copyOf(startOffsets, newCapacity);
+				}
+			}
+			if (count == 0) {
+				firstStart = startPosition;
+				ascendingNovelStarts = 1;
+			} else {
+				if (startPosition < lastStart) {
+					startsAscending = false;
+				} else if (startPosition > lastStart) {
+					ascendingNovelStarts++;
+				}
+			}
+			lastStart = startPosition;
+			novelStarts = -1;
+
+			readIds[count] = readId;
+			qualities[count] = quality;
+			if (null == starts) {
+				final int offset = startPosition - firstStart;
+				if (offset >= Short.MIN_VALUE && offset <= Short.MAX_VALUE) {
+					startOffsets[count] = (short) offset;
+				} else {
+					starts = new int[readIds.length];
+					for (int i = 0 ; i < count ; i++) {
+						starts[i] = firstStart + startOffsets[i];
+					}
+					starts[count] = startPosition;
+				}
+			} else {
+				starts[count] = startPosition;
+			}
+			count++;
+
+			qualitySum += quality;
+			if (endOfRead) endOfReadCount++;
+		}
+
+		int getStartPosition(int i) {
+			if (i >= count) {
+				throw new IndexOutOfBoundsException("index: " + i + ", count: " + count);
+			}
+			return null != starts ? starts[i] : firstStart + startOffsets[i];
+		}
+
+		TIntList getReadIds() {
+			final TIntArrayList l = new TIntArrayList(count);
+			l.add(readIds, 0, count);
+			return l;
+		}
+
+		int getNovelStartCount() {
+			if (count == 0) {
+				return 0;
+			}
+			if (startsAscending) {
+				return ascendingNovelStarts;
+			}
+			if (novelStarts == -1) {
+				if (null == sortBuffer || sortBuffer.length < count) {
+					sortBuffer = new int[readIds.length];
+				}
+				for (int i = 0 ; i < count ; i++) {
+					sortBuffer[i] = getStartPosition(i);
+				}
+				Arrays.sort(sortBuffer, 0, count);
+				int ns = 1;
+				for (int i = 1 ; i < count ; i++) {
+					if (sortBuffer[i] != sortBuffer[i - 1]) ns++;
+				}
+				novelStarts = ns;
+			}
+			return novelStarts;
+		}
+
+		void reset() {
+			count = 0;
+			if (null != starts) {
+				starts = null;
+				startOffsets = new short[readIds.length];
+			}
+			qualitySum = 0;
+			endOfReadCount = 0;
+			startsAscending = true;
+			ascendingNovelStarts = 0;
+			novelStarts = -1;
+		}
+	}
 }
@@ -6,75 +6,131 @@
  */
 package org.qcmg.common.model;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Thread safe array of counters that grows as required.
+ * <p>
+ * Each thread that calls {@link #increment(int, long)} is given its own shard of the array to write to,
+ * so that threads don't contend with one another (or bounce cache lines between cores) when updating the same counters.
+ * Shards are only ever written to by their owning thread, and so each shard can be grown by copying it into a larger array, with no locking.
+ * {@link #get(int)} returns the sum of the values held by each shard.
+ * <p>
+ * Values retrieved whilst other threads are still incrementing are not guaranteed to include the very latest increments.
+ */
 public class QCMGAtomicLongArray {
-	
-	private static final int MAX_CAPACITY = 2048 * 2048;	// 4 mill 
-	
-	// atomic boolean used as a lock when resizing the array
-	private final AtomicBoolean resizingInProgress = new AtomicBoolean(false);
-	
-	private AtomicLongArray array;
-	private volatile int capacity;
-	
+
+	private static final int MAX_CAPACITY = 2048 * 2048;	// 4 mill
+
+	private final int initialCapacity;
+	private final AtomicInteger capacity;
+	private final List<Shard> shards = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<Shard> localShard = ThreadLocal.withInitial(this::newShard);
+
+	/*
+	 * the shard of the first thread to increment - saves a ThreadLocal lookup for single threaded use
+	 */
+	private volatile Shard firstShard;
+
 	public  QCMGAtomicLongArray(final int initialCapacity) {
-		// double capacity 
-		capacity = Math.min(initialCapacity * 2, MAX_CAPACITY);
-		array = new AtomicLongArray(capacity);
+		// double capacity
+		this.initialCapacity = Math.min(initialCapacity * 2, MAX_CAPACITY);
+		capacity = new AtomicInteger(this.initialCapacity);
 	}
-	
-	public void increment(final int arrayPosition) {		
-		increment(arrayPosition, 1);		
+
+	public void increment(final int arrayPosition) {
+		increment(arrayPosition, 1);
 	}
 
 	public void increment(final int arrayPosition, final long value) {
-		
-		if (arrayPosition >= capacity) {
-			resize(arrayPosition);
+		Shard shard = firstShard;
+		if (null == shard || shard.owner != Thread.currentThread()) {
+			shard = localShard.get();
 		}
-		
-		if (resizingInProgress.get()) {
-			// cas until resizing is complete
-			while  ( ! resizingInProgress.compareAndSet(false, false) ) {}
+		shard.add(arrayPosition, value);
+	}
+
+	public long get(int arrayPosition) {
+		if (arrayPosition >= capacity.get()) {
+			throw new IndexOutOfBoundsException("index " + arrayPosition);
+		}
+		long total = 0;
+		for (Shard shard : shards) {
+			final AtomicLongArray counts = shard.counts;
+			if (arrayPosition < counts.length()) {
+				total += counts.get(arrayPosition);
+			}
+		}
+		return total;
+	}
+
+	public long length() { 	return capacity.get(); }
+
+	/**
+	 * Adds the counts held by the supplied array to this array.
+	 * Used to merge the arrays of per-thread summaries once they have been populated.
+	 */
+	public void addAll(QCMGAtomicLongArray other) {
+		for (int i = 0, length = (int) other.length() ; i < length ; i++) {
+			final long value = other.get(i);
+			if (value != 0) {
+				increment(i, value);
+			}
 		}
-		array.addAndGet(arrayPosition, value);
 	}
-	
-	public long get(int arrayPosition) { 	return array.get(arrayPosition); }
-	public long length() { 	return array.length(); }
-	
-	private void resize(final int arrayPosition) {
-		// lock
-		while ( ! resizingInProgress.compareAndSet(false, true)) {}
-		
-		try {
-			// check capacity as may have already  been resized to fit our arrayPosition
-			if (arrayPosition >= capacity) {
-							
-				// sleep to allow any threads in CAS loop in increment method to complete
-				// resizing should not occur often so will not be too great a performance penalty
-				// and it SHOULD mean we keep the array in a consistent state 
-				Thread.sleep(100);
-				
-				System.out.println("resizing...");
-			
-				// double the required capacity
-				capacity = Math.min(arrayPosition * 2, MAX_CAPACITY);
-				
-				AtomicLongArray newArray = new AtomicLongArray(capacity);
-				for (int i = 0, length = array.length() ; i < length ; i++) {
-					newArray.set(i, array.get(i));
+
+	private Shard newShard() {
+		/*
+		 * start at the initial capacity rather than the current length, so that whether an index grows the length
+		 * doesn't depend on when this thread joined
+		 */
+		final Shard shard = new Shard(Thread.currentThread(), initialCapacity);
+		shards.add(shard);
+		if (null == firstShard) {
+			synchronized (shards) {
+				if (null == firstShard) {
+					firstShard = shard;
 				}
-				array = newArray;
-				System.out.println("resizing...DONE - new capacity: " + capacity);
 			}
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} finally {
-			//unlock
-			while ( ! resizingInProgress.compareAndSet(true, false)) {}
+		}
+		return shard;
+	}
+
+	/**
+	 * Counters for a single thread. Only the owning thread writes to (and resizes) the counts array.
+	 */
+	private final class Shard {
+		private final Thread owner;
+		private volatile AtomicLongArray counts;
+
+		private Shard(Thread owner, int length) {
+			this.owner = owner;
+			this.counts = new AtomicLongArray(length);
+		}
+
+		private void add(final int arrayPosition, final long value) {
+			AtomicLongArray c = counts;
+			if (arrayPosition >= c.length()) {
+				c = grow(arrayPosition);
+			}
+			// single writer, so no need for a CAS
+			c.lazySet(arrayPosition, c.get(arrayPosition) + value);
+		}
+
+		private AtomicLongArray grow(final int arrayPosition) {
+			// double the required capacity, keeping the length if another shard has already grown beyond that
+			final int newLength = capacity.accumulateAndGet(Math.min(arrayPosition * 2, MAX_CAPACITY), Math::max);
+
+			final AtomicLongArray oldCounts = counts;
+			final AtomicLongArray newCounts = new AtomicLongArray(newLength);
+			for (int i = 0, length = oldCounts.length() ; i < length ; i++) {
+				newCounts.lazySet(i, oldCounts.get(i));
+			}
+			counts = newCounts;
+			return newCounts;
 		}
 	}
 }
@@ -6,6 +6,7 @@
  */
 package org.qcmg.common.model;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -13,6 +14,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.qcmg.common.util.SummaryByCycleUtils;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -151,6 +153,15 @@ public class SummaryByCycle<T> {
 	public boolean isEmpty() {
 		return tally.isEmpty();
 	}
+	
+	/**
+	 * Adds the counts held by the supplied summary to this summary
+	 */
+	public void addAll(SummaryByCycle<T> other) {
+		for (Map.Entry<Integer, ConcurrentMap<T, AtomicLong>> cycleEntry : other.tally.entrySet()) {
+			SummaryByCycleUtils.addCounts(tally.computeIfAbsent(cycleEntry.getKey(), k -> new ConcurrentHashMap<T, AtomicLong>(subMapInitialCapacity)), cycleEntry.getValue());
+		}
+	}
 
 	/**
 	 * Adds an xml representation of the current object to the supplied parent element.
@@ -43,6 +43,19 @@ public class ChrPositionCache {
 		}
 		return i.intValue();
 	}
+	
+	/**
+	 * @return the positions that have been given an index by {@link #getChrPositionIndex(String, int)}, in an array indexed by that index (so element 0 is null)
+	 */
+	public static ChrPosition[] getChrPositionsByIndex() {
+		ChrPosition[] positions = new ChrPosition[index.get() + 1];
+		cacheWithIndex.forEach((cp, i) -> {
+			if (i.intValue() < positions.length) {
+				positions[i.intValue()] = cp;
+			}
+		});
+		return positions;
+	}
 
 }
 	
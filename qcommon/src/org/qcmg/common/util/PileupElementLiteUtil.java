@@ -10,7 +10,6 @@ import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.TIntIntMap;
 import gnu.trove.map.hash.TIntIntHashMap;
-import gnu.trove.procedure.TIntProcedure;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
@@ -232,36 +231,14 @@ public class PileupElementLiteUtil {
 		final StringBuilder sb = new StringBuilder(base);
 		sb.append(Constants.COLON);
 		
-		TIntList forwardReadIds = null;
-		TIntList reverseReadIds = null;
-		
-		TIntList ids = pel.getForwardReadIds();
-		if (null != ids) {
-			forwardReadIds = new TIntArrayList(ids);
-		}
-		ids = pel.getReverseReadIds();
-		if (null != ids) {
-			reverseReadIds =new TIntArrayList(ids);
-		}
-		
-		if (null != forwardReadIds) {
-			forwardReadIds.forEach(new TIntProcedure() {
-				@Override
-				public boolean execute(int s) {
-					sb.append(s).append(Constants.COMMA);
-					return true;
-				}});
+		for (int i = 0, len = pel.getForwardCount() ; i < len ; i++) {
+			sb.append(pel.getReadId(true, i)).append(Constants.COMMA);
 		}
 		
 		sb.append('-');
 		
-		if (null != reverseReadIds) {
-			reverseReadIds.forEach(new TIntProcedure() {
-				@Override
-				public boolean execute(int s) {
-					sb.append(s).append(Constants.COMMA);
-					return true;
-				}});
+		for (int i = 0, len = pel.getReverseCount() ; i < len ; i++) {
+			sb.append(pel.getReadId(false, i)).append(Constants.COMMA);
 		}
 		
 		return sb.toString();
@@ -225,6 +225,20 @@ public class SummaryByCycleUtils {
 		currentCount.incrementAndGet();
 	}
 	
+	/**
+	 * Adds the counts held in <code>counts</code> to those held in <code>map</code>,
+	 * inserting entries into <code>map</code> for any data items that it does not yet contain
+	 * 
+	 * @param <T> Character, Integer or String in most cases
+	 * @param map Map that will hold the combined counts
+	 * @param counts Map whose counts are to be added to map
+	 */
+	public static <T> void addCounts(Map<T, AtomicLong> map, Map<T, AtomicLong> counts) {
+		for (Entry<T, AtomicLong> entry : counts.entrySet()) {
+			map.computeIfAbsent(entry.getKey(), k -> new AtomicLong()).addAndGet(entry.getValue().get());
+		}
+	}
+	
 	
 	public static <T> Map<Integer, AtomicLong> getLengthsFromSummaryByCycle(SummaryByCycle<T> summary, long totalSize) {
 		Map<Integer, AtomicLong> map = Collections.emptyMap();
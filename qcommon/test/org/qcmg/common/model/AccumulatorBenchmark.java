@@ -0,0 +1,118 @@
+package org.qcmg.common.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qcmg.common.util.PileupElementLiteUtil;
+
+/**
+ * JMH benchmarks for populating an Accumulator at amplicon-like depth, and for the getters used when classifying a position.
+ * <p>
+ * Not a unit test - run with: java -cp &lt;test classpath&gt; org.qcmg.common.model.AccumulatorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccumulatorBenchmark {
+
+	private static final byte[] BASES = new byte[] {'A', 'C', 'G', 'T'};
+	private static final int POSITION = 10000;
+	private static final int READ_LENGTH = 150;
+
+	@Param({"100", "1000"})
+	public int depth;
+
+	private byte[] bases;
+	private byte[] quals;
+	private boolean[] strands;
+	private int[] starts;
+	private int[] ends;
+
+	private Accumulator reused;
+	private Accumulator populated;
+	private Rule rule;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		bases = new byte[depth];
+		quals = new byte[depth];
+		strands = new boolean[depth];
+		starts = new int[depth];
+		ends = new int[depth];
+		for (int i = 0 ; i < depth ; i++) {
+			/*
+			 * mostly reference (A), with a 30% variant (C) and the odd error
+			 */
+			int r = random.nextInt(100);
+			bases[i] = r < 68 ? BASES[0] : r < 98 ? BASES[1] : BASES[2 + random.nextInt(2)];
+			quals[i] = (byte) (20 + random.nextInt(21));
+			strands[i] = random.nextBoolean();
+			/*
+			 * amplicon data - lots of reads sharing a handful of start positions
+			 */
+			starts[i] = POSITION - READ_LENGTH / 2 + random.nextInt(4);
+			ends[i] = starts[i] + READ_LENGTH - 1;
+		}
+		reused = new Accumulator(POSITION);
+		populated = populate(new Accumulator(POSITION));
+		rule = new Rule(0, Integer.MAX_VALUE, 3);
+	}
+
+	private Accumulator populate(Accumulator acc) {
+		for (int i = 0 ; i < depth ; i++) {
+			acc.addBase(bases[i], quals[i], strands[i], starts[i], POSITION, ends[i], i + 1);
+		}
+		return acc;
+	}
+
+	@Benchmark
+	public Accumulator addBase() {
+		return populate(new Accumulator(POSITION));
+	}
+
+	@Benchmark
+	public Accumulator addBaseReusingAccumulator() {
+		reused.reset(POSITION);
+		return populate(reused);
+	}
+
+	@Benchmark
+	public void classificationGetters(Blackhole bh) {
+		bh.consume(populated.getCoverage());
+		bh.consume(populated.getTotalQualityScore());
+		bh.consume(populated.containsMultipleAlleles());
+		bh.consume(populated.getLargestVariant('A'));
+		bh.consume(populated.getNovelStartsCountForBase('C'));
+		bh.consume(populated.getGenotype('A', rule, false, 10));
+		bh.consume(PileupElementLiteUtil.isAccumulatorAKeeper(populated, 'A', rule, 10));
+		bh.consume(populated.getObservedAllelesByStrand());
+	}
+
+	@Benchmark
+	public Object readIdBaseMap() {
+		return populated.getReadIdBaseMap();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(AccumulatorBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -10,9 +10,38 @@ import java.util.Random;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.qcmg.common.util.Constants;
 
 public class AccumulatorTest {
 	
+	@Test
+	public void reset() {
+		Accumulator acc = new Accumulator(1);
+		acc.addBase((byte)'A', (byte)10, true, 1, 1, 2, 1);
+		acc.addBase((byte)'C', (byte)10, false, 1, 1, 2, 2);
+		acc.addFailedFilterBase((byte)'G');
+		acc.addBase((byte)'N', (byte)10, true, 1, 1, 2, 3);
+		
+		acc.reset(5);
+		assertEquals(5, acc.getPosition());
+		assertEquals(0, acc.getCoverage());
+		assertEquals(0, acc.getNovelStartsCountForBase('A'));
+		assertEquals(Constants.MISSING_DATA_STRING, acc.getFailedFilterPileup());
+		assertEquals(false, acc.containsMultipleAlleles());
+		
+		acc.addBase((byte)'T', (byte)20, true, 3, 5, 6, 4);
+		acc.addBase((byte)'T', (byte)20, true, 4, 5, 6, 5);
+		assertEquals(2, acc.getCoverage());
+		assertEquals(2, acc.getNovelStartsCountForBase('T'));
+		assertEquals(0, acc.getNovelStartsCountForBase('C'));
+		assertEquals('T', acc.getBase());
+		
+		Accumulator fresh = new Accumulator(5);
+		fresh.addBase((byte)'T', (byte)20, true, 3, 5, 6, 4);
+		fresh.addBase((byte)'T', (byte)20, true, 4, 5, 6, 5);
+		assertEquals(fresh.toString(), acc.toString());
+	}
+	
 	@Test
 	public void testAccumulator() {
 		Accumulator acc = new Accumulator(1);
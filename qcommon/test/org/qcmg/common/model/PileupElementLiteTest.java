@@ -11,6 +11,82 @@ import org.junit.Test;
 
 public class PileupElementLiteTest {
 	
+	@Test
+	public void accessors() {
+		PileupElementLite pel = new PileupElementLite();
+		pel.addForwardQuality((byte) 30, 100, 1, true);
+		pel.addForwardQuality((byte) 20, 101, 2, false);
+		pel.addReverseQuality((byte) 10, 250, 3, false);
+		
+		assertEquals(2, pel.getForwardCount());
+		assertEquals(1, pel.getReverseCount());
+		assertEquals(2, pel.getReadId(true, 1));
+		assertEquals(101, pel.getStartPosition(true, 1));
+		assertEquals(20, pel.getQuality(true, 1));
+		assertEquals(3, pel.getReadId(false, 0));
+		assertEquals(250, pel.getStartPosition(false, 0));
+		assertEquals(50, pel.getTotalForwardQualityScore());
+		assertEquals(10, pel.getTotalReverseQualityScore());
+		assertEquals(1, pel.getEndOfReadCount());
+		assertEquals(3, pel.getNovelStartCount());
+		assertEquals(new TIntArrayList(new int[] {1, 2}), pel.getForwardReadIds());
+		assertEquals(new TIntArrayList(new int[] {1, 100, 30, 2, 101, 20}), pel.getReadIdStartPositionsQualityList(true));
+	}
+	
+	@Test
+	public void startPositionsOutOfOrder() {
+		PileupElementLite pel = new PileupElementLite();
+		pel.addReverseQuality((byte) 30, 200, 1, false);
+		pel.addReverseQuality((byte) 30, 150, 2, false);
+		pel.addReverseQuality((byte) 30, 200, 3, false);
+		pel.addReverseQuality((byte) 30, 175, 4, false);
+		assertEquals(3, pel.getNovelStartCount());
+		pel.addReverseQuality((byte) 30, 150, 5, false);
+		assertEquals(3, pel.getNovelStartCount());
+		pel.addReverseQuality((byte) 30, 10, 6, false);
+		assertEquals(4, pel.getNovelStartCount());
+	}
+	
+	@Test
+	public void startPositionsTooFarApartForOffsets() {
+		PileupElementLite pel = new PileupElementLite();
+		for (int i = 0 ; i < 10 ; i++) {
+			pel.addForwardQuality((byte) 30, 1000 + i, i, false);
+		}
+		pel.addForwardQuality((byte) 30, 1000000, 10, false);
+		pel.addForwardQuality((byte) 30, 5, 11, false);
+		assertEquals(12, pel.getForwardCount());
+		assertEquals(1009, pel.getStartPosition(true, 9));
+		assertEquals(1000000, pel.getStartPosition(true, 10));
+		assertEquals(5, pel.getStartPosition(true, 11));
+		assertEquals(12, pel.getNovelStartCount());
+		
+		pel.reset();
+		assertEquals(0, pel.getForwardCount());
+		pel.addForwardQuality((byte) 30, 50, 1, false);
+		assertEquals(50, pel.getStartPosition(true, 0));
+	}
+	
+	@Test
+	public void reset() {
+		PileupElementLite pel = new PileupElementLite();
+		pel.addForwardQuality((byte) 30, 100, 1, true);
+		pel.addReverseQuality((byte) 10, 250, 3, true);
+		pel.reset();
+		assertEquals(0, pel.getTotalCount());
+		assertEquals(0, pel.getTotalQualityScore());
+		assertEquals(0, pel.getNovelStartCount());
+		assertEquals(0, pel.getEndOfReadCount());
+		assertEquals(null, pel.getReadIdStartPositionsQualityList(true));
+		assertEquals(0, pel.getForwardReadIds().size());
+		
+		pel.addReverseQuality((byte) 20, 260, 4, false);
+		assertEquals(1, pel.getTotalCount());
+		assertEquals(20, pel.getTotalQualityScore());
+		assertEquals(1, pel.getNovelStartCount());
+		assertEquals(false, pel.isFoundOnBothStrands());
+	}
+	
 	@Test
 	public void testNovelStartCounter() {
 		PileupElementLite pel = new PileupElementLite();
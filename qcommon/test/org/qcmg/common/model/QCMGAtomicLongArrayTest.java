@@ -95,4 +95,50 @@ public class QCMGAtomicLongArrayTest {
 		}
 	}
 
+	@Test
+	public void lengthGrows() {
+		QCMGAtomicLongArray array = new QCMGAtomicLongArray(8);
+		assertEquals(16, array.length());
+		array.increment(15, 3);
+		assertEquals(16, array.length());
+		array.increment(16);
+		assertEquals(32, array.length());
+		assertEquals(3, array.get(15));
+		assertEquals(1, array.get(16));
+		assertEquals(0, array.get(31));
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void getBeyondLength() {
+		QCMGAtomicLongArray array = new QCMGAtomicLongArray(8);
+		array.get(16);
+	}
+	
+	@Test
+	public void shardsAreMerged() throws InterruptedException {
+		final int noOfThreads = 4;
+		final QCMGAtomicLongArray array = new QCMGAtomicLongArray(4);
+		ExecutorService executor = Executors.newFixedThreadPool(noOfThreads);
+		for (int j = 0 ; j < noOfThreads ; j++) {
+			final int threadNo = j;
+			executor.execute(() -> {
+				for (int i = 0 ; i < 100000 ; i++) {
+					array.increment(i % 10);
+				}
+				// each thread grows its own shard to a different size
+				array.increment(100 * (threadNo + 1), threadNo + 1);
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		
+		for (int i = 0 ; i < 10 ; i++) {
+			assertEquals(noOfThreads * 10000, array.get(i));
+		}
+		for (int j = 0 ; j < noOfThreads ; j++) {
+			assertEquals(j + 1, array.get(100 * (j + 1)));
+		}
+		assertEquals(800, array.length());
+	}
+
 }
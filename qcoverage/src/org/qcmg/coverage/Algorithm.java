@@ -12,6 +12,11 @@ interface Algorithm {
 	public String getName();
 	public void applyTo(final SAMRecord read, Object coverageCounter);
 	public void applyTo(final SAMRecord read, Object coverageCounter, boolean fullyPopulated);
+	/**
+	 * Coverage always starts at the alignment start of the read - this returns the (1-based) position that it ends at,
+	 * which will be less than the alignment start if the read contributes no coverage
+	 */
+	public int getCoverageEnd(final SAMRecord read);
 //	public void applyTo(final SAMRecord read, final int[] perBaseCoverages);
 //	public void applyTo(final SAMRecord read, final int[] perBaseCoverages, boolean fullyPopulated);
 }
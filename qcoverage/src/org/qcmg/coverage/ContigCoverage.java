@@ -0,0 +1,178 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.coverage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.qcmg.gff3.GFF3Record;
+
+/**
+ * Brings together the per base coverage of the {@link Shard}s of a single reference sequence.
+ * <p>
+ * Each {@link CoverageJob} handles the reads that start within its shard, and holds coverage for the bases of its shard only.
+ * Where a read (or, for physical coverage, its insert) extends beyond the end of the shard, the job records the position that the coverage ends at,
+ * as an "overflow" for the shards that follow. As all of a shard's overflows start at the same position (the base after the end of the shard), the end position is all that is needed.
+ * <p>
+ * Once every shard has reported in, the last one to do so carries the overflows forward into the following shards,
+ * and tallies the coverage of the features on this reference into the per id {@link CoverageHistogram}s that {@link Job#getResults()} returns.
+ */
+final class ContigCoverage {
+
+	private final String refName;
+	private final int refLength;
+	private final int shardSize;
+	private final HashSet<GFF3Record> features;
+	private final boolean perFeatureFlag;
+	private final List<Shard> shards;
+
+	private final int[][] coverages;
+	private final int[][] overflowEnds;
+	private final int[] noOfOverflowEnds;
+	private int remaining;
+
+	ContigCoverage(final String refName, final int refLength, final HashSet<GFF3Record> features, final boolean perFeatureFlag, final int shardSize) {
+		this.refName = refName;
+		this.refLength = refLength;
+		this.features = features;
+		this.perFeatureFlag = perFeatureFlag;
+		this.shardSize = shardSize;
+		this.shards = Shard.split(refName, refLength, shardSize);
+		coverages = new int[shards.size()][];
+		overflowEnds = new int[shards.size()][];
+		noOfOverflowEnds = new int[shards.size()];
+		remaining = shards.size();
+	}
+
+	String getRefName() {
+		return refName;
+	}
+	int getRefLength() {
+		return refLength;
+	}
+	HashSet<GFF3Record> getFeatures() {
+		return features;
+	}
+	List<Shard> getShards() {
+		return shards;
+	}
+	boolean isSharded() {
+		return shards.size() > 1;
+	}
+
+	/**
+	 * Called by each job once it has finished with its shard.
+	 *
+	 * @param shardIndex
+	 * @param coverage per base coverage of the shard, -1 where there is no feature
+	 * @param ends the positions that coverage extending beyond the end of the shard finishes at
+	 * @param noOfEnds the number of valid entries in <code>ends</code>
+	 * @return the coverage results for the whole reference if this was the last shard to complete, null otherwise
+	 */
+	synchronized HashMap<String, CoverageHistogram> shardComplete(int shardIndex, int[] coverage, int[] ends, int noOfEnds) {
+		if (null != coverages[shardIndex]) throw new IllegalStateException("Shard " + shards.get(shardIndex) + " has already completed");
+		coverages[shardIndex] = coverage;
+		overflowEnds[shardIndex] = ends;
+		noOfOverflowEnds[shardIndex] = noOfEnds;
+
+		if (--remaining > 0) return null;
+
+		carryOverflows();
+		return assembleResults();
+	}
+
+	/**
+	 * Adds the coverage that spills over from earlier shards into each shard, in order
+	 */
+	private void carryOverflows() {
+		int [] pending = new int[0];
+		int noPending = 0;
+
+		for (int i = 0, len = shards.size() ; i < len ; i++) {
+			Shard shard = shards.get(i);
+			int [] coverage = coverages[i];
+
+			if (noPending > 0) {
+				// difference array - each pending end adds one from the start of the shard up to, and including, the end
+				int [] diff = new int[shard.getLength() + 1];
+				int stillPending = 0;
+				for (int j = 0 ; j < noPending ; j++) {
+					int end = pending[j];
+					diff[0]++;
+					diff[Math.min(end, shard.getEnd()) - shard.getStart() + 1]--;
+					if (end > shard.getEnd()) {
+						pending[stillPending++] = end;
+					}
+				}
+				noPending = stillPending;
+
+				int running = 0;
+				for (int k = 0, kLen = coverage.length ; k < kLen ; k++) {
+					running += diff[k];
+					if (running > 0 && coverage[k] > -1) {
+						coverage[k] += running;
+					}
+				}
+			}
+
+			if (noOfOverflowEnds[i] > 0) {
+				if (pending.length < noPending + noOfOverflowEnds[i]) {
+					pending = Arrays.copyOf(pending, noPending + noOfOverflowEnds[i]);
+				}
+				System.arraycopy(overflowEnds[i], 0, pending, noPending, noOfOverflowEnds[i]);
+				noPending += noOfOverflowEnds[i];
+			}
+			overflowEnds[i] = null;
+		}
+	}
+
+	private HashMap<String, CoverageHistogram> assembleResults() {
+		HashMap<String, CoverageHistogram> idToCoverageToBaseCountMap = new HashMap<String, CoverageHistogram>();
+		for (GFF3Record feature : features) {
+			String id = null;
+			if (perFeatureFlag) {
+				id = feature.getRawData();
+			} else {
+				id = feature.getType();
+			}
+			CoverageHistogram histogram = idToCoverageToBaseCountMap.get(id);
+			if (null == histogram) {
+				histogram = new CoverageHistogram();
+				idToCoverageToBaseCountMap.put(id, histogram);
+			}
+			// GFF3 format uses 1-based feature coordinates; avoid problem
+			// of GFF3 accidentally containing 0 coordinate
+			int from = Math.max(feature.getStart(), 1);
+			int to = Math.min(feature.getEnd(), refLength);
+			// a shard at a time, adjusting from 1-based to 0-based indexing
+			while (from <= to) {
+				int shardIndex = (from - 1) / shardSize;
+				int [] coverage = coverages[shardIndex];
+				int shardStart = shardIndex * shardSize + 1;
+				int shardTo = Math.min(to, shardStart + shardSize - 1);
+				for (int i = from - shardStart, end = shardTo - shardStart ; i <= end ; i++) {
+					int cov = coverage[i];
+					if (-1 >= cov) {
+						throw new IllegalStateException(
+								"Malformed internal state. -1 coverage values are invalid. Report this bug.");
+					}
+					histogram.increment(cov);
+				}
+				from = shardTo + 1;
+			}
+		}
+		// Attempt to release coverage memory by nullifying
+		Arrays.fill(coverages, null);
+		return idToCoverageToBaseCountMap;
+	}
+
+	@Override
+	public String toString() {
+		return refName + " (" + shards.size() + " shards)";
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.coverage;
+
+import java.util.Arrays;
+
+import gnu.trove.map.hash.TIntLongHashMap;
+
+/**
+ * Number of bases at each coverage value.
+ * <p>
+ * Coverage values below {@link #DENSE_LIMIT} are counted in a <code>long[]</code>, which grows (up to that limit) as higher values are seen,
+ * so that the many histograms of a per-feature run stay small. The (rare) values at or above the limit go into a primitive map.
+ * <p>
+ * Not thread safe - each job builds its own histograms, and they are merged with {@link #addAll(CoverageHistogram)}.
+ */
+final class CoverageHistogram {
+
+	static final int DENSE_LIMIT = 1024;
+	private static final int INITIAL_SIZE = 16;
+
+	private long[] dense = new long[0];
+	private TIntLongHashMap sparse;
+
+	void increment(int coverage) {
+		add(coverage, 1);
+	}
+
+	void add(int coverage, long count) {
+		if (coverage < 0) throw new IllegalArgumentException("Negative coverage value: " + coverage);
+
+		if (coverage < DENSE_LIMIT) {
+			if (coverage >= dense.length) {
+				dense = Arrays.copyOf(dense, Math.min(DENSE_LIMIT, Math.max(INITIAL_SIZE, Math.max(coverage + 1, dense.length * 2))));
+			}
+			dense[coverage] += count;
+		} else {
+			if (null == sparse) {
+				sparse = new TIntLongHashMap();
+			}
+			sparse.adjustOrPutValue(coverage, count, count);
+		}
+	}
+
+	void addAll(CoverageHistogram other) {
+		for (int i = 0, len = other.dense.length ; i < len ; i++) {
+			if (other.dense[i] > 0) {
+				add(i, other.dense[i]);
+			}
+		}
+		if (null != other.sparse) {
+			other.sparse.forEachEntry((coverage, count) -> {
+				add(coverage, count);
+				return true;
+			});
+		}
+	}
+
+	long get(int coverage) {
+		if (coverage < 0) return 0;
+		if (coverage < dense.length) return dense[coverage];
+		return null == sparse ? 0 : sparse.get(coverage);
+	}
+
+	/**
+	 * @return the coverage values that have at least one base, in ascending order
+	 */
+	int[] getCoverages() {
+		int noOfDense = 0;
+		for (long count : dense) {
+			if (count > 0) noOfDense++;
+		}
+		int [] sparseKeys = null == sparse ? new int[0] : sparse.keys();
+		Arrays.sort(sparseKeys);
+
+		int [] coverages = new int[noOfDense + sparseKeys.length];
+		int j = 0;
+		for (int i = 0, len = dense.length ; i < len ; i++) {
+			if (dense[i] > 0) coverages[j++] = i;
+		}
+		System.arraycopy(sparseKeys, 0, coverages, j, sparseKeys.length);
+		return coverages;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int coverage : getCoverages()) {
+			if (sb.length() > 1) sb.append(", ");
+			sb.append(coverage).append('=').append(get(coverage));
+		}
+		return sb.append('}').toString();
+	}
+}
@@ -11,7 +11,6 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.concurrent.atomic.AtomicLong;
 
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SAMRecord;
@@ -23,16 +22,26 @@ import org.qcmg.gff3.GFF3Record;
 import org.qcmg.picard.SAMFileReaderFactory;
 import org.qcmg.qbamfilter.query.QueryExecutor;
 
+/**
+ * Per base coverage for a {@link Shard} of a reference sequence.
+ * <p>
+ * The job queries the bam file(s) for the region covered by its shard, and counts those reads that start within it.
+ * Coverage falling beyond the end of the shard is passed on to the {@link ContigCoverage}, which merges the shards of the reference once they are all complete.
+ */
 class CoverageJob implements Job {
+	private final ContigCoverage contig;
+	private final int shardIndex;
+	private final Shard shard;
 	private final int refLength;
 	private final String refName;
-	private final HashSet<GFF3Record> features;
-	private int[] perBaseCoverages; // Uses 0-based coordinate indexing
-	private final HashMap<String, HashMap<Integer, AtomicLong>> idToCoverageToBaseCountMap = new HashMap<String, HashMap<Integer, AtomicLong>>();
+	private int[] perBaseCoverages; // Uses 0-based coordinate indexing, relative to the start of the shard
+	private int[] overflowEnds = new int[16];
+	private int noOfOverflowEnds;
+	private HashMap<String, CoverageHistogram> idToCoverageToBaseCountMap = new HashMap<String, CoverageHistogram>();
 	private final QLogger logger;
 	private final QueryExecutor filter;
-	private final boolean perFeatureFlag;
-	private final HashSet<SamReader> fileReaders = new HashSet<SamReader>();
+	private final HashSet<Pair<File, File>> filePairs;
+	private final String validation;
 	private final Algorithm alg;
 	private final ReadsNumberCounter counterIn;
 	private final ReadsNumberCounter counterOut;
@@ -46,49 +55,52 @@ class CoverageJob implements Job {
 	CoverageJob(final String refName, final int refLength, final HashMap<String, HashSet<GFF3Record>> refToFeaturesMap,
 			final HashSet<Pair<File, File>> filePairs, final QueryExecutor filter,
 			final boolean perFeatureFlag, final Algorithm algorithm, final ReadsNumberCounter counterIn,final ReadsNumberCounter counterOut, final String validation) throws Exception {
+		// the whole reference in a single shard
+		this(new ContigCoverage(refName, refLength, refToFeaturesMap.get(refName), perFeatureFlag, Math.max(refLength, 1)), 0,
+				filePairs, filter, algorithm, counterIn, counterOut, validation);
+	}
+	CoverageJob(final ContigCoverage contig, final int shardIndex,
+			final HashSet<Pair<File, File>> filePairs, final QueryExecutor filter,
+			final Algorithm algorithm, final ReadsNumberCounter counterIn,final ReadsNumberCounter counterOut, final String validation) throws Exception {
+		this.contig = contig;
+		this.shardIndex = shardIndex;
+		this.shard = contig.getShards().get(shardIndex);
+		this.refLength = contig.getRefLength();
 		assert (refLength > -1);
-		this.refLength = refLength;
 		this.alg = algorithm;
-		this.perFeatureFlag = perFeatureFlag;
 		this.counterIn = counterIn;
 		this.counterOut = counterOut;
 		this.filter = filter;
+		this.filePairs = filePairs;
+		this.validation = validation;
 		this.logger = QLoggerFactory.getLogger(CoverageJob.class);
-		this.refName = refName;
-		// value
-		features = refToFeaturesMap.get(refName);
-		assert (null != features);
-		for (final Pair<File, File> pair : filePairs) {
-			File bamFile = pair.getLeft();
-			SamReader reader = SAMFileReaderFactory.createSAMFileReader(bamFile, validation);
-			fileReaders.add(reader);
-		}
-		logger.debug("length of sequence to be processed by job '" + toString() + "':" + refLength);
-		logger.debug("number of features to be processed by job '" + toString() + "':" + features.size());
+		this.refName = contig.getRefName();
+		assert (null != contig.getFeatures());
+		logger.debug("length of sequence to be processed by job '" + toString() + "':" + shard.getLength());
 	}
 
 	@Override
-	synchronized public HashMap<String, HashMap<Integer, AtomicLong>> getResults() {
+	synchronized public HashMap<String, CoverageHistogram> getResults() {
 		return idToCoverageToBaseCountMap;
 	}
 
 	@Override
 	public String toString() {
-		return refName + " coverage";
+		return (contig.isSharded() ? shard.toString() : refName) + " coverage";
 	}
 
 	@Override
 	synchronized public void run() throws Exception{
 		try {
-			logger.info("starting job for: " + refName);
-			logger.debug("constructing storage for coverage: " + refName);
+			logger.info("starting job for: " + shard);
+			logger.debug("constructing storage for coverage: " + shard);
 			constructCoverageMap();
-			logger.info("performing coverage for: " + refName);
+			logger.info("performing coverage for: " + shard);
 			performCoverage();
-			logger.info("assembling results for: " + refName);
+			logger.info("assembling results for: " + shard);
 			assembleResults();
-			logger.debug("assembled results for: " + refName + " are: " + getResults());
-			logger.info("ending job for: " + refName);
+			logger.debug("assembled results for: " + shard + " are: " + getResults());
+			logger.info("ending job for: " + shard);
 		} catch (Exception ex) {
 			logger.error("Exception caught in run method of CoverageJob", ex);
 			throw ex;
@@ -96,21 +108,27 @@ class CoverageJob implements Job {
 	}
 
 	void constructCoverageMap() {
-		perBaseCoverages = new int[refLength]; // All elements default to zero
+		int shardStart = shard.getStart();
+		int shardEnd = shard.getEnd();
+		perBaseCoverages = new int[Math.min(shardEnd, refLength) - shardStart + 1]; // All elements default to zero
 		boolean isArrayFull = true;
 		// Initially set all values to -1 for no coverage at that coordinate
 		Arrays.fill(perBaseCoverages, -1);
 		
 		logger.debug("in constructCoverageMap with array length: " + perBaseCoverages.length);
 		// For all coordinates where a feature exists, set to zero coverage
-		for (GFF3Record feature : features) {
+		for (GFF3Record feature : contig.getFeatures()) {
 			int start = feature.getStart();
 			
 			if (start == 0)
 				throw new IllegalArgumentException("Feature has start value of zero");
- 
-			Arrays.fill(perBaseCoverages, start-1, feature.getEnd(), 0);
-			logger.debug("filled in from : " + (start-1) + " to " + feature.getEnd());
+			
+			int from = Math.max(start, shardStart);
+			int to = Math.min(feature.getEnd(), shardEnd);
+			if (from <= to) {
+				Arrays.fill(perBaseCoverages, from - shardStart, to - shardStart + 1, 0);
+				logger.debug("filled in from : " + (from - 1) + " to " + to);
+			}
 		}
 		for (int i = 0 , len = perBaseCoverages.length ; i < len ; i++) {
 			if (perBaseCoverages[i] < 0) {
@@ -123,90 +141,106 @@ class CoverageJob implements Job {
 	}
 
 	private void performCoverage() throws Exception {
- 		for (final SamReader fileReader : fileReaders) {
- 			
-			Iterator<SAMRecord> iter = fileReader.query(refName, 0, 0, false);
-			long recordCounterIn = 0;
-			long recordCounterOut = 0; 
-			long totalBaseCount = 0;
-			long filteredBaseCount = 0;
-			while (iter.hasNext()) {
-				SAMRecord read = iter.next();
-				
-				// only proceed if read is mapped, not a dup, valid, and primary
-				counterIn.increment();   //count input read number
-				
-				// get number of bases in read
-				int readLength = read.getReadLength();
-				totalBaseCount += readLength;
-				
-				if (++recordCounterIn % 10000000 == 0) {
-					logger.debug("hit " + (recordCounterIn / 1000000) + "M records for " + refName);
-				}
-
-				if (read.getReferenceName().equals(refName)) {
-					if (null == filter) {
-						recordCounterOut ++;
-						counterOut.increment();    //count output read number
-						alg.applyTo(read, perBaseCoverages, fullyPopulated);
-					} else if (filter.Execute(read)) {
-						recordCounterOut ++;
-						counterOut.increment(); //count output read number
-						alg.applyTo(read, perBaseCoverages, fullyPopulated);
-						
-						filteredBaseCount += readLength;
-					}
-				} else {
-					logger.info("ref names did not match!");
-				}
+		for (final Pair<File, File> pair : filePairs) {
+			try (SamReader fileReader = SAMFileReaderFactory.createSAMFileReader(pair.getLeft(), validation)) {
+				performCoverage(fileReader);
 			}
-			fileReader.close();
-			logger.info("read " + recordCounterIn + " records from input for " + refName);
-			logger.info("add " + recordCounterOut + " records (satisfied by query if query is provided) to coverage for " + refName);
-			logger.info("number in counterIn instance is " + counterIn.getNumber());
-			logger.info("number in counterOut instance is " + counterOut.getNumber());
+		}
+	}
+
+	private void performCoverage(final SamReader fileReader) throws Exception {
+		// reads that overlap the shard but start before it have been counted by the preceding shard
+		boolean sharded = contig.isSharded();
+		Iterator<SAMRecord> iter = sharded ? fileReader.query(refName, shard.getStart(), shard.getEnd(), false) : fileReader.query(refName, 0, 0, false);
+		long recordCounterIn = 0;
+		long recordCounterOut = 0; 
+		long totalBaseCount = 0;
+		long filteredBaseCount = 0;
+		while (iter.hasNext()) {
+			SAMRecord read = iter.next();
+			if (sharded && read.getAlignmentStart() < shard.getStart()) continue;
+			
+			// only proceed if read is mapped, not a dup, valid, and primary
+			counterIn.increment();   //count input read number
 			
-			logger.info("number of bases for " + refName + " is : " + totalBaseCount);
-			logger.info("number of filtered bases for " + refName + " is : " + filteredBaseCount);
-			long totalCountFromArray = 0;
-			for (int i : perBaseCoverages) {
-				if (i > -1) {
-					totalCountFromArray += i;
+			// get number of bases in read
+			int readLength = read.getReadLength();
+			totalBaseCount += readLength;
+			
+			if (++recordCounterIn % 10000000 == 0) {
+				logger.debug("hit " + (recordCounterIn / 1000000) + "M records for " + shard);
+			}
+
+			if (read.getReferenceName().equals(refName)) {
+				if (null == filter) {
+					recordCounterOut ++;
+					counterOut.increment();    //count output read number
+					addCoverage(read);
+				} else if (filter.Execute(read)) {
+					recordCounterOut ++;
+					counterOut.increment(); //count output read number
+					addCoverage(read);
+					
+					filteredBaseCount += readLength;
 				}
+			} else {
+				logger.info("ref names did not match!");
 			}
-			logger.info("totalCountFromArray for " + refName + " is : " + totalCountFromArray);
 		}
+		logger.info("read " + recordCounterIn + " records from input for " + shard);
+		logger.info("add " + recordCounterOut + " records (satisfied by query if query is provided) to coverage for " + shard);
+		logger.info("number in counterIn instance is " + counterIn.getNumber());
+		logger.info("number in counterOut instance is " + counterOut.getNumber());
+		
+		logger.info("number of bases for " + shard + " is : " + totalBaseCount);
+		logger.info("number of filtered bases for " + shard + " is : " + filteredBaseCount);
+		long totalCountFromArray = 0;
+		for (int i : perBaseCoverages) {
+			if (i > -1) {
+				totalCountFromArray += i;
+			}
+		}
+		logger.info("totalCountFromArray for " + shard + " is : " + totalCountFromArray);
 	}
 
-	private void assembleResults() {
-		for (GFF3Record feature : features) {
-			String id = null;
-			if (perFeatureFlag) {
-				id = feature.getRawData();
-			} else {
-				id = feature.getType();
+	/**
+	 * Increments the coverage of the bases of this shard that the read covers, and records where any coverage beyond the end of the shard finishes
+	 */
+	void addCoverage(final SAMRecord read) {
+		final int readStart = read.getAlignmentStart();
+		if (readStart <= 0) return;
+		
+		final int coverageEnd = Math.min(alg.getCoverageEnd(read), refLength);
+		final int shardStart = shard.getStart();
+		final int to = Math.min(coverageEnd, shard.getEnd()) - shardStart;
+		if (fullyPopulated) {
+			for (int i = Math.max(readStart, shardStart) - shardStart ; i <= to ; i++) {
+				perBaseCoverages[i] ++;
 			}
-			HashMap<Integer, AtomicLong> covToBaseCountMap = idToCoverageToBaseCountMap.get(id);
-			if (null == covToBaseCountMap) {
-				covToBaseCountMap = new HashMap<Integer, AtomicLong>();
-				idToCoverageToBaseCountMap.put(id, covToBaseCountMap);
+		} else {
+			for (int i = Math.max(readStart, shardStart) - shardStart ; i <= to ; i++) {
+				if (-1 < perBaseCoverages[i])
+					perBaseCoverages[i] ++;
 			}
-			for (int pos = feature.getStart(); pos <= feature.getEnd(); pos++) {
-				// GFF3 format uses 1-based feature coordinates; avoid problem
-				// of GFF3 accidentally containing 0 coordinate
-				if (pos > 0 && (pos - 1) < perBaseCoverages.length) {
-					// Adjust from 1-based to 0-based indexing
-					int cov = perBaseCoverages[pos - 1];
-					if (-1 >= cov) {
-						throw new IllegalStateException(
-								"Malformed internal state. -1 coverage values are invalid. Report this bug.");
-					}
-					covToBaseCountMap.computeIfAbsent(cov, v -> new AtomicLong()).incrementAndGet();
-				}
+		}
+		if (coverageEnd > shard.getEnd()) {
+			if (noOfOverflowEnds == overflowEnds.length) {
+				overflowEnds = Arrays.copyOf(overflowEnds, overflowEnds.length * 2);
 			}
+			overflowEnds[noOfOverflowEnds++] = coverageEnd;
+		}
+	}
+
+	private void assembleResults() {
+		HashMap<String, CoverageHistogram> results = contig.shardComplete(shardIndex, perBaseCoverages, overflowEnds, noOfOverflowEnds);
+		if (null != results) {
+			idToCoverageToBaseCountMap = results;
+		} else {
+			logger.debug("waiting on other shards of " + refName + " before results can be assembled");
 		}
 		// Attempt to release coverage memory by nullifying
 		perBaseCoverages = null;
+		overflowEnds = null;
 	}
 
 	int[] getPerBaseCoverages() {
@@ -4,10 +4,9 @@
 package org.qcmg.coverage;
 
 import java.util.HashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 interface Job {
-	public HashMap<String, HashMap<Integer, AtomicLong>> getResults();
+	public HashMap<String, CoverageHistogram> getResults();
 	public void run() throws Exception;
 	public String toString();
 }
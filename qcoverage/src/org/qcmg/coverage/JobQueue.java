@@ -13,6 +13,7 @@ import htsjdk.samtools.SamReader;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -21,11 +22,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.Vector;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.qcmg.common.log.QLogger;
 import org.qcmg.common.log.QLoggerFactory;
@@ -37,7 +36,13 @@ import org.qcmg.picard.SAMFileReaderFactory;
 import org.qcmg.qbamfilter.query.QueryExecutor;
 
 public final class JobQueue {
-	private final HashMap<String, HashMap<Integer, AtomicLong>> perIdPerCoverageBaseCounts = new HashMap<String, HashMap<Integer, AtomicLong>>();
+	/*
+	 * References longer than this are split into shards that are processed by separate jobs.
+	 * A multiple of the 16kb bins of the bam index linear index, so that shard boundaries line up with index entries
+	 */
+	static final int DEFAULT_SHARD_SIZE = 640 * 16384;
+	
+	private final HashMap<String, CoverageHistogram> perIdPerCoverageBaseCounts = new HashMap<String, CoverageHistogram>();
 	private final boolean perFeatureFlag;
 	private final int numberThreads;
 	private int numberFeatures = 0;
@@ -49,7 +54,7 @@ public final class JobQueue {
 	private final HashSet<Pair<File, File>> filePairs;
 	private final HashMap<String, HashSet<Pair<File, File>>> refnameFilePairs = new HashMap<String, HashSet<Pair<File, File>>>();
 	private final Vector<String> refnameExecutionOrder = new Vector<String>();
-	private final HashSet<HashMap<String, TreeMap<Integer, AtomicLong>>> perRefnameResults = new HashSet<HashMap<String, TreeMap<Integer, AtomicLong>>>();
+	private final List<HashMap<String, CoverageHistogram>> perRefnameResults = new ArrayList<HashMap<String, CoverageHistogram>>();
 	private final BlockingQueue<Job> jobQueue = new LinkedBlockingQueue<Job>();
 	private final LoggerInfo loggerInfo;
 	private final QLogger logger;
@@ -59,9 +64,15 @@ public final class JobQueue {
 	private final String validation;
 	private final ReadsNumberCounter countIn;
 	private final ReadsNumberCounter countOut;
+	private final int shardSize;
 	
 	
 	public JobQueue(final Configuration invariants) throws Exception {
+		this(invariants, DEFAULT_SHARD_SIZE);
+	}
+	
+	JobQueue(final Configuration invariants, final int shardSize) throws Exception {
+		this.shardSize = shardSize;
 		perFeatureFlag = invariants.isPerFeatureFlag();
 		gff3File = invariants.getInputGFF3File();
 		filter = invariants.getFilter();
@@ -116,34 +127,21 @@ public final class JobQueue {
 			int refLength = perRefnameLengths.get(refname);
 			HashSet<Pair<File, File>> filePairs = refnameFilePairs.get(refname);
 			
-			CoverageJob job = new CoverageJob(refname,
-					refLength, perRefnameFeatures, filePairs, filter,
-					perFeatureFlag, algorithm, countIn, countOut, validation);
-			jobQueue.add(job);
+			ContigCoverage contig = new ContigCoverage(refname, refLength, perRefnameFeatures.get(refname), perFeatureFlag, shardSize);
+			for (int i = 0, len = contig.getShards().size() ; i < len ; i++) {
+				CoverageJob job = new CoverageJob(contig, i, filePairs, filter,
+						algorithm, countIn, countOut, validation);
+				jobQueue.add(job);
+			}
 		}
 		logger.info("Number of queued coverage jobs: " + jobQueue.size());
 		logger.info("Queued jobs are: " + jobQueue);
 	}
 
 	private void reduceResults() throws Exception {
-		for (HashMap<String, TreeMap<Integer, AtomicLong>> mappedResult : perRefnameResults) {
-			for (String id : mappedResult.keySet()) {
-				HashMap<Integer, AtomicLong> covToBaseCountMap = perIdPerCoverageBaseCounts
-						.get(id);
-				if (null == covToBaseCountMap) {
-					covToBaseCountMap = new HashMap<Integer, AtomicLong>();
-					perIdPerCoverageBaseCounts.put(id, covToBaseCountMap);
-				}
-				for (Integer cov : mappedResult.get(id).keySet()) {
-					AtomicLong reducedBaseCount = covToBaseCountMap.get(cov);
-					if (null == reducedBaseCount) {
-						reducedBaseCount = new AtomicLong();
-						covToBaseCountMap.put(cov, reducedBaseCount);
-					}
-					AtomicLong mappedBaseCount = mappedResult.get(id).get(cov);
-					assert (null != mappedBaseCount); // Implicit to above logic
-					reducedBaseCount.addAndGet(mappedBaseCount.get());
-				}
+		for (HashMap<String, CoverageHistogram> mappedResult : perRefnameResults) {
+			for (Entry<String, CoverageHistogram> entry : mappedResult.entrySet()) {
+				perIdPerCoverageBaseCounts.computeIfAbsent(entry.getKey(), id -> new CoverageHistogram()).addAll(entry.getValue());
 			}
 		}
 	}
@@ -316,16 +314,15 @@ public final class JobQueue {
 	public List<CoverageReport> getCoverageReport() {
 		List<CoverageReport> results = new Vector<CoverageReport>();
 		for (final String type : perIdPerCoverageBaseCounts.keySet()) {
-			HashMap<Integer, AtomicLong> value = perIdPerCoverageBaseCounts
+			CoverageHistogram value = perIdPerCoverageBaseCounts
 					.get(type);
 			CoverageReport report = new CoverageReport();
 			report.setFeature(type);
 			report.setType(coverageType);
-			for (Integer coverage : value.keySet()) {
-				AtomicLong bases = value.get(coverage);
+			for (int coverage : value.getCoverages()) {
 				CoverageModel element = new CoverageModel();
-				element.setBases(new BigInteger(""+bases.get()));
-				element.setAt(coverage.toString());
+				element.setBases(BigInteger.valueOf(value.get(coverage)));
+				element.setAt(Integer.toString(coverage));
 				report.getCoverage().add(element);
 			}
 			results.add(report);
@@ -30,6 +30,18 @@ public class PhysicalCoverageAlgorithm implements Algorithm {
 //		applyTo(read, perBaseCoverages, false);
 //	}
 	
+	/**
+	 * Paired reads cover their insert (if the insert size is not negative), unpaired reads cover their alignment
+	 */
+	@Override
+	public int getCoverageEnd(final SAMRecord read) {
+		if (read.getReadPairedFlag()) {
+			final int insertSize = read.getInferredInsertSize();
+			return 0 <= insertSize ? read.getAlignmentStart() + insertSize : read.getAlignmentStart() - 1;
+		}
+		return read.getAlignmentEnd();
+	}
+	
 	@Override
 	public void applyTo(final SAMRecord read, Object perBaseCoveragesObj, boolean fullyPopulated) {
 //		@Override
@@ -37,4 +37,9 @@ public class SequenceCoverageAlgorithm implements Algorithm {
 	public void applyTo(final SAMRecord read, Object perBaseCoverages, boolean fullyPopulated) {
 		applyTo(read, perBaseCoverages);
 	}
+	
+	@Override
+	public int getCoverageEnd(final SAMRecord read) {
+		return read.getAlignmentEnd();
+	}
 }
@@ -3,6 +3,58 @@
  */
 package org.qcmg.coverage;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A section of a reference sequence, 1-based and inclusive at both ends, that is covered by a single {@link CoverageJob}
+ */
 public class Shard {
 
+	private final String refName;
+	private final int start;
+	private final int end;
+
+	public Shard(String refName, int start, int end) {
+		if (start < 1 || end < start) throw new IllegalArgumentException("Invalid shard: " + refName + ":" + start + "-" + end);
+		this.refName = refName;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Splits the reference into consecutive shards of <code>shardSize</code> bases (the last may be shorter).
+	 * A reference of zero length gets a single shard of length 1, so that it is still represented.
+	 */
+	public static List<Shard> split(String refName, int refLength, int shardSize) {
+		if (shardSize < 1) throw new IllegalArgumentException("Shard size must be at least 1: " + shardSize);
+
+		List<Shard> shards = new ArrayList<>();
+		int start = 1;
+		do {
+			int end = (int) Math.min((long) start + shardSize - 1, Math.max(refLength, 1));
+			shards.add(new Shard(refName, start, end));
+			start = end + 1;
+		} while (start <= refLength);
+		return shards;
+	}
+
+	public String getRefName() {
+		return refName;
+	}
+	public int getStart() {
+		return start;
+	}
+	public int getEnd() {
+		return end;
+	}
+	public int getLength() {
+		return end - start + 1;
+	}
+
+	@Override
+	public String toString() {
+		return refName + ":" + start + "-" + end;
+	}
+
 }
@@ -4,7 +4,6 @@
 package org.qcmg.coverage;
 
 import java.util.HashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 class TerminationJob implements Job {
 	public static final Job INSTANCE = new TerminationJob();
@@ -12,7 +11,7 @@ class TerminationJob implements Job {
 	private TerminationJob() {
 	}
 
-	public HashMap<String, HashMap<Integer, AtomicLong>> getResults() {
+	public HashMap<String, CoverageHistogram> getResults() {
 		throw new IllegalStateException("Termination job never returns a result.");
 	}
 
@@ -3,19 +3,19 @@
  */
 package org.qcmg.coverage;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.qcmg.common.log.QLogger;
 import org.qcmg.common.log.QLoggerFactory;
 
 class WorkerThread extends Thread {
 	private final BlockingQueue<Job> inputQueue;
-	private final HashMap<String, TreeMap<Integer, AtomicLong>> reducedResults = new HashMap<String, TreeMap<Integer, AtomicLong>>();
-	private final HashSet<HashMap<String, HashMap<Integer, AtomicLong>>> perJobResults = new HashSet<HashMap<String, HashMap<Integer, AtomicLong>>>();
+	private final HashMap<String, CoverageHistogram> reducedResults = new HashMap<String, CoverageHistogram>();
+	private final List<HashMap<String, CoverageHistogram>> perJobResults = new ArrayList<HashMap<String, CoverageHistogram>>();
 	private final QLogger logger;
 	private final Thread mainThread;
 
@@ -26,7 +26,7 @@ class WorkerThread extends Thread {
 		this.mainThread = mainThread;
 	}
 
-	public HashMap<String, TreeMap<Integer, AtomicLong>> getReducedResults() {
+	public HashMap<String, CoverageHistogram> getReducedResults() {
 		return reducedResults;
 	}
 
@@ -60,23 +60,9 @@ class WorkerThread extends Thread {
 	}
 
 	private void reduceResults() {
-		for (HashMap<String, HashMap<Integer, AtomicLong>> mappedResult : perJobResults) {
-			for (String id : mappedResult.keySet()) {
-				TreeMap<Integer, AtomicLong> covToBaseCountMap = reducedResults.get(id);
-				if (null == covToBaseCountMap) {
-					covToBaseCountMap = new TreeMap<Integer, AtomicLong>();
-					reducedResults.put(id, covToBaseCountMap);
-				}
-				for (Integer cov : mappedResult.get(id).keySet()) {
-					AtomicLong reducedBaseCount = covToBaseCountMap.get(cov);
-					if (null == reducedBaseCount) {
-						reducedBaseCount = new AtomicLong();
-						covToBaseCountMap.put(cov, reducedBaseCount);
-					}
-					AtomicLong mappedBaseCount = mappedResult.get(id).get(cov);
-					assert (null != mappedBaseCount); // Implicit to above logic
-					reducedBaseCount.addAndGet(mappedBaseCount.get());
-				}
+		for (HashMap<String, CoverageHistogram> mappedResult : perJobResults) {
+			for (Entry<String, CoverageHistogram> entry : mappedResult.entrySet()) {
+				reducedResults.computeIfAbsent(entry.getKey(), id -> new CoverageHistogram()).addAll(entry.getValue());
 			}
 		}
 	}
@@ -0,0 +1,76 @@
+package org.qcmg.coverage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class CoverageHistogramTest {
+
+	@Test
+	public void empty() {
+		CoverageHistogram h = new CoverageHistogram();
+		assertEquals(0, h.getCoverages().length);
+		assertEquals(0, h.get(0));
+		assertEquals(0, h.get(-1));
+		assertEquals(0, h.get(CoverageHistogram.DENSE_LIMIT + 10));
+		assertEquals("{}", h.toString());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void negativeCoverage() {
+		new CoverageHistogram().increment(-1);
+	}
+
+	@Test
+	public void denseAndSparse() {
+		CoverageHistogram h = new CoverageHistogram();
+		h.increment(0);
+		h.increment(0);
+		h.increment(5);
+		h.increment(CoverageHistogram.DENSE_LIMIT - 1);
+		h.increment(CoverageHistogram.DENSE_LIMIT);
+		h.add(100000, 3);
+		h.increment(CoverageHistogram.DENSE_LIMIT);
+
+		assertArrayEquals(new int[] {0, 5, CoverageHistogram.DENSE_LIMIT - 1, CoverageHistogram.DENSE_LIMIT, 100000}, h.getCoverages());
+		assertEquals(2, h.get(0));
+		assertEquals(1, h.get(5));
+		assertEquals(0, h.get(6));
+		assertEquals(1, h.get(CoverageHistogram.DENSE_LIMIT - 1));
+		assertEquals(2, h.get(CoverageHistogram.DENSE_LIMIT));
+		assertEquals(3, h.get(100000));
+		assertEquals("{0=2, 5=1, 1023=1, 1024=2, 100000=3}", h.toString());
+	}
+
+	@Test
+	public void addAllMatchesMap() {
+		Random random = new Random(42);
+		Map<Integer, Long> expected = new TreeMap<>();
+		Map<Integer, CoverageHistogram> parts = new HashMap<>();
+		for (int i = 0 ; i < 100000 ; i++) {
+			// mostly low coverage, with a long tail
+			int coverage = random.nextInt(10) == 0 ? random.nextInt(5000) : random.nextInt(60);
+			expected.merge(coverage, 1L, Long::sum);
+			parts.computeIfAbsent(i % 7, k -> new CoverageHistogram()).increment(coverage);
+		}
+		CoverageHistogram merged = new CoverageHistogram();
+		for (CoverageHistogram part : parts.values()) {
+			merged.addAll(part);
+		}
+
+		int [] coverages = merged.getCoverages();
+		assertEquals(expected.size(), coverages.length);
+		int i = 0;
+		for (Map.Entry<Integer, Long> e : expected.entrySet()) {
+			assertEquals(e.getKey().intValue(), coverages[i++]);
+			assertEquals(e.getValue().longValue(), merged.get(e.getKey()));
+		}
+	}
+
+}
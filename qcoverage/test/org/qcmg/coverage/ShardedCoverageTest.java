@@ -0,0 +1,139 @@
+package org.qcmg.coverage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qcmg.gff3.GFF3FileWriter;
+import org.qcmg.gff3.GFF3Record;
+
+public class ShardedCoverageTest {
+
+	@ClassRule
+	public static TemporaryFolder testFolder = new TemporaryFolder();
+
+	static String inputBam;
+	static String inputBai;
+	static String gff3;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		inputBam = testFolder.newFile("sharded.bam").getAbsolutePath();
+		inputBai = inputBam.replace("bam", "bai");
+		gff3 = testFolder.newFile("sharded.gff3").getAbsolutePath();
+
+		SAMFileHeader h = SequenceCoverageTest.createSamHeaderObject(SortOrder.coordinate);
+		Random random = new Random(42);
+		List<SAMRecord> recs = new ArrayList<>();
+		for (int i = 0 ; i < 5000 ; i++) {
+			SAMRecord rec = new SAMRecord(h);
+			rec.setReadName("read" + i);
+			rec.setReferenceName(i % 10 == 0 ? "chr2" : "chr1");
+			int readLength = 20 + random.nextInt(80);
+			rec.setAlignmentStart(1 + random.nextInt(100000 - readLength));
+			rec.setCigarString(readLength + "M");
+			byte [] bases = new byte[readLength];
+			Arrays.fill(bases, (byte) 'A');
+			rec.setReadBases(bases);
+			rec.setMappingQuality(60);
+			if (random.nextBoolean()) {
+				rec.setReadPairedFlag(true);
+				rec.setMateReferenceName(rec.getReferenceName());
+				// mostly sensible inserts, a few large ones, some negative
+				int iSize = random.nextInt(20) == 0 ? random.nextInt(200000) : random.nextInt(3000) - 500;
+				rec.setInferredInsertSize(iSize);
+				rec.setMateAlignmentStart(Math.max(1, rec.getAlignmentStart() + iSize));
+			}
+			recs.add(rec);
+		}
+		recs.sort(new SAMRecordCoordinateComparator());
+		SequenceCoverageTest.createCoverageBam(inputBam, recs, h);
+
+		try (GFF3FileWriter writer = new GFF3FileWriter(new File(gff3))) {
+			int [][] features = new int[][] {{1, 100000}, {990, 1010}, {15000, 17500}, {32760, 32780}, {99000, 100000}, {500, 600}};
+			for (int i = 0 ; i < features.length ; i++) {
+				for (String chr : new String[] {"chr1", "chr2"}) {
+					GFF3Record record = new GFF3Record();
+					record.setSeqId(chr);
+					record.setType(i == 0 ? "gene" : "exon");
+					record.setStart(features[i][0]);
+					record.setEnd(features[i][1]);
+					record.setScore(".");
+					record.setSource(".");
+					record.setStrand("+");
+					writer.add(record);
+				}
+			}
+		}
+	}
+
+	private static Map<String, TreeMap<String, Long>> run(String type, boolean perFeature, int shardSize) throws Exception {
+		File output = new File(testFolder.getRoot(), "output_" + type + "_" + perFeature + "_" + shardSize);
+		String cmd = "--log " + testFolder.getRoot() + "/logfile -t " + type + " --gff3 " + gff3 + " --bam " + inputBam + " --bai " + inputBai + " -n 3 -o " + output.getAbsolutePath()
+				+ (perFeature ? " --per-feature" : "");
+		JobQueue queue = new JobQueue(new Configuration(new Options(cmd.split(" "))), shardSize);
+
+		Map<String, TreeMap<String, Long>> results = new HashMap<>();
+		for (CoverageReport report : queue.getCoverageReport()) {
+			TreeMap<String, Long> coverage = new TreeMap<>();
+			for (CoverageModel model : report.getCoverage()) {
+				coverage.put(model.getAt(), model.getBases().longValue());
+			}
+			results.put(report.getFeature(), coverage);
+		}
+		return results;
+	}
+
+	@Test
+	public void split() {
+		List<Shard> shards = Shard.split("chr1", 100000, 33333);
+		assertEquals(4, shards.size());
+		assertEquals("chr1:1-33333", shards.get(0).toString());
+		assertEquals("chr1:33334-66666", shards.get(1).toString());
+		assertEquals("chr1:66667-99999", shards.get(2).toString());
+		assertEquals("chr1:100000-100000", shards.get(3).toString());
+		
+		assertEquals(1, Shard.split("chr1", 100000, 100000).size());
+		assertEquals(1, Shard.split("chr1", 0, 100000).size());
+		assertEquals(100000, Shard.split("chr1", 100000, 1).size());
+	}
+
+	@Test
+	public void sequenceCoverageIsIndependentOfShardSize() throws Exception {
+		assertShardSizeMakesNoDifference("seq");
+	}
+
+	@Test
+	public void physicalCoverageIsIndependentOfShardSize() throws Exception {
+		assertShardSizeMakesNoDifference("phys");
+	}
+
+	private void assertShardSizeMakesNoDifference(String type) throws Exception {
+		for (boolean perFeature : new boolean[] {false, true}) {
+			Map<String, TreeMap<String, Long>> unsharded = run(type, perFeature, JobQueue.DEFAULT_SHARD_SIZE);
+			assertTrue(unsharded.size() > 1);
+			for (int shardSize : new int[] {1000, 16384, 33333}) {
+				assertEquals(type + ", per feature: " + perFeature + ", shard size: " + shardSize, unsharded, run(type, perFeature, shardSize));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.vcf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the records of a vcf stream as {@link LazyVcfRecord}s.
+ * <p>
+ * Lines are read straight from the stream into a byte buffer, without being decoded, and each record costs a copy of the bytes of its line
+ * rather than a String per column. The tabs in the line are found by the record, as its columns are asked for.
+ * Header lines (those starting with '#') are skipped, as are the '\r' of any "\r\n" line endings.
+ */
+public final class LazyVCFRecordIterator implements Iterator<LazyVcfRecord> {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long NEW_LINES = 0x0A0A0A0A0A0A0A0AL;
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	private final InputStream stream;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private ByteBuffer longBuffer = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+	private int bufferStart;
+	private int bufferEnd;
+	private boolean endOfStream;
+
+	private LazyVcfRecord next;
+
+	public LazyVCFRecordIterator(final InputStream stream) {
+		this.stream = stream;
+		readNext();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return null != next;
+	}
+
+	@Override
+	public LazyVcfRecord next() {
+		if ( ! hasNext()) {
+			throw new NoSuchElementException();
+		}
+		LazyVcfRecord result = next;
+		readNext();
+		return result;
+	}
+
+	private void readNext() {
+		try {
+			next = null;
+			while (null == next) {
+				if ( ! readLine()) {
+					return;
+				}
+			}
+		} catch (Exception ex) {
+			throw new RuntimeException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Reads the next line, setting {@link #next} if it isn't a header line
+	 *
+	 * @return false if there are no more lines
+	 */
+	private boolean readLine() throws IOException {
+		int scanFrom = bufferStart;
+		while (true) {
+			int newLine = indexOfNewLine(scanFrom, bufferEnd);
+			if (newLine >= 0) {
+				createRecord(bufferStart, newLine);
+				bufferStart = newLine + 1;
+				return true;
+			}
+
+			int scanned = bufferEnd - bufferStart;
+			if ( ! fill()) {
+				if (scanned == 0) {
+					return false;
+				}
+				// last line has no line terminator
+				createRecord(bufferStart, bufferEnd);
+				bufferStart = bufferEnd;
+				return true;
+			}
+			scanFrom = bufferStart + scanned;
+		}
+	}
+
+	/**
+	 * Looks for a '\n' 8 bytes at a time, using the "has zero byte" bit trick on the bytes xor'd with '\n'.
+	 * The lowest flagged byte is always a real match, as false positives can only appear above a real one.
+	 *
+	 * @return the index of the first '\n' in the buffer between from (inclusive) and to (exclusive), or -1 if there isn't one
+	 */
+	private int indexOfNewLine(int from, int to) {
+		int i = from;
+		for (; i + 8 <= to; i += 8) {
+			long x = longBuffer.getLong(i) ^ NEW_LINES;
+			long found = (x - ONES) & ~x & HIGH_BITS;
+			if (found != 0) {
+				return i + (Long.numberOfTrailingZeros(found) >>> 3);
+			}
+		}
+		for (; i < to; i++) {
+			if (buffer[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void createRecord(int start, int end) {
+		if (end > start && buffer[end - 1] == '\r') {
+			end--;
+		}
+		if (end > start && buffer[start] == '#') {
+			return;
+		}
+		next = new LazyVcfRecord(Arrays.copyOfRange(buffer, start, end));
+	}
+
+	/**
+	 * Moves any partial line to the start of the buffer (growing it if the line fills it), and reads more of the stream after it
+	 *
+	 * @return false if the end of the stream has been reached
+	 */
+	private boolean fill() throws IOException {
+		if (endOfStream) {
+			return false;
+		}
+		int remaining = bufferEnd - bufferStart;
+		if (bufferStart > 0) {
+			System.arraycopy(buffer, bufferStart, buffer, 0, remaining);
+		} else if (remaining == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			longBuffer = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		bufferStart = 0;
+		bufferEnd = remaining;
+		int n = stream.read(buffer, bufferEnd, buffer.length - bufferEnd);
+		if (n < 0) {
+			endOfStream = true;
+			return false;
+		}
+		bufferEnd += n;
+		return true;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.vcf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.qcmg.common.vcf.VcfRecord;
+
+/**
+ * A vcf record that holds on to the bytes of its line, and only finds the tabs before, and decodes, a column when it is asked for.
+ * <p>
+ * Callers that only need a few columns (eg. the chromosome and position) don't pay for splitting the line into Strings and building a {@link VcfRecord},
+ * an info field record and a list of format fields. Callers that need the full {@link VcfRecord} api can get one from {@link #toVcfRecord()},
+ * which is the same record that {@link VCFSerializer#parseRecord(String)} would return for the line.
+ * <p>
+ * Columns are decoded every time they are asked for - hold on to the returned value rather than asking again.
+ * The tabs are found as the columns are asked for, so instances are not thread safe.
+ */
+public final class LazyVcfRecord {
+
+	public static final int CHROM_COLUMN = 0;
+	public static final int POS_COLUMN = 1;
+	public static final int ID_COLUMN = 2;
+	public static final int REF_COLUMN = 3;
+	public static final int ALT_COLUMN = 4;
+	public static final int QUAL_COLUMN = 5;
+	public static final int FILTER_COLUMN = 6;
+	public static final int INFO_COLUMN = 7;
+	public static final int FORMAT_COLUMN = 8;
+
+	private final byte[] line;
+	/*
+	 * the offsets of the tabs in the line that have been found so far, which are those before the columns that have been asked for
+	 */
+	private int[] tabs = new int[8];
+	private int tabCount;
+	private boolean allTabsFound;
+
+	/**
+	 * @param line the bytes of the line, without the line terminator. The array is not copied, and must not be changed afterwards
+	 */
+	LazyVcfRecord(byte[] line) {
+		this.line = line;
+		if ( ! findTabs(INFO_COLUMN)) {
+			throw new IllegalArgumentException("Bad VCF format. Insufficient columns: '" + new String(line, StandardCharsets.UTF_8) + "'");
+		}
+	}
+
+	public static LazyVcfRecord valueOf(String line) {
+		return new LazyVcfRecord(line.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Finds tabs until there are at least <code>count</code> of them, or the end of the line is reached
+	 *
+	 * @return true if the line has at least <code>count</code> tabs
+	 */
+	private boolean findTabs(int count) {
+		if (count <= tabCount) {
+			return true;
+		}
+		if (allTabsFound) {
+			return false;
+		}
+		int i = tabCount == 0 ? 0 : tabs[tabCount - 1] + 1;
+		for (; i < line.length; i++) {
+			if (line[i] == '\t') {
+				if (tabCount == tabs.length) {
+					tabs = Arrays.copyOf(tabs, tabs.length * 2);
+				}
+				tabs[tabCount++] = i;
+				if (tabCount == count) {
+					return true;
+				}
+			}
+		}
+		allTabsFound = true;
+		return false;
+	}
+
+	public int getColumnCount() {
+		findTabs(Integer.MAX_VALUE);
+		return tabCount + 1;
+	}
+
+	/*
+	 * only to be called for columns that exist
+	 */
+	private int columnStart(int column) {
+		return column == 0 ? 0 : tabs[column - 1] + 1;
+	}
+
+	private int columnEnd(int column) {
+		return findTabs(column + 1) ? tabs[column] : line.length;
+	}
+
+	private boolean hasColumn(int column) {
+		return column >= 0 && findTabs(column);
+	}
+
+	/**
+	 * @return the value of the column (0 based), or null if the line doesn't have that many columns
+	 */
+	public String getColumn(int column) {
+		if ( ! hasColumn(column)) {
+			return null;
+		}
+		int start = columnStart(column);
+		return new String(line, start, columnEnd(column) - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return true if the column (0 based) is exactly the supplied ascii string, without decoding the column
+	 */
+	public boolean columnEquals(int column, String value) {
+		if ( ! hasColumn(column)) {
+			return false;
+		}
+		int start = columnStart(column);
+		int length = columnEnd(column) - start;
+		if (length != value.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (line[start + i] != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public String getChromosome() {
+		return getColumn(CHROM_COLUMN);
+	}
+
+	/**
+	 * Parses the position straight from the bytes of the line
+	 */
+	public int getPosition() {
+		int start = columnStart(POS_COLUMN);
+		int end = columnEnd(POS_COLUMN);
+		if (start == end || end - start > 10) {
+			return Integer.parseInt(getColumn(POS_COLUMN));
+		}
+		long position = 0;
+		for (int i = start; i < end; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return Integer.parseInt(getColumn(POS_COLUMN));
+			}
+			position = position * 10 + digit;
+		}
+		if (position > Integer.MAX_VALUE) {
+			return Integer.parseInt(getColumn(POS_COLUMN));
+		}
+		return (int) position;
+	}
+
+	public String getId() {
+		return getColumn(ID_COLUMN);
+	}
+
+	public String getRef() {
+		return getColumn(REF_COLUMN);
+	}
+
+	/**
+	 * @return the length of the reference allele, without decoding it
+	 */
+	public int getRefLength() {
+		return columnEnd(REF_COLUMN) - columnStart(REF_COLUMN);
+	}
+
+	public String getAlt() {
+		return getColumn(ALT_COLUMN);
+	}
+
+	public String getQualString() {
+		return getColumn(QUAL_COLUMN);
+	}
+
+	public String getFilter() {
+		return getColumn(FILTER_COLUMN);
+	}
+
+	/**
+	 * @return the info column as it appears in the line
+	 */
+	public String getInfo() {
+		return getColumn(INFO_COLUMN);
+	}
+
+	/**
+	 * @return the format column and the sample columns, or an empty list if there are none
+	 */
+	public List<String> getFormatFields() {
+		int columnCount = getColumnCount();
+		List<String> fields = new ArrayList<>(Math.max(0, columnCount - FORMAT_COLUMN));
+		for (int i = FORMAT_COLUMN; i < columnCount; i++) {
+			fields.add(getColumn(i));
+		}
+		return fields;
+	}
+
+	/**
+	 * @return a new {@link VcfRecord} for this line
+	 */
+	public VcfRecord toVcfRecord() {
+		return VCFSerializer.parseRecord(toString());
+	}
+
+	/**
+	 * @return the line that this record was read from
+	 */
+	@Override
+	public String toString() {
+		return new String(line, StandardCharsets.UTF_8);
+	}
+}
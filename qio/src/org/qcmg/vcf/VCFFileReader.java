@@ -106,6 +106,14 @@ public final class VCFFileReader implements Closeable, Iterable<VcfRecord> {
         return new VCFRecordIterator(inputStream);
     }
 
+    /**
+     * Returns an iterator over the records as {@link LazyVcfRecord}s, which only decode the columns that are asked for.
+     * Use instead of {@link #iterator()} (not as well as) when only a few columns of each record are needed.
+     */
+    public LazyVCFRecordIterator getLazyRecordIterator() {
+        return new LazyVCFRecordIterator(inputStream);
+    }
+
     @Override
 	public void close() throws IOException {
         inputStream.close();
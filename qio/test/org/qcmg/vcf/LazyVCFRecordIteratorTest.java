@@ -0,0 +1,158 @@
+package org.qcmg.vcf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qcmg.common.vcf.VcfRecord;
+import org.qcmg.common.vcf.header.VcfHeaderUtils;
+
+public class LazyVCFRecordIteratorTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+
+	private static final String RECORD_1 = "chr1\t10177\trs367896724\tA\tAC\t.\t.\tRS=367896724;RSPOS=10177;dbSNPBuildID=138";
+	private static final String RECORD_2 = "chr1\t10352\trs555500075\tT\tTA\t100\tPASS\t.\tGT:AD\t0/1:10,5\t1/1:0,12";
+	private static final String RECORD_3 = "chrY\t2675825\trs71432129\tTTG\tTCA\t.\t.\tRSPOS=2675826;VC=MNV";
+
+	private static List<LazyVcfRecord> read(String data) {
+		List<LazyVcfRecord> records = new ArrayList<>();
+		new LazyVCFRecordIterator(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8))).forEachRemaining(records::add);
+		return records;
+	}
+
+	@Test
+	public void columns() {
+		List<LazyVcfRecord> records = read("##fileformat=VCFv4.2\n" + VcfHeaderUtils.STANDARD_FINAL_HEADER_LINE + "\n" + RECORD_1 + "\n" + RECORD_2 + "\n");
+		assertEquals(2, records.size());
+
+		LazyVcfRecord r = records.get(0);
+		assertEquals("chr1", r.getChromosome());
+		assertEquals(10177, r.getPosition());
+		assertEquals("rs367896724", r.getId());
+		assertEquals("A", r.getRef());
+		assertEquals(1, r.getRefLength());
+		assertEquals("AC", r.getAlt());
+		assertEquals(".", r.getQualString());
+		assertEquals(".", r.getFilter());
+		assertEquals("RS=367896724;RSPOS=10177;dbSNPBuildID=138", r.getInfo());
+		assertEquals(8, r.getColumnCount());
+		assertEquals(0, r.getFormatFields().size());
+		assertEquals(null, r.getColumn(8));
+		assertTrue(r.columnEquals(LazyVcfRecord.CHROM_COLUMN, "chr1"));
+		assertFalse(r.columnEquals(LazyVcfRecord.CHROM_COLUMN, "chr10"));
+		assertFalse(r.columnEquals(LazyVcfRecord.REF_COLUMN, "C"));
+		assertEquals(RECORD_1, r.toString());
+
+		r = records.get(1);
+		assertEquals(11, r.getColumnCount());
+		assertEquals(Arrays.asList("GT:AD", "0/1:10,5", "1/1:0,12"), r.getFormatFields());
+	}
+
+	@Test
+	public void sameAsEagerRecords() throws IOException {
+		String data = "##fileformat=VCFv4.2\n" + VcfHeaderUtils.STANDARD_FINAL_HEADER_LINE + "\n" + RECORD_1 + "\n" + RECORD_2 + "\n" + RECORD_3 + "\n";
+		File f = testFolder.newFile("test.vcf");
+		try (FileWriter writer = new FileWriter(f)) {
+			writer.write(data);
+		}
+
+		List<VcfRecord> eager = new ArrayList<>();
+		try (VCFFileReader reader = new VCFFileReader(f)) {
+			reader.forEach(eager::add);
+		}
+		List<VcfRecord> lazy = new ArrayList<>();
+		try (VCFFileReader reader = new VCFFileReader(f)) {
+			reader.getLazyRecordIterator().forEachRemaining(r -> lazy.add(r.toVcfRecord()));
+		}
+		assertEquals(3, lazy.size());
+		assertEquals(eager.size(), lazy.size());
+		for (int i = 0; i < eager.size(); i++) {
+			assertEquals(eager.get(i).toString(), lazy.get(i).toString());
+			assertEquals(eager.get(i).getChrPosition(), lazy.get(i).getChrPosition());
+		}
+	}
+
+	@Test
+	public void lineEndings() {
+		List<LazyVcfRecord> records = read(RECORD_1 + "\r\n#comment\r\n" + RECORD_3);
+		assertEquals(2, records.size());
+		assertEquals(RECORD_1, records.get(0).toString());
+		assertEquals("RS=367896724;RSPOS=10177;dbSNPBuildID=138", records.get(0).getInfo());
+		assertEquals(RECORD_3, records.get(1).toString());
+		assertEquals("RSPOS=2675826;VC=MNV", records.get(1).getInfo());
+
+		assertEquals(0, read("").size());
+		assertEquals(0, read("#header only\n").size());
+	}
+
+	@Test
+	public void linesLongerThanBuffer() {
+		StringBuilder info = new StringBuilder("X=");
+		for (int i = 0; i < 200000; i++) {
+			info.append('a');
+		}
+		String longRecord = "chr1\t100\t.\tA\tC\t.\t.\t" + info;
+		List<LazyVcfRecord> records = read(RECORD_1 + "\n" + longRecord + "\n" + RECORD_2 + "\n");
+		assertEquals(3, records.size());
+		assertEquals(info.toString(), records.get(1).getInfo());
+		assertEquals(10352, records.get(2).getPosition());
+	}
+
+	@Test
+	public void smallReads() {
+		/*
+		 * a stream that returns a byte at a time
+		 */
+		byte[] bytes = (RECORD_1 + "\n" + RECORD_2 + "\n").getBytes(StandardCharsets.UTF_8);
+		InputStream stream = new ByteArrayInputStream(bytes) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(1, len));
+			}
+		};
+		Iterator<LazyVcfRecord> iter = new LazyVCFRecordIterator(stream);
+		assertEquals(RECORD_1, iter.next().toString());
+		assertEquals(RECORD_2, iter.next().toString());
+		assertFalse(iter.hasNext());
+	}
+
+	@Test
+	public void insufficientColumns() {
+		try {
+			read(RECORD_1 + "\nchr1\t100\t.\tA\tC\n");
+			fail("Should have thrown an exception");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().contains("Insufficient columns"));
+		}
+	}
+
+	@Test
+	public void position() {
+		assertEquals(2147483647, LazyVcfRecord.valueOf("chr1\t2147483647\t.\tA\tC\t.\t.\t.").getPosition());
+		try {
+			LazyVcfRecord.valueOf("chr1\t2147483648\t.\tA\tC\t.\t.\t.").getPosition();
+			fail("Should have thrown an exception");
+		} catch (NumberFormatException e) {}
+		try {
+			LazyVcfRecord.valueOf("chr1\tABC\t.\tA\tC\t.\t.\t.").getPosition();
+			fail("Should have thrown an exception");
+		} catch (NumberFormatException e) {}
+	}
+}
@@ -0,0 +1,122 @@
+package org.qcmg.vcf;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qcmg.common.vcf.VcfRecord;
+import org.qcmg.common.vcf.header.VcfHeaderUtils;
+
+/**
+ * JMH benchmarks comparing eager ({@link VcfRecord}) and lazy ({@link LazyVcfRecord}) iteration over a dbSNP-like vcf file,
+ * when only the chromosome and position are needed, and when the whole record is needed.
+ * <p>
+ * Not a unit test - run with: java -cp &lt;test classpath&gt; org.qcmg.vcf.VCFRecordIteratorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VCFRecordIteratorBenchmark {
+
+	private static final String[] BASES = new String[] {"A", "C", "G", "T"};
+
+	@Param({"1000000"})
+	public int records;
+
+	private File vcf;
+
+	@Setup
+	public void setup() throws IOException {
+		vcf = File.createTempFile("VCFRecordIteratorBenchmark", ".vcf");
+		Random random = new Random(42);
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(vcf))) {
+			writer.write("##fileformat=VCFv4.0\n");
+			writer.write(VcfHeaderUtils.STANDARD_FINAL_HEADER_LINE + "\n");
+			int position = 10000;
+			for (int i = 0; i < records; i++) {
+				position += 1 + random.nextInt(200);
+				String ref = BASES[random.nextInt(4)];
+				String alt = BASES[random.nextInt(4)];
+				int rs = 1000000 + i;
+				/*
+				 * a dbSNP style info field
+				 */
+				writer.write("1\t" + position + "\trs" + rs + "\t" + ref + "\t" + alt + "\t.\t.\tRS=" + rs + ";RSPOS=" + position
+						+ ";dbSNPBuildID=" + (100 + random.nextInt(50)) + ";SSR=0;SAO=0;VP=0x050000000005000002000100;WGT=1;VC=SNV;ASP;CAF=0.9,0.1;COMMON=1\n");
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		vcf.delete();
+	}
+
+	@Benchmark
+	public void eagerPositions(Blackhole bh) throws IOException {
+		try (VCFFileReader reader = new VCFFileReader(vcf)) {
+			for (VcfRecord r : reader) {
+				bh.consume(r.getChromosome());
+				bh.consume(r.getPosition());
+			}
+		}
+	}
+
+	@Benchmark
+	public void lazyPositions(Blackhole bh) throws IOException {
+		try (VCFFileReader reader = new VCFFileReader(vcf)) {
+			Iterator<LazyVcfRecord> iter = reader.getLazyRecordIterator();
+			while (iter.hasNext()) {
+				LazyVcfRecord r = iter.next();
+				bh.consume(r.getChromosome());
+				bh.consume(r.getPosition());
+			}
+		}
+	}
+
+	@Benchmark
+	public void eagerRecords(Blackhole bh) throws IOException {
+		try (VCFFileReader reader = new VCFFileReader(vcf)) {
+			for (VcfRecord r : reader) {
+				bh.consume(r);
+			}
+		}
+	}
+
+	@Benchmark
+	public void lazyRecords(Blackhole bh) throws IOException {
+		try (VCFFileReader reader = new VCFFileReader(vcf)) {
+			Iterator<LazyVcfRecord> iter = reader.getLazyRecordIterator();
+			while (iter.hasNext()) {
+				bh.consume(iter.next().toVcfRecord());
+			}
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(VCFRecordIteratorBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -12,8 +12,10 @@ import htsjdk.samtools.SAMRecord;
 
 import org.qcmg.common.model.ChrPosition;
 import org.qcmg.motif.util.RegionCounter;
+import org.qcmg.motif.util.RegionIndex;
 
 interface Algorithm {
 	public String getName();
 	public boolean applyTo(final SAMRecord read, Map<ChrPosition, RegionCounter> motifRefPositions);
+	public boolean applyToIndex(final SAMRecord read, RegionIndex motifRefPositions);
 }
@@ -25,6 +25,7 @@ import org.qcmg.common.util.Pair;
 import org.qcmg.motif.util.MotifConstants;
 import org.qcmg.motif.util.MotifUtils;
 import org.qcmg.motif.util.RegionCounter;
+import org.qcmg.motif.util.RegionIndex;
 import org.qcmg.picard.SAMFileReaderFactory;
 import org.qcmg.qbamfilter.query.QueryExecutor;
 
@@ -40,6 +41,7 @@ class CoverageJob implements Job {
 	private final List<ChrPosition> includes;
 	private final List<ChrPosition> excludes;
 	private Map<ChrPosition, RegionCounter> chrSpecificRegions;
+	private RegionIndex chrSpecificRegionIndex;
 	private int windowSize = 1000000;		// default to a mill
 	private final AbstractQueue<SAMRecord> outputQueue;
 
@@ -106,6 +108,7 @@ class CoverageJob implements Job {
 		List<ChrPosition> chrExcludes = MotifUtils.getPositionsForChromosome(cp, excludes);
 		
 		chrSpecificRegions = MotifUtils.getRegionMap(cp, windowSize, chrIncludes, chrExcludes, "unmapped".equals(cp.getChromosome()) );
+		chrSpecificRegionIndex = new RegionIndex(chrSpecificRegions);
 		logger.info("created " + chrSpecificRegions.size() + " regions for " + cp.toIGVString() + " with " + chrIncludes.size() + " includes and " + chrExcludes.size() + " excludes");
 	}
 
@@ -128,11 +131,11 @@ class CoverageJob implements Job {
 					if (null == filter) {
 						recordCounterOut ++;
 						counterOut.incrementAndGet();    //count output read number
-						if (alg.applyTo(read, chrSpecificRegions)) outputQueue.add(read);
+						if (alg.applyToIndex(read, chrSpecificRegionIndex)) outputQueue.add(read);
 					} else if (filter.Execute(read)) {
 						recordCounterOut ++;
 						counterOut.incrementAndGet(); //count output read number
-						if (alg.applyTo(read, chrSpecificRegions)) outputQueue.add(read);
+						if (alg.applyToIndex(read, chrSpecificRegionIndex)) outputQueue.add(read);
 					}
 				} else {
 					logger.info("ref names did not match!");
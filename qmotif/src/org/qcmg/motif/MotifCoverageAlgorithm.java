@@ -6,6 +6,8 @@
  */
 package org.qcmg.motif;
 
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -18,10 +20,12 @@ import org.qcmg.common.model.ChrPosition;
 import org.qcmg.common.string.StringUtils;
 import org.qcmg.common.util.ChrPositionUtils;
 import org.qcmg.motif.util.MotifConstants;
+import org.qcmg.motif.util.MotifMatcher;
 import org.qcmg.motif.util.MotifMode;
 import org.qcmg.motif.util.MotifUtils;
 import org.qcmg.motif.util.MotifsAndRegexes;
 import org.qcmg.motif.util.RegionCounter;
+import org.qcmg.motif.util.RegionIndex;
 
 public class MotifCoverageAlgorithm implements Algorithm {
 	
@@ -31,6 +35,8 @@ public class MotifCoverageAlgorithm implements Algorithm {
 	 int stageOneMotifsSize;
 	 List<String> stageTwoMotifs;
 	 int stageTwoMotifsSize;
+	 MotifMatcher stageOneMatcher;
+	 MotifMatcher stageTwoMatcher;
 	
 	final int windowSize;
 	
@@ -43,10 +49,12 @@ public class MotifCoverageAlgorithm implements Algorithm {
 		if (mode.stageOneString()) {
 			this.stageOneMotifs = motifs.getStageOneMotifs().getMotifs();
 			this.stageOneMotifsSize = stageOneMotifs.size();
+			this.stageOneMatcher = new MotifMatcher(stageOneMotifs);
 		}
 		if (mode.stageTwoString()) {
 			this.stageTwoMotifs = motifs.getStageTwoMotifs().getMotifs();
 			this.stageTwoMotifsSize = stageTwoMotifs.size();
+			this.stageTwoMatcher = new MotifMatcher(stageTwoMotifs);
 		}
 		
 		this.stageOneRegex = motifs.getStageOneRegexPattern();
@@ -60,13 +68,29 @@ public class MotifCoverageAlgorithm implements Algorithm {
 		return "motif coverage";
 	}
 
+	/**
+	 * Builds a {@link RegionIndex} from the map for each call - callers applying many reads to the same regions should create the index once and use {@link #applyToIndex(SAMRecord, RegionIndex)}
+	 */
 	@Override
 	public boolean applyTo(final SAMRecord read, Map<ChrPosition, RegionCounter> regions) {
 		if (null == read) throw new IllegalArgumentException("Null SAMRecord passed to applyTo");
+		if (null == regions) throw new IllegalArgumentException("Null map passed to applyTo");
 		
-		String readString = read.getReadString();
+		return applyToIndex(read, new RegionIndex(regions));
+	}
+
+	@Override
+	public boolean applyToIndex(final SAMRecord read, RegionIndex regions) {
+		if (null == read) throw new IllegalArgumentException("Null SAMRecord passed to applyToIndex");
+		if (null == regions) throw new IllegalArgumentException("Null RegionIndex passed to applyToIndex");
+		
+		/*
+		 * string motifs are searched for in the read bases, so the read string is only needed in regex mode
+		 */
+		byte [] readBases = read.getReadBases();
+		String readString = mode.stageOneString() && mode.stageTwoString() ? null : read.getReadString();
 		
-		if (stageOneSearch(readString)) {
+		if (mode.stageOneString() ? stageOneSearchBases(readBases) : stageOneSearch(readString)) {
 			int readStart = read.getAlignmentStart();
 			String readChr = read.getReferenceName();
 			if (read.getReadUnmappedFlag()) {
@@ -79,7 +103,7 @@ public class MotifCoverageAlgorithm implements Algorithm {
 				}
 			}
 			ChrPosition cp = new ChrPointPosition(readChr, readStart);
-			RegionCounter rc = getCounterFromMap(regions, cp);
+			RegionCounter rc = regions.getCounter(cp);
 			
 			// throw exception if we don't have a region for this read
 			if (null == rc) throw new IllegalArgumentException("No RegionCounter exists for region: " + cp.toIGVString());
@@ -90,7 +114,7 @@ public class MotifCoverageAlgorithm implements Algorithm {
 			rc.updateStage1Coverage();
 			
 			// get motifs
-			String stm = getStageTwoMotifs(readString);
+			String stm = mode.stageTwoString() ? getStageTwoMotifsFromBases(readBases) : getStageTwoMotifs(readString);
 			if ( ! StringUtils.isNullOrEmpty(stm)) {
 				
 				rc.addMotif(stm, ! read.getReadNegativeStrandFlag(), ! read.getReadUnmappedFlag());
@@ -102,26 +126,35 @@ public class MotifCoverageAlgorithm implements Algorithm {
 		return false;
 	}
 	
+	/**
+	 * String mode only - the motifs found in the read bases, in the order in which they were supplied
+	 */
+	String getStageTwoMotifsFromBases(byte [] readBases) {
+		if (null == readBases || readBases.length == 0) return null;
+		
+		BitSet found = stageTwoMatcher.findAll(readBases);
+		if (found.isEmpty()) return null;
+		
+		StringBuilder motifs = new StringBuilder();
+		for (int i = found.nextSetBit(0) ; i >= 0 ; i = found.nextSetBit(i + 1)) {
+			if (motifs.length() > 0) {
+				motifs.append(MotifUtils.M_D);
+			}
+			motifs.append(stageTwoMotifs.get(i));
+		}
+		return motifs.toString();
+	}
+	
 	String getStageTwoMotifs(String readString) {
 		if ( ! StringUtils.isNullOrEmpty(readString)) {
 			
-			StringBuilder motifs = new StringBuilder();
 			if (mode.stageTwoString()) {
 				
-				for (int i = 0 ; i < stageTwoMotifsSize ; i++) {
-					String motif = stageTwoMotifs.get(i);
-					int index = readString.indexOf(motif);
-					if (index >= 0) {
-						
-						if (motifs.length() > 0) {
-							motifs.append(MotifUtils.M_D);
-						}
-						motifs.append(motif);
-					}
-				}
+				return getStageTwoMotifsFromBases(readString.getBytes(StandardCharsets.ISO_8859_1));
 				
 			} else {
 				
+				StringBuilder motifs = new StringBuilder();
 				Matcher matcher = stageTwoRegex.matcher(readString);
 				while (matcher.find()) {
 					if (motifs.length() > 0) {
@@ -129,14 +162,17 @@ public class MotifCoverageAlgorithm implements Algorithm {
 					}
 					motifs.append(matcher.group());
 				}
+				return motifs.length() == 0 ? null : motifs.toString();
 				
 			}
-			return motifs.length() == 0 ? null : motifs.toString();
 		} else {
 			return null;
 		}
 	}
 	
+	/**
+	 * Linear scan of the map - {@link RegionIndex#getCounter(ChrPosition)} should be used for repeated lookups
+	 */
 	RegionCounter getCounterFromMap(Map<ChrPosition, RegionCounter> regions, ChrPosition read) {
 		if (null == regions) throw new IllegalArgumentException("Null map passed to getCounterFromMap");
 		
@@ -161,14 +197,7 @@ public class MotifCoverageAlgorithm implements Algorithm {
 		
 		if (mode.stageOneString()) {
 			
-			for (int i = 0 ; i < stageOneMotifsSize ; i++) {
-				String motif = stageOneMotifs.get(i);
-				int index = readString.indexOf(motif);
-				if (index >= 0) {
-					result = true;
-					break;
-				}
-			}
+			result = stageOneSearchBases(readString.getBytes(StandardCharsets.ISO_8859_1));
 			
 		} else {		// regex
 			Matcher matcher = stageOneRegex.matcher(readString);
@@ -181,4 +210,12 @@ public class MotifCoverageAlgorithm implements Algorithm {
 	}
 
 	
+	/**
+	 * String mode only - single pass over the read bases looking for any of the stage one motifs
+	 */
+	boolean stageOneSearchBases(byte [] readBases) {
+		if (null == readBases || readBases.length == 0) return false;
+		return stageOneMatcher.containsAny(readBases);
+	}
+	
 }
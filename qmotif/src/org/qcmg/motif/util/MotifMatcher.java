@@ -0,0 +1,167 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.motif.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over a list of (string) motifs, so that a read can be searched for all of them in a single pass over its bases.
+ * <p>
+ * The automaton is built as a complete transition table (every state has a next state for every symbol), over an alphabet made up of the bytes that
+ * appear in the motifs, plus one symbol for everything else (which always takes the automaton back to the root).
+ * All occurrences are found, including motifs that overlap, or that are contained within other motifs.
+ * <p>
+ * Matching is case sensitive and byte for byte, as {@link String#indexOf(String)} is on the read string.
+ * Instances are immutable once built and may be shared between threads.
+ */
+public final class MotifMatcher {
+
+	private final int noOfMotifs;
+	private final int [] symbols = new int[256];
+	private final int alphabetSize;
+	// transitions[state * alphabetSize + symbol] -> next state
+	private final int [] transitions;
+	// indices of the motifs ending at each state (including those found via the failure links), null if none
+	private final int [][] outputs;
+
+	public MotifMatcher(List<String> motifs) {
+		if (null == motifs) throw new IllegalArgumentException("Null list passed to MotifMatcher");
+		noOfMotifs = motifs.size();
+
+		byte [][] motifBytes = new byte[noOfMotifs][];
+		int alphabet = 1;
+		for (int i = 0 ; i < noOfMotifs ; i++) {
+			motifBytes[i] = motifs.get(i).getBytes(StandardCharsets.ISO_8859_1);
+			for (byte b : motifBytes[i]) {
+				if (symbols[b & 0xff] == 0) symbols[b & 0xff] = alphabet++;
+			}
+		}
+		alphabetSize = alphabet;
+
+		/*
+		 * trie
+		 */
+		List<int []> gotos = new ArrayList<>();
+		List<List<Integer>> own = new ArrayList<>();
+		gotos.add(new int[alphabetSize]);
+		own.add(new ArrayList<>());
+		for (int i = 0 ; i < noOfMotifs ; i++) {
+			int state = 0;
+			for (byte b : motifBytes[i]) {
+				int symbol = symbols[b & 0xff];
+				if (gotos.get(state)[symbol] == 0) {
+					gotos.get(state)[symbol] = gotos.size();
+					gotos.add(new int[alphabetSize]);
+					own.add(new ArrayList<>());
+				}
+				state = gotos.get(state)[symbol];
+			}
+			own.get(state).add(i);
+		}
+
+		/*
+		 * breadth first from the root, filling in failure transitions and merging outputs
+		 */
+		int noOfStates = gotos.size();
+		transitions = new int[noOfStates * alphabetSize];
+		outputs = new int[noOfStates][];
+		int [] fail = new int[noOfStates];
+		List<List<Integer>> merged = new ArrayList<>(own);
+		Deque<Integer> queue = new ArrayDeque<>();
+
+		for (int symbol = 1 ; symbol < alphabetSize ; symbol++) {
+			int child = gotos.get(0)[symbol];
+			transitions[symbol] = child;
+			if (child != 0) queue.add(child);
+		}
+		while ( ! queue.isEmpty()) {
+			int state = queue.poll();
+			if ( ! merged.get(fail[state]).isEmpty()) {
+				List<Integer> l = new ArrayList<>(own.get(state));
+				l.addAll(merged.get(fail[state]));
+				merged.set(state, l);
+			}
+			for (int symbol = 1 ; symbol < alphabetSize ; symbol++) {
+				int child = gotos.get(state)[symbol];
+				if (child != 0) {
+					fail[child] = transitions[fail[state] * alphabetSize + symbol];
+					transitions[state * alphabetSize + symbol] = child;
+					queue.add(child);
+				} else {
+					transitions[state * alphabetSize + symbol] = transitions[fail[state] * alphabetSize + symbol];
+				}
+			}
+		}
+		for (int state = 0 ; state < noOfStates ; state++) {
+			List<Integer> l = merged.get(state);
+			if ( ! l.isEmpty()) {
+				outputs[state] = l.stream().mapToInt(Integer::intValue).toArray();
+			}
+		}
+	}
+
+	/**
+	 * @param bases
+	 * @return true if any of the motifs occurs in the supplied bases
+	 */
+	public boolean containsAny(byte [] bases) {
+		if (noOfMotifs == 0) return false;
+		if (null != outputs[0]) return true;		// empty motif
+		if (null == bases) return false;
+
+		int state = 0;
+		for (byte b : bases) {
+			state = transitions[state * alphabetSize + symbols[b & 0xff]];
+			if (null != outputs[state]) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the indices (into the list that this matcher was built with) of the motifs that occur in the supplied bases.
+	 * Stops scanning once every motif has been found.
+	 *
+	 * @param bases
+	 * @return
+	 */
+	public BitSet findAll(byte [] bases) {
+		BitSet found = new BitSet(noOfMotifs);
+		if (noOfMotifs == 0) return found;
+		int noFound = addAll(found, outputs[0]);
+		if (null == bases) return found;
+
+		int state = 0;
+		for (int i = 0, len = bases.length ; i < len && noFound < noOfMotifs ; i++) {
+			state = transitions[state * alphabetSize + symbols[bases[i] & 0xff]];
+			if (null != outputs[state]) {
+				noFound += addAll(found, outputs[state]);
+			}
+		}
+		return found;
+	}
+
+	private static int addAll(BitSet found, int [] indices) {
+		if (null == indices) return 0;
+		int added = 0;
+		for (int index : indices) {
+			if ( ! found.get(index)) {
+				found.set(index);
+				added++;
+			}
+		}
+		return added;
+	}
+
+	public int size() {
+		return noOfMotifs;
+	}
+
+}
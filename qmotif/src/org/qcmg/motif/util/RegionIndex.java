@@ -0,0 +1,95 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.motif.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.qcmg.common.model.ChrPosition;
+
+/**
+ * Read-only index over the regions (and their {@link RegionCounter}s) of a single contig, for finding the region that a read falls into.
+ * <p>
+ * Regions are sorted by start position, and alongside them is kept the maximum end position seen so far.
+ * A lookup binary searches for the last region starting at or before the end of the query, and then walks back from there
+ * until the running maximum end shows that no earlier region can reach the query.
+ * As the regions created by {@link MotifUtils#getRegionMap(ChrPosition, int, List, List, boolean)} don't (normally) overlap, this is O(log n).
+ * <p>
+ * Like {@link org.qcmg.common.util.ChrPositionUtils#doChrPositionsOverlapPositionOnly(ChrPosition, ChrPosition)}, only positions are compared, so all regions are assumed to be on the same contig.
+ * Where more than one region overlaps the query, the one with the largest start position is returned.
+ */
+public final class RegionIndex {
+
+	private final int [] starts;
+	private final int [] ends;
+	private final int [] maxEnds;
+	private final RegionCounter [] counters;
+
+	public RegionIndex(Map<ChrPosition, RegionCounter> regions) {
+		if (null == regions) throw new IllegalArgumentException("Null map passed to RegionIndex");
+
+		List<Entry<ChrPosition, RegionCounter>> entries = new ArrayList<>(regions.entrySet());
+		entries.sort(Comparator.comparingInt((Entry<ChrPosition, RegionCounter> e) -> e.getKey().getStartPosition()).thenComparingInt(e -> e.getKey().getEndPosition()));
+
+		int size = entries.size();
+		starts = new int[size];
+		ends = new int[size];
+		maxEnds = new int[size];
+		counters = new RegionCounter[size];
+
+		int maxEnd = Integer.MIN_VALUE;
+		for (int i = 0 ; i < size ; i++) {
+			Entry<ChrPosition, RegionCounter> e = entries.get(i);
+			starts[i] = e.getKey().getStartPosition();
+			ends[i] = e.getKey().getEndPosition();
+			maxEnd = Math.max(maxEnd, ends[i]);
+			maxEnds[i] = maxEnd;
+			counters[i] = e.getValue();
+		}
+	}
+
+	/**
+	 * Returns the {@link RegionCounter} of a region that overlaps the supplied position, or null if there isn't one (or the position is null)
+	 *
+	 * @param cp
+	 * @return
+	 */
+	public RegionCounter getCounter(ChrPosition cp) {
+		if (null == cp) return null;
+		return getCounter(cp.getStartPosition(), cp.getEndPosition());
+	}
+
+	RegionCounter getCounter(int start, int end) {
+		// last region that starts at or before the end of the query
+		int i = lastStartAtOrBefore(end);
+		for ( ; i >= 0 && maxEnds[i] >= start ; i--) {
+			if (ends[i] >= start) return counters[i];
+		}
+		return null;
+	}
+
+	private int lastStartAtOrBefore(int position) {
+		int low = 0;
+		int high = starts.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] <= position) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+
+	public int size() {
+		return counters.length;
+	}
+
+}
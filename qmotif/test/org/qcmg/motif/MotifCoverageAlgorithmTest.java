@@ -4,7 +4,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import htsjdk.samtools.SAMRecord;
 
@@ -12,6 +14,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.qcmg.common.model.ChrPosition;
 import org.qcmg.common.model.ChrRangePosition;
+import org.qcmg.motif.util.MotifUtils;
 import org.qcmg.motif.util.MotifsAndRegexes;
 import org.qcmg.motif.util.RegionCounter;
 import org.qcmg.motif.util.RegionType;
@@ -90,6 +93,40 @@ public class MotifCoverageAlgorithmTest {
 		assertEquals("TTAGGGTTAGGG:CCCTGACCCTGA", mca.getStageTwoMotifs("ACGTTTAGGGTTAGGGCCCTGACCCTGAACGT"));
 	}
 	
+	@Test
+	public void stringModeBasesMatchReadString() {
+		MotifsAndRegexes stringString = new MotifsAndRegexes(new Motifs(true, "TTAGGGTTAGGG", "TTAGGG"), null, new Motifs(true, "TTAGGG", "TCAGGG", "TTAGGGTTAGGG"), null, 10000);
+		MotifCoverageAlgorithm stringMca = new MotifCoverageAlgorithm(stringString);
+		List<String> stageOne = stringString.getStageOneMotifs().getMotifs();
+		List<String> stageTwo = stringString.getStageTwoMotifs().getMotifs();
+		
+		Random random = new Random(42);
+		String [] chunks = new String[] {"TTAGGG", "CCCTAA", "TCAGGG", "CCCTGA", "A", "C", "G", "T", "N"};
+		for (int i = 0 ; i < 5000 ; i++) {
+			StringBuilder sb = new StringBuilder();
+			while (sb.length() < 100) sb.append(chunks[random.nextInt(chunks.length)]);
+			SAMRecord sam = new SAMRecord(null);
+			sam.setReadString(sb.toString());
+			String readString = sam.getReadString();
+			
+			// what the one motif at a time search used to do
+			boolean expectedStageOne = false;
+			for (String motif : stageOne) expectedStageOne |= readString.indexOf(motif) >= 0;
+			StringBuilder expectedStageTwo = new StringBuilder();
+			for (String motif : stageTwo) {
+				if (readString.indexOf(motif) >= 0) {
+					if (expectedStageTwo.length() > 0) expectedStageTwo.append(MotifUtils.M_D);
+					expectedStageTwo.append(motif);
+				}
+			}
+			
+			assertEquals(expectedStageOne, stringMca.stageOneSearchBases(sam.getReadBases()));
+			assertEquals(expectedStageOne, stringMca.stageOneSearch(readString));
+			assertEquals(expectedStageTwo.length() == 0 ? null : expectedStageTwo.toString(), stringMca.getStageTwoMotifsFromBases(sam.getReadBases()));
+			assertEquals(expectedStageTwo.length() == 0 ? null : expectedStageTwo.toString(), stringMca.getStageTwoMotifs(readString));
+		}
+	}
+	
 	@Test
 	public void noValidCountersInMap() {
 		Map<ChrPosition, RegionCounter> map = new HashMap<>();
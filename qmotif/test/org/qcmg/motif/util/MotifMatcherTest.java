@@ -0,0 +1,109 @@
+package org.qcmg.motif.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.qcmg.motif.Motifs;
+
+public class MotifMatcherTest {
+
+	private static byte [] bytes(String s) {
+		return s.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private static BitSet indexOf(List<String> motifs, String read) {
+		BitSet bs = new BitSet();
+		for (int i = 0 ; i < motifs.size() ; i++) {
+			if (read.indexOf(motifs.get(i)) >= 0) bs.set(i);
+		}
+		return bs;
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void nullList() {
+		new MotifMatcher(null);
+	}
+
+	@Test
+	public void noMotifs() {
+		MotifMatcher mm = new MotifMatcher(Collections.<String>emptyList());
+		assertEquals(0, mm.size());
+		assertFalse(mm.containsAny(bytes("ACGT")));
+		assertTrue(mm.findAll(bytes("ACGT")).isEmpty());
+	}
+
+	@Test
+	public void nullAndEmptyBases() {
+		MotifMatcher mm = new MotifMatcher(Arrays.asList("TTAGGG"));
+		assertFalse(mm.containsAny(null));
+		assertFalse(mm.containsAny(new byte[0]));
+		assertTrue(mm.findAll(null).isEmpty());
+		assertTrue(mm.findAll(new byte[0]).isEmpty());
+	}
+
+	@Test
+	public void overlappingAndContainedMotifs() {
+		List<String> motifs = Arrays.asList("TTAGGGTTAGGG", "GGGTTA", "AGG", "CCCTAA", "TTAGGGTTAGGGTTAGGG");
+		MotifMatcher mm = new MotifMatcher(motifs);
+		String read = "ACGTTTAGGGTTAGGGACGT";
+		assertTrue(mm.containsAny(bytes(read)));
+		assertEquals(indexOf(motifs, read), mm.findAll(bytes(read)));
+
+		read = "NNNCCCTAANNN";
+		assertEquals(indexOf(motifs, read), mm.findAll(bytes(read)));
+		read = "NNNCCCTANNN";
+		assertFalse(mm.containsAny(bytes(read)));
+		assertTrue(mm.findAll(bytes(read)).isEmpty());
+	}
+
+	@Test
+	public void caseSensitive() {
+		MotifMatcher mm = new MotifMatcher(Arrays.asList("TTAGGG"));
+		assertFalse(mm.containsAny(bytes("ttaggg")));
+		assertTrue(mm.containsAny(bytes("tTTAGGG")));
+	}
+
+	@Test
+	public void reverseComplements() {
+		Motifs motifs = new Motifs(true, "TTAGGGTTAGGG", "TCAGGG");
+		MotifMatcher mm = new MotifMatcher(motifs.getMotifs());
+		String read = "ACGCCCTGAACGTCCCTAACCCTAAACGT";
+		assertEquals(indexOf(motifs.getMotifs(), read), mm.findAll(bytes(read)));
+		assertEquals(2, mm.findAll(bytes(read)).cardinality());
+	}
+
+	@Test
+	public void matchesIndexOf() {
+		Random random = new Random(42);
+		char [] bases = new char[] {'A', 'C', 'G', 'T', 'N'};
+		for (int t = 0 ; t < 200 ; t++) {
+			List<String> motifs = new ArrayList<>();
+			int noOfMotifs = 1 + random.nextInt(20);
+			for (int i = 0 ; i < noOfMotifs ; i++) {
+				char [] motif = new char[1 + random.nextInt(8)];
+				for (int j = 0 ; j < motif.length ; j++) motif[j] = bases[random.nextInt(4)];
+				motifs.add(new String(motif));
+			}
+			MotifMatcher mm = new MotifMatcher(motifs);
+			for (int r = 0 ; r < 50 ; r++) {
+				char [] read = new char[random.nextInt(150)];
+				for (int j = 0 ; j < read.length ; j++) read[j] = bases[random.nextInt(bases.length)];
+				String readString = new String(read);
+				BitSet expected = indexOf(motifs, readString);
+				assertEquals(expected, mm.findAll(bytes(readString)));
+				assertEquals( ! expected.isEmpty(), mm.containsAny(bytes(readString)));
+			}
+		}
+	}
+
+}
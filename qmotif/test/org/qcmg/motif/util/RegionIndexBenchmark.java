@@ -0,0 +1,93 @@
+package org.qcmg.motif.util;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.ini4j.Ini;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qcmg.common.model.ChrPointPosition;
+import org.qcmg.common.model.ChrPosition;
+import org.qcmg.common.model.ChrRangePosition;
+import org.qcmg.common.util.ChrPositionUtils;
+
+/**
+ * JMH benchmark comparing {@link RegionIndex} lookups with the scan over the region map that MotifCoverageAlgorithm used to do for every read.
+ * <p>
+ * The regions are those that a CoverageJob would create for chr1 (hg19) from the window size and includes/excludes in the supplied ini file.
+ * Not a unit test - run from the qmotif directory with: java -cp &lt;test classpath&gt; org.qcmg.motif.util.RegionIndexBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionIndexBenchmark {
+
+	private static final ChrPosition CHR1 = new ChrRangePosition("chr1", 1, 249250621);
+	private static final int NO_OF_READS = 1000;
+
+	@Param({"qmotif.ini"})
+	public String iniFile;
+
+	private Map<ChrPosition, RegionCounter> regions;
+	private RegionIndex index;
+	private ChrPosition [] reads;
+
+	@Setup
+	public void setup() throws Exception {
+		Ini ini = new Ini(new File(iniFile));
+		int windowSize = Integer.parseInt(IniUtils.getEntry(ini, MotifConstants.PARAMS, "window_size"));
+		List<ChrPosition> includes = MotifUtils.getPositionsForChromosome(CHR1, IniUtils.getPositions(ini, "INCLUDES"));
+		List<ChrPosition> excludes = MotifUtils.getPositionsForChromosome(CHR1, IniUtils.getPositions(ini, "EXCLUDES"));
+
+		regions = MotifUtils.getRegionMap(CHR1, windowSize, includes, excludes);
+		index = new RegionIndex(regions);
+
+		Random random = new Random(42);
+		reads = new ChrPosition[NO_OF_READS];
+		for (int i = 0 ; i < NO_OF_READS ; i++) {
+			reads[i] = new ChrPointPosition(CHR1.getChromosome(), random.nextInt(CHR1.getEndPosition()) + 1);
+		}
+	}
+
+	@Benchmark
+	public void linearScan(Blackhole bh) {
+		for (ChrPosition read : reads) {
+			for (ChrPosition cp : regions.keySet()) {
+				if (ChrPositionUtils.doChrPositionsOverlapPositionOnly(read, cp)) {
+					bh.consume(regions.get(cp));
+					break;
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public void regionIndex(Blackhole bh) {
+		for (ChrPosition read : reads) {
+			bh.consume(index.getCounter(read));
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RegionIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+}
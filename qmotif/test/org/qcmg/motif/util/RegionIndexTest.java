@@ -0,0 +1,113 @@
+package org.qcmg.motif.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.qcmg.common.model.ChrPointPosition;
+import org.qcmg.common.model.ChrPosition;
+import org.qcmg.common.model.ChrRangePosition;
+import org.qcmg.common.util.ChrPositionUtils;
+
+public class RegionIndexTest {
+
+	@Test(expected=IllegalArgumentException.class)
+	public void nullMap() {
+		new RegionIndex(null);
+	}
+
+	@Test
+	public void emptyMap() {
+		RegionIndex index = new RegionIndex(new HashMap<>());
+		assertEquals(0, index.size());
+		assertNull(index.getCounter(null));
+		assertNull(index.getCounter(new ChrPointPosition("chr1", 100)));
+	}
+
+	@Test
+	public void boundaries() {
+		Map<ChrPosition, RegionCounter> map = new HashMap<>();
+		RegionCounter rc100To200 = new RegionCounter(RegionType.GENOMIC);
+		RegionCounter rc300To400 = new RegionCounter(RegionType.INCLUDES);
+		map.put(new ChrRangePosition("chr1", 100, 200), rc100To200);
+		map.put(new ChrRangePosition("chr1", 300, 400), rc300To400);
+		RegionIndex index = new RegionIndex(map);
+
+		assertNull(index.getCounter(new ChrPointPosition("chr1", 99)));
+		assertEquals(rc100To200, index.getCounter(new ChrPointPosition("chr1", 100)));
+		assertEquals(rc100To200, index.getCounter(new ChrPointPosition("chr1", 200)));
+		assertNull(index.getCounter(new ChrPointPosition("chr1", 201)));
+		assertNull(index.getCounter(new ChrPointPosition("chr1", 299)));
+		assertEquals(rc300To400, index.getCounter(new ChrPointPosition("chr1", 300)));
+		assertEquals(rc300To400, index.getCounter(new ChrRangePosition("chr1", 250, 350)));
+		assertEquals(rc300To400, index.getCounter(new ChrPointPosition("chr1", 400)));
+		assertNull(index.getCounter(new ChrPointPosition("chr1", 401)));
+	}
+
+	@Test
+	public void shortRegionHiddenBehindLongOne() {
+		Map<ChrPosition, RegionCounter> map = new HashMap<>();
+		RegionCounter rcLong = new RegionCounter(RegionType.GENOMIC);
+		RegionCounter rcShort = new RegionCounter(RegionType.INCLUDES);
+		map.put(new ChrRangePosition("chr1", 1, 1000), rcLong);
+		map.put(new ChrRangePosition("chr1", 10, 20), rcShort);
+		map.put(new ChrRangePosition("chr1", 2000, 3000), new RegionCounter(RegionType.GENOMIC));
+		RegionIndex index = new RegionIndex(map);
+
+		assertEquals(rcShort, index.getCounter(new ChrPointPosition("chr1", 15)));
+		// the short region starts later, but the long one still needs to be found
+		assertEquals(rcLong, index.getCounter(new ChrPointPosition("chr1", 500)));
+		assertNull(index.getCounter(new ChrPointPosition("chr1", 1500)));
+	}
+
+	@Test
+	public void matchesLinearScan() {
+		Random random = new Random(42);
+		Map<ChrPosition, RegionCounter> map = new HashMap<>();
+		for (int i = 0 ; i < 500 ; i++) {
+			int start = random.nextInt(1000000) + 1;
+			map.put(new ChrRangePosition("chr1", start, start + random.nextInt(5000)), new RegionCounter(RegionType.GENOMIC));
+		}
+		RegionIndex index = new RegionIndex(map);
+
+		for (int i = 0 ; i < 10000 ; i++) {
+			int start = random.nextInt(1010000) + 1;
+			ChrPosition read = i % 2 == 0 ? new ChrPointPosition("chr1", start) : new ChrRangePosition("chr1", start, start + random.nextInt(200));
+
+			List<RegionCounter> overlapping = new ArrayList<>();
+			for (Map.Entry<ChrPosition, RegionCounter> e : map.entrySet()) {
+				if (ChrPositionUtils.doChrPositionsOverlapPositionOnly(read, e.getKey())) overlapping.add(e.getValue());
+			}
+			RegionCounter rc = index.getCounter(read);
+			if (overlapping.isEmpty()) {
+				assertNull(rc);
+			} else {
+				assertTrue(overlapping.contains(rc));
+			}
+		}
+	}
+
+	@Test
+	public void regionMap() {
+		ChrPosition contig = new ChrRangePosition("chr1", 1, 249250621);
+		List<ChrPosition> includes = new ArrayList<>();
+		includes.add(new ChrRangePosition("chr1", 10001, 12464));
+		includes.add(new ChrRangePosition("chr1", 249237907, 249240620));
+		Map<ChrPosition, RegionCounter> map = MotifUtils.getRegionMap(contig, 10000, includes, null);
+		RegionIndex index = new RegionIndex(map);
+		assertEquals(map.size(), index.size());
+
+		assertEquals(RegionType.INCLUDES, index.getCounter(new ChrPointPosition("chr1", 10001)).getType());
+		assertEquals(RegionType.INCLUDES, index.getCounter(new ChrPointPosition("chr1", 249240620)).getType());
+		assertEquals(RegionType.GENOMIC, index.getCounter(new ChrPointPosition("chr1", 5000)).getType());
+		assertEquals(RegionType.GENOMIC, index.getCounter(new ChrPointPosition("chr1", 100000000)).getType());
+	}
+
+}
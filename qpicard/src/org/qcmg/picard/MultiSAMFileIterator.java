@@ -7,49 +7,118 @@
 package org.qcmg.picard;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.NoSuchElementException;
 import java.util.Vector;
 
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SAMRecord;
 
+/**
+ * Merges the records from a number of coordinate sorted readers into a single coordinate sorted stream.
+ * <p>
+ * A loser (tournament) tree is used, so that moving onto the next record costs log(k) comparisons, where k is the number of readers.
+ * Each reader has a single {@link SAMRecordWrapper} that is re-used for each of its records.
+ * Records that compare as equal are returned in reader order.
+ */
 public final class MultiSAMFileIterator implements Iterator<SAMRecord> {
-	private SAMRecordWrapper nextWrapper;
 	private SamReader currentFileReader;
 	private final SAMRecordWrapperComparator comparator = new SAMRecordWrapperComparator();
-	
-	//OJH switched this from a HashSet to a List - don't think Set properties are being used, and is more expensive when adding
-//	private final HashSet<SAMRecordWrapper> nextWrappers = new HashSet<>();
-//	private final Queue<SAMRecordWrapper> nextWrappers = new PriorityQueue<>(comparator);
-	private final List<SAMRecordWrapper> nextWrappers = new ArrayList<>();
+
+	/*
+	 * leaves of the tree - one per reader. A wrapper with a null record is exhausted
+	 */
+	private final SAMRecordWrapper[] wrappers;
+
+	/*
+	 * tree[0] holds the index of the overall winner (the wrapper holding the next record),
+	 * tree[1..k-1] hold the index of the loser of the match played at that node.
+	 * The (implicit) leaf for wrapper i sits at node k + i, and the children of node n are 2n and 2n + 1.
+	 */
+	private final int[] tree;
 
 	MultiSAMFileIterator(final Vector<SamReader> fileReaders) {
+		List<SAMRecordWrapper> list = new ArrayList<>(fileReaders.size());
 		for (final SamReader reader : fileReaders) {
 			Iterator<SAMRecord> i = reader.iterator();
 			if (i.hasNext()) {
-				SAMRecord record = i.next();
-				SAMRecordWrapper wrapper = new SAMRecordWrapper(record, i, reader);
-				nextWrappers.add(wrapper);
+				list.add(new SAMRecordWrapper(i.next(), i, reader));
+			}
+		}
+		wrappers = list.toArray(new SAMRecordWrapper[list.size()]);
+		tree = new int[Math.max(1, wrappers.length)];
+		build();
+	}
+
+	private void build() {
+		final int k = wrappers.length;
+		if (k <= 1) {
+			return;
+		}
+		final int[] winners = new int[2 * k];
+		for (int i = 0 ; i < k ; i++) {
+			winners[k + i] = i;
+		}
+		for (int node = k - 1 ; node >= 1 ; node--) {
+			final int a = winners[2 * node];
+			final int b = winners[2 * node + 1];
+			if (beats(a, b)) {
+				winners[node] = a;
+				tree[node] = b;
+			} else {
+				winners[node] = b;
+				tree[node] = a;
+			}
+		}
+		tree[0] = winners[1];
+	}
+
+	/**
+	 * Returns true if wrapper a holds a record that should be returned before that held by wrapper b.
+	 * Exhausted wrappers lose to everything.
+	 */
+	private boolean beats(final int a, final int b) {
+		final SAMRecord recordA = wrappers[a].getRecord();
+		final SAMRecord recordB = wrappers[b].getRecord();
+		if (null == recordA) return false;
+		if (null == recordB) return true;
+		final int diff = comparator.compare(wrappers[a], wrappers[b]);
+		return diff < 0 || (diff == 0 && a < b);
+	}
+
+	/**
+	 * Re-plays the matches on the path from the winning leaf to the root, after the winner has moved onto its next record
+	 */
+	private void replay() {
+		int winner = tree[0];
+		for (int node = (winner + wrappers.length) >>> 1 ; node >= 1 ; node >>>= 1) {
+			if (beats(tree[node], winner)) {
+				final int temp = tree[node];
+				tree[node] = winner;
+				winner = temp;
 			}
 		}
-		march();
+		tree[0] = winner;
 	}
 
 	@Override
 	public boolean hasNext() {
-		return null != nextWrapper;
+		return wrappers.length > 0 && null != wrappers[tree[0]].getRecord();
 	}
 
 	@Override
 	public SAMRecord next() {
-		SAMRecord result = nextWrapper.getRecord();
-		currentFileReader = nextWrapper.getReader();
-		march();
+		if ( ! hasNext()) {
+			throw new NoSuchElementException();
+		}
+		final SAMRecordWrapper wrapper = wrappers[tree[0]];
+		final SAMRecord result = wrapper.getRecord();
+		currentFileReader = wrapper.getReader();
+
+		final Iterator<SAMRecord> iter = wrapper.getRecordIterator();
+		wrapper.setRecord(iter.hasNext() ? iter.next() : null);
+		replay();
 		return result;
 	}
 
@@ -57,33 +126,6 @@ public final class MultiSAMFileIterator implements Iterator<SAMRecord> {
 		return currentFileReader;
 	}
 
-	private void march() {
-//		nextWrapper = nextWrappers.poll();
-//		if (null != nextWrapper) {
-//			step(nextWrapper);
-//		}
-		if (nextWrappers.isEmpty()) {
-			nextWrapper = null;
-		} else {
-			nextWrappers.sort(comparator);
-			nextWrapper = nextWrappers.remove(0);
-			step(nextWrapper);
-//			nextWrapper = Collections.min(nextWrappers, comparator);
-//			step(nextWrapper);
-		}
-	}
-
-	private void step(final SAMRecordWrapper wrapper) {
-		Iterator<SAMRecord> iter = wrapper.getRecordIterator();
-		SamReader reader = wrapper.getReader();
-//		nextWrappers.remove(wrapper);
-		if (iter.hasNext()) {
-//			SAMRecord record = iter.next();
-//			SAMRecordWrapper temp = new SAMRecordWrapper(record, iter, reader);
-			nextWrappers.add(new SAMRecordWrapper(iter.next(), iter, reader));
-		}
-	}
-
 	@Override
 	public void remove() {
 		throw new UnsupportedOperationException();
@@ -11,22 +11,49 @@ import java.util.Iterator;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SAMRecord;
 
+/**
+ * Holds the current record from a reader, along with its reference index and alignment start (as primitives) for quick coordinate comparisons.
+ * Instances are re-used by {@link MultiSAMFileIterator} as it moves through each reader.
+ */
 public final class SAMRecordWrapper {
-    private final SAMRecord record;
+    private SAMRecord record;
+    private int referenceIndex;
+    private int alignmentStart;
     private final Iterator<SAMRecord> iterator;
     private final SamReader reader;
 
     SAMRecordWrapper(final SAMRecord record, final Iterator<SAMRecord> iterator,
                      final SamReader reader) {
-        this.record = record;
         this.iterator = iterator;
         this.reader = reader;
+        setRecord(record);
+    }
+
+    /**
+     * Unmapped records (reference index of -1) sort after all mapped records, irrespective of their alignment start,
+     * as is the case with {@link htsjdk.samtools.SAMRecordCoordinateComparator}
+     */
+    void setRecord(final SAMRecord record) {
+        this.record = record;
+        if (null != record) {
+            final int index = record.getReferenceIndex();
+            this.referenceIndex = index == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ? Integer.MAX_VALUE : index;
+            this.alignmentStart = index == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ? 0 : record.getAlignmentStart();
+        }
     }
 
     public SAMRecord getRecord() {
         return record;
     }
 
+    int getReferenceIndex() {
+        return referenceIndex;
+    }
+
+    int getAlignmentStart() {
+        return alignmentStart;
+    }
+
     Iterator<SAMRecord> getRecordIterator() {
         return iterator;
     }
@@ -10,11 +10,22 @@ import java.util.Comparator;
 
 import htsjdk.samtools.SAMRecordCoordinateComparator;
 
+/**
+ * Coordinate order comparator.
+ * The reference index and alignment start cached by the wrappers are compared first,
+ * and only if they are the same is {@link SAMRecordCoordinateComparator} called upon to break the tie.
+ */
 public final class SAMRecordWrapperComparator implements
 		Comparator<SAMRecordWrapper> {
 	private final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
 
 	public int compare(final SAMRecordWrapper o1, final SAMRecordWrapper o2) {
+		if (o1.getReferenceIndex() != o2.getReferenceIndex()) {
+			return o1.getReferenceIndex() < o2.getReferenceIndex() ? -1 : 1;
+		}
+		if (o1.getAlignmentStart() != o2.getAlignmentStart()) {
+			return o1.getAlignmentStart() < o2.getAlignmentStart() ? -1 : 1;
+		}
 		return comparator.compare(o1.getRecord(), o2.getRecord());
 	}
 }
@@ -0,0 +1,181 @@
+package org.qcmg.picard;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+
+/**
+ * JMH benchmark comparing the loser tree merge in {@link MultiSAMFileIterator} with the sort-the-list-for-every-record merge that it replaced.
+ * <p>
+ * Records are held in memory (readers are proxies that just hand out an iterator) so that the cost of the merge is all that is measured.
+ * Not a unit test - run with: java -cp &lt;test classpath&gt; org.qcmg.picard.MultiSAMFileIteratorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiSAMFileIteratorBenchmark {
+
+	private static final int TOTAL_RECORDS = 200000;
+
+	@Param({"2", "8", "32", "64"})
+	public int k;
+
+	private List<List<SAMRecord>> recordsPerReader;
+
+	@Setup
+	public void setup() {
+		SAMSequenceDictionary dict = new SAMSequenceDictionary();
+		for (int i = 1 ; i <= 4 ; i++) {
+			dict.addSequence(new SAMSequenceRecord("chr" + i, 100000000));
+		}
+		SAMFileHeader header = new SAMFileHeader();
+		header.setSequenceDictionary(dict);
+		header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+
+		Random random = new Random(42);
+		recordsPerReader = new ArrayList<>(k);
+		for (int i = 0 ; i < k ; i++) {
+			recordsPerReader.add(new ArrayList<>());
+		}
+		/*
+		 * records are generated in coordinate order and dealt out to the readers at random, as would be the case for lane level bams
+		 */
+		int position = 1;
+		for (int i = 0 ; i < TOTAL_RECORDS ; i++) {
+			position += random.nextInt(20);
+			SAMRecord rec = new SAMRecord(header);
+			rec.setReadName("read_" + i);
+			rec.setReferenceIndex(i * 4 / TOTAL_RECORDS);
+			rec.setAlignmentStart(position);
+			rec.setReadNegativeStrandFlag(random.nextBoolean());
+			recordsPerReader.get(random.nextInt(k)).add(rec);
+		}
+	}
+
+	private static SAMRecordIterator iterator(final Iterator<SAMRecord> iter) {
+		return new SAMRecordIterator() {
+			@Override
+			public boolean hasNext() {
+				return iter.hasNext();
+			}
+			@Override
+			public SAMRecord next() {
+				return iter.next();
+			}
+			@Override
+			public void close() {}
+			@Override
+			public SAMRecordIterator assertSorted(SortOrder sortOrder) {
+				return this;
+			}
+		};
+	}
+
+	private Vector<SamReader> getReaders() {
+		Vector<SamReader> readers = new Vector<>(k);
+		for (final List<SAMRecord> records : recordsPerReader) {
+			readers.add((SamReader) Proxy.newProxyInstance(SamReader.class.getClassLoader(), new Class<?>[] {SamReader.class}, (proxy, method, args) -> {
+				if (method.getName().equals("iterator")) {
+					return iterator(records.iterator());
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}));
+		}
+		return readers;
+	}
+
+	@Benchmark
+	public void loserTree(Blackhole bh) {
+		MultiSAMFileIterator iter = new MultiSAMFileIterator(getReaders());
+		while (iter.hasNext()) {
+			bh.consume(iter.next());
+		}
+	}
+
+	@Benchmark
+	public void sortedList(Blackhole bh) {
+		SortedListIterator iter = new SortedListIterator(getReaders());
+		while (iter.hasNext()) {
+			bh.consume(iter.next());
+		}
+	}
+
+	/**
+	 * The previous MultiSAMFileIterator implementation
+	 */
+	static final class SortedListIterator implements Iterator<SAMRecord> {
+		private SAMRecordWrapper nextWrapper;
+		private final SAMRecordWrapperComparator comparator = new SAMRecordWrapperComparator();
+		private final List<SAMRecordWrapper> nextWrappers = new ArrayList<>();
+
+		SortedListIterator(final Vector<SamReader> fileReaders) {
+			for (final SamReader reader : fileReaders) {
+				Iterator<SAMRecord> i = reader.iterator();
+				if (i.hasNext()) {
+					nextWrappers.add(new SAMRecordWrapper(i.next(), i, reader));
+				}
+			}
+			march();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return null != nextWrapper;
+		}
+
+		@Override
+		public SAMRecord next() {
+			SAMRecord result = nextWrapper.getRecord();
+			march();
+			return result;
+		}
+
+		private void march() {
+			if (nextWrappers.isEmpty()) {
+				nextWrapper = null;
+			} else {
+				nextWrappers.sort(comparator);
+				nextWrapper = nextWrappers.remove(0);
+				Iterator<SAMRecord> iter = nextWrapper.getRecordIterator();
+				if (iter.hasNext()) {
+					nextWrappers.add(new SAMRecordWrapper(iter.next(), iter, nextWrapper.getReader()));
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MultiSAMFileIteratorBenchmark.class.getSimpleName()).build()).run();
+	}
+}
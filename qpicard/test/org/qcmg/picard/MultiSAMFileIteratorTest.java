@@ -1,5 +1,7 @@
 package org.qcmg.picard;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -7,13 +9,23 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Vector;
 
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 
 import org.junit.After;
 import org.junit.Before;
@@ -213,4 +225,105 @@ public class MultiSAMFileIteratorTest {
 		}
 		System.out.println("time taken for set: " + (System.currentTimeMillis() - start));
 	}
+	
+	private static SAMRecordIterator iterator(final Iterator<SAMRecord> iter) {
+		return new SAMRecordIterator() {
+			@Override
+			public boolean hasNext() {
+				return iter.hasNext();
+			}
+			@Override
+			public SAMRecord next() {
+				return iter.next();
+			}
+			@Override
+			public void close() {}
+			@Override
+			public SAMRecordIterator assertSorted(SortOrder sortOrder) {
+				return this;
+			}
+		};
+	}
+
+	private static SamReader getInMemoryReader(final List<SAMRecord> records) {
+		return (SamReader) Proxy.newProxyInstance(SamReader.class.getClassLoader(), new Class<?>[] {SamReader.class}, (proxy, method, args) -> {
+			if (method.getName().equals("iterator")) {
+				return iterator(records.iterator());
+			}
+			if (method.getName().equals("equals")) {
+				return proxy == args[0];
+			}
+			throw new UnsupportedOperationException(method.getName());
+		});
+	}
+	
+	@Test
+	public void mergeOrder() {
+		SAMSequenceDictionary dict = new SAMSequenceDictionary();
+		dict.addSequence(new SAMSequenceRecord("chr1", 1000000));
+		dict.addSequence(new SAMSequenceRecord("chr2", 1000000));
+		SAMFileHeader header = new SAMFileHeader();
+		header.setSequenceDictionary(dict);
+		
+		Random random = new Random(1);
+		for (int k : new int[] {1, 2, 3, 5, 8, 13}) {
+			List<List<SAMRecord>> perReader = new ArrayList<>();
+			for (int i = 0 ; i < k ; i++) {
+				perReader.add(new ArrayList<>());
+			}
+			int position = 1;
+			for (int i = 0 ; i < 1000 ; i++) {
+				position += random.nextInt(3);
+				SAMRecord rec = new SAMRecord(header);
+				rec.setReadName("read_" + i);
+				if (i < 900) {
+					rec.setReferenceIndex(i < 500 ? 0 : 1);
+					rec.setAlignmentStart(position);
+				} else {
+					// unmapped records come last
+					rec.setReferenceIndex(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX);
+					rec.setReadUnmappedFlag(true);
+				}
+				perReader.get(random.nextInt(k)).add(rec);
+			}
+			
+			Vector<SamReader> readers = new Vector<>();
+			for (List<SAMRecord> l : perReader) {
+				readers.add(getInMemoryReader(l));
+			}
+			/*
+			 * an empty reader shouldn't upset things
+			 */
+			readers.add(getInMemoryReader(new ArrayList<>()));
+			
+			MultiSAMFileIterator iter = new MultiSAMFileIterator(readers);
+			SAMRecordCoordinateComparator comp = new SAMRecordCoordinateComparator();
+			SAMRecord previous = null;
+			int count = 0;
+			while (iter.hasNext()) {
+				SAMRecord rec = iter.next();
+				if (null != previous) {
+					assertTrue(comp.fileOrderCompare(previous, rec) <= 0);
+				}
+				assertTrue(perReader.get(readers.indexOf(iter.getCurrentSAMFileReader())).contains(rec));
+				previous = rec;
+				count++;
+			}
+			assertEquals(1000, count);
+		}
+	}
+	
+	@Test
+	public void noRecords() {
+		Vector<SamReader> readers = new Vector<>();
+		MultiSAMFileIterator iter = new MultiSAMFileIterator(readers);
+		assertFalse(iter.hasNext());
+		
+		readers.add(getInMemoryReader(new ArrayList<>()));
+		readers.add(getInMemoryReader(new ArrayList<>()));
+		iter = new MultiSAMFileIterator(readers);
+		assertFalse(iter.hasNext());
+		thrown.expect(NoSuchElementException.class);
+		iter.next();
+	}
 }
@@ -66,6 +66,7 @@ public final class Options {
 	private boolean getForwardElements = true;
 	private boolean getReverseElements = true;
 	private boolean bamOverride = false;
+	private boolean columnarStore = false;
 	private Integer lowReadCount;
 	private Integer percentnonref;
 	private static final String VERSION_OPTION = Messages.getMessage("VERSION_OPTION");
@@ -232,6 +233,15 @@ public final class Options {
 			bamOverride = true;
 		}
 		
+		String store = generalSection.get("store");
+		if (store != null) {
+			if (store.equals("columnar")) {
+				columnarStore = true;
+			} else if ( ! store.equals("hdf")) {
+				throw new QPileupException("UNKNOWN_STORE", store);
+			}
+		}
+		
 		if (mode.equals("merge")) {
 			Section merged = ini.get("merge");		
 			this.inputHDFs = merged.getAll("input_hdf");			 
@@ -842,6 +852,13 @@ public final class Options {
 	public boolean isBamOverride() {
 		return bamOverride;
 	}
+	
+	/**
+	 * @return true if a new pileup (bootstrap and merge modes) should keep its position and strand datasets in a columnar store rather than in the HDF file
+	 */
+	public boolean isColumnarStore() {
+		return columnarStore;
+	}
 
 	public Integer getPercentNonRef() {
 		return this.percentnonref;
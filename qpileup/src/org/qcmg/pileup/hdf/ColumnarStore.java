@@ -0,0 +1,286 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.pileup.hdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.qcmg.pileup.QPileupException;
+
+/**
+ * {@link PileupStore} that keeps each dataset in its own flat file of little endian values under a directory alongside the HDF file
+ * (see {@link #getDirectory(String)}), eg. <code>/chr1/forward/baseA</code> is held in <code>&lt;hdf&gt;.columns/chr1/forward/baseA.i64</code>.
+ * <p>
+ * Files are memory mapped in segments of {@link #SEGMENT_SIZE} elements, which are mapped when first used. Reads and writes are bulk copies to and from the mapped segments,
+ * so there is no lock between threads working on different blocks, or even on the same dataset. Files are created at full length but are sparse,
+ * so the blocks of a freshly bootstrapped pileup take no space until something is written to them.
+ */
+public class ColumnarStore implements PileupStore {
+
+	public static final String SUFFIX = ".columns";
+	static final String INT_EXTENSION = ".i32";
+	static final String LONG_EXTENSION = ".i64";
+	static final int SEGMENT_SIZE = 1 << 24;
+
+	private final File directory;
+	private final int segmentSize;
+	private final ConcurrentMap<String, Column> columns = new ConcurrentHashMap<>();
+
+	public ColumnarStore(File directory, boolean create) throws Exception {
+		this(directory, create, SEGMENT_SIZE);
+	}
+
+	ColumnarStore(File directory, boolean create, int segmentSize) throws Exception {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		if (create) {
+			if (directory.exists()) {
+				delete(directory);
+			}
+			if ( ! directory.mkdirs()) {
+				throw new QPileupException("CREATE_ERROR", "directory", directory.getAbsolutePath());
+			}
+		} else if ( ! directory.isDirectory()) {
+			throw new QPileupException("NO_FILE", directory.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * @return the directory that holds the columnar datasets of the supplied HDF file
+	 */
+	public static File getDirectory(String hdfFileName) {
+		return new File(hdfFileName + SUFFIX);
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public boolean hasDataset(String datasetName) {
+		return columns.containsKey(datasetName) || getFile(datasetName, false).exists() || getFile(datasetName, true).exists();
+	}
+
+	@Override
+	public void createDataset(String datasetName, int length, boolean isLong, Object array) throws Exception {
+		Column existing = columns.remove(datasetName);
+		if (null != existing) {
+			existing.flush();
+		}
+		getFile(datasetName, ! isLong).delete();
+
+		File file = getFile(datasetName, isLong);
+		file.getParentFile().mkdirs();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+			raf.setLength((long) length * (isLong ? 8 : 4));
+		}
+		if (null != array) {
+			writeDatasetBlock(datasetName, 0, length, array);
+		}
+	}
+
+	@Override
+	public Object readDatasetBlock(String datasetName, int startIndex, int size) throws Exception {
+		Column column = getColumn(datasetName);
+		if (size == -1) {
+			size = column.length - startIndex;
+		}
+		column.checkRange(startIndex, size);
+
+		if (column.isLong) {
+			long [] data = new long[size];
+			for (int done = 0 ; done < size ; ) {
+				int index = startIndex + done;
+				LongBuffer segment = column.getLongSegment(index / segmentSize);
+				int n = Math.min(size - done, segment.limit() - index % segmentSize);
+				segment.position(index % segmentSize);
+				segment.get(data, done, n);
+				done += n;
+			}
+			return data;
+		} else {
+			int [] data = new int[size];
+			for (int done = 0 ; done < size ; ) {
+				int index = startIndex + done;
+				IntBuffer segment = column.getIntSegment(index / segmentSize);
+				int n = Math.min(size - done, segment.limit() - index % segmentSize);
+				segment.position(index % segmentSize);
+				segment.get(data, done, n);
+				done += n;
+			}
+			return data;
+		}
+	}
+
+	@Override
+	public void writeDatasetBlock(String datasetName, int startIndex, int length, Object array) throws Exception {
+		Column column = getColumn(datasetName);
+		column.checkRange(startIndex, length);
+
+		if (column.isLong) {
+			long [] data = (long[]) array;
+			for (int done = 0 ; done < length ; ) {
+				int index = startIndex + done;
+				LongBuffer segment = column.getLongSegment(index / segmentSize);
+				int n = Math.min(length - done, segment.limit() - index % segmentSize);
+				segment.position(index % segmentSize);
+				segment.put(data, done, n);
+				done += n;
+			}
+		} else {
+			int [] data = (int[]) array;
+			for (int done = 0 ; done < length ; ) {
+				int index = startIndex + done;
+				IntBuffer segment = column.getIntSegment(index / segmentSize);
+				int n = Math.min(length - done, segment.limit() - index % segmentSize);
+				segment.position(index % segmentSize);
+				segment.put(data, done, n);
+				done += n;
+			}
+		}
+	}
+
+	/**
+	 * Writes any changes in the mapped segments back to their files, and releases the segments (they are mapped again if the store is used after this)
+	 */
+	@Override
+	public void flush() throws Exception {
+		for (Column column : columns.values()) {
+			column.flush();
+		}
+		columns.clear();
+	}
+
+	public int getDatasetLength(String datasetName) throws Exception {
+		return getColumn(datasetName).length;
+	}
+
+	private Column getColumn(String datasetName) throws Exception {
+		Column column = columns.get(datasetName);
+		if (null == column) {
+			File file = getFile(datasetName, true);
+			boolean isLong = file.exists();
+			if ( ! isLong) {
+				file = getFile(datasetName, false);
+				if ( ! file.exists()) {
+					throw new QPileupException("FAILED_READ", datasetName);
+				}
+			}
+			Column newColumn = new Column(file, isLong, segmentSize);
+			column = columns.putIfAbsent(datasetName, newColumn);
+			if (null == column) {
+				column = newColumn;
+			}
+		}
+		return column;
+	}
+
+	private File getFile(String datasetName, boolean isLong) {
+		String path = datasetName.startsWith("/") ? datasetName.substring(1) : datasetName;
+		return new File(directory, path + (isLong ? LONG_EXTENSION : INT_EXTENSION));
+	}
+
+	static void delete(File file) throws QPileupException {
+		File [] children = file.listFiles();
+		if (null != children) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		if ( ! file.delete()) {
+			throw new QPileupException("DIR_DELETE_FAILURE", file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * A single dataset file, and its segments as they are mapped
+	 */
+	private static final class Column {
+		private final File file;
+		private final boolean isLong;
+		private final int length;
+		private final int segmentSize;
+		private final AtomicReferenceArray<MappedByteBuffer> segments;
+		private final AtomicReferenceArray<IntBuffer> intSegments;
+		private final AtomicReferenceArray<LongBuffer> longSegments;
+
+		Column(File file, boolean isLong, int segmentSize) {
+			this.file = file;
+			this.isLong = isLong;
+			this.segmentSize = segmentSize;
+			this.length = (int) (file.length() / (isLong ? 8 : 4));
+			int noOfSegments = (length + segmentSize - 1) / segmentSize;
+			segments = new AtomicReferenceArray<>(noOfSegments);
+			intSegments = new AtomicReferenceArray<>(isLong ? 0 : noOfSegments);
+			longSegments = new AtomicReferenceArray<>(isLong ? noOfSegments : 0);
+		}
+
+		void checkRange(int startIndex, int size) throws QPileupException {
+			if (startIndex < 0 || size < 0 || (long) startIndex + size > length) {
+				throw new QPileupException("BAD_INDEX", file.getName() + " " + startIndex + " size: " + size + " length: " + length);
+			}
+		}
+
+		/**
+		 * @return a view of the segment with its own position, so that callers can use it without affecting each other
+		 */
+		IntBuffer getIntSegment(int i) throws IOException {
+			IntBuffer segment = intSegments.get(i);
+			if (null == segment) {
+				intSegments.compareAndSet(i, null, map(i).asIntBuffer());
+				segment = intSegments.get(i);
+			}
+			return segment.duplicate();
+		}
+
+		LongBuffer getLongSegment(int i) throws IOException {
+			LongBuffer segment = longSegments.get(i);
+			if (null == segment) {
+				longSegments.compareAndSet(i, null, map(i).asLongBuffer());
+				segment = longSegments.get(i);
+			}
+			return segment.duplicate();
+		}
+
+		private MappedByteBuffer map(int i) throws IOException {
+			MappedByteBuffer segment = segments.get(i);
+			if (null == segment) {
+				int width = isLong ? 8 : 4;
+				long start = (long) i * segmentSize * width;
+				long size = (long) Math.min(segmentSize, length - i * segmentSize) * width;
+				// the mapping remains valid once the channel is closed
+				try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+					segment = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+					segment.order(ByteOrder.LITTLE_ENDIAN);
+				}
+				if ( ! segments.compareAndSet(i, null, segment)) {
+					segment = segments.get(i);
+				}
+			}
+			return segment;
+		}
+
+		void flush() {
+			for (int i = 0, len = segments.length() ; i < len ; i++) {
+				MappedByteBuffer segment = segments.get(i);
+				if (null != segment) {
+					segment.force();
+				}
+			}
+		}
+	}
+
+}
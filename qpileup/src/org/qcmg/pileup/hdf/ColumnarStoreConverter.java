@@ -0,0 +1,126 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.pileup.hdf;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.qcmg.pileup.QPileupException;
+import org.qcmg.pileup.model.Chromosome;
+import org.qcmg.pileup.model.StrandEnum;
+
+/**
+ * Moves the position and strand datasets of an existing pileup between its HDF file and a {@link ColumnarStore}.
+ * <p>
+ * <code>import</code> copies the datasets out of the HDF file into a new store alongside it, which {@link PileupHDF} uses from then on.
+ * The HDF copies are left in place (they go stale as the pileup is added to, and h5repack will reclaim their space).
+ * <code>export</code> copies the datasets from the store back into the HDF file, and removes the store.
+ * <p>
+ * Usage: java -cp &lt;qpileup classpath&gt; org.qcmg.pileup.hdf.ColumnarStoreConverter import|export &lt;hdf file&gt;
+ */
+public class ColumnarStoreConverter {
+
+	static final int BLOCK_SIZE = 1 << 20;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2 || ! (args[0].equals("import") || args[0].equals("export"))) {
+			System.err.println("Usage: ColumnarStoreConverter import|export <hdf file>");
+			System.exit(1);
+		}
+		if (args[0].equals("import")) {
+			importToStore(args[1]);
+		} else {
+			exportToHDF(args[1]);
+		}
+	}
+
+	/**
+	 * Copies the position and strand datasets of the HDF file into a new {@link ColumnarStore}
+	 */
+	public static void importToStore(String hdfFileName) throws Exception {
+		File directory = ColumnarStore.getDirectory(hdfFileName);
+		if (directory.exists()) {
+			throw new QPileupException("EXISTING_HDF", directory.getAbsolutePath());
+		}
+		PileupHDF hdf = new PileupHDF(hdfFileName, false, false);
+		ColumnarStore store = new ColumnarStore(directory, true);
+		hdf.open();
+		try {
+			for (Chromosome chromosome : hdf.getChromosomeLengths()) {
+				int length = chromosome.getTotalLength();
+				for (PileupDataset dataset : getDatasets(chromosome)) {
+					store.createDataset(dataset.name, length, dataset.isLong, null);
+					for (int start = 0 ; start < length ; start += BLOCK_SIZE) {
+						int size = Math.min(BLOCK_SIZE, length - start);
+						store.writeDatasetBlock(dataset.name, start, size, hdf.readH5ScalarDSBlock(dataset.name, start, size));
+					}
+				}
+			}
+			store.flush();
+		} catch (Exception e) {
+			// leave no partial store behind for PileupHDF to pick up
+			ColumnarStore.delete(directory);
+			throw e;
+		} finally {
+			hdf.close();
+		}
+	}
+
+	/**
+	 * Copies the datasets of the {@link ColumnarStore} of the HDF file back into the HDF file, and deletes the store
+	 */
+	public static void exportToHDF(String hdfFileName) throws Exception {
+		PileupHDF hdf = new PileupHDF(hdfFileName, false, false);
+		PileupStore store = hdf.getDataStore();
+		if (null == store) {
+			throw new QPileupException("NO_FILE", ColumnarStore.getDirectory(hdfFileName).getAbsolutePath());
+		}
+		hdf.open();
+		try {
+			for (Chromosome chromosome : hdf.getChromosomeLengths()) {
+				int length = chromosome.getTotalLength();
+				for (PileupDataset dataset : getDatasets(chromosome)) {
+					for (int start = 0 ; start < length ; start += BLOCK_SIZE) {
+						int size = Math.min(BLOCK_SIZE, length - start);
+						hdf.writeH5ScalarDSBlock(dataset.name, start, size, store.readDatasetBlock(dataset.name, start, size));
+					}
+				}
+			}
+		} finally {
+			hdf.close();
+		}
+		ColumnarStore.delete(ColumnarStore.getDirectory(hdfFileName));
+	}
+
+	/**
+	 * The position and strand datasets of a chromosome, named and typed as {@link PositionDS} and {@link StrandDS} create them
+	 */
+	static List<PileupDataset> getDatasets(Chromosome chromosome) {
+		List<PileupDataset> datasets = new ArrayList<>();
+		String positionGroup = chromosome.getHdfGroupName() + "/position/";
+		datasets.add(new PileupDataset(positionGroup + "position", true));
+		datasets.add(new PileupDataset(positionGroup + "reference", false));
+		StrandEnum[] members = StrandEnum.values();
+		for (String direction : new String[] {"forward", "reverse"}) {
+			for (int i = 0 ; i < members.length ; i++) {
+				boolean isLong = i >= StrandEnum.LONG_INDEX_START && i <= StrandEnum.LONG_INDEX_END;
+				datasets.add(new PileupDataset(chromosome.getHdfGroupName() + "/" + direction + "/" + members[i].toString(), isLong));
+			}
+		}
+		return datasets;
+	}
+
+	static final class PileupDataset {
+		final String name;
+		final boolean isLong;
+		PileupDataset(String name, boolean isLong) {
+			this.name = name;
+			this.isLong = isLong;
+		}
+	}
+
+}
@@ -0,0 +1,242 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.pileup.hdf;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of decompressed, block aligned sections of the numeric (<code>int[]</code> or <code>long[]</code>) datasets of a pileup.
+ * <p>
+ * Every call into the HDF5 library is serialised by hdf-java (its natives are <code>synchronized static</code>), so reads from the HDF file
+ * queue up one at a time however many worker threads there are. This cache reads (and so decompresses) a whole block - by default the chunk of the dataset -
+ * the first time any part of it is asked for, and serves later reads of the block by copying out of the cached array, without calling into the library at all.
+ * Lookups and copies take no locks, so threads reading cached blocks run side by side.
+ * <p>
+ * Writes must call {@link #invalidate(String, int, int)} once they have written to the file, so that the blocks they touch are read again.
+ * A per-dataset version makes sure that a block loaded while a write was in progress is not kept.
+ * <p>
+ * The number of cached elements is capped, and blocks that have not been read since the last sweep are evicted first (second chance).
+ */
+final class DatasetBlockCache {
+
+	/**
+	 * Where blocks that are not in the cache are read from - the HDF file
+	 */
+	interface Loader {
+		/**
+		 * @return an <code>int[]</code> or <code>long[]</code> of <code>size</code> elements starting at <code>startIndex</code>
+		 */
+		Object load(String datasetName, int startIndex, int size) throws Exception;
+
+		/**
+		 * @return the length of the dataset, and the length of the blocks that it should be cached in (eg. its chunk length)
+		 */
+		int[] getLengthAndBlockLength(String datasetName) throws Exception;
+	}
+
+	public static final long DEFAULT_MAX_ELEMENTS = 1L << 24;
+
+	private final Loader loader;
+	private final long maxElements;
+	private final ConcurrentMap<String, DatasetInfo> datasets = new ConcurrentHashMap<>();
+	private final ConcurrentMap<BlockKey, Block> blocks = new ConcurrentHashMap<>();
+	private final AtomicLong cachedElements = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	DatasetBlockCache(Loader loader, long maxElements) {
+		this.loader = loader;
+		this.maxElements = maxElements;
+	}
+
+	/**
+	 * @return an <code>int[]</code> or <code>long[]</code> of <code>size</code> elements starting at <code>startIndex</code>,
+	 * or the whole dataset if <code>size</code> is -1. The array belongs to the caller.
+	 */
+	Object read(String datasetName, int startIndex, int size) throws Exception {
+		DatasetInfo info = getInfo(datasetName);
+		if (size == -1) {
+			startIndex = 0;
+			size = info.length;
+		}
+		if (startIndex < 0 || size < 0 || (long) startIndex + size > info.length) {
+			throw new IndexOutOfBoundsException(datasetName + ": " + startIndex + " + " + size + " is outside of the dataset (length " + info.length + ")");
+		}
+
+		Object result = null;
+		int end = startIndex + size;
+		for (int block = startIndex / info.blockLength ; (long) block * info.blockLength < end ; block++) {
+			int blockStart = block * info.blockLength;
+			Object data = getBlock(datasetName, info, block, blockStart);
+			if (null == result) {
+				result = Array.newInstance(data.getClass().getComponentType(), size);
+			}
+			int from = Math.max(startIndex, blockStart);
+			int to = Math.min(end, blockStart + Array.getLength(data));
+			System.arraycopy(data, from - blockStart, result, from - startIndex, to - from);
+		}
+		if (null == result) {
+			// nothing to read - ask the file for the (empty) array of the right type
+			result = loader.load(datasetName, startIndex, 0);
+		}
+		return result;
+	}
+
+	/**
+	 * Drops the cached blocks that overlap the section of the dataset, which has just been written to
+	 */
+	void invalidate(String datasetName, int startIndex, int length) {
+		DatasetInfo info = datasets.get(datasetName);
+		if (null == info) {
+			return;
+		}
+		info.version.incrementAndGet();
+		if (length < 0) {
+			startIndex = 0;
+			length = info.length;
+		}
+		for (int block = startIndex / info.blockLength ; (long) block * info.blockLength < (long) startIndex + length ; block++) {
+			remove(new BlockKey(datasetName, block));
+		}
+	}
+
+	/**
+	 * Drops everything cached for the dataset, which is being created or replaced
+	 */
+	void forget(String datasetName) {
+		invalidate(datasetName, 0, -1);
+		datasets.remove(datasetName);
+	}
+
+	void clear() {
+		datasets.clear();
+		blocks.clear();
+		cachedElements.set(0);
+	}
+
+	long getHits() {
+		return hits.get();
+	}
+
+	long getMisses() {
+		return misses.get();
+	}
+
+	long getCachedElements() {
+		return cachedElements.get();
+	}
+
+	private DatasetInfo getInfo(String datasetName) throws Exception {
+		DatasetInfo info = datasets.get(datasetName);
+		if (null == info) {
+			int[] lengths = loader.getLengthAndBlockLength(datasetName);
+			info = new DatasetInfo(lengths[0], Math.max(1, lengths[1]));
+			DatasetInfo existing = datasets.putIfAbsent(datasetName, info);
+			if (null != existing) {
+				info = existing;
+			}
+		}
+		return info;
+	}
+
+	private Object getBlock(String datasetName, DatasetInfo info, int block, int blockStart) throws Exception {
+		BlockKey key = new BlockKey(datasetName, block);
+		Block cached = blocks.get(key);
+		if (null != cached) {
+			cached.referenced = true;
+			hits.incrementAndGet();
+			return cached.data;
+		}
+		misses.incrementAndGet();
+
+		int version = info.version.get();
+		Object data = loader.load(datasetName, blockStart, Math.min(info.blockLength, info.length - blockStart));
+		Block loaded = new Block(data);
+		if (null == blocks.putIfAbsent(key, loaded)) {
+			cachedElements.addAndGet(Array.getLength(data));
+			if (version != info.version.get()) {
+				// written to while we were reading - don't keep what we read
+				remove(key);
+			}
+			evict();
+		}
+		return data;
+	}
+
+	private void remove(BlockKey key) {
+		Block removed = blocks.remove(key);
+		if (null != removed) {
+			cachedElements.addAndGet(- Array.getLength(removed.data));
+		}
+	}
+
+	/*
+	 * second chance: drops blocks that have not been read since they were last passed over, until the cache is back under its limit
+	 */
+	private void evict() {
+		for (int pass = 0 ; pass < 2 && cachedElements.get() > maxElements ; pass++) {
+			Iterator<Map.Entry<BlockKey, Block>> iter = blocks.entrySet().iterator();
+			while (cachedElements.get() > maxElements && iter.hasNext()) {
+				Map.Entry<BlockKey, Block> entry = iter.next();
+				Block block = entry.getValue();
+				if (block.referenced) {
+					block.referenced = false;
+				} else if (blocks.remove(entry.getKey(), block)) {
+					cachedElements.addAndGet(- Array.getLength(block.data));
+				}
+			}
+		}
+	}
+
+	private static final class DatasetInfo {
+		final int length;
+		final int blockLength;
+		final AtomicInteger version = new AtomicInteger();
+
+		DatasetInfo(int length, int blockLength) {
+			this.length = length;
+			this.blockLength = blockLength;
+		}
+	}
+
+	private static final class Block {
+		final Object data;
+		volatile boolean referenced;
+
+		Block(Object data) {
+			this.data = data;
+		}
+	}
+
+	private static final class BlockKey {
+		final String datasetName;
+		final int block;
+
+		BlockKey(String datasetName, int block) {
+			this.datasetName = datasetName;
+			this.block = block;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * datasetName.hashCode() + block;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if ( ! (obj instanceof BlockKey)) return false;
+			BlockKey other = (BlockKey) obj;
+			return block == other.block && datasetName.equals(other.datasetName);
+		}
+	}
+}
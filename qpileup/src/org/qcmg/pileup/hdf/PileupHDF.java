@@ -7,6 +7,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import ncsa.hdf.hdf5lib.H5;
 import ncsa.hdf.hdf5lib.HDF5Constants;
@@ -30,26 +35,80 @@ import org.qcmg.pileup.PileupUtil;
 import org.qcmg.pileup.QPileupException;
 import org.qcmg.pileup.model.Chromosome;
 
+/**
+ * Access to a qpileup HDF file, which may be shared by the worker threads of the view, metrics, add/remove and merge modes.
+ * <p>
+ * Rather than a single monitor, the file is guarded by a read/write lock. Reading data and attributes takes the shared (read) lock,
+ * so that workers reading different sections of the file do not queue up behind each other, while opening, closing and changing the structure
+ * of the file (groups, datasets, attributes) takes the exclusive (write) lock. Writes to a dataset take the shared lock plus a lock for that dataset,
+ * so writes to different datasets (and therefore chromosome sections) can proceed side by side.
+ * <p>
+ * The HDF-Object API caches the structure of the file in the {@link H5File} tree, which is not safe to share, so when that is in use
+ * all data access takes the exclusive lock, as before.
+ * <p>
+ * The lock does not make the library itself concurrent: hdf-java serialises every call into HDF5, so reads that reach the file still run one at a time.
+ * Numeric (position and strand) dataset reads therefore go through a {@link DatasetBlockCache}, which reads and decompresses each chunk once,
+ * and serves later reads of it by copying from the cached array without calling into the library. Writes drop the chunks they touch from the cache.
+ * <p>
+ * The position and strand datasets may be kept in a {@link ColumnarStore} rather than in the HDF file - this is chosen when the file is created,
+ * and picked up when it is opened again, from the presence of the store's directory. Reads and writes of those datasets go to the store,
+ * which needs no dataset locks, while the HDF file keeps the chromosome groups and the metadata.
+ */
 public class PileupHDF {
 	
 	private final String hdfFileName;
 	private H5File hdfFile;
 	private final QLogger logger = QLoggerFactory.getLogger(getClass());
-	private int fileId =-1;
+	private volatile int fileId =-1;
 	private final boolean useHDFObject;
+	private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+	private final ConcurrentMap<String, Object> datasetLocks = new ConcurrentHashMap<>();
+	private final PileupStore dataStore;
+	private final DatasetBlockCache blockCache;
 	
 	public PileupHDF(String name, boolean create, boolean useHDFObject) throws Exception {
+		this(name, create, useHDFObject, false);
+	}
+	
+	/**
+	 * @param columnar when creating the file, keep the position and strand datasets in a {@link ColumnarStore}.
+	 * Ignored when opening an existing file, which uses a store if it has one.
+	 */
+	public PileupHDF(String name, boolean create, boolean useHDFObject, boolean columnar) throws Exception {
 		this.hdfFileName = name;
 		this.useHDFObject = useHDFObject;
+		this.blockCache = useHDFObject ? null : new DatasetBlockCache(new DatasetBlockCache.Loader() {
+			@Override
+			public Object load(String datasetName, int startIndex, int size) throws Exception {
+				return readH5ScalarDSBlock(datasetName, startIndex, size);
+			}
+			@Override
+			public int[] getLengthAndBlockLength(String datasetName) throws Exception {
+				return getH5DatasetLengthAndChunk(datasetName);
+			}
+		}, DatasetBlockCache.DEFAULT_MAX_ELEMENTS);
 		
 		if (create) {
 			createHDFFile();
 		} else {
 			instantiateHDFFile();				
-		}		 
+		}
+		
+		File storeDirectory = ColumnarStore.getDirectory(name);
+		if (create ? columnar : storeDirectory.isDirectory()) {
+			if (useHDFObject) {
+				throw new QPileupException("COLUMNAR_HDF_OBJECT");
+			}
+			dataStore = new ColumnarStore(storeDirectory, create);
+		} else {
+			if (create && storeDirectory.exists()) {
+				ColumnarStore.delete(storeDirectory);
+			}
+			dataStore = null;
+		}
 	}
 
-	private synchronized void instantiateHDFFile() throws Exception {
+	private void instantiateHDFFile() throws Exception {
 		
 		if (useHDFObject) {
 			 FileFormat fileFormat = FileFormat.getFileFormat(FileFormat.FILE_TYPE_HDF5);
@@ -62,32 +121,50 @@ public class PileupHDF {
 		} 		
 	}
 
-	public synchronized void open() throws Exception {
-		if (fileId == -1) {
-			if (useHDFObject) {
-				fileId =  this.hdfFile.open();
-			} else {
-				fileId = H5.H5Fopen(hdfFileName, HDF5Constants.H5F_ACC_RDWR,
-						HDF5Constants.H5P_DEFAULT);
-			}
+	public void open() throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
 			if (fileId == -1) {
-				throw new QPileupException("FILE_EXCEPTION");
-			}		
-		} 
+				if (useHDFObject) {
+					fileId =  this.hdfFile.open();
+				} else {
+					fileId = H5.H5Fopen(hdfFileName, HDF5Constants.H5F_ACC_RDWR,
+							HDF5Constants.H5P_DEFAULT);
+				}
+				if (fileId == -1) {
+					throw new QPileupException("FILE_EXCEPTION");
+				}		
+			} 
+		} finally {
+			lock.unlock();
+		}
 	}
 	
-	public synchronized void close() throws Exception {
-		if (fileId != -1) {
-			if (useHDFObject) {
-				this.hdfFile.close();
-			} else {
-				H5.H5Fclose(fileId);
+	public void close() throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			if (fileId != -1) {
+				if (useHDFObject) {
+					this.hdfFile.close();
+				} else {
+					H5.H5Fclose(fileId);
+				}
+			} 
+			fileId = -1;
+			if (null != blockCache) {
+				blockCache.clear();
 			}
-		} 
-		fileId = -1;
+			if (null != dataStore) {
+				dataStore.flush();
+			}
+		} finally {
+			lock.unlock();
+		}
 	}	
 	
-	public synchronized long getFileSize() {
+	public long getFileSize() {
 		if (useHDFObject) {
 			return hdfFile.length();
 		} else {
@@ -95,23 +172,30 @@ public class PileupHDF {
 		}
 	}
 	
-	public synchronized File getFile() {
+	public File getFile() {
 		return new File(this.hdfFileName);
 	}
 	
-	public synchronized int getFileId() {
+	public int getFileId() {
 		return this.fileId;
 	}
 	
-	public synchronized String getHDFFileName() {
+	public String getHDFFileName() {
 		return this.hdfFileName;
 	}
 
-	public synchronized boolean useHDFObject() {
+	public boolean useHDFObject() {
 		return this.useHDFObject;
 	}
 	
-	public synchronized List<Chromosome> getChromosomeLengths() throws Exception {
+	/**
+	 * @return the store holding the position and strand datasets, or null if they are in the HDF file
+	 */
+	public PileupStore getDataStore() {
+		return this.dataStore;
+	}
+	
+	public List<Chromosome> getChromosomeLengths() throws Exception {
 		List<Chromosome> chromosomes = new ArrayList<>();
 
 		for (String group: getRootGroupMembers()) {
@@ -125,26 +209,38 @@ public class PileupHDF {
 		return chromosomes;
 	}	
 
-	public synchronized int getGroupIntegerAttribute(String fullName) throws Exception {
-		return useHDFObject ? getIntegerAttributeByGroup(fullName) : getH5IntegerAttributebyGroup(fullName);
+	public int getGroupIntegerAttribute(String fullName) throws Exception {
+		Lock lock = dataLock();
+		lock.lock();
+		try {
+			return useHDFObject ? getIntegerAttributeByGroup(fullName) : getH5IntegerAttributebyGroup(fullName);
+		} finally {
+			lock.unlock();
+		}
 	}	
 
-	public synchronized String bootstrapReferenceGroup(String name, int datasetLength) throws Exception {
-		logger.info("Creating group for chromosome/contig " + name);
-		if (useHDFObject) {			
-			Group group = createGroup(name, "root");
-			//create length attribute
-			createGroupLengthAttribute(group, datasetLength);
-			return group.getFullName();
-		} else {
-			String groupName = createH5Group(name);
-			createH5IntegerAttribute(groupName, null, "length", datasetLength);
-			logger.info("Finished creating group for chromosome/contig " + name);
-			return groupName;
-		}		
+	public String bootstrapReferenceGroup(String name, int datasetLength) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			logger.info("Creating group for chromosome/contig " + name);
+			if (useHDFObject) {			
+				Group group = createGroup(name, "root");
+				//create length attribute
+				createGroupLengthAttribute(group, datasetLength);
+				return group.getFullName();
+			} else {
+				String groupName = createH5Group(name);
+				createH5IntegerAttribute(groupName, null, "length", datasetLength);
+				logger.info("Finished creating group for chromosome/contig " + name);
+				return groupName;
+			}		
+		} finally {
+			lock.unlock();
+		}
 	}
 	
-	public synchronized String getHDFHeader() throws Exception{
+	public String getHDFHeader() throws Exception{
 		
 	    	StringBuilder sb = new StringBuilder();
 	    	sb.append("## DATE=").append(PileupUtil.getCurrentDate()).append("\n");
@@ -166,7 +262,7 @@ public class PileupHDF {
 
 	
 	//===============================Access methods==================================//
-	private synchronized void createHDFFile() throws Exception {	
+	private void createHDFFile() throws Exception {	
 		logger.info("Creating HDF file");
 		if (useHDFObject) {
 			createHDF();
@@ -175,72 +271,139 @@ public class PileupHDF {
 		}
 	}
 
-	public synchronized List<String> getRootGroupMembers() throws HDF5LibraryException {
-		List<String> groupList = new ArrayList<>();
-		if (useHDFObject) {
-			getRootMembers(groupList);
-		} else {
-			getH5RootMembers(groupList);
+	public List<String> getRootGroupMembers() throws HDF5LibraryException {
+		Lock lock = dataLock();
+		lock.lock();
+		try {
+			List<String> groupList = new ArrayList<>();
+			if (useHDFObject) {
+				getRootMembers(groupList);
+			} else {
+				getH5RootMembers(groupList);
+			}
+			return groupList;
+		} finally {
+			lock.unlock();
 		}
-		return groupList;
 	}
 
 	
-	public synchronized int getIntegerAttribute(String datasetName, String attributeName) throws Exception {
-		int length = -1;
-		if (useHDFObject) {			
-			length = getIntegerAttribute(datasetName, attributeName, length);			
-		} else {
-			length = getH5IntegerAttribute(datasetName, attributeName);		
-		}
+	public int getIntegerAttribute(String datasetName, String attributeName) throws Exception {
+		Lock lock = dataLock();
+		lock.lock();
+		try {
+			int length = -1;
+			if (useHDFObject) {			
+				length = getIntegerAttribute(datasetName, attributeName, length);			
+			} else {
+				length = getH5IntegerAttribute(datasetName, attributeName);		
+			}
 
-        if (length == -1) {
-        	throw new Exception("Could not read length attribute for dataset " + datasetName);
-        }
+	        if (length == -1) {
+	        	throw new Exception("Could not read length attribute for dataset " + datasetName);
+	        }
 		
-		return length;
+			return length;
+		} finally {
+			lock.unlock();
+		}
 	}
 	
 
-	public synchronized Object readDatasetBlock(String datasetName, int startIndex, int size) throws Exception {	
-		Object results;
-		if (useHDFObject) {
-			results = readScalarDatasetBlock(datasetName, startIndex, size);
-		} else {		
-			results = readH5ScalarDSBlock(datasetName, startIndex, size);
-		}
+	public Object readDatasetBlock(String datasetName, int startIndex, int size) throws Exception {
+		Lock lock = dataLock();
+		lock.lock();
+		try {
+			Object results;
+			if (null != dataStore && dataStore.hasDataset(datasetName)) {
+				results = dataStore.readDatasetBlock(datasetName, startIndex, size);
+			} else if (useHDFObject) {
+				results = readScalarDatasetBlock(datasetName, startIndex, size);
+			} else if (isCached(datasetName)) {
+				results = blockCache.read(datasetName, startIndex, size);
+			} else {		
+				results = readH5ScalarDSBlock(datasetName, startIndex, size);
+			}
 		
-		return results;
+			return results;
+		} finally {
+			lock.unlock();
+		}
 	}	
 
-	public synchronized String[] getMetadataRecords(String fullName) throws Exception {
+	public String[] getMetadataRecords(String fullName) throws Exception {
 		return  useHDFObject ? (String[]) readDatasetBlock(fullName, 0, -1) :  (String[]) readH5ScalarDSBlock(fullName, 0, -1);
 	}
 	
-	public synchronized void writeDatasetBlock(String name, int startIndex, int length, Object array) throws Exception {
-		if (useHDFObject) {
-			writeScalarDSBlock(name, startIndex, length, array);
-		} else {			
-			writeH5ScalarDSBlock(name, startIndex, length, array);
-		}			
+	public void writeDatasetBlock(String name, int startIndex, int length, Object array) throws Exception {
+		Lock lock = dataLock();
+		lock.lock();
+		try {
+			if (null != dataStore && dataStore.hasDataset(name)) {
+				dataStore.writeDatasetBlock(name, startIndex, length, array);
+				return;
+			}
+			synchronized (getDatasetLock(name)) {
+				if (useHDFObject) {
+					writeScalarDSBlock(name, startIndex, length, array);
+				} else {			
+					writeH5ScalarDSBlock(name, startIndex, length, array);
+					if (isCached(name)) {
+						blockCache.invalidate(name, startIndex, length);
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Lock for reading data from (and, along with a dataset lock, writing data to) the file - shared, unless the HDF-Object API is in use
+	 */
+	private Lock dataLock() {
+		return useHDFObject ? fileLock.writeLock() : fileLock.readLock();
+	}
+	
+	/*
+	 * the metadata datasets are strings, which are small and read whole, so only the numeric datasets are cached
+	 */
+	private boolean isCached(String datasetName) {
+		return null != blockCache && ! datasetName.startsWith("/metadata");
+	}
+	
+	/**
+	 * @return the cache of decompressed dataset chunks, or null if the HDF-Object API is in use
+	 */
+	DatasetBlockCache getBlockCache() {
+		return blockCache;
+	}
+	
+	private Object getDatasetLock(String datasetName) {
+		return datasetLocks.computeIfAbsent(datasetName, k -> new Object());
 	}
 
-	public synchronized void createMetadataAttributes(String datasetName, Integer lowReadCount, Integer nonreferenceThreshold, Integer bamsAdded) throws Exception {
-
-		if (useHDFObject) {
-			Dataset dataset = (Dataset) hdfFile.get(datasetName);		
-			createIntegerAttribute(dataset, "low_read_count", lowReadCount);
-			createIntegerAttribute(dataset, "non_reference_threshold", nonreferenceThreshold);	
-			createIntegerAttribute(dataset, "bams_added", bamsAdded);	
-			dataset.getMetadata();
-		} else {
-			createH5IntegerAttribute(null, datasetName, "low_read_count", lowReadCount);
-			createH5IntegerAttribute(null, datasetName, "non_reference_threshold", nonreferenceThreshold);
-			createH5IntegerAttribute(null, datasetName, "bams_added", bamsAdded);
+	public void createMetadataAttributes(String datasetName, Integer lowReadCount, Integer nonreferenceThreshold, Integer bamsAdded) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			if (useHDFObject) {
+				Dataset dataset = (Dataset) hdfFile.get(datasetName);		
+				createIntegerAttribute(dataset, "low_read_count", lowReadCount);
+				createIntegerAttribute(dataset, "non_reference_threshold", nonreferenceThreshold);	
+				createIntegerAttribute(dataset, "bams_added", bamsAdded);	
+				dataset.getMetadata();
+			} else {
+				createH5IntegerAttribute(null, datasetName, "low_read_count", lowReadCount);
+				createH5IntegerAttribute(null, datasetName, "non_reference_threshold", nonreferenceThreshold);
+				createH5IntegerAttribute(null, datasetName, "bams_added", bamsAdded);
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
-	private synchronized void createIntegerAttribute(Dataset dataset, String name, Integer value) throws Exception {
+	private void createIntegerAttribute(Dataset dataset, String name, Integer value) throws Exception {
 		long[] attrDims = {1}; // 1D of size 1
 		long[] values = {value};
 		Datatype dtype = hdfFile.createDatatype(Datatype.CLASS_INTEGER, 4, Datatype.NATIVE, Datatype.NATIVE);
@@ -250,27 +413,32 @@ public class PileupHDF {
 	    dataset.writeMetadata(attr);
 	}
 
-	public synchronized void extendStringDatasetBlock(String datasetName, int startIndex, int newLength) throws Exception {
+	public void extendStringDatasetBlock(String datasetName, int startIndex, int newLength) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			int datasetId;
+			long[] newDims = { newLength };
+			if (useHDFObject) {
+				Dataset dataset = (Dataset) hdfFile.get(datasetName);
+				datasetId = dataset.open();
+			} else {
+				datasetId = H5.H5Dopen(fileId, datasetName, HDF5Constants.H5P_DEFAULT);
+			}
+			H5.H5Dset_extent(datasetId, newDims);
+	        H5.H5Fflush(datasetId, HDF5Constants.H5F_SCOPE_GLOBAL);
 		
-		int datasetId;
-		long[] newDims = { newLength };
-		if (useHDFObject) {
-			Dataset dataset = (Dataset) hdfFile.get(datasetName);
-			datasetId = dataset.open();
-		} else {
-			datasetId = H5.H5Dopen(fileId, datasetName, HDF5Constants.H5P_DEFAULT);
+			H5.H5Sclose(H5.H5Screate_simple(1, newDims, null));
+			H5.H5Sclose(H5.H5Dget_space(datasetId));
+			H5.H5Dclose(datasetId);
+		} finally {
+			lock.unlock();
 		}
-		H5.H5Dset_extent(datasetId, newDims);
-        H5.H5Fflush(datasetId, HDF5Constants.H5F_SCOPE_GLOBAL);
-		
-		H5.H5Sclose(H5.H5Screate_simple(1, newDims, null));
-		H5.H5Sclose(H5.H5Dget_space(datasetId));
-		H5.H5Dclose(datasetId);
 	}
 	
 	
 	//================================HDF-Object methods=========================================//
-	private synchronized void createHDF() throws QPileupException, Exception,
+	private void createHDF() throws QPileupException, Exception,
 			HDF5LibraryException {
 		File file = new File(hdfFileName);
 		if (file.exists()) {
@@ -297,7 +465,7 @@ public class PileupHDF {
 		close();
 	}
 
-	private synchronized void getRootMembers(List<String> groupList) {
+	private void getRootMembers(List<String> groupList) {
 		Group root = (Group)((javax.swing.tree.DefaultMutableTreeNode) hdfFile.getRootNode()).getUserObject();
 		
 		List<HObject> groupObjects = root.getMemberList();		
@@ -307,11 +475,17 @@ public class PileupHDF {
 		}
 	}
 		
-	public synchronized Group getGroup(String groupName) throws Exception {
-		return (Group) hdfFile.get(groupName);
+	public Group getGroup(String groupName) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			return (Group) hdfFile.get(groupName);
+		} finally {
+			lock.unlock();
+		}
 	}
 	
-	private synchronized int getIntegerAttributeByGroup(String fullName) throws Exception {
+	private int getIntegerAttributeByGroup(String fullName) throws Exception {
 		Group group = (Group) hdfFile.get(fullName);		
 		@SuppressWarnings("unchecked")
 		List<Object> attrList = group.getMetadata();
@@ -323,7 +497,7 @@ public class PileupHDF {
 		return attrValue[0];
 	}
 	
-	private synchronized int getIntegerAttribute(String datasetName, String attributeName,
+	private int getIntegerAttribute(String datasetName, String attributeName,
 			int length) throws Exception {
 		Dataset dataset = (Dataset) hdfFile.get(datasetName);		
 		@SuppressWarnings("unchecked")
@@ -347,113 +521,141 @@ public class PileupHDF {
 		return length;
 	}
 	
-	public synchronized void createGroupLengthAttribute(Group group, int datasetLength) throws Exception {
-		Datatype dtype = hdfFile.createDatatype(Datatype.CLASS_INTEGER, 4, Datatype.NATIVE, Datatype.NATIVE);
-		long[] attrDims = {1}; // 1D of size two
-		long [] length = {datasetLength};
-	    Attribute attr = new Attribute("length", dtype, attrDims);
-	    attr.setValue(length); // set the attribute value
+	public void createGroupLengthAttribute(Group group, int datasetLength) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			Datatype dtype = hdfFile.createDatatype(Datatype.CLASS_INTEGER, 4, Datatype.NATIVE, Datatype.NATIVE);
+			long[] attrDims = {1}; // 1D of size two
+			long [] length = {datasetLength};
+		    Attribute attr = new Attribute("length", dtype, attrDims);
+		    attr.setValue(length); // set the attribute value
 	
-	    //attach the attribute to the dataset
-	    group.writeMetadata(attr);
+		    //attach the attribute to the dataset
+		    group.writeMetadata(attr);
 	    
-	    //read the attribute into memory
-        @SuppressWarnings("unchecked")
-		List<Object> attrList = group.getMetadata();
-        attr = (Attribute)attrList.get(0);	
+		    //read the attribute into memory
+	        @SuppressWarnings("unchecked")
+			List<Object> attrList = group.getMetadata();
+	        attr = (Attribute)attrList.get(0);	
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	public synchronized Dataset createCompoundDS(String groupName, String datasetName,
+	public Dataset createCompoundDS(String groupName, String datasetName,
 			long[] dims, long[] maxdims, long[] chunks, int compression,
 			String[] memberNames, Datatype[] memberDataTypes,
 			int[] memberSizes, Vector<Object> data) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			Dataset compoundDS = null;
 		
-		Dataset compoundDS = null;
-		
-		Group group = (Group) hdfFile.get(groupName);
-		compoundDS = hdfFile.createCompoundDS(datasetName, //dataset name
-                group,           //group to make dataset in
-                dims,            //dimensions
-                maxdims,         //maxdims
-                chunks,          //chunks (for expandable dataset) 
-                compression,     //compression
-                memberNames,     //name of datatype members
-                memberDataTypes, //datatypes
-                memberSizes,     //member sizes
-                data);           //the actual data
-
-		if (compoundDS == null) {
-			   logger.error("The compound dataset : " + datasetName + " was not created.");
-			   throw new QPileupException("The compound dataset : " + datasetName + " was not created.");
-		   }			
-		
-		return compoundDS;
+			Group group = (Group) hdfFile.get(groupName);
+			compoundDS = hdfFile.createCompoundDS(datasetName, //dataset name
+	                group,           //group to make dataset in
+	                dims,            //dimensions
+	                maxdims,         //maxdims
+	                chunks,          //chunks (for expandable dataset) 
+	                compression,     //compression
+	                memberNames,     //name of datatype members
+	                memberDataTypes, //datatypes
+	                memberSizes,     //member sizes
+	                data);           //the actual data
+
+			if (compoundDS == null) {
+				   logger.error("The compound dataset : " + datasetName + " was not created.");
+				   throw new QPileupException("The compound dataset : " + datasetName + " was not created.");
+			   }			
+		
+			return compoundDS;
+		} finally {
+			lock.unlock();
+		}
 	}	
 	
-	public synchronized Datatype createDatatype(int dataType, int objectSize) throws Exception {
-		Datatype dtype = null;
-		if (useHDFObject) {
-			if (dataType == Datatype.CLASS_STRING) {
-				dtype = hdfFile.createDatatype(Datatype.CLASS_STRING, objectSize, Datatype.CLASS_STRING, Datatype.CLASS_STRING);
-			} else {			
-				dtype = hdfFile.createDatatype(Datatype.CLASS_INTEGER, objectSize, Datatype.NATIVE, Datatype.NATIVE);
-			}
-		} else {
-			if (dataType == Datatype.CLASS_STRING) {			
-				dtype = new H5Datatype(Datatype.CLASS_STRING, objectSize, Datatype.CLASS_STRING, Datatype.CLASS_STRING);
-			} else {			
-				dtype = new H5Datatype(Datatype.CLASS_INTEGER, objectSize, Datatype.NATIVE, Datatype.NATIVE);
+	public Datatype createDatatype(int dataType, int objectSize) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			Datatype dtype = null;
+			if (useHDFObject) {
+				if (dataType == Datatype.CLASS_STRING) {
+					dtype = hdfFile.createDatatype(Datatype.CLASS_STRING, objectSize, Datatype.CLASS_STRING, Datatype.CLASS_STRING);
+				} else {			
+					dtype = hdfFile.createDatatype(Datatype.CLASS_INTEGER, objectSize, Datatype.NATIVE, Datatype.NATIVE);
+				}
+			} else {
+				if (dataType == Datatype.CLASS_STRING) {			
+					dtype = new H5Datatype(Datatype.CLASS_STRING, objectSize, Datatype.CLASS_STRING, Datatype.CLASS_STRING);
+				} else {			
+					dtype = new H5Datatype(Datatype.CLASS_INTEGER, objectSize, Datatype.NATIVE, Datatype.NATIVE);
+				}
 			}
-		}
 		
-		return dtype;
+			return dtype;
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	public synchronized Dataset createScalarDS(Group group, int datasetLength, String datasetName, int chunkSize, int dataType, int objectSize, Object array) throws Exception {
-
-		if (datasetLength < chunkSize) {
-			chunkSize = datasetLength;
-		}
-		//create dimensions of the object
-		long[] dims = {datasetLength};		
-		long[] chunks = {chunkSize};	
-		long[] maxdims = null;
-		if (dataType == Datatype.CLASS_STRING) {
-			maxdims = new long[1];
-			maxdims[0] = HDF5Constants.H5S_UNLIMITED;	
-		}
+	public Dataset createScalarDS(Group group, int datasetLength, String datasetName, int chunkSize, int dataType, int objectSize, Object array) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			if (datasetLength < chunkSize) {
+				chunkSize = datasetLength;
+			}
+			//create dimensions of the object
+			long[] dims = {datasetLength};		
+			long[] chunks = {chunkSize};	
+			long[] maxdims = null;
+			if (dataType == Datatype.CLASS_STRING) {
+				maxdims = new long[1];
+				maxdims[0] = HDF5Constants.H5S_UNLIMITED;	
+			}
 		
-		//create integer datatype
-		Datatype dtype = createDatatype(dataType, objectSize);
-		Dataset dataset;
-		//create the dataset
+			//create integer datatype
+			Datatype dtype = createDatatype(dataType, objectSize);
+			Dataset dataset;
+			//create the dataset
 		
-		if (array != null) {			
-			dataset = hdfFile.createScalarDS(datasetName, group, dtype, dims, maxdims, chunks, 1, array);
-		} else {
-			dataset = hdfFile.createScalarDS(datasetName, group, dtype, dims, maxdims, chunks, 1, null);
-		}
+			if (array != null) {			
+				dataset = hdfFile.createScalarDS(datasetName, group, dtype, dims, maxdims, chunks, 1, array);
+			} else {
+				dataset = hdfFile.createScalarDS(datasetName, group, dtype, dims, maxdims, chunks, 1, null);
+			}
 	    
-	    if (dataset == null) {
-	    	throw new QPileupException("NULL_ERROR");
-	    }
+		    if (dataset == null) {
+		    	throw new QPileupException("NULL_ERROR");
+		    }
 
-		return dataset;
+			return dataset;
+		} finally {
+			lock.unlock();
+		}
 	}	
 
-	public synchronized Object readScalarDatasetBlock(String datasetName, int startIndex, int size) throws Exception {
-		H5ScalarDS ds = (H5ScalarDS) hdfFile.get(datasetName);
-		ds.init();
-		long[] selectedDims = ds.getSelectedDims();
-		long[] start = ds.getStartDims();
-		start[0] = startIndex;
-		selectedDims[0] = size;
-		Object data =  ds.read();
-		ds.close(ds.getFID());
-		return data;
+	public Object readScalarDatasetBlock(String datasetName, int startIndex, int size) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			H5ScalarDS ds = (H5ScalarDS) hdfFile.get(datasetName);
+			ds.init();
+			long[] selectedDims = ds.getSelectedDims();
+			long[] start = ds.getStartDims();
+			start[0] = startIndex;
+			selectedDims[0] = size;
+			Object data =  ds.read();
+			ds.close(ds.getFID());
+			return data;
+		} finally {
+			lock.unlock();
+		}
 	}
 	
-	private synchronized void writeScalarDSBlock(String name, int startIndex, int length,
+	private void writeScalarDSBlock(String name, int startIndex, int length,
 			Object array) throws Exception {
 
 		Dataset ds = (ScalarDS) hdfFile.get(name);
@@ -466,14 +668,20 @@ public class PileupHDF {
 
 	}
 	
-	public synchronized Group createGroup(String name, String parentGroupName) throws Exception {
-		Group parentGroup = (Group) hdfFile.get(parentGroupName);
-		return hdfFile.createGroup(name, parentGroup);		
+	public Group createGroup(String name, String parentGroupName) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			Group parentGroup = (Group) hdfFile.get(parentGroupName);
+			return hdfFile.createGroup(name, parentGroup);		
+		} finally {
+			lock.unlock();
+		}
 	}	
 
 	//==========================================H5 methods================================================//
 	
-	private synchronized void createH5HDF() throws Exception {
+	private void createH5HDF() throws Exception {
 		fileId = H5.H5Fcreate(hdfFileName, HDF5Constants.H5F_ACC_TRUNC, HDF5Constants.H5P_DEFAULT, HDF5Constants.H5P_DEFAULT);
 		if (fileId == -1) {
 			throw new QPileupException("CREATE_ERROR", "HDF file", hdfFileName);
@@ -485,19 +693,24 @@ public class PileupHDF {
 		fileId = -1;
 	}
 	
-	public synchronized String createH5Group(String groupName) throws Exception {
+	public String createH5Group(String groupName) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			String fullName = "/" + groupName;
+			int groupId = H5.H5Gcreate(fileId, fullName, HDF5Constants.H5P_DEFAULT, HDF5Constants.H5P_DEFAULT, HDF5Constants.H5P_DEFAULT); 						
+			if (groupId == -1) {
+				throw new QPileupException("CREATE_ERROR", "group", groupName);
+			}
+			H5.H5Gclose(groupId);
 
-		String fullName = "/" + groupName;
-		int groupId = H5.H5Gcreate(fileId, fullName, HDF5Constants.H5P_DEFAULT, HDF5Constants.H5P_DEFAULT, HDF5Constants.H5P_DEFAULT); 						
-		if (groupId == -1) {
-			throw new QPileupException("CREATE_ERROR", "group", groupName);
+			return "/" + groupName;
+		} finally {
+			lock.unlock();
 		}
-		H5.H5Gclose(groupId);
-
-		return "/" + groupName;
 	}	
 
-	private synchronized void createH5IntegerAttribute(String groupName, String datasetName, String attributeName, int value) throws Exception {
+	private void createH5IntegerAttribute(String groupName, String datasetName, String attributeName, int value) throws Exception {
 
 		long[] dims = {1};
 		long[] attributeData = {value};
@@ -524,7 +737,7 @@ public class PileupHDF {
 
 	}
 	
-	private synchronized void createH5StringAttribute(String groupName, String datasetName, String attributeName, String value, int currentSize) throws Exception {
+	private void createH5StringAttribute(String groupName, String datasetName, String attributeName, String value, int currentSize) throws Exception {
 		String[] attribute = {value};
 		int dataId = -1;
 		int spaceId = -1;
@@ -551,7 +764,7 @@ public class PileupHDF {
 
 	}
 
-	private synchronized void getH5RootMembers(List<String> groupList)
+	private void getH5RootMembers(List<String> groupList)
 			throws HDF5LibraryException {
 		String root = "/";			
 		int count = H5.H5Gn_members(fileId, root);
@@ -570,21 +783,27 @@ public class PileupHDF {
 		}
 	}	
 
-	synchronized void modifyH5LengthAttribute(String datasetName, String attrName, int value) throws NullPointerException, HDF5Exception {
-		long[] dims = {1};
-		long[] attributeData = {value};
+	void modifyH5LengthAttribute(String datasetName, String attrName, int value) throws NullPointerException, HDF5Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			long[] dims = {1};
+			long[] attributeData = {value};
 		
-		int dataset_id = H5.H5Dopen(fileId, "/" + datasetName, HDF5Constants.H5P_DEFAULT);
-		int dataspace_id = H5.H5Screate_simple(1, dims, null);
-
-		int attribute_id = H5.H5Aopen(dataset_id, attrName, HDF5Constants.H5P_DEFAULT);
-		H5.H5Awrite(attribute_id, HDF5Constants.H5T_NATIVE_INT, attributeData);
-		H5.H5Aclose(attribute_id);
-		H5.H5Sclose(dataspace_id);
-		H5.H5Dclose(dataset_id);
+			int dataset_id = H5.H5Dopen(fileId, "/" + datasetName, HDF5Constants.H5P_DEFAULT);
+			int dataspace_id = H5.H5Screate_simple(1, dims, null);
+
+			int attribute_id = H5.H5Aopen(dataset_id, attrName, HDF5Constants.H5P_DEFAULT);
+			H5.H5Awrite(attribute_id, HDF5Constants.H5T_NATIVE_INT, attributeData);
+			H5.H5Aclose(attribute_id);
+			H5.H5Sclose(dataspace_id);
+			H5.H5Dclose(dataset_id);
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	private synchronized int getH5IntegerAttributebyGroup(String fullName)
+	private int getH5IntegerAttributebyGroup(String fullName)
 			throws HDF5LibraryException, HDF5Exception {
 		int groupId = H5.H5Gopen(fileId, "/" + fullName, HDF5Constants.H5P_DEFAULT);
 		long[] attrData = new long[]{1};
@@ -597,40 +816,50 @@ public class PileupHDF {
 		return length;
 	}
 
-	public synchronized int getH5IntegerAttribute(String datasetName, String attributeName)
+	public int getH5IntegerAttribute(String datasetName, String attributeName)
 			throws HDF5LibraryException, HDF5Exception {
-		int length;
+		Lock lock = dataLock();
+		lock.lock();
+		try {
+			int length;
 
-		int datasetId = H5.H5Dopen(fileId, datasetName, HDF5Constants.H5P_DEFAULT);
-		long[] attrData = new long[]{1};
+			int datasetId = H5.H5Dopen(fileId, datasetName, HDF5Constants.H5P_DEFAULT);
+			long[] attrData = new long[]{1};
 		
-		int attributeId = H5.H5Aopen(datasetId, attributeName, HDF5Constants.H5P_DEFAULT);
-		H5.H5Aread(attributeId, HDF5Constants.H5T_NATIVE_INT, attrData);
-		length = (int) attrData[0];
-		H5.H5Dclose(datasetId);
-		H5.H5Aclose(attributeId);
-		return length;
+			int attributeId = H5.H5Aopen(datasetId, attributeName, HDF5Constants.H5P_DEFAULT);
+			H5.H5Aread(attributeId, HDF5Constants.H5T_NATIVE_INT, attrData);
+			length = (int) attrData[0];
+			H5.H5Dclose(datasetId);
+			H5.H5Aclose(attributeId);
+			return length;
+		} finally {
+			lock.unlock();
+		}
 	}	
 	
-	public synchronized byte[] getH5StringAttribute(String groupName, String attributeName, int size) throws HDF5LibraryException, NullPointerException {
-
-		int groupId = H5.H5Gopen(fileId, groupName, HDF5Constants.H5P_DEFAULT);
-		byte[] attrData = new byte[size];
-		int attributeId = H5.H5Aopen(groupId, attributeName, HDF5Constants.H5P_DEFAULT);
-		int tmptid = H5.H5Aget_type(attributeId);
-        int tid = H5.H5Tget_native_type(tmptid);
-		H5.H5Aread(attributeId,tid, attrData);
+	public byte[] getH5StringAttribute(String groupName, String attributeName, int size) throws HDF5LibraryException, NullPointerException {
+		Lock lock = dataLock();
+		lock.lock();
+		try {
+			int groupId = H5.H5Gopen(fileId, groupName, HDF5Constants.H5P_DEFAULT);
+			byte[] attrData = new byte[size];
+			int attributeId = H5.H5Aopen(groupId, attributeName, HDF5Constants.H5P_DEFAULT);
+			int tmptid = H5.H5Aget_type(attributeId);
+	        int tid = H5.H5Tget_native_type(tmptid);
+			H5.H5Aread(attributeId,tid, attrData);
 		
-		//close everything
-		H5.H5Tclose(tmptid);
-		H5.H5Tclose(tid);
-		H5.H5Aclose(attributeId);
-		H5.H5Gclose(groupId);
-		return attrData;
-	
+			//close everything
+			H5.H5Tclose(tmptid);
+			H5.H5Tclose(tid);
+			H5.H5Aclose(attributeId);
+			H5.H5Gclose(groupId);
+			return attrData;
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	private synchronized void writeH5ScalarDSBlock(String datasetName, int startIndex, int length,
+	void writeH5ScalarDSBlock(String datasetName, int startIndex, int length,
 			Object array) throws Exception {
 		Object tmpData = null;
 
@@ -666,117 +895,163 @@ public class PileupHDF {
 
 	}
 	
-	public synchronized Object readH5ScalarDSBlock(String datasetName, int startIndex, int size) throws HDF5LibraryException, NullPointerException, HDF5Exception {
-		Object theData = null;
-
-		int datasetId = H5.H5Dopen(fileId, datasetName, HDF5Constants.H5P_DEFAULT);	
-		int dataspace = H5.H5Dget_space(datasetId);
-		//dims to get
-		long[] start = { startIndex };
-		long[] stride = { 1 };
-		long[] selectedDims = new long[1];
-		long[] maxDims = new long[1];
+	public Object readH5ScalarDSBlock(String datasetName, int startIndex, int size) throws HDF5LibraryException, NullPointerException, HDF5Exception {
+		Lock lock = dataLock();
+		lock.lock();
+		try {
+			Object theData = null;
+
+			int datasetId = H5.H5Dopen(fileId, datasetName, HDF5Constants.H5P_DEFAULT);	
+			int dataspace = H5.H5Dget_space(datasetId);
+			//dims to get
+			long[] start = { startIndex };
+			long[] stride = { 1 };
+			long[] selectedDims = new long[1];
+			long[] maxDims = new long[1];
 		
-		//get the whole dataset
-		if (size == -1) {	
-			H5.H5Sget_simple_extent_dims(dataspace, selectedDims, maxDims);			
-			size = (int) selectedDims[0];
-		} else {
-			selectedDims[0] = size;
-		}	
-		H5.H5Sclose(dataspace);
+			//get the whole dataset
+			if (size == -1) {	
+				H5.H5Sget_simple_extent_dims(dataspace, selectedDims, maxDims);			
+				size = (int) selectedDims[0];
+			} else {
+				selectedDims[0] = size;
+			}	
+			H5.H5Sclose(dataspace);
 
-		//get fileSpaceId for the dataset 
-		int fileSpaceId = H5.H5Dget_space(datasetId);
+			//get fileSpaceId for the dataset 
+			int fileSpaceId = H5.H5Dget_space(datasetId);
 		
-		//get data type and space ids
-		int dataTypeId = H5.H5Dget_type(datasetId);
+			//get data type and space ids
+			int dataTypeId = H5.H5Dget_type(datasetId);
 		
-		int tclass = H5.H5Tget_class(dataTypeId);
+			int tclass = H5.H5Tget_class(dataTypeId);
 
-		boolean isText = (tclass == HDF5Constants.H5T_STRING);
+			boolean isText = (tclass == HDF5Constants.H5T_STRING);
 
-		//select the block required
-		H5.H5Sselect_hyperslab(fileSpaceId, HDF5Constants.H5S_SELECT_SET,
-				start, stride, selectedDims, null);
-		int subSpaceId = H5.H5Screate_simple(1, selectedDims, null);		
+			//select the block required
+			H5.H5Sselect_hyperslab(fileSpaceId, HDF5Constants.H5S_SELECT_SET,
+					start, stride, selectedDims, null);
+			int subSpaceId = H5.H5Screate_simple(1, selectedDims, null);		
 		
-		//allocate space for the data
-		theData = H5Datatype.allocateArray(dataTypeId, size);
-		H5.H5Dread(datasetId, dataTypeId, subSpaceId, fileSpaceId,
-                 HDF5Constants.H5P_DEFAULT, theData);
-		H5.H5Sclose(subSpaceId); 
+			//allocate space for the data
+			theData = H5Datatype.allocateArray(dataTypeId, size);
+			H5.H5Dread(datasetId, dataTypeId, subSpaceId, fileSpaceId,
+	                 HDF5Constants.H5P_DEFAULT, theData);
+			H5.H5Sclose(subSpaceId); 
 				
 		
-		if (isText) {
-			theData = PileupUtil.byteToString((byte[]) theData, H5.H5Tget_size(dataTypeId));
-		}
+			if (isText) {
+				theData = PileupUtil.byteToString((byte[]) theData, H5.H5Tget_size(dataTypeId));
+			}
 		
-		datasetId = H5.H5Dclose(datasetId);		
-		H5.H5Sclose(fileSpaceId);		
-		H5.H5Tclose(dataTypeId); 
+			datasetId = H5.H5Dclose(datasetId);		
+			H5.H5Sclose(fileSpaceId);		
+			H5.H5Tclose(dataTypeId); 
 
-		return theData;		
+			return theData;		
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	public synchronized void createH5ScalarDS(String groupName, int datasetLength, String datasetName, int chunkSize, int dataType, int datatypeSize, Object array) throws Exception {
-
-		if (datasetLength < chunkSize) {
-				chunkSize = datasetLength;
-			}
-			//create dimensions of the object
-			long[] dims = {datasetLength};		
-			long[] chunks = {chunkSize};	
-			long[] maxdims = null;
-			Object theData = array;
-			if (dataType == Datatype.CLASS_STRING) {
-				maxdims = new long[1];
-				maxdims[0] = HDF5Constants.H5S_UNLIMITED;
-			}
-			String name = groupName +  "/" + datasetName;
-			Datatype dtype = createDatatype(dataType, datatypeSize);
-			int datatypeId = -1;
-			//get the type of the data
-			if (dtype.getDatatypeClass() == Datatype.CLASS_STRING) {
-				datatypeId = H5.H5Tcopy(HDF5Constants.H5T_C_S1); 
-				H5.H5Tset_size(datatypeId, dtype.getDatatypeSize());
-				if (theData != null) {
-					theData = PileupUtil.stringToByte((String[]) array, H5.H5Tget_size(datatypeId));
-				} 
-			} else {
-				if (datatypeSize == 4) {
-					datatypeId = H5.H5Tcopy(HDF5Constants.H5T_NATIVE_INT32);
-                }
-                else if (datatypeSize == 8) {
-                	datatypeId = H5.H5Tcopy(HDF5Constants.H5T_NATIVE_INT64);
-                }
+	/*
+	 * the length of the dataset, and the length of its chunks (or the whole dataset if it isn't chunked)
+	 */
+	private int[] getH5DatasetLengthAndChunk(String datasetName) throws HDF5LibraryException, HDF5Exception {
+		Lock lock = dataLock();
+		lock.lock();
+		try {
+			int datasetId = H5.H5Dopen(fileId, datasetName, HDF5Constants.H5P_DEFAULT);
+			int dataspace = H5.H5Dget_space(datasetId);
+			long[] dims = new long[1];
+			long[] maxDims = new long[1];
+			H5.H5Sget_simple_extent_dims(dataspace, dims, maxDims);
+			H5.H5Sclose(dataspace);
+			
+			long[] chunks = { dims[0] };
+			int plist = H5.H5Dget_create_plist(datasetId);
+			if (H5.H5Pget_layout(plist) == HDF5Constants.H5D_CHUNKED) {
+				H5.H5Pget_chunk(plist, 1, chunks);
 			}
+			H5.H5Pclose(plist);
+			H5.H5Dclose(datasetId);
+			return new int[] {(int) dims[0], (int) chunks[0]};
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void createH5ScalarDS(String groupName, int datasetLength, String datasetName, int chunkSize, int dataType, int datatypeSize, Object array) throws Exception {
+		Lock lock = fileLock.writeLock();
+		lock.lock();
+		try {
+			if (datasetLength < chunkSize) {
+					chunkSize = datasetLength;
+				}
+				//create dimensions of the object
+				long[] dims = {datasetLength};		
+				long[] chunks = {chunkSize};	
+				long[] maxdims = null;
+				Object theData = array;
+				if (dataType == Datatype.CLASS_STRING) {
+					maxdims = new long[1];
+					maxdims[0] = HDF5Constants.H5S_UNLIMITED;
+				}
+				String name = groupName +  "/" + datasetName;
+				if (null != blockCache) {
+					blockCache.forget(name);
+				}
+				if (null != dataStore && dataType != Datatype.CLASS_STRING) {
+					// the data goes to the store - the (empty) HDF dataset is kept so that the file can be exported back to HDF
+					dataStore.createDataset(name, datasetLength, datatypeSize == 8, array);
+					theData = null;
+				}
+				Datatype dtype = createDatatype(dataType, datatypeSize);
+				int datatypeId = -1;
+				//get the type of the data
+				if (dtype.getDatatypeClass() == Datatype.CLASS_STRING) {
+					datatypeId = H5.H5Tcopy(HDF5Constants.H5T_C_S1); 
+					H5.H5Tset_size(datatypeId, dtype.getDatatypeSize());
+					if (theData != null) {
+						theData = PileupUtil.stringToByte((String[]) array, H5.H5Tget_size(datatypeId));
+					} 
+				} else {
+					if (datatypeSize == 4) {
+						datatypeId = H5.H5Tcopy(HDF5Constants.H5T_NATIVE_INT32);
+	                }
+	                else if (datatypeSize == 8) {
+	                	datatypeId = H5.H5Tcopy(HDF5Constants.H5T_NATIVE_INT64);
+	                }
+				}
 			
-			int dataspaceId = H5.H5Screate_simple(1, dims, maxdims);
+				int dataspaceId = H5.H5Screate_simple(1, dims, maxdims);
 
-            // figure out creation properties
-            int plist = H5.H5Pcreate(HDF5Constants.H5P_DATASET_CREATE);
+	            // figure out creation properties
+	            int plist = H5.H5Pcreate(HDF5Constants.H5P_DATASET_CREATE);
             
-            //set chunking and compression
-            H5.H5Pset_layout(plist, HDF5Constants.H5D_CHUNKED);
-            H5.H5Pset_chunk(plist, 1, chunks);
-            H5.H5Pset_deflate(plist, 1);
-            int datasetId = H5.H5Dcreate(fileId, name, datatypeId, dataspaceId, HDF5Constants.H5P_DEFAULT, plist, HDF5Constants.H5P_DEFAULT);
-            int fileSpaceId = H5.H5Dget_space(datasetId);
-            if (datasetId < 0) {
-            	throw new QPileupException("CREATE_ERROR", "dataset", groupName);
-            }            
+	            //set chunking and compression
+	            H5.H5Pset_layout(plist, HDF5Constants.H5D_CHUNKED);
+	            H5.H5Pset_chunk(plist, 1, chunks);
+	            H5.H5Pset_deflate(plist, 1);
+	            int datasetId = H5.H5Dcreate(fileId, name, datatypeId, dataspaceId, HDF5Constants.H5P_DEFAULT, plist, HDF5Constants.H5P_DEFAULT);
+	            int fileSpaceId = H5.H5Dget_space(datasetId);
+	            if (datasetId < 0) {
+	            	throw new QPileupException("CREATE_ERROR", "dataset", groupName);
+	            }            
            
-            //check if there is anything in the array to write
-            if (theData != null) { 
-            	H5.H5Dwrite(datasetId, datatypeId, dataspaceId, fileSpaceId, HDF5Constants.H5P_DEFAULT, theData);
-            }
+	            //check if there is anything in the array to write
+	            if (theData != null) { 
+	            	H5.H5Dwrite(datasetId, datatypeId, dataspaceId, fileSpaceId, HDF5Constants.H5P_DEFAULT, theData);
+	            }
             
-    		H5.H5Sclose(dataspaceId); 
-    		H5.H5Tclose(datatypeId); 
-    		H5.H5Dclose(datasetId); 
-    		H5.H5Sclose(fileSpaceId);
-    		H5.H5Pclose(plist);
+	    		H5.H5Sclose(dataspaceId); 
+	    		H5.H5Tclose(datatypeId); 
+	    		H5.H5Dclose(datasetId); 
+	    		H5.H5Sclose(fileSpaceId);
+	    		H5.H5Pclose(plist);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	public String getVersionMessage() throws HDF5LibraryException, HDF5Exception {
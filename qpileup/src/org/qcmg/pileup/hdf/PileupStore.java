@@ -0,0 +1,39 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.pileup.hdf;
+
+/**
+ * Storage for the numeric (position and strand element) datasets of a pileup, as an alternative to keeping them in the HDF file itself.
+ * <p>
+ * Datasets are one dimensional arrays of <code>int</code> or <code>long</code>, named as in the HDF file (eg. <code>/chr1/forward/baseA</code>).
+ * When a store is in use, {@link PileupHDF} still holds the structure of the pileup (chromosome groups and lengths) and its metadata,
+ * and passes reads and writes of the datasets that the store has on to it.
+ * <p>
+ * Implementations must allow concurrent reads and writes of non-overlapping blocks.
+ */
+public interface PileupStore {
+
+	boolean hasDataset(String datasetName);
+
+	/**
+	 * Creates (or replaces) a dataset of the given length, filled with the supplied array, or with zeros if the array is null
+	 */
+	void createDataset(String datasetName, int length, boolean isLong, Object array) throws Exception;
+
+	/**
+	 * @return an <code>int[]</code> or <code>long[]</code> of <code>size</code> elements starting at <code>startIndex</code> (0-based),
+	 * or the whole dataset if <code>size</code> is -1
+	 */
+	Object readDatasetBlock(String datasetName, int startIndex, int size) throws Exception;
+
+	void writeDatasetBlock(String datasetName, int startIndex, int length, Object array) throws Exception;
+
+	/**
+	 * Makes sure that everything written so far is on disk
+	 */
+	void flush() throws Exception;
+
+}
@@ -153,7 +153,7 @@ public class StrandDS {
 		}	
 	}
 
-	public synchronized void readDatasetBlock(int startIndex, int size)  {
+	public void readDatasetBlock(int startIndex, int size)  {
 		
 		for (Map.Entry<String, StrandElement> entry: elementMap.entrySet()) {
 			
@@ -168,7 +168,7 @@ public class StrandDS {
 		}
 	}
 	
-	public synchronized void writeDatasetBlocks(int startIndex, int size, boolean isRemove) throws Exception {
+	public void writeDatasetBlocks(int startIndex, int size, boolean isRemove) throws Exception {
 		if (startIndex > -1 && size > 0) {
 			
 			for (Map.Entry<String, StrandElement> entry: elementMap.entrySet()) {			
@@ -55,7 +55,7 @@ public class BootstrapMT {
 			throw new QPileupException("REFERENCE_FILE_ERROR");
 		}	
 		this.startTime = startTime;		
-		this.hdf = new PileupHDF(options.getHdfFile(), true, false);
+		this.hdf = new PileupHDF(options.getHdfFile(), true, false, options.isColumnarStore());
 		
 		this.metaDS = new MetadataRecordDS(hdf, options.getLowReadCount(), options.getPercentNonRef(), new Integer(0));
 		this.referenceDS = new MetadataReferenceDS(hdf, options.getReferenceFile());		
@@ -46,7 +46,7 @@ public class MergeMT {
 	public MergeMT(Options options, long startTime, String mode)
 			throws Exception {
 		this.options = options;
-		this.hdf = new PileupHDF(options.getHdfFile(), true, false);
+		this.hdf = new PileupHDF(options.getHdfFile(), true, false, options.isColumnarStore());
 		
 		List<String> files = options.getInputHDFFiles();
 		inputHDFs = new ArrayList<PileupHDF>();
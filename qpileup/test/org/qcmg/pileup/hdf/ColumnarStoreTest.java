@@ -0,0 +1,152 @@
+package org.qcmg.pileup.hdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qcmg.pileup.QPileupException;
+
+public class ColumnarStoreTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+
+	@Test
+	public void createIsZeroFilled() throws Exception {
+		ColumnarStore store = new ColumnarStore(new File(testFolder.getRoot(), "test.h5.columns"), true);
+		assertFalse(store.hasDataset("/chr1/forward/baseA"));
+		store.createDataset("/chr1/forward/baseA", 100, false, null);
+		store.createDataset("/chr1/forward/qualA", 100, true, null);
+		assertTrue(store.hasDataset("/chr1/forward/baseA"));
+		assertTrue(new File(testFolder.getRoot(), "test.h5.columns/chr1/forward/qualA.i64").exists());
+
+		assertArrayEquals(new int[100], (int[]) store.readDatasetBlock("/chr1/forward/baseA", 0, -1));
+		assertArrayEquals(new long[10], (long[]) store.readDatasetBlock("/chr1/forward/qualA", 50, 10));
+		assertEquals(100, store.getDatasetLength("/chr1/forward/qualA"));
+	}
+
+	@Test
+	public void createWithData() throws Exception {
+		ColumnarStore store = new ColumnarStore(testFolder.newFolder("columns"), true);
+		long [] positions = {1, 2, 3, 4, 5};
+		store.createDataset("/chr1/position/position", 5, true, positions);
+		assertArrayEquals(positions, (long[]) store.readDatasetBlock("/chr1/position/position", 0, 5));
+		assertArrayEquals(new long[] {3, 4}, (long[]) store.readDatasetBlock("/chr1/position/position", 2, 2));
+	}
+
+	@Test
+	public void readAndWriteAcrossSegments() throws Exception {
+		File dir = testFolder.newFolder("columns");
+		ColumnarStore store = new ColumnarStore(dir, true, 7);
+		store.createDataset("/chrX/reverse/baseC", 50, false, null);
+		store.createDataset("/chrX/reverse/qualC", 50, true, null);
+
+		int [] ints = new int[30];
+		long [] longs = new long[30];
+		for (int i = 0 ; i < 30 ; i++) {
+			ints[i] = i + 1;
+			longs[i] = Integer.MAX_VALUE + (long) i;
+		}
+		store.writeDatasetBlock("/chrX/reverse/baseC", 5, 30, ints);
+		store.writeDatasetBlock("/chrX/reverse/qualC", 20, 30, longs);
+
+		int [] allInts = (int[]) store.readDatasetBlock("/chrX/reverse/baseC", 0, -1);
+		assertEquals(50, allInts.length);
+		for (int i = 0 ; i < 50 ; i++) {
+			assertEquals(i >= 5 && i < 35 ? i - 4 : 0, allInts[i]);
+		}
+		assertArrayEquals(longs, (long[]) store.readDatasetBlock("/chrX/reverse/qualC", 20, 30));
+
+		// and again after flushing, and from a new store on the same directory
+		store.flush();
+		assertArrayEquals(allInts, (int[]) store.readDatasetBlock("/chrX/reverse/baseC", 0, 50));
+		ColumnarStore reopened = new ColumnarStore(dir, false, 11);
+		assertArrayEquals(allInts, (int[]) reopened.readDatasetBlock("/chrX/reverse/baseC", 0, 50));
+		assertArrayEquals(longs, (long[]) reopened.readDatasetBlock("/chrX/reverse/qualC", 20, 30));
+	}
+
+	@Test
+	public void recreateReplacesDataset() throws Exception {
+		ColumnarStore store = new ColumnarStore(testFolder.newFolder("columns"), true);
+		store.createDataset("/chr1/forward/baseA", 3, false, new int[] {1, 2, 3});
+		assertArrayEquals(new int[] {1, 2, 3}, (int[]) store.readDatasetBlock("/chr1/forward/baseA", 0, -1));
+		store.createDataset("/chr1/forward/baseA", 4, true, null);
+		assertArrayEquals(new long[4], (long[]) store.readDatasetBlock("/chr1/forward/baseA", 0, -1));
+	}
+
+	@Test
+	public void outOfRange() throws Exception {
+		ColumnarStore store = new ColumnarStore(testFolder.newFolder("columns"), true);
+		store.createDataset("/chr1/forward/baseA", 10, false, null);
+		try {
+			store.readDatasetBlock("/chr1/forward/baseA", 5, 6);
+			fail("Should have thrown a QPileupException");
+		} catch (QPileupException e) {}
+		try {
+			store.writeDatasetBlock("/chr1/forward/baseA", -1, 2, new int[2]);
+			fail("Should have thrown a QPileupException");
+		} catch (QPileupException e) {}
+		try {
+			store.readDatasetBlock("/chr1/forward/baseT", 0, 1);
+			fail("Should have thrown a QPileupException");
+		} catch (QPileupException e) {}
+	}
+
+	@Test
+	public void createDeletesExistingDirectory() throws Exception {
+		File dir = testFolder.newFolder("columns");
+		ColumnarStore store = new ColumnarStore(dir, true);
+		store.createDataset("/chr1/forward/baseA", 10, false, null);
+		store = new ColumnarStore(dir, true);
+		assertFalse(store.hasDataset("/chr1/forward/baseA"));
+
+		try {
+			new ColumnarStore(new File(testFolder.getRoot(), "missing"), false);
+			fail("Should have thrown a QPileupException");
+		} catch (QPileupException e) {}
+	}
+
+	@Test
+	public void concurrentWriters() throws Exception {
+		final ColumnarStore store = new ColumnarStore(testFolder.newFolder("columns"), true, 1000);
+		final int blockSize = 250;
+		final int noOfBlocks = 40;
+		store.createDataset("/chr1/forward/baseA", blockSize * noOfBlocks, false, null);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int b = 0 ; b < noOfBlocks ; b++) {
+			final int block = b;
+			futures.add(executor.submit(() -> {
+				int [] data = new int[blockSize];
+				for (int i = 0 ; i < blockSize ; i++) {
+					data[i] = block * blockSize + i;
+				}
+				store.writeDatasetBlock("/chr1/forward/baseA", block * blockSize, blockSize, data);
+				return null;
+			}));
+		}
+		for (Future<?> f : futures) {
+			f.get();
+		}
+		executor.shutdown();
+
+		int [] all = (int[]) store.readDatasetBlock("/chr1/forward/baseA", 0, -1);
+		for (int i = 0 ; i < all.length ; i++) {
+			assertEquals(i, all[i]);
+		}
+	}
+
+}
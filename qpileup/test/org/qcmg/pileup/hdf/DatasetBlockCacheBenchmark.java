@@ -0,0 +1,171 @@
+package org.qcmg.pileup.hdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of concurrent block reads of a strand element dataset, without needing the hdf-java natives.
+ * <p>
+ * <code>hdfMonitor</code> stands in for reads that reach the HDF file: the dataset is held as deflate (level 1) compressed chunks of <code>chunkSize</code> longs,
+ * as qpileup creates them, and each read inflates the chunks it overlaps while holding a single global monitor, as hdf-java's <code>synchronized static</code> natives do.
+ * <code>blockCache</code> makes the same reads through a {@link DatasetBlockCache} loading from that source, and <code>columnarStore</code> reads a {@link ColumnarStore}.
+ * Reads are of <code>blockSize</code> positions at random places in the first <code>workingSetChunks</code> chunks, which fit in the cache - eg. view or metrics
+ * going over the same regions again. Throughput is measured at 1, 2, 4 and 8 threads - on a machine with that many cores, the monitor bound reads stay flat
+ * while the cached and columnar reads scale.
+ * Not a unit test - run with: java -cp &lt;test classpath&gt; org.qcmg.pileup.hdf.DatasetBlockCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatasetBlockCacheBenchmark {
+
+	private static final String DATASET = "/chr1/forward/qualA";
+	private static final Object H5_MONITOR = new Object();
+
+	@Param({"10000"})
+	public int chunkSize;
+
+	@Param({"1000"})
+	public int blockSize;
+
+	@Param({"256"})
+	public int workingSetChunks;
+
+	private int length;
+	private byte[][] compressedChunks;
+	private DatasetBlockCache cache;
+	private File storeDirectory;
+	private ColumnarStore store;
+
+	@State(Scope.Thread)
+	public static class Section {
+		private final Random random = new Random(Thread.currentThread().getId());
+		int startIndex;
+
+		@Setup(Level.Invocation)
+		public void next(DatasetBlockCacheBenchmark benchmark) {
+			startIndex = random.nextInt(benchmark.length - benchmark.blockSize + 1);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		length = chunkSize * workingSetChunks;
+		Random random = new Random(42);
+		long[] data = new long[length];
+		for (int i = 0 ; i < length ; i++) {
+			// mostly low coverage, as in a pileup
+			data[i] = random.nextInt(64);
+		}
+
+		compressedChunks = new byte[workingSetChunks][];
+		Deflater deflater = new Deflater(1);
+		for (int c = 0 ; c < workingSetChunks ; c++) {
+			ByteBuffer bytes = ByteBuffer.allocate(chunkSize * 8);
+			bytes.asLongBuffer().put(data, c * chunkSize, chunkSize);
+			deflater.reset();
+			deflater.setInput(bytes.array());
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1 << 16];
+			while ( ! deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			compressedChunks[c] = out.toByteArray();
+		}
+		deflater.end();
+
+		cache = new DatasetBlockCache(new DatasetBlockCache.Loader() {
+			@Override
+			public Object load(String datasetName, int startIndex, int size) throws Exception {
+				return readFromChunks(startIndex, size);
+			}
+			@Override
+			public int[] getLengthAndBlockLength(String datasetName) {
+				return new int[] {length, chunkSize};
+			}
+		}, DatasetBlockCache.DEFAULT_MAX_ELEMENTS);
+
+		storeDirectory = Files.createTempDirectory("columns").toFile();
+		store = new ColumnarStore(storeDirectory, true);
+		store.createDataset(DATASET, length, true, data);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		store.flush();
+		ColumnarStore.delete(storeDirectory);
+	}
+
+	/*
+	 * inflates the chunks that the block overlaps, holding the global monitor throughout
+	 */
+	private long[] readFromChunks(int startIndex, int size) throws DataFormatException {
+		synchronized (H5_MONITOR) {
+			long[] result = new long[size];
+			byte[] chunk = new byte[chunkSize * 8];
+			Inflater inflater = new Inflater();
+			try {
+				for (int c = startIndex / chunkSize ; c * chunkSize < startIndex + size ; c++) {
+					inflater.reset();
+					inflater.setInput(compressedChunks[c]);
+					inflater.inflate(chunk);
+					int from = Math.max(startIndex, c * chunkSize);
+					int to = Math.min(startIndex + size, (c + 1) * chunkSize);
+					ByteBuffer.wrap(chunk).asLongBuffer().position(from - c * chunkSize).get(result, from - startIndex, to - from);
+				}
+			} finally {
+				inflater.end();
+			}
+			return result;
+		}
+	}
+
+	@Benchmark
+	public Object hdfMonitor(Section section) throws Exception {
+		return readFromChunks(section.startIndex, blockSize);
+	}
+
+	@Benchmark
+	public Object blockCache(Section section) throws Exception {
+		return cache.read(DATASET, section.startIndex, blockSize);
+	}
+
+	@Benchmark
+	public Object columnarStore(Section section) throws Exception {
+		return store.readDatasetBlock(DATASET, section.startIndex, blockSize);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for (int threads : new int[] {1, 2, 4, 8}) {
+			new Runner(new OptionsBuilder().include(DatasetBlockCacheBenchmark.class.getSimpleName()).threads(threads).build()).run();
+		}
+	}
+}
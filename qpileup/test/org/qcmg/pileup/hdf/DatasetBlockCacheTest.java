@@ -0,0 +1,216 @@
+package org.qcmg.pileup.hdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class DatasetBlockCacheTest {
+
+	/*
+	 * stands in for the HDF file - a long and an int dataset, counting the reads that reach it
+	 */
+	private static class ArrayLoader implements DatasetBlockCache.Loader {
+		final long[] longs;
+		final int[] ints;
+		final int blockLength;
+		final AtomicInteger loads = new AtomicInteger();
+
+		ArrayLoader(int length, int blockLength) {
+			this.blockLength = blockLength;
+			longs = new long[length];
+			ints = new int[length];
+			for (int i = 0 ; i < length ; i++) {
+				longs[i] = Integer.MAX_VALUE + (long) i;
+				ints[i] = i;
+			}
+		}
+
+		@Override
+		public synchronized Object load(String datasetName, int startIndex, int size) {
+			loads.incrementAndGet();
+			return datasetName.endsWith("qualA") ? Arrays.copyOfRange(longs, startIndex, startIndex + size) : Arrays.copyOfRange(ints, startIndex, startIndex + size);
+		}
+
+		@Override
+		public int[] getLengthAndBlockLength(String datasetName) {
+			return new int[] {longs.length, blockLength};
+		}
+	}
+
+	@Test
+	public void readsAcrossBlocks() throws Exception {
+		ArrayLoader loader = new ArrayLoader(95, 10);
+		DatasetBlockCache cache = new DatasetBlockCache(loader, 1000);
+
+		assertArrayEquals(Arrays.copyOfRange(loader.longs, 5, 37), (long[]) cache.read("/chr1/forward/qualA", 5, 32));
+		assertEquals(4, loader.loads.get());
+		assertArrayEquals(Arrays.copyOfRange(loader.ints, 0, 95), (int[]) cache.read("/chr1/forward/baseA", 0, -1));
+		// the last block is short
+		assertArrayEquals(Arrays.copyOfRange(loader.longs, 88, 95), (long[]) cache.read("/chr1/forward/qualA", 88, 7));
+		assertEquals(0, ((int[]) cache.read("/chr1/forward/baseA", 40, 0)).length);
+
+		// repeat reads don't reach the file
+		int loads = loader.loads.get();
+		assertArrayEquals(Arrays.copyOfRange(loader.longs, 12, 30), (long[]) cache.read("/chr1/forward/qualA", 12, 18));
+		assertEquals(loads, loader.loads.get());
+		assertTrue(cache.getHits() > 0);
+
+		// the caller owns the array
+		long[] block = (long[]) cache.read("/chr1/forward/qualA", 0, 10);
+		block[0] = -1;
+		assertEquals(loader.longs[0], ((long[]) cache.read("/chr1/forward/qualA", 0, 10))[0]);
+
+		try {
+			cache.read("/chr1/forward/qualA", 90, 6);
+			fail("Should have thrown an IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {}
+	}
+
+	@Test
+	public void writesInvalidateBlocks() throws Exception {
+		ArrayLoader loader = new ArrayLoader(100, 10);
+		DatasetBlockCache cache = new DatasetBlockCache(loader, 1000);
+		cache.read("/chr1/forward/baseA", 0, -1);
+		int loads = loader.loads.get();
+
+		loader.ints[25] = 100;
+		loader.ints[26] = 101;
+		cache.invalidate("/chr1/forward/baseA", 25, 2);
+		assertArrayEquals(Arrays.copyOfRange(loader.ints, 0, 100), (int[]) cache.read("/chr1/forward/baseA", 0, -1));
+		assertEquals(loads + 1, loader.loads.get());
+
+		cache.forget("/chr1/forward/baseA");
+		cache.read("/chr1/forward/baseA", 0, -1);
+		assertEquals(loads + 11, loader.loads.get());
+	}
+
+	@Test
+	public void blockReadDuringWriteIsNotKept() throws Exception {
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch written = new CountDownLatch(1);
+		final AtomicBoolean blocked = new AtomicBoolean();
+		final ArrayLoader loader = new ArrayLoader(10, 10) {
+			@Override
+			public Object load(String datasetName, int startIndex, int size) {
+				Object stale = super.load(datasetName, startIndex, size);
+				if (size > 0 && blocked.compareAndSet(false, true)) {
+					loading.countDown();
+					try {
+						written.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return stale;
+			}
+		};
+		final DatasetBlockCache cache = new DatasetBlockCache(loader, 1000);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Object> read = executor.submit(() -> cache.read("/chr1/forward/baseA", 0, 10));
+			loading.await();
+			loader.ints[3] = 42;
+			cache.invalidate("/chr1/forward/baseA", 3, 1);
+			written.countDown();
+			assertEquals(3, ((int[]) read.get())[3]);
+		} finally {
+			executor.shutdown();
+		}
+		// the block read before the write has not been kept
+		assertEquals(42, ((int[]) cache.read("/chr1/forward/baseA", 0, 10))[3]);
+	}
+
+	@Test
+	public void cachedReadsDoNotWaitForTheFile() throws Exception {
+		final CountDownLatch inFile = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final ArrayLoader loader = new ArrayLoader(100, 10) {
+			@Override
+			public synchronized Object load(String datasetName, int startIndex, int size) {
+				// like the hdf-java natives, hold the one monitor for the whole read
+				if (datasetName.endsWith("baseC")) {
+					inFile.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.load(datasetName, startIndex, size);
+			}
+		};
+		final DatasetBlockCache cache = new DatasetBlockCache(loader, 1000);
+		cache.read("/chr1/forward/qualA", 0, -1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Object> slowRead = executor.submit(() -> cache.read("/chr1/forward/baseC", 0, 10));
+			inFile.await();
+			// the file is busy, but cached blocks are still served
+			Future<Object> cachedRead = executor.submit(() -> cache.read("/chr1/forward/qualA", 20, 50));
+			assertArrayEquals(Arrays.copyOfRange(loader.longs, 20, 70), (long[]) cachedRead.get(10, TimeUnit.SECONDS));
+			release.countDown();
+			slowRead.get();
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void evictsOverCapacity() throws Exception {
+		ArrayLoader loader = new ArrayLoader(1000, 10);
+		DatasetBlockCache cache = new DatasetBlockCache(loader, 100);
+		for (int i = 0 ; i < 1000 ; i += 10) {
+			cache.read("/chr1/forward/qualA", i, 10);
+			assertTrue(cache.getCachedElements() <= 100);
+		}
+		assertArrayEquals(loader.longs, (long[]) cache.read("/chr1/forward/qualA", 0, -1));
+		assertTrue(cache.getCachedElements() <= 100);
+	}
+
+	@Test
+	public void concurrentReads() throws Exception {
+		final ArrayLoader loader = new ArrayLoader(10000, 100);
+		final DatasetBlockCache cache = new DatasetBlockCache(loader, 5000);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int t = 0 ; t < 4 ; t++) {
+				final int seed = t;
+				results.add(executor.submit(() -> {
+					Random random = new Random(seed);
+					for (int i = 0 ; i < 2000 ; i++) {
+						int start = random.nextInt(9000);
+						int size = random.nextInt(1000);
+						if ( ! Arrays.equals(Arrays.copyOfRange(loader.longs, start, start + size), (long[]) cache.read("/chr1/forward/qualA", start, size))) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
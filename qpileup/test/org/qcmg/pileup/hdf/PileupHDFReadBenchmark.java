@@ -0,0 +1,116 @@
+package org.qcmg.pileup.hdf;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qcmg.pileup.model.Chromosome;
+import org.qcmg.pileup.model.StrandEnum;
+
+/**
+ * JMH benchmark of concurrent reads from a single, shared {@link PileupHDF}, the way the MetricsMT and ViewMT worker threads read it.
+ * <p>
+ * Each invocation reads a randomly placed block of <code>blockSize</code> positions from the position and strand datasets of one of the chromosomes in the file,
+ * either the metrics subset of the strand elements, or all of them followed by the per position element maps that view builds its records from.
+ * Strand element reads go through the {@link DatasetBlockCache} of the file: a small file is soon served entirely from the cache, while on a whole genome file most random blocks still miss and are read from the HDF5 library.
+ * Throughput is measured at 1, 2, 4 and 8 threads - pass the path of a whole genome HDF as the first argument (defaults to the small test HDF).
+ * Not a unit test - run with: java -cp &lt;test classpath&gt; -Djava.library.path=&lt;hdf-java native libs&gt; org.qcmg.pileup.hdf.PileupHDFReadBenchmark [hdf file]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PileupHDFReadBenchmark {
+
+	@Param({""})
+	public String hdfFile;
+
+	@Param({"10000"})
+	public int blockSize;
+
+	private PileupHDF hdf;
+	private List<Chromosome> chromosomes;
+
+	@State(Scope.Thread)
+	public static class Section {
+		private final Random random = new Random(Thread.currentThread().getId());
+		Chromosome chromosome;
+		int startIndex;
+		int size;
+
+		@Setup(Level.Invocation)
+		public void next(PileupHDFReadBenchmark benchmark) {
+			chromosome = benchmark.chromosomes.get(random.nextInt(benchmark.chromosomes.size()));
+			size = Math.min(benchmark.blockSize, chromosome.getTotalLength());
+			startIndex = random.nextInt(chromosome.getTotalLength() - size + 1);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		String file = hdfFile.isEmpty() ? getClass().getResource("/resources/test.h5").getFile() : hdfFile;
+		hdf = new PileupHDF(file, false, false);
+		hdf.open();
+		chromosomes = hdf.getChromosomeLengths();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		hdf.close();
+	}
+
+	@Benchmark
+	public void metrics(Section section, Blackhole bh) throws Exception {
+		PositionDS position = new PositionDS(hdf, section.chromosome.getHdfGroupName());
+		StrandDS forward = new StrandDS(hdf, section.chromosome.getName(), false, StrandEnum.getMetricsElements());
+		StrandDS reverse = new StrandDS(hdf, section.chromosome.getName(), true, StrandEnum.getMetricsElements());
+		position.readDatasetBlock(section.startIndex, section.size);
+		forward.readDatasetBlock(section.startIndex, section.size);
+		reverse.readDatasetBlock(section.startIndex, section.size);
+		bh.consume(position);
+		bh.consume(forward);
+		bh.consume(reverse);
+	}
+
+	@Benchmark
+	public void view(Section section, Blackhole bh) throws Exception {
+		PositionDS position = new PositionDS(hdf, section.chromosome.getHdfGroupName());
+		StrandDS forward = new StrandDS(hdf, section.chromosome.getName(), false);
+		StrandDS reverse = new StrandDS(hdf, section.chromosome.getName(), true);
+		position.readDatasetBlock(section.startIndex, section.size);
+		forward.readDatasetBlock(section.startIndex, section.size);
+		reverse.readDatasetBlock(section.startIndex, section.size);
+		for (int i = 0, len = position.getDatasetLength() ; i < len ; i++) {
+			bh.consume(position.getPositionElement(i));
+			bh.consume(forward.getStrandElementMap(i));
+			bh.consume(reverse.getStrandElementMap(i));
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String file = args.length > 0 ? args[0] : "";
+		for (int threads : new int[] {1, 2, 4, 8}) {
+			new Runner(new OptionsBuilder().include(PileupHDFReadBenchmark.class.getSimpleName())
+					.param("hdfFile", file).threads(threads).build()).run();
+		}
+	}
+}
@@ -14,6 +14,8 @@ package org.qcmg.qprofiler2;
 import java.util.List;
 import java.util.ResourceBundle;
 import org.qcmg.common.messages.QMessage;
+import org.qcmg.qprofiler2.bam.BamSummarizerMT2;
+
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 
@@ -28,6 +30,8 @@ final class Options2 {
 	private static final String TAGS_INT_OPTION_DESCRIPTION = messages.getMessage("TAGS_INT_OPTION_DESCRIPTION");
 	private static final String TAGS_CHAR_OPTION_DESCRIPTION = messages.getMessage("TAGS_CHAR_OPTION_DESCRIPTION");
 	private static final String MAX_RECORDS_OPTION_DESCRIPTION = messages.getMessage("MAX_RECORDS_OPTION_DESCRIPTION");
+	private static final String BATCH_SIZE_OPTION_DESCRIPTION = messages.getMessage("BATCH_SIZE_OPTION_DESCRIPTION") + BamSummarizerMT2.DEFAULT_BATCH_SIZE;
+	private static final String QUEUE_CAPACITY_OPTION_DESCRIPTION = messages.getMessage("QUEUE_CAPACITY_OPTION_DESCRIPTION") + BamSummarizerMT2.DEFAULT_QUEUE_CAPACITY;
 	private static final String LOG_OPTION_DESCRIPTION = messages.getMessage("LOG_OPTION_DESCRIPTION");
 	private static final String LOG_LEVEL_OPTION_DESCRIPTION = messages.getMessage("LOG_LEVEL_OPTION_DESCRIPTION");
 	private static final String OUTPUT_FILE_DESCRIPTION = messages.getMessage("OUTPUT_FILE_DESCRIPTION");
@@ -51,6 +55,8 @@ final class Options2 {
 	private int noOfProducerThreads;
 	private int noOfConsumerThreads;
 	private int maxRecords;
+	private int batchSize = BamSummarizerMT2.DEFAULT_BATCH_SIZE;
+	private int queueCapacity = BamSummarizerMT2.DEFAULT_QUEUE_CAPACITY;
 	private final String log;
 	private final String logLevel;
 	
@@ -66,6 +72,8 @@ final class Options2 {
 		parser.accepts("ntProducer", NO_OF_THREADS_OPTION_DESCRIPTION).withRequiredArg().ofType(Integer.class);
 		parser.accepts("ntConsumer", NO_OF_THREADS_OPTION_DESCRIPTION).withRequiredArg().ofType(Integer.class);
 		parser.accepts("maxRecords", MAX_RECORDS_OPTION_DESCRIPTION).withRequiredArg().ofType(Integer.class);
+		parser.accepts("batchSize", BATCH_SIZE_OPTION_DESCRIPTION).withRequiredArg().ofType(Integer.class);
+		parser.accepts("queueCapacity", QUEUE_CAPACITY_OPTION_DESCRIPTION).withRequiredArg().ofType(Integer.class);
 		parser.accepts("include", INCLUDE_OPTION_DESCRIPTION).withRequiredArg().ofType(String.class).withValuesSeparatedBy(',');
 		parser.accepts("log", LOG_OPTION_DESCRIPTION).withRequiredArg().ofType(String.class);
 		parser.accepts("loglevel", LOG_LEVEL_OPTION_DESCRIPTION).withRequiredArg().ofType(String.class);
@@ -93,6 +101,16 @@ final class Options2 {
 		if (null != maxRecordsObject)
 			maxRecords =  (Integer) maxRecordsObject;
 		
+		// batchSize and queueCapacity - multi-threaded BAM mode
+		Object batchSizeObject = options.valueOf("batchSize"); 
+		if (null != batchSizeObject)
+			batchSize =  (Integer) batchSizeObject;
+		Object queueCapacityObject = options.valueOf("queueCapacity"); 
+		if (null != queueCapacityObject)
+			queueCapacity =  (Integer) queueCapacityObject;
+		if (batchSize < 1 || queueCapacity < 1)
+			throw new IllegalArgumentException(messages.getMessage("BATCH_OPTION_ERROR") + " batchSize: " + batchSize + ", queueCapacity: " + queueCapacity);
+		
 		// include
 		List<String> includeArgs = (List<String>) options.valuesOf("include");
 		includes = new String[includeArgs.size()];
@@ -201,6 +219,14 @@ final class Options2 {
 		return maxRecords;
 	}
 	
+	int getBatchSize() {
+		return batchSize;
+	}
+	
+	int getQueueCapacity() {
+		return queueCapacity;
+	}
+	
 	QMessage getMessage(){ return messages;}
 	
 	String getLog() {
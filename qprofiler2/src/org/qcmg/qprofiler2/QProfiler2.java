@@ -63,6 +63,8 @@ public class QProfiler2 {
 	private int noOfConsumerThreads;
 	private int noOfProducerThreads;
 	private int maxRecords;
+	private int batchSize;
+	private int queueCapacity;
 	private String logFile;
 	private String validation;
 	private boolean noHtml; 
@@ -237,7 +239,7 @@ public class QProfiler2 {
 				break;
 			case BAM:
 				if (noOfConsumerThreads > 0) {
-					summarizer = new BamSummarizerMT2(noOfProducerThreads, noOfConsumerThreads, cmdLineInclude, maxRecords, cmdLineTags, cmdLineTagsInt, cmdLineTagsChar, validation);
+					summarizer = new BamSummarizerMT2(noOfProducerThreads, noOfConsumerThreads, cmdLineInclude, maxRecords, cmdLineTags, cmdLineTagsInt, cmdLineTagsChar, validation, batchSize, queueCapacity);
 				} else {
 					summarizer = new BamSummarizer2(cmdLineInclude, maxRecords, cmdLineTags, cmdLineTagsInt, cmdLineTagsChar, validation);
 				}
@@ -324,6 +326,8 @@ public class QProfiler2 {
 			// get no of threads
 			noOfConsumerThreads = options.getNoOfConsumerThreads();
 			noOfProducerThreads = Math.max(1, options.getNoOfProducerThreads());
+			batchSize = options.getBatchSize();
+			queueCapacity = options.getQueueCapacity();
 			if (noOfConsumerThreads > 0) {
 				logger.tool("Running in multi-threaded mode (BAM files only). No of available processors: " + NO_OF_PROCESORS + 
 						", no of requested consumer threads: " + noOfConsumerThreads + ", producer threads: " + noOfProducerThreads);
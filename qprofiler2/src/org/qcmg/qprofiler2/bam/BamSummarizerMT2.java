@@ -15,6 +15,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.AbstractQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -40,13 +41,28 @@ import org.qcmg.qprofiler2.Summarizer;
 import org.qcmg.qprofiler2.report.SummaryReport;
 
 
+/**
+ * Multi-threaded BAM summarizer.
+ * <p>
+ * Producer threads read the bam (by sequence, if there is an index and more than 1 producer) and pass records to the consumer threads in batches,
+ * through a {@link RecordBatchQueues}, so the number of records held in memory is at most
+ * <code>noOfProducers * (queueCapacity + 1) * batchSize</code> plus a batch per consumer, however much faster decoding is than summarising.
+ * <p>
+ * Each consumer parses records into its own partial {@link BamSummaryReport2}, so consumers don't contend with one another,
+ * and the partial reports are merged once all records have been parsed.
+ */
 public class BamSummarizerMT2 implements Summarizer {
 	
 	final static QLogger logger = QLoggerFactory.getLogger(BamSummarizerMT2.class);
 	
+	public static final int DEFAULT_BATCH_SIZE = 2048;
+	public static final int DEFAULT_QUEUE_CAPACITY = 16;
+	
 	private int noOfProducerThreads;
 	private final int noOfConsumerThreads;
 	private final int maxRecords;
+	private final int batchSize;
+	private final int queueCapacity;
 	private final String [] includes;
 //	private static String bamHeader;
 	private static SAMSequenceDictionary samSeqDict;
@@ -62,6 +78,15 @@ public class BamSummarizerMT2 implements Summarizer {
 	
 	public BamSummarizerMT2(int noOfProducerThreads, int noOfThreads, String [] includes, 
 			int maxNoOfRecords, String [] tags, String [] tagsInt, String [] tagsChar, String validation) {
+		this(noOfProducerThreads, noOfThreads, includes, maxNoOfRecords, tags, tagsInt, tagsChar, validation, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+	}
+	
+	/**
+	 * @param batchSize the number of records passed from a producer to a consumer in one go
+	 * @param queueCapacity the number of batches that each producer may have waiting for a consumer before it blocks
+	 */
+	public BamSummarizerMT2(int noOfProducerThreads, int noOfThreads, String [] includes, 
+			int maxNoOfRecords, String [] tags, String [] tagsInt, String [] tagsChar, String validation, int batchSize, int queueCapacity) {
 		super();
 		this.noOfProducerThreads = noOfProducerThreads;
 		this.noOfConsumerThreads = noOfThreads;
@@ -71,6 +96,8 @@ public class BamSummarizerMT2 implements Summarizer {
 		this.tagsInt = tagsInt;
 		this.tagsChar = tagsChar;
 		this.validation = validation;
+		this.batchSize = batchSize;
+		this.queueCapacity = queueCapacity;
 	}
 	
 	
@@ -106,36 +133,30 @@ public class BamSummarizerMT2 implements Summarizer {
 			}			
 		} finally { reader.close(); }		
 				
-		ConcurrentLinkedQueue<SAMRecord>[] queues = null;
-		AbstractQueue<SAMRecord> q  = null;
-		if (noOfProducerThreads == 1) {
-			q = new ConcurrentLinkedQueue<>();
-		} else {
-			queues = new ConcurrentLinkedQueue[noOfProducerThreads];
-			for (int i = 0 ; i < noOfProducerThreads ; i++)  
-				queues[i] = new ConcurrentLinkedQueue<SAMRecord>();			 
-		}
+		final RecordBatchQueues queues = new RecordBatchQueues(noOfProducerThreads, queueCapacity);
 		long start = System.currentTimeMillis();
 		
 		final BamSummaryReport2 bamSummaryReport =  BamSummarizer2.createReport(file, includes, maxRecords, tags, tagsInt, tagsChar );				 		
-		logger.info("will create " + noOfConsumerThreads + " consumer threads");
+		logger.info("will create " + noOfConsumerThreads + " consumer threads, batch size: " + batchSize + ", queue capacity (batches per producer): " + queueCapacity);
 
 		final CountDownLatch pLatch = new CountDownLatch(noOfProducerThreads);
 		final CountDownLatch cLatch = new CountDownLatch(noOfConsumerThreads);
 		ExecutorService consumerThreads = Executors.newFixedThreadPool(noOfConsumerThreads);
+		// each consumer has its own report, which are merged once all records have been parsed
+		final List<BamSummaryReport2> partialReports = new ArrayList<>(noOfConsumerThreads);
 		for (int i = 0 ; i < noOfConsumerThreads ; i++) {
-			consumerThreads.execute(noOfProducerThreads == 1 
-					? new SingleProducerConsumer(q, bamSummaryReport, Thread.currentThread(), cLatch, pLatch)
-			 : new Consumer(queues, bamSummaryReport, Thread.currentThread(), cLatch, pLatch, i % noOfProducerThreads));
+			BamSummaryReport2 partialReport = bamSummaryReport.createPartialReport();
+			partialReports.add(partialReport);
+			consumerThreads.execute(new Consumer(queues, partialReport, Thread.currentThread(), cLatch, i % noOfProducerThreads));
 		}
 		
-		// setpup and kick-off single Producer thread
+		// setpup and kick-off Producer threads
 		ExecutorService producerThreads = Executors.newFixedThreadPool(noOfProducerThreads);
 		if (noOfProducerThreads == 1) {
-			producerThreads.execute(new SingleProducer(q, file, Thread.currentThread(), pLatch, cLatch));
+			producerThreads.execute(new SingleProducer(queues, file, Thread.currentThread(), pLatch));
 		} else {
 			for (int i = 0 ; i < noOfProducerThreads ; i++) {
-				producerThreads.execute(new Producer(queues[i], file, Thread.currentThread(), pLatch, cLatch, sequences, bamSummaryReport));
+				producerThreads.execute(new Producer(queues, i, file, Thread.currentThread(), pLatch, sequences));
 			}
 		}
 
@@ -152,40 +173,27 @@ public class BamSummarizerMT2 implements Summarizer {
 				consumerThreads.shutdownNow();
 				throw new Exception("Producer thread has timed out");
 			}
-			logger.info("producer thread finished, queue size: " + (q == null ? getQueueSize(queues) : getQueueSize(q) ) );
+			logger.info("producer thread finished, no of batches on queues: " + queues.size());
 			
-			if ( ! cLatch.await(30, TimeUnit.SECONDS)) {
-			
-				// need to cater for scenario where all consumer threads have died...
-				// if after 10 seconds, the q size has not decreased - assume the consumer threads are no more...
-				int qSize = q == null ? getQueueSize(queues) : getQueueSize(q);
-				int qSizeTheSameCounter = 0;
-				while (qSize > 0 && qSizeTheSameCounter < 10) {
-					Thread.sleep(1000);
-						if (qSize == (q == null ? getQueueSize(queues) : getQueueSize(q))) {
-						qSizeTheSameCounter++;
-					} else {
-						qSize = (q == null ? getQueueSize(queues) : getQueueSize(q));
-						qSizeTheSameCounter = 0;	// reset to zero
-					}
-				}
-				
-				// final sleep to allow threads to finish processing final record
-				if ( ! cLatch.await(10, TimeUnit.SECONDS)) {
-					consumerThreads.shutdownNow();
-				}
-				
-			} else {
-				logger.info("consumer threads finished");
-			}
+			/*
+			 * consumers exit once the queues have been drained, and a consumer that fails interrupts this thread,
+			 * so there is no need for a time limit here
+			 */
+			cLatch.await();
+			logger.info("consumer threads finished");
 
 			// if there are items left on the queue - means that the consumer threads encountered errors and were unable to complete the processing
-			if ((q == null ? getQueueSize(queues) : getQueueSize(q))  > 0 ) {
-				logger.error("no Consumer threads available to process items [" + q.size() + "] on queue");
+			if ( ! queues.isEmpty()) {
+				logger.error("no Consumer threads available to process batches [" + queues.size() + "] on queue");
 				throw new Exception("Consumer threads were unable to process all items on the queue");
 			}
 			
 			logger.info("producer and consumer threads have completed");
+			
+			for (BamSummaryReport2 partialReport : partialReports) {
+				bamSummaryReport.merge(partialReport);
+			}
+			logger.info("merged " + partialReports.size() + " consumer reports");
 		} catch (InterruptedException e) {
 			// restore interrupted status
 			logger.info("current thread about to be interrupted...");
@@ -208,35 +216,33 @@ public class BamSummarizerMT2 implements Summarizer {
 		return bamSummaryReport;
 	}
 	
-	private int getQueueSize(AbstractQueue<SAMRecord> ...abstractQueues) {
-		int totalSize = 0;
-		for (AbstractQueue<SAMRecord> q : abstractQueues)
-			totalSize += q.size();
-		return totalSize;
-	}
-	
-	public static class SingleProducerConsumer implements Runnable {
-		private final AbstractQueue<SAMRecord> queue;
+	/**
+	 * Summarises batches taken from its home queue, and from the other producers' queues when its own is empty.
+	 */
+	public static class Consumer implements Runnable {
+		private final RecordBatchQueues queues;
 		private final BamSummaryReport2 report;
 		private final Thread mainThread;
 		private final CountDownLatch cLatch;
-		private final CountDownLatch pLatch;
+		private final int queueId;
 		
-		SingleProducerConsumer(AbstractQueue<SAMRecord> q, BamSummaryReport2 report, Thread mainThread, CountDownLatch cLatch, CountDownLatch pLatch) {
-			queue = q;
+		Consumer(RecordBatchQueues queues, BamSummaryReport2 report, Thread mainThread, CountDownLatch cLatch, int queueId) {
+			this.queues = queues;
 			this.report = report;
 			this.mainThread = mainThread;
 			this.cLatch = cLatch;
-			this.pLatch = pLatch;
+			this.queueId = queueId;
 		}
 		
 		@Override
 		public void run() {
+			long batches = 0;
 			try {
 				logger.debug("start consumer");
-				while ( true ) {
-					SAMRecord record = queue.poll();
-					if (null != record) {
+				SAMRecord[] batch;
+				while (null != (batch = queues.take(queueId))) {
+					batches++;
+					for (SAMRecord record : batch) {
 						try {
 							report.parseRecord(record);
 						} catch (Exception e) {
@@ -244,9 +250,6 @@ public class BamSummarizerMT2 implements Summarizer {
 							logger.error("error caught parsing SAMRecord with readName: " + record.getReadName(), e);
 							throw e;
 						}
-					} else {
-						if (pLatch.getCount() == 0) break;
-						else Thread.sleep(5);
 					}
 				}
 			} catch (InterruptedException e) {
@@ -256,94 +259,57 @@ public class BamSummarizerMT2 implements Summarizer {
 				mainThread.interrupt();
 			} finally {
 				cLatch.countDown();
-				logger.debug("consumer finished");
+				logger.debug("consumer finished, batches processed: " + batches);
 			}
 		}
 	}
 	
-	public static class Consumer implements Runnable {
-		private final AbstractQueue<SAMRecord> [] queues;
-		private final BamSummaryReport2 report;
-		private final Thread mainThread;
-		private final CountDownLatch cLatch;
-		private final CountDownLatch pLatch;
+	/**
+	 * Collects records into batches and puts them onto the queue, blocking whilst the queue is full.
+	 */
+	private final class Batcher {
+		private final RecordBatchQueues queues;
 		private final int queueId;
-		private final int noOfQueues;
+		private SAMRecord[] batch = new SAMRecord[batchSize];
+		private int size;
 		
-		Consumer(AbstractQueue<SAMRecord>[] queues, BamSummaryReport2 report, Thread mainThread, CountDownLatch cLatch, CountDownLatch pLatch, int queueId) {
+		private Batcher(RecordBatchQueues queues, int queueId) {
 			this.queues = queues;
-			this.report = report;
-			this.mainThread = mainThread;
-			this.cLatch = cLatch;
-			this.pLatch = pLatch;
 			this.queueId = queueId;
-			this.noOfQueues = queues.length;
 		}
 		
-		@Override
-		public void run() {
-			try {
-				logger.debug("start consumer");
-				while ( true ) {
-					SAMRecord record = getNextRecord();
-					if (null != record) {
-						try {
-							report.parseRecord(record);
-						} catch (Exception e) {
-							logger.error("record: " + record.getSAMString());
-							logger.error("error caught parsing SAMRecord with readName: " + record.getReadName(), e);
-							throw e;
-						}
-					} else {
-						if (pLatch.getCount() == 0) break;
-						else Thread.sleep(5);
-					}
-				}
-			} catch (InterruptedException e) {
-				logger.info(Thread.currentThread().getName() + " " + e.getMessage());
-			} catch (Exception e) {
-				logger.info(Thread.currentThread().getName() + " " + e.getMessage());
-				mainThread.interrupt();
-			} finally {
-				cLatch.countDown();
-				logger.debug("consumer finished");
+		private void add(SAMRecord record) throws InterruptedException {
+			batch[size++] = record;
+			if (size == batchSize) {
+				queues.put(queueId, batch);
+				batch = new SAMRecord[batchSize];
+				size = 0;
 			}
 		}
 		
-		/*
-		 * work stealing method
-		 * 
-		 * the way the threads are added to the queues means that the last queues will 
-		 * have fewer threads (should there not be equal no of consumers for each producer)
-	 	 * and so, start from the last queue and work our way down
-		 */
-		private SAMRecord getNextRecord() {
-			SAMRecord record = queues[queueId].poll();
-			if (null != record) return record;
-			
-			for (int i = noOfQueues - 1 ; i >=  0 ; i--) {
-				record = queues[i].poll();
-				if (null != record) return record;
+		private void flush() throws InterruptedException {
+			if (size > 0) {
+				queues.put(queueId, Arrays.copyOf(batch, size));
+				size = 0;
 			}
-			return null;
 		}
 	}
 
 	public class Producer implements Runnable {
 		private final File file;
-		private final AbstractQueue<SAMRecord> queue;
+		private final RecordBatchQueues queues;
+		private final int queueId;
 		private final Thread mainThread;
 		private final CountDownLatch pLatch;
-		private final CountDownLatch cLatch;
 		private final AbstractQueue<String> sequences;
 		private final QLogger log = QLoggerFactory.getLogger(Producer.class);
 		
-		Producer(AbstractQueue<SAMRecord> q, File f, Thread mainThread, CountDownLatch pLatch, CountDownLatch cLatch, AbstractQueue<String> sequences, BamSummaryReport2 report) {
-			queue = q;
+		Producer(RecordBatchQueues queues, int queueId, File f, Thread mainThread, CountDownLatch pLatch, AbstractQueue<String> sequences) {
+			this.queues = queues;
+			this.queueId = queueId;
 			file = f;
 			this.mainThread = mainThread;
 			this.pLatch = pLatch;
-			this.cLatch = cLatch;
 			this.sequences = sequences;
 		}
 
@@ -356,7 +322,7 @@ public class BamSummarizerMT2 implements Summarizer {
 			//debug
 			System.out.println( "hasIndex: " +reader.hasIndex());
 			
-			long size = 0;
+			final Batcher batcher = new Batcher(queues, queueId);
 			long count = 0;
 			try {
 				while (true) {
@@ -365,35 +331,17 @@ public class BamSummarizerMT2 implements Summarizer {
 					SAMRecordIterator iter = UNMAPPED_READS.equals(sequence) ? reader.queryUnmapped() : reader.query(sequence, 0, 0, false) ;
 					log.info("retrieving records for sequence: " + sequence);
 					while (iter.hasNext()) {
-						queue.add(iter.next());
+						batcher.add(iter.next());
 						
 						if (++count % 2000000 == 0) {
-							size = queue.size();
-							log.info("added " + count/1000000 + "M records, current queu size: " + size);
-							
-							if (cLatch.getCount() == 0) {
-								log.error("no consumer threads left, but queue is not empty");
-								throw new Exception("No consumer threads left, but queue is not empty");
-//								break;
-							}
-							
-							// if q size is getting too large - give the Producer a rest
-							// having too many items in the queue seems to have a detrimental effect on performance.
-							//FIXME 4???
-							while (size > (100000 / noOfProducerThreads)) {
-//								sleepCounter++;
-								Thread.sleep(75);
-								size = queue.size();
-								if (cLatch.getCount() == 0) {
-									throw new Exception("No consumer threads left, but queue is not empty");
-								}
-							}
+							log.info("added " + count/1000000 + "M records, current no of batches on queues: " + queues.size());
 						}
 						if (maxRecords > 0 && count == maxRecords)
 							break;
 					}
 					iter.close();
 				}
+				batcher.flush();
 				
 			} catch (InterruptedException e) {
 				log.info(Thread.currentThread().getName() + " " + e.getMessage());
@@ -401,6 +349,7 @@ public class BamSummarizerMT2 implements Summarizer {
 				log.error(Thread.currentThread().getName() + " " + e.getMessage(), e);
 				mainThread.interrupt();
 			} finally {
+				queues.producerFinished();
 				try {
 					reader.close();
 				} catch (IOException e) {
@@ -414,17 +363,15 @@ public class BamSummarizerMT2 implements Summarizer {
 	}
 	public class SingleProducer implements Runnable {
 		private final File file;
-		private final AbstractQueue<SAMRecord> queue;
+		private final RecordBatchQueues queues;
 		private final Thread mainThread;
 		private final CountDownLatch pLatch;
-		private final CountDownLatch cLatch;
 		
-		SingleProducer(AbstractQueue<SAMRecord> q, File f, Thread mainThread, CountDownLatch pLatch, CountDownLatch cLatch) {
-			queue = q;
+		SingleProducer(RecordBatchQueues queues, File f, Thread mainThread, CountDownLatch pLatch) {
+			this.queues = queues;
 			file = f;
 			this.mainThread = mainThread;
 			this.pLatch = pLatch;
-			this.cLatch = cLatch;
 		}
 
 		@Override
@@ -435,7 +382,7 @@ public class BamSummarizerMT2 implements Summarizer {
 			//debug
 			System.out.println( "single Producer hasIndex: " +reader.hasIndex());
 
-			int size = 0;
+			final Batcher batcher = new Batcher(queues, 0);
 			long count = 0;
 			long start = System.currentTimeMillis();
 			long end = 0;
@@ -443,32 +390,17 @@ public class BamSummarizerMT2 implements Summarizer {
 			try {
 				for (SAMRecord record : reader) {
 					
-					queue.add(record);
+					batcher.add(record);
 					
 					if (++count % counter == 0) {
-						size = queue.size();
 						end = System.currentTimeMillis();
-						logger.info("added " + count/counter + "M, q.size: " + size + ", r/ms: " + (counter / (end - start)));
+						logger.info("added " + count/counter + "M, no of batches on queue: " + queues.size() + ", r/ms: " + (counter / Math.max(1, end - start)));
 						start = end;
-						
-						if (cLatch.getCount() == 0 && size > 0) {
-							logger.error("no consumer threads left, but queue is not empty");
-							break;
-						}
-						
-						// if q size is getting too large - give the Producer a rest
-						// having too many items in the queue seems to have a detrimental effect on performance.
-						while (size > 100000) {
-							Thread.sleep(50);
-							size = queue.size();
-							if (cLatch.getCount() == 0) {
-								throw new Exception("No consumer threads left, but queue is not empty");
-							}
-						}
 					}
 					if (maxRecords > 0 && count == maxRecords)
 						break;
 				}
+				batcher.flush();
 				
 				// set the bam header
 				//bamHeader = reader.getFileHeader().getTextHeader();
@@ -479,6 +411,7 @@ public class BamSummarizerMT2 implements Summarizer {
 				logger.info(Thread.currentThread().getName() + " " + e.getMessage());
 				mainThread.interrupt();
 			} finally {
+				queues.producerFinished();
 				try {
 					reader.close();
 				} catch (IOException e) {
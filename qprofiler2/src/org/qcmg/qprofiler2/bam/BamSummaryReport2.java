@@ -96,6 +96,12 @@ public class BamSummaryReport2 extends SummaryReport {
  	
 	private int zeroCoverageCount;
 	private boolean includeCoverage;
+	// the report that coverage is tallied on - partial reports pass their records to the report that they were created from
+	private BamSummaryReport2 coverageReport = this;
+	private final String [] includes;
+	private final String [] tags;
+	private final String [] tagsInt;
+	private final String [] tagsChar;
 	private Long maxRecords;
 	private String bamHeader;
 	private SAMSequenceDictionary samSeqDictionary;
@@ -104,6 +110,10 @@ public class BamSummaryReport2 extends SummaryReport {
 	public BamSummaryReport2(String [] includes, int maxRecs, String [] tags, String [] tagsInt, String [] tagsChar) {
 		super();		
 		tagReport = new TagSummaryReport2(tags, tagsInt, tagsChar);
+		this.includes = includes;
+		this.tags = tags;
+		this.tagsInt = tagsInt;
+		this.tagsChar = tagsChar;
 
 		if (maxRecs > 0) maxRecords = Long.valueOf(maxRecs);		
 		
@@ -118,6 +128,51 @@ public class BamSummaryReport2 extends SummaryReport {
 		}			
 	}
 
+	/**
+	 * Creates an empty report, set up in the same way as this report, for a single thread to parse records into.
+	 * <p>
+	 * The partial report is not thread safe, and so its owning thread can update it without contending with other threads.
+	 * Once all records have been parsed, the partial report should be passed to {@link #merge(BamSummaryReport2)}.
+	 * Coverage (if included) depends on the order in which records are seen, and so is always tallied on this report.
+	 */
+	public BamSummaryReport2 createPartialReport() {
+		BamSummaryReport2 partial = new BamSummaryReport2(includes, null == maxRecords ? 0 : maxRecords.intValue(), tags, tagsInt, tagsChar);
+		if (tagReport.isTorrentBam()) partial.setTorrentBam();
+		partial.samSeqDictionary = samSeqDictionary;
+		partial.readGroupIds = readGroupIds;
+		partial.coverageReport = this;
+		return partial;
+	}
+	
+	/**
+	 * Adds the summaries held by the supplied partial report (see {@link #createPartialReport()}) to this report.
+	 * Must be called before {@link #cleanUp()}, and once the thread populating the partial report has finished with it.
+	 */
+	public void merge(BamSummaryReport2 partial) {
+		updateRecordsParsed(partial.getRecordsParsed());
+		for (int order = 0; order < 3; order++) {
+			seqByCycle[order].merge(partial.seqByCycle[order]);
+			seqBadReadLineLengths[order].addAll(partial.seqBadReadLineLengths[order]);
+			qualByCycleInteger[order].merge(partial.qualByCycleInteger[order]);
+			qualBadReadLineLengths[order].addAll(partial.qualBadReadLineLengths[order]);
+			mapQualityLengths[order].addAll(partial.mapQualityLengths[order]);
+		}
+		MRNMLengths.addAll(partial.MRNMLengths);
+		SummaryByCycleUtils.addCounts(cigarValuesCount, partial.cigarValuesCount);
+		flagIntegerCount.addAll(partial.flagIntegerCount);
+		for (Map.Entry<String, PositionSummary> entry : partial.rNamePosition.entrySet()) 
+			rNamePosition.computeIfAbsent(entry.getKey(), k -> new PositionSummary(readGroupIds)).merge(entry.getValue());
+		
+		cigarLengths.addAll(partial.cigarLengths);
+		p1Lengths.addAll(partial.p1Lengths);
+		p2Lengths.addAll(partial.p2Lengths);
+		for (ReadGroupSummary rgSumm : partial.rgSummaries.values()) 
+			rgSummaries.computeIfAbsent(rgSumm.getReadGroupId(), k -> new ReadGroupSummary(k)).merge(rgSumm);
+		
+		kmersSummary.merge(partial.kmersSummary);
+		tagReport.merge(partial.tagReport);
+	}
+
 	/**
 	 * Called once all records have been parsed.
 	 * Allows some cleanup to take place - eg. move remaining entries from coverageQueue and add to coverage map
@@ -290,7 +345,7 @@ public class BamSummaryReport2 extends SummaryReport {
 				else if (record.getSecondOfPairFlag())  p2Lengths.increment(record.getReadBases().length);
 			} 
 			// coverage 
-			if (includeCoverage) { 	parseCoverage(record); }			
+			if (includeCoverage) { 	coverageReport.parseCoverage(record); }			
 		}
 		
 		// MAPQ (Mapping Quality)
@@ -0,0 +1,108 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.qprofiler2.bam;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import htsjdk.samtools.SAMRecord;
+
+/**
+ * Bounded hand-off of batches of records from a number of producers to a number of consumers.
+ * <p>
+ * Each producer has its own queue, holding at most <code>capacity</code> batches, and {@link #put(int, SAMRecord[])} blocks while it is full.
+ * Consumers take from their home queue first, and steal from the other queues (starting with the last) when their home queue is empty.
+ * A semaphore counts the batches that are on the queues, so consumers block (rather than sleep and poll) while there is nothing to do.
+ * <p>
+ * Once every producer has called {@link #producerFinished()}, {@link #take(int)} returns null to all consumers as soon as the queues are empty.
+ */
+final class RecordBatchQueues {
+
+	private final ArrayBlockingQueue<SAMRecord[]>[] queues;
+	private final Semaphore available = new Semaphore(0);
+	private final AtomicInteger activeProducers;
+	private volatile boolean finished;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	RecordBatchQueues(int noOfProducers, int capacity) {
+		if (noOfProducers < 1 || capacity < 1) {
+			throw new IllegalArgumentException("need at least 1 producer and a capacity of at least 1, producers: " + noOfProducers + ", capacity: " + capacity);
+		}
+		queues = new ArrayBlockingQueue[noOfProducers];
+		for (int i = 0 ; i < noOfProducers ; i++) {
+			queues[i] = new ArrayBlockingQueue<>(capacity);
+		}
+		activeProducers = new AtomicInteger(noOfProducers);
+	}
+
+	/**
+	 * Adds the batch to this producer's queue, waiting for space to become available if necessary
+	 */
+	void put(int producer, SAMRecord[] batch) throws InterruptedException {
+		queues[producer].put(batch);
+		available.release();
+	}
+
+	/**
+	 * Called by each producer (successful or not) once it has put its last batch.
+	 * When the last producer calls this, any waiting consumers are woken up.
+	 */
+	void producerFinished() {
+		if (activeProducers.decrementAndGet() == 0) {
+			finished = true;
+			// one permit is enough - each consumer that sees the end of the stream passes it on
+			available.release();
+		}
+	}
+
+	/**
+	 * Returns the next batch, preferring the consumer's home queue, and blocking until one is available.
+	 *
+	 * @return the next batch, or null if all producers have finished and all batches have been taken
+	 */
+	SAMRecord[] take(int home) throws InterruptedException {
+		available.acquire();
+		while (true) {
+			SAMRecord[] batch = queues[home].poll();
+			if (null != batch) return batch;
+
+			for (int i = queues.length - 1 ; i >= 0 ; i--) {
+				batch = queues[i].poll();
+				if (null != batch) return batch;
+			}
+
+			/*
+			 * the permit we hold is either for a batch that is on its way (put releases a permit after adding its batch, so will have been found above)
+			 * or is the end of stream permit
+			 */
+			if (finished && isEmpty()) {
+				available.release();
+				return null;
+			}
+			Thread.yield();
+		}
+	}
+
+	int getNoOfQueues() {
+		return queues.length;
+	}
+
+	/**
+	 * @return the number of batches currently held on the queues
+	 */
+	int size() {
+		int size = 0;
+		for (ArrayBlockingQueue<SAMRecord[]> q : queues) {
+			size += q.size();
+		}
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size() == 0;
+	}
+}
@@ -107,6 +107,7 @@ public class TagSummaryReport2 {
 	 * default torrentBam is false, unless this method is called
 	 */
 	public void setTorrentBam(){ this.torrentBam = true; }
+	boolean isTorrentBam(){ return torrentBam; }
 	public void setInclMatrices(){ this.includeMatrices = true; }
 	
 	public void parseTAGs(final SAMRecord record )  {
@@ -260,6 +261,49 @@ public class TagSummaryReport2 {
 	}
 	
 	
+	/**
+	 * Adds the tag summaries held by the supplied report (typically one populated by another thread, and set up with the same tags) to this report
+	 */
+	void merge(TagSummaryReport2 other) {
+		tagCSByCycle.merge(other.tagCSByCycle);
+		csBadReadLineLengths.addAll(other.csBadReadLineLengths);
+		tagCQByCycle.merge(other.tagCQByCycle);
+		cqBadReadLineLengths.addAll(other.cqBadReadLineLengths);
+		zmSmMatrix.addAll(other.zmSmMatrix);
+		
+		SummaryByCycleUtils.addCounts(tagRGLineLengths, other.tagRGLineLengths);
+		tagZMLineLengths.addAll(other.tagZMLineLengths);
+		tagCMLineLengths.addAll(other.tagCMLineLengths);
+		tagSMLineLengths.addAll(other.tagSMLineLengths);
+		tagNHLineLengths.addAll(other.tagNHLineLengths);
+		tagIHLineLengths.addAll(other.tagIHLineLengths);
+		
+		for (Entry<Integer, MAPQMatrix> entry : other.mapQMatrix.entrySet()) 
+			mapQMatrix.computeIfAbsent(entry.getKey(), k -> new MAPQMatrix()).addAll(entry.getValue());
+		
+		for (int order = 0; order < 3; order ++) {
+			tagMDMismatchByCycle[order].merge(other.tagMDMismatchByCycle[order]);
+			mdRefAltLengthsForward[order].addAll(other.mdRefAltLengthsForward[order]);
+			mdRefAltLengthsReverse[order].addAll(other.mdRefAltLengthsReverse[order]);
+			allReadsLineLengths[order].addAll(other.allReadsLineLengths[order]);
+		}
+		
+		SummaryByCycleUtils.addCounts(tagZPLineLengths, other.tagZPLineLengths);
+		tagZFLineLengths.addAll(other.tagZFLineLengths);
+		for (Entry<String, ConcurrentSkipListMap<String, AtomicLong>> entry : other.additionalTags.entrySet()) 
+			SummaryByCycleUtils.addCounts(additionalTags.computeIfAbsent(entry.getKey(), k -> new ConcurrentSkipListMap<String, AtomicLong>()), entry.getValue());
+		for (Entry<String, QCMGAtomicLongArray> entry : other.additionalIntegerTags.entrySet()) 
+			additionalIntegerTags.computeIfAbsent(entry.getKey(), k -> new QCMGAtomicLongArray(100)).addAll(entry.getValue());
+		for (Entry<String, ConcurrentSkipListMap<Character, AtomicLong>> entry : other.additionalCharacterTags.entrySet()) 
+			SummaryByCycleUtils.addCounts(additionalCharacterTags.computeIfAbsent(entry.getKey(), k -> new ConcurrentSkipListMap<Character, AtomicLong>()), entry.getValue());
+		
+		for (Entry<String, ReadIDSummary> entry : other.readIdSummary.entrySet()) 
+			readIdSummary.computeIfAbsent(entry.getKey(), k -> new ReadIDSummary()).merge(entry.getValue());
+		SummaryByCycleUtils.addCounts(inValidReadIds, other.inValidReadIds);
+		errMDReadNo += other.errMDReadNo;
+		errIdReadNo += other.errIdReadNo;
+	}
+	
 	public void toXml(Element bamReportElement){
  		
 		//TAG
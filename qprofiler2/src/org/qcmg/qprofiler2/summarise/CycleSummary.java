@@ -156,6 +156,21 @@ public class CycleSummary<T> {
 		tally.incrementAndGet(getArrayPosition(cycle, value));
 	}
 		
+	/**
+	 * Adds the counts held by the supplied summary (typically one populated by another thread) to this summary
+	 */
+	public void merge(CycleSummary<T> other) {
+		for (int i = 0, length = other.tally.length() ; i < length ; i++) {
+			long count = other.tally.get(i);
+			if (count > 0) {
+				int [] cycleKey = other.getCycleKeyFromArrayPosition(i);
+				if (cycleKey[0] > maxCycleValue.get() || cycleKey[1] > maxKeyValue.get())
+					resize(cycleKey[0], cycleKey[1]);
+				tally.addAndGet(getArrayPosition(cycleKey[0], cycleKey[1]), count);
+			}
+		}
+	}
+		
 	private void resize(final int cycle, final int key) {
 		
 		// find out if it is the cycle, key or both that are larger than current maximums
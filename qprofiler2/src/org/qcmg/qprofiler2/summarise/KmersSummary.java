@@ -30,7 +30,28 @@ public class KmersSummary {
 	public static final char[] atgcCharArray = new char[]{'A','T','G','C'};
 	public static final char[] atgcnCharArray = new char[]{'A','T','G','C','N'};
 	
+	/*
+	 * 3 bit codes for each base, and for the complement of each base (-1 if the base can't be complemented)
+	 */
+	private static final int[] FORWARD_CODES = new int[256];
+	private static final int[] REVERSE_CODES = new int[256];
+	static {
+		Arrays.fill(FORWARD_CODES, 5);
+		FORWARD_CODES['A'] = 1;
+		FORWARD_CODES['C'] = 2;
+		FORWARD_CODES['G'] = 3;
+		FORWARD_CODES['T'] = 4;
+		
+		Arrays.fill(REVERSE_CODES, -1);
+		REVERSE_CODES['A'] = FORWARD_CODES['T'];
+		REVERSE_CODES['C'] = FORWARD_CODES['G'];
+		REVERSE_CODES['G'] = FORWARD_CODES['C'];
+		REVERSE_CODES['T'] = FORWARD_CODES['A'];
+		REVERSE_CODES['N'] = FORWARD_CODES['N'];
+	}
+	
 	private final int merLength; 
+	private final int entryMask;
 	private final int[] mersIndex; 
 	private final String[] mersStrList; 
 	
@@ -46,6 +67,7 @@ public class KmersSummary {
 		int maxEntry = getEntry( maxMers);
 		
 		this.merLength = length; 		
+		this.entryMask = (1 << (3 * length)) - 1;
 		this.mersIndex = new int[maxEntry+1];
 		for(int i = 0; i < mersIndex.length; i++) mersIndex[i] = -1; //init		
 							
@@ -121,29 +143,54 @@ public class KmersSummary {
 //		return str1.split(",");			
 //	}
 	
+	/**
+	 * Tallies the kmers found at each cycle of the read.
+	 * <p>
+	 * The kmer entry (see {@link #getEntry(byte[])}) is rolled along the read, one base at a time,
+	 * and for reverse strand reads, the read is walked backwards using the codes of the complemented bases, so no copies of the read are made.
+	 */
 	public void parseKmers( byte[] readString, boolean reverse , int flagFirstOfPair){
+		 final int length = readString.length;
 		 //get the biggest cycle
-		 int c = readString.length - merLength + 1;	
+		 int c = length - merLength + 1;	
 		 if(c > cycleNo) cycleNo = c; 
-		 byte[] dataString =  readString.clone();  //can't point to same array
-		  
-		 if (reverse){  
-			 byte[] dataReverse = readString.clone(); 
-			 for (int i = dataReverse.length -1 , j = 0; i >= 0 ; i--, j++)  
-				dataString[j] = ( byte ) BaseUtils.getComplement( (char) dataReverse[i] );
+		 
+		 if (reverse) {
+			 // fail before anything is tallied should the read contain a base that can't be complemented
+			 for (byte b : readString) {
+				 if (REVERSE_CODES[b & 0xff] < 0) BaseUtils.getComplement((char) b);
+			 }
 		 }
 		 
+		 final QCMGAtomicLongArray counts = tally[flagFirstOfPair];
+		 final int noOfMers = mersStrList.length;
+		 int entry = 0;
 		 //readString may have differnt length to other reads
-		 for(int i = 0; i <= readString.length - merLength; i ++ ){
-			 byte[] mers = new byte[ merLength ];
-			 for(int j = 0; j <  merLength; j ++ )  mers[j] = dataString[ i + j ];	
-			 int pos = getPosition(i, mers );			 
-			 tally[flagFirstOfPair].increment(pos);
-		 }	
+		 for (int j = 0 ; j < length ; j++) {
+			 final int code = reverse ? REVERSE_CODES[readString[length - 1 - j] & 0xff] : FORWARD_CODES[readString[j] & 0xff];
+			 entry = ((entry << 3) | code) & entryMask;
+			 if (j >= merLength - 1) {
+				 counts.increment((j - merLength + 1) * noOfMers + mersIndex[entry]);
+			 }
+		 }
 		 
 		 parsedCount[flagFirstOfPair].incrementAndGet();
 	}
 	
+	/**
+	 * Adds the kmer counts held by the supplied summary (typically one populated by another thread) to this summary
+	 */
+	public void merge(KmersSummary other) {
+		if (other.merLength != merLength) 
+			throw new IllegalArgumentException("can't merge kmers summaries with different kmer lengths: " + merLength + " and " + other.merLength);
+		
+		if (other.cycleNo > cycleNo) cycleNo = other.cycleNo;
+		for (int i = 0; i < 3; i ++) {
+			tally[i].addAll(other.tally[i]);
+			parsedCount[i].addAndGet(other.parsedCount[i].get());
+		}
+	}
+	
 	//	can't be private since unit test
 	int getPosition(int cycle, byte[] mers){
 		int entry = getEntry(mers);
@@ -152,17 +199,13 @@ public class KmersSummary {
 	}
 	
 	
+	/**
+	 * Each base is given a 3 bit code (A:1, C:2, G:3, T:4, anything else is treated as N:5), with the first base in the most significant position
+	 */
 	private int getEntry(byte[] mers){
 		int entry = 0; 
-		for(int i = 0, j = mers.length-1; i < mers.length; i ++, j-- ){
-			int no = 5; //default is 'N'
-			switch (mers[i]){
-				case 'A' : no = 1; break;
-				case 'C' : no = 2; break;
-				case 'G' : no = 3; break;
-				case 'T' : no = 4; break;
-			}
-			entry += no << ( j * 3 ); 	
+		for(int i = 0; i < mers.length; i ++ ){
+			entry = (entry << 3) | FORWARD_CODES[mers[i] & 0xff];
 		}
 		
 		return entry;
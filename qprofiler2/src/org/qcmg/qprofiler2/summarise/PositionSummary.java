@@ -135,6 +135,26 @@ public class PositionSummary {
         return sortedCoverage;
     }
 		
+	/**
+	 * Adds the positions held by the supplied summary (typically one populated by another thread) to this summary
+	 * 
+	 * @param other summary whose read groups must all be known to this summary
+	 */
+	public void merge(PositionSummary other) {
+		max.accumulateAndGet(other.max.get(), Math::max);
+		min.accumulateAndGet(other.min.get(), Math::min);
+		
+		for (int i = 0; i < other.readGroupIds.size(); i ++) {
+			int order = readGroupIds.indexOf(other.readGroupIds.get(i));
+			if (order < 0)
+				throw new IllegalArgumentException("can't find readGroup Id on Bam header: @RG ID:"+ other.readGroupIds.get(i));
+			rgCoverages[order].addAll(other.rgCoverages[i]);
+		}
+		coverage.addAll(other.coverage);
+		
+		hasAddPosition = true;
+	}
+		
 	/**
 	 * This method adds a position to the Summary.
 	 * It will adjust the min/max values, and increment the coverage map accordingly
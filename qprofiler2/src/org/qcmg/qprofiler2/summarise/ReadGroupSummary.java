@@ -122,6 +122,15 @@ public class ReadGroupSummary {
 			}			
 		}
 		
+		void merge(PairedRead other) {
+			overlap.addAndGet(other.overlap.get());
+			near.addAndGet(other.near.get());
+			far.addAndGet(other.far.get());
+			bigTlen.addAndGet(other.bigTlen.get());
+			recordSum.addAndGet(other.recordSum.get());
+			recordSum_flag_p.addAndGet(other.recordSum_flag_p.get());
+		}
+		
 		
 		
 		/**
@@ -192,6 +201,39 @@ public class ReadGroupSummary {
 		return false; 
 	}
 	
+	/**
+	 * Adds the counts held by the supplied summary (typically one populated by another thread for the same read group) to this summary
+	 */
+	public void merge(ReadGroupSummary other) {
+		softClip.addAll(other.softClip);
+		hardClip.addAll(other.hardClip);
+		readLength.addAll(other.readLength);
+		overlapBase.addAll(other.overlapBase);
+		isize1.addAll(other.isize1);
+		isize.addAll(other.isize);
+		isizeRange.addAll(other.isizeRange);
+		max_isize.accumulateAndGet(other.max_isize.get(), Math::max);
+		
+		duplicate.addAndGet(other.duplicate.get());
+		secondary.addAndGet(other.secondary.get());
+		supplementary.addAndGet(other.supplementary.get());
+		unmapped.addAndGet(other.unmapped.get());
+		nonCanonical.addAndGet(other.nonCanonical.get());
+		failedVendorQuality.addAndGet(other.failedVendorQuality.get());
+		inputReadCounts.addAndGet(other.inputReadCounts.get());
+		
+		pairNum.addAndGet(other.pairNum.get());
+		f3f5.merge(other.f3f5);
+		f5f3.merge(other.f5f3);
+		inward.merge(other.inward);
+		outward.merge(other.outward);
+		
+		diffRef.addAndGet(other.diffRef.get());
+		mateUnmapped.addAndGet(other.mateUnmapped.get());
+		diffRef_flag_p.addAndGet(other.diffRef_flag_p.get());
+		mateUnmapped_flag_p.addAndGet(other.mateUnmapped_flag_p.get());
+	}
+	
 	public QCMGAtomicLongArray getISizeCount(){return isize;}
 	public QCMGAtomicLongArray getISizeRangeCount(){return isizeRange;}
 	
@@ -7,6 +7,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.qcmg.common.util.SummaryByCycleUtils;
 import org.qcmg.common.util.TabTokenizer;
 import org.qcmg.qprofiler2.util.SummaryReportUtils;
 import org.w3c.dom.Element;
@@ -130,6 +131,23 @@ public class ReadIDSummary {
 	}
 	
 		
+	/**
+	 * Adds the counts held by the supplied summary (typically one populated by another thread) to this summary
+	 */
+	public void merge(ReadIDSummary other) {
+		SummaryByCycleUtils.addCounts(instruments, other.instruments);
+		SummaryByCycleUtils.addCounts(runIds, other.runIds);
+		SummaryByCycleUtils.addCounts(flowCellIds, other.flowCellIds);
+		SummaryByCycleUtils.addCounts(flowCellLanes, other.flowCellLanes);
+		SummaryByCycleUtils.addCounts(tileNumbers, other.tileNumbers);
+		SummaryByCycleUtils.addCounts(indexes, other.indexes);
+		firstInPair.addAndGet(other.firstInPair.get());
+		secondInPair.addAndGet(other.secondInPair.get());
+		filteredY.addAndGet(other.filteredY.get());
+		filteredN.addAndGet(other.filteredN.get());
+		invalidId.addAndGet(other.invalidId.get());
+	}
+		
 	public void toXml(Element element){
 		// header breakdown
 		SummaryReportUtils.lengthMapToXml( element, "INSTRUMENTS",  instruments );
@@ -4,6 +4,7 @@ import junit.framework.Assert;
 
 import org.junit.Test;
 import org.qcmg.qprofiler2.Options2;
+import org.qcmg.qprofiler2.bam.BamSummarizerMT2;
 
 public class OptionsTest {
 	public static final String FILE_1 = "file1.xml"; 
@@ -118,6 +119,27 @@ public class OptionsTest {
 		} catch (Exception e) {}
 	}
 	
+	@Test
+	public void testBatchOptions() throws Exception {
+		Options2 options = new Options2(new String[] {"--ntC","2"});
+		Assert.assertEquals(BamSummarizerMT2.DEFAULT_BATCH_SIZE, options.getBatchSize());
+		Assert.assertEquals(BamSummarizerMT2.DEFAULT_QUEUE_CAPACITY, options.getQueueCapacity());
+		
+		options = new Options2(new String[] {"--ntC","2","--batchSize","512","--queueCapacity","4"});
+		Assert.assertEquals(512, options.getBatchSize());
+		Assert.assertEquals(4, options.getQueueCapacity());
+		
+		// must be at least 1
+		try {
+			new Options2(new String[] {"--batchSize","0"});
+			Assert.fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {}
+		try {
+			new Options2(new String[] {"--queueCapacity=-1"});
+			Assert.fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {}
+	}
+	
 	@Test
 	public void testNoOfThreadsOptions() throws Exception {
 		Options2 options = new Options2(new String[] {"--ntC","2"});
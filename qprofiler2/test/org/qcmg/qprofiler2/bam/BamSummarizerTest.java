@@ -64,6 +64,23 @@ public class BamSummarizerTest {
 		Assert.assertEquals(5, sr.getRecordsParsed());
 	}
 	
+	@Test
+	public void testSummarizeMultiThreaded() throws Exception {
+		// small batches and queues, so that producer blocks and consumers steal from one another
+		for (int batchSize : new int[] {1, 2, 5, 100}) {
+			BamSummarizerMT2 bs = new BamSummarizerMT2(1, 3, null, 0, null, null, null, null, batchSize, 1);
+			BamSummaryReport2 sr = (BamSummaryReport2) bs.summarize(SAM_INPUT_FILE, null);
+			
+			Assert.assertNotNull(sr);
+			Assert.assertEquals(5, sr.getRecordsParsed());
+			testSummaryReport(sr);
+		}
+		
+		BamSummarizerMT2 bs = new BamSummarizerMT2(1, 2, null, 3, null, null, null, null, 2, 1);
+		BamSummaryReport2 sr = (BamSummaryReport2) bs.summarize(SAM_INPUT_FILE, null);
+		Assert.assertEquals(3, sr.getRecordsParsed());
+	}
+	
 	@Test
 	public void testSummarizeWithExcludesAll() throws Exception {
 		String[] args = new String[] {};
@@ -4,17 +4,22 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
 
 import junit.framework.Assert;
 import org.junit.After;
 import org.junit.Test;
 import org.qcmg.common.util.QprofilerXmlUtils;
+import org.qcmg.picard.SAMFileReaderFactory;
 import org.qcmg.qprofiler2.bam.BamSummarizer2;
 import org.qcmg.qprofiler2.bam.BamSummaryReport2;
 import org.qcmg.qprofiler2.util.SummaryReportUtils;
@@ -23,6 +28,9 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.NodeList;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
  
 public class BamSummaryRGReportTest {
 	private static final String INPUT_FILE = "input.sam";
@@ -45,6 +53,38 @@ public class BamSummaryRGReportTest {
 		sr.toXml(root);		 
 	}
 	
+	@Test
+	public void mergedPartialReportsMatchSingleReport() throws Exception {
+		createInputFile();
+
+		BamSummaryReport2 single = (BamSummaryReport2) new BamSummarizer2().summarize(INPUT_FILE);
+		Element singleRoot = createRootElement("qProfiler", null);
+		single.toXml(singleRoot);
+
+		// spread the records over a number of partial reports, as BamSummarizerMT2 does
+		BamSummaryReport2 master = BamSummarizer2.createReport(new File(INPUT_FILE), null, 0, null, null, null);
+		BamSummaryReport2 [] partials = new BamSummaryReport2[3];
+		for (int i = 0 ; i < partials.length ; i++) partials[i] = master.createPartialReport();
+		int i = 0;
+		try (SamReader reader = SAMFileReaderFactory.createSAMFileReader(new File(INPUT_FILE))) {
+			for (SAMRecord record : reader) partials[i++ % partials.length].parseRecord(record);
+		}
+		for (BamSummaryReport2 partial : partials) master.merge(partial);
+		master.cleanUp();
+		Assert.assertEquals(12, master.getRecordsParsed());
+
+		Element mergedRoot = createRootElement("qProfiler", null);
+		master.toXml(mergedRoot);
+		Assert.assertEquals(toComparableString(singleRoot), toComparableString(mergedRoot));
+	}
+
+	private static String toComparableString(Element root) throws Exception {
+		StringWriter sw = new StringWriter();
+		TransformerFactory.newInstance().newTransformer().transform(new DOMSource(root), new StreamResult(sw));
+		// times and ids differ between runs
+		return sw.toString().replaceAll("(startTime|finishTime|runBy|uuid)=\"[^\"]*\"", "");
+	}
+
 	@Test
 	public void parseClipsByRGTest() throws Exception{
 		createInputFile();
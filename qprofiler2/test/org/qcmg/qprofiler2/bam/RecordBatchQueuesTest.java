@@ -0,0 +1,139 @@
+package org.qcmg.qprofiler2.bam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import htsjdk.samtools.SAMRecord;
+
+public class RecordBatchQueuesTest {
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void noProducers() {
+		new RecordBatchQueues(0, 1);
+	}
+	
+	@Test
+	public void homeQueueFirstThenSteal() throws InterruptedException {
+		RecordBatchQueues queues = new RecordBatchQueues(3, 2);
+		SAMRecord[] b0 = new SAMRecord[1];
+		SAMRecord[] b1 = new SAMRecord[1];
+		SAMRecord[] b2 = new SAMRecord[1];
+		queues.put(0, b0);
+		queues.put(1, b1);
+		queues.put(2, b2);
+		assertEquals(3, queues.size());
+		
+		assertSame(b1, queues.take(1));
+		// home queue is empty - steal, starting with the last queue
+		assertSame(b2, queues.take(1));
+		assertSame(b0, queues.take(1));
+		assertTrue(queues.isEmpty());
+	}
+	
+	@Test
+	public void endOfStream() throws InterruptedException {
+		RecordBatchQueues queues = new RecordBatchQueues(2, 2);
+		SAMRecord[] batch = new SAMRecord[1];
+		queues.put(1, batch);
+		queues.producerFinished();
+		queues.producerFinished();
+		
+		// remaining batches are handed out before the end of the stream is signalled
+		assertSame(batch, queues.take(0));
+		// every consumer sees the end of the stream
+		assertNull(queues.take(0));
+		assertNull(queues.take(1));
+		assertNull(queues.take(0));
+	}
+	
+	@Test
+	public void consumersBlockUntilEndOfStream() throws InterruptedException {
+		final RecordBatchQueues queues = new RecordBatchQueues(1, 1);
+		final CountDownLatch done = new CountDownLatch(3);
+		for (int i = 0 ; i < 3 ; i++) {
+			new Thread(() -> {
+				try {
+					while (null != queues.take(0)) {}
+					done.countDown();
+				} catch (InterruptedException e) {}
+			}).start();
+		}
+		assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+		queues.producerFinished();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void producerBlocksWhenQueueIsFull() throws InterruptedException {
+		final RecordBatchQueues queues = new RecordBatchQueues(1, 2);
+		final AtomicInteger added = new AtomicInteger();
+		Thread producer = new Thread(() -> {
+			try {
+				for (int i = 0 ; i < 10 ; i++) {
+					queues.put(0, new SAMRecord[1]);
+					added.incrementAndGet();
+				}
+				queues.producerFinished();
+			} catch (InterruptedException e) {}
+		});
+		producer.start();
+		Thread.sleep(100);
+		assertEquals(2, added.get());
+		assertEquals(2, queues.size());
+		
+		int taken = 0;
+		while (null != queues.take(0)) {
+			taken++;
+			assertTrue(queues.size() <= 2);
+		}
+		producer.join(10000);
+		assertEquals(10, taken);
+		assertEquals(10, added.get());
+	}
+	
+	@Test
+	public void manyProducersAndConsumers() throws InterruptedException {
+		final int noOfProducers = 4;
+		final int batchesPerProducer = 5000;
+		final RecordBatchQueues queues = new RecordBatchQueues(noOfProducers, 4);
+		final AtomicInteger taken = new AtomicInteger();
+		Thread[] threads = new Thread[noOfProducers + 6];
+		for (int i = 0 ; i < noOfProducers ; i++) {
+			final int id = i;
+			threads[i] = new Thread(() -> {
+				try {
+					for (int j = 0 ; j < batchesPerProducer ; j++) {
+						queues.put(id, new SAMRecord[1]);
+					}
+				} catch (InterruptedException e) {
+				} finally {
+					queues.producerFinished();
+				}
+			});
+		}
+		for (int i = noOfProducers ; i < threads.length ; i++) {
+			final int home = i % noOfProducers;
+			threads[i] = new Thread(() -> {
+				try {
+					while (null != queues.take(home)) {
+						taken.incrementAndGet();
+					}
+				} catch (InterruptedException e) {}
+			});
+		}
+		for (Thread t : threads) t.start();
+		for (Thread t : threads) t.join(30000);
+		
+		assertEquals(noOfProducers * batchesPerProducer, taken.get());
+		assertTrue(queues.isEmpty());
+	}
+}
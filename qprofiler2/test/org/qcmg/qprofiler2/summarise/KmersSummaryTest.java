@@ -8,8 +8,11 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +22,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.qcmg.common.util.BaseUtils;
 import org.qcmg.common.util.QprofilerXmlUtils;
 import org.qcmg.picard.SAMFileReaderFactory;
 import org.w3c.dom.DOMException;
@@ -132,6 +136,68 @@ public class KmersSummaryTest {
  		assertTrue(summary.getCount(4, bases1[4], 1 ) == 1);		 
 	}
 	
+	@Test
+	public void rollingTallyMatchesPerWindowTally() {
+		final byte[] bases = new byte[] {'A', 'C', 'G', 'T', 'N', '.'};
+		final Random random = new Random(1);
+		for (int merLength : new int[] {1, 3, KmersSummary.maxKmers}) {
+			KmersSummary summary = new KmersSummary(merLength);
+			Map<String, Long> expected = new HashMap<>();
+			for (int r = 0; r < 200; r++) {
+				byte[] read = new byte[merLength + random.nextInt(150)];
+				boolean reverse = random.nextBoolean();
+				for (int i = 0; i < read.length; i++) {
+					// only bases that can be complemented on the reverse strand
+					read[i] = bases[random.nextInt(reverse ? 5 : bases.length)];
+				}
+				int flag = random.nextInt(3);
+				summary.parseKmers(read, reverse, flag);
+				tallyPerWindow(expected, merLength, read, reverse, flag);
+			}
+			
+			for (String mer : summary.getPossibleKmerString(merLength, true)) {
+				for (int flag = 0; flag < 3; flag++) {
+					for (int cycle = 0; cycle < 150; cycle++) {
+						Long count = expected.get(flag + ":" + cycle + ":" + mer);
+						assertEquals(null == count ? 0 : count.longValue(), summary.getCount(cycle, mer, flag));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void reverseReadWithUncomplementableBase() {
+		KmersSummary summary = new KmersSummary(3);
+		try {
+			summary.parseKmers("ACGTX".getBytes(), true, 0);
+			fail("Should have thrown an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {}
+		
+		for (String mer : summary.getPossibleKmerString(3, true)) {
+			for (int cycle = 0; cycle < 3; cycle++) {
+				assertEquals(0, summary.getCount(cycle, mer, 0));
+			}
+		}
+	}
+	
+	/*
+	 * the original implementation - copies the read (complementing if reverse) and tallies each window separately.
+	 * Bases other than ACGT are counted as N.
+	 */
+	private static void tallyPerWindow(Map<String, Long> tally, int merLength, byte[] read, boolean reverse, int flag) {
+		byte[] dataString = read.clone();
+		if (reverse) {
+			for (int i = 0, j = read.length - 1; i < read.length; i++, j--) {
+				dataString[i] = (byte) BaseUtils.getComplement((char) read[j]);
+			}
+		}
+		for (int i = 0; i <= dataString.length - merLength; i++) {
+			String mer = new String(dataString, i, merLength).replaceAll("[^ACGT]", "N");
+			tally.merge(flag + ":" + i + ":" + mer, 1L, Long::sum);
+		}
+	}
+	
 	@Test
 	public void bothForwardTest() throws IOException {
 
@@ -44,6 +44,9 @@ final class Options {
 	private static final String SEQUENTIAL_OPTION_DESCRIPTION = Messages
 			.getMessage("SEQUENTIAL_OPTION_DESCRIPTION");
 	private static final String VALIDATION_STRINGENCY_OPTION_DESCRIPTION = Messages.getMessage("VALIDATION_STRINGENCY_DESCRIPTION");
+	private static final String GENOTYPE_CACHE_OPTION_DESCRIPTION = Messages.getMessage("GENOTYPE_CACHE_OPTION_DESCRIPTION");
+	private static final String COHORT_INDEX_OPTION_DESCRIPTION = Messages.getMessage("COHORT_INDEX_OPTION_DESCRIPTION");
+	private static final String TOP_K_OPTION_DESCRIPTION = Messages.getMessage("TOP_K_OPTION_DESCRIPTION");
 
 	private final OptionParser parser = new OptionParser();
 	private final OptionSet options;
@@ -112,6 +115,12 @@ final class Options {
 		parser.accepts("excludeVcfsFile", INPUT_DESCRIPTION).withRequiredArg().ofType(String.class)
 				.describedAs("excludeVcfsFile");
 		parser.accepts("validation", VALIDATION_STRINGENCY_OPTION_DESCRIPTION).withRequiredArg().ofType(String.class);
+		parser.accepts("genotypeCache", GENOTYPE_CACHE_OPTION_DESCRIPTION).withRequiredArg().ofType(String.class)
+				.describedAs("genotypeCache");
+		parser.accepts("cohortIndex", COHORT_INDEX_OPTION_DESCRIPTION).withRequiredArg().ofType(String.class)
+				.describedAs("cohortIndex");
+		parser.accepts("topK", TOP_K_OPTION_DESCRIPTION).withRequiredArg().ofType(Integer.class)
+				.describedAs("topK");
 		parser.acceptsAll(asList("p", "position"), INPUT_DESCRIPTION).withRequiredArg().ofType(String.class).describedAs("position");
 		options = parser.parse(args);
 
@@ -301,6 +310,18 @@ final class Options {
 		return (String) options.valueOf("excludeVcfsFile");
 	}
 	
+	public Optional<String> getGenotypeCache() {
+		return Optional.ofNullable((String) options.valueOf("genotypeCache"));
+	}
+	
+	public Optional<String> getCohortIndex() {
+		return Optional.ofNullable((String) options.valueOf("cohortIndex"));
+	}
+	
+	public Optional<Integer> getTopK() {
+		return Optional.ofNullable((Integer) options.valueOf("topK"));
+	}
+	
 	public String getValidation() {
 		return options.has("validation") ?  (String) options.valueOf("validation") : null;
 	}
@@ -0,0 +1,237 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.sig;
+
+import gnu.trove.map.hash.THashMap;
+import gnu.trove.map.hash.TIntShortHashMap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.qcmg.common.log.QLogger;
+import org.qcmg.common.log.QLoggerFactory;
+import org.qcmg.common.util.FileUtils;
+import org.qcmg.common.util.LoadReferencedClasses;
+import org.qcmg.sig.model.Comparison;
+import org.qcmg.sig.util.CohortIndex;
+import org.qcmg.sig.util.SignatureUtil;
+
+/**
+ * Adds the .qsig.vcf files found in the supplied paths (and any supplied input files) to a {@link CohortIndex}, comparing each new signature with those already in the index,
+ * and then reports the signatures that each of the input files is most similar to.
+ * <p>
+ * Signatures that are already in the index are not loaded or compared again, so a nightly run that adds a handful of signatures to a cohort of N
+ * only performs a handful of N comparisons. If an xml output file is specified, it contains all the comparisons in the index, as {@link SignatureCompareRelatedSimpleGenotypeMT} would write them.
+ */
+public class SignatureCompareRelatedIncremental {
+
+	private static QLogger logger;
+	private int exitStatus;
+
+	private int minimumCoverage = 10;
+	private int nThreads = 4;
+	private int topK = 10;
+
+	private String outputXml;
+	private String cohortIndex;
+	private String [] paths;
+	private String [] inputFiles;
+	private String excludeVcfsFile;
+	private String logFile;
+
+	private float homCutoff = SignatureUtil.HOM_CUTOFF;
+	private float hetUpperCutoff = SignatureUtil.HET_UPPER_CUTOFF;
+	private float hetLowerCutoff = SignatureUtil.HET_LOWER_CUTOFF;
+
+	private int engage() throws Exception {
+
+		CohortIndex index = CohortIndex.open(new File(cohortIndex), minimumCoverage, homCutoff, hetUpperCutoff, hetLowerCutoff);
+
+		/*
+		 * get the files to add - those in the paths, and the input files
+		 */
+		Set<File> uniqueFiles = new HashSet<>();
+		if (null != paths) {
+			for (String path : paths) {
+				uniqueFiles.addAll(FileUtils.findFilesEndingWithFilterNIO(path, SignatureUtil.QSIG_VCF));
+			}
+		}
+		if (null != inputFiles) {
+			for (String f : inputFiles) {
+				uniqueFiles.add(new File(f).getAbsoluteFile());
+			}
+		}
+		List<File> files = SignatureUtil.removeExcludedFilesFromList(new ArrayList<>(uniqueFiles), SignatureUtil.getEntriesFromExcludesFile(excludeVcfsFile));
+		Collections.sort(files, FileUtils.FILE_COMPARATOR);
+
+		List<File> newFiles = new ArrayList<>();
+		for (File f : files) {
+			int i = index.indexOf(f.getAbsolutePath());
+			if (i == -1) {
+				newFiles.add(f);
+			} else if ( ! index.getSignature(i).isUpToDate(f)) {
+				logger.warn("Signature file has changed since it was added to the cohort index - the index entry will be used: " + f.getAbsolutePath());
+			}
+		}
+		logger.info("number of signatures in cohort index: " + index.size() + ", number of signatures to add: " + newFiles.size());
+
+		ExecutorService service = Executors.newFixedThreadPool(nThreads);
+		try {
+			addToIndex(index, newFiles, service);
+		} finally {
+			service.shutdown();
+		}
+
+		/*
+		 * report the most similar signatures for each of the input files
+		 */
+		if (null != inputFiles) {
+			for (String f : inputFiles) {
+				int i = index.indexOf(new File(f).getAbsolutePath());
+				if (i == -1) {
+					logger.warn("Input file is not in the cohort index: " + f);
+					continue;
+				}
+				logger.info("top " + topK + " matches for " + f + " (score, overlap, file):");
+				for (Comparison c : index.getTopK(i, topK)) {
+					logger.info(SignatureUtil.nf.format(c.getScore()) + "\t" + c.getOverlapCoverage() + "\t" + (c.getMain().equals(index.getSignature(i).getPath()) ? c.getTest() : c.getMain()));
+				}
+			}
+		}
+
+		if (outputXml != null) {
+			logger.info("writing xml output");
+			Map<String, int[]> fileIdsAndCounts = new THashMap<>();
+			List<Comparison> allComparisons = new ArrayList<>();
+			for (int i = 0 ; i < index.size() ; i++) {
+				fileIdsAndCounts.put(index.getSignature(i).getPath(), new int[]{i + 1, index.getSignature(i).getGenotypes().size(), -1});
+				for (int j = i + 1 ; j < index.size() ; j++) {
+					allComparisons.add(index.getComparison(i, j));
+				}
+			}
+			SignatureUtil.writeXmlOutput(fileIdsAndCounts, allComparisons, outputXml);
+		}
+
+		return exitStatus;
+	}
+
+	/**
+	 * Loads the genotypes of the new files, a batch at a time across the threads, and adds them to the index in order.
+	 */
+	private void addToIndex(CohortIndex index, List<File> newFiles, ExecutorService service) throws Exception {
+		int batchSize = nThreads * 4;
+		for (int start = 0 ; start < newFiles.size() ; start += batchSize) {
+			List<File> batch = newFiles.subList(start, Math.min(newFiles.size(), start + batchSize));
+			List<Future<TIntShortHashMap>> futures = new ArrayList<>();
+			for (File f : batch) {
+				futures.add(service.submit(() -> {
+					logger.info("loading data from: " + f.getAbsolutePath());
+					return SignatureUtil.loadSignatureRatiosFloatGenotype(f, minimumCoverage, homCutoff, hetUpperCutoff, hetLowerCutoff);
+				}));
+			}
+			for (int i = 0 ; i < batch.size() ; i++) {
+				File f = batch.get(i);
+				int id = index.add(f, index.pack(futures.get(i).get()), service, nThreads);
+				logger.info("added " + f.getAbsolutePath() + " to cohort index as signature " + (id + 1));
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		LoadReferencedClasses.loadClasses(SignatureCompareRelatedIncremental.class);
+
+		SignatureCompareRelatedIncremental sp = new SignatureCompareRelatedIncremental();
+		int exitStatus = 0;
+		try {
+			exitStatus = sp.setup(args);
+		} catch (Exception e) {
+			exitStatus = 2;
+			if (null != logger)
+				logger.error("Exception caught whilst running SignatureCompareRelatedIncremental:", e);
+			else {
+				System.err.println("Exception caught whilst running SignatureCompareRelatedIncremental: " + e.getMessage());
+				System.err.println(Messages.USAGE);
+			}
+		}
+
+		if (null != logger)
+			logger.logFinalExecutionStats(exitStatus);
+
+		System.exit(exitStatus);
+	}
+
+	protected int setup(String args[]) throws Exception{
+		int returnStatus = 1;
+		if (null == args || args.length == 0) {
+			System.err.println(Messages.USAGE);
+			System.exit(1);
+		}
+		Options options = new Options(args);
+
+		if (options.hasHelpOption()) {
+			System.err.println(Messages.USAGE);
+			options.displayHelp();
+			returnStatus = 0;
+		} else if (options.hasVersionOption()) {
+			System.err.println(Messages.getVersionMessage());
+			returnStatus = 0;
+		} else if ( ! options.hasLogOption()) {
+			System.err.println(Messages.USAGE);
+		} else {
+			// configure logging
+			logFile = options.getLog();
+			logger = QLoggerFactory.getLogger(SignatureCompareRelatedIncremental.class, logFile, options.getLogLevel());
+
+			String [] cmdLineOutputFiles = options.getOutputFileNames();
+			if (null != cmdLineOutputFiles && cmdLineOutputFiles.length > 0)
+				outputXml = cmdLineOutputFiles[0];
+
+			String[] paths = options.getDirNames();
+			if (null != paths && paths.length > 0) {
+				this.paths = paths;
+			}
+			String[] inputs = options.getInputFileNames();
+			if (null != inputs && inputs.length > 0) {
+				this.inputFiles = inputs;
+			}
+			if (null == this.paths && null == this.inputFiles) throw new QSignatureException("MISSING_DIRECTORY_OPTION");
+
+			cohortIndex = options.getCohortIndex().orElseThrow(() -> new QSignatureException("MISSING_COHORT_INDEX_OPTION"));
+			logger.tool("Setting cohortIndex to: " + cohortIndex);
+
+			options.getMinCoverage().ifPresent(i -> {minimumCoverage = i.intValue();});
+			options.getNoOfThreads().ifPresent(i -> {nThreads = Math.max(i.intValue(), nThreads);});
+			options.getTopK().ifPresent(i -> {topK = i.intValue();});
+			logger.tool("number of threads: " + nThreads);
+			logger.tool("Setting minumim coverage to: " + minimumCoverage);
+			logger.tool("Setting topK to: " + topK);
+
+			options.getHomCutoff().ifPresent(i -> {homCutoff = i.floatValue();});
+			logger.tool("Setting homozygous cutoff to: " + homCutoff);
+			options.getHetUpperCutoff().ifPresent(i -> {hetUpperCutoff = i.floatValue();});
+			logger.tool("Setting heterozygous upper cutoff to: " + hetUpperCutoff);
+			options.getHetLowerCutoff().ifPresent(i -> {hetLowerCutoff = i.floatValue();});
+			logger.tool("Setting heterozygous lower cutoff to: " + hetLowerCutoff);
+
+			if (options.hasExcludeVcfsFileOption())
+				excludeVcfsFile = options.getExcludeVcfsFile();
+
+			logger.logInitialExecutionStats("SignatureCompareRelatedIncremental", SignatureCompareRelatedIncremental.class.getPackage().getImplementationVersion(), args);
+
+			return engage();
+		}
+		return returnStatus;
+	}
+
+}
@@ -10,6 +10,7 @@ import gnu.trove.map.hash.THashMap;
 import gnu.trove.map.hash.TIntShortHashMap;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.AbstractQueue;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,7 +34,9 @@ import org.qcmg.common.log.QLoggerFactory;
 import org.qcmg.common.util.FileUtils;
 import org.qcmg.common.util.LoadReferencedClasses;
 import org.qcmg.sig.model.Comparison;
+import org.qcmg.sig.model.PackedGenotypes;
 import org.qcmg.sig.util.ComparisonUtil;
+import org.qcmg.sig.util.PackedGenotypesCache;
 import org.qcmg.sig.util.SignatureUtil;
 
 /**
@@ -41,12 +44,19 @@ import org.qcmg.sig.util.SignatureUtil;
  * It then performs a comparison between them all, regardless of whether they are bam or snp chip files
  * An xml output file is produced
  * If any comparison scores are less than the cutoff, they are added to a list, which is then emailed to interested parties informing them of the potential problem files
+ * <p>
+ * Genotypes are held as {@link PackedGenotypes}, and compared in square tiles of {@link #TILE_SIZE} signatures, {@link #BLOCKS_PER_CHUNK} blocks of positions at a time,
+ * so that the words being compared stay in cache. If a genotype cache file is specified, the packed genotypes are loaded from it where they are up to date,
+ * and it is rewritten if any had to be loaded from the signature files.
  *  
  * @author o.holmes
  *
  */
 public class SignatureCompareRelatedSimpleGenotypeMT {
 	
+	static final int TILE_SIZE = 32;
+	static final int BLOCKS_PER_CHUNK = 256;
+	
 	private static QLogger logger;
 	private int exitStatus;
 	
@@ -62,6 +72,7 @@ public class SignatureCompareRelatedSimpleGenotypeMT {
 	private String excludeVcfsFile;
 	private List<String> excludes;
 	private String logFile;
+	private String genotypeCache;
 	
 	private float homCutoff = SignatureUtil.HOM_CUTOFF;
 	private float hetUpperCutoff = SignatureUtil.HET_UPPER_CUTOFF;
@@ -70,7 +81,7 @@ public class SignatureCompareRelatedSimpleGenotypeMT {
 	private final Map<String, int[]> fileIdsAndCounts = new THashMap<>();
 	private final List<Comparison> allComparisons = new CopyOnWriteArrayList<>();
 	
-	private final ConcurrentMap<File, TIntShortHashMap> cache = new ConcurrentHashMap<>();
+	private final ConcurrentMap<File, PackedGenotypes> cache = new ConcurrentHashMap<>();
 	
 	List<String> suspiciousResults = new ArrayList<String>();
 	
@@ -140,6 +151,11 @@ public class SignatureCompareRelatedSimpleGenotypeMT {
 		
 		populateCache(files);
 		
+		if (cache.size() < files.size()) {
+			logger.warn("Could not load genotypes for " + (files.size() - cache.size()) + " files - these will not be compared");
+			files = files.stream().filter(cache::containsKey).collect(Collectors.toList());
+		}
+		
 		cache.forEach((k,v) -> {
 			fileIdsAndCounts.get(k.getAbsolutePath())[1] = v.size();
 		});
@@ -159,29 +175,48 @@ public class SignatureCompareRelatedSimpleGenotypeMT {
 	
 	private void performComparisons(List<File> files) {
 		int size = files.size();
-		AbstractQueue<Integer> queue =  new ConcurrentLinkedQueue<>();
-		for (int i = 0 ; i < size -1 ; i++) {
-			queue.add(i);
+		List<PackedGenotypes> genotypes = files.stream().map(cache::get).collect(Collectors.toList());
+		int maxBlocks = genotypes.stream().mapToInt(PackedGenotypes::getBlockCount).max().orElse(0);
+		
+		/*
+		 * tiles of the upper triangle of the comparison matrix
+		 */
+		AbstractQueue<int[]> queue =  new ConcurrentLinkedQueue<>();
+		for (int i = 0 ; i < size -1 ; i += TILE_SIZE) {
+			for (int j = i ; j < size ; j += TILE_SIZE) {
+				queue.add(new int[] {i, j});
+			}
 		}
+		logger.info("number of tiles to compare: " + queue.size());
 		
 		ExecutorService service = Executors.newFixedThreadPool(nThreads);		
-		for (int i = 0 ; i < nThreads; i++) {
+		for (int t = 0 ; t < nThreads; t++) {
 			service.execute(() -> {
 					List<Comparison> myComps = new ArrayList<>();
 					while (true) {
-						Integer in = queue.poll();
-						if (null == in) break;
-				
-						logger.info("performing comparison for : " + in.intValue());
+						int [] tile = queue.poll();
+						if (null == tile) break;
 						
-						File f1 = files.get(in);
-						TIntShortHashMap r1 = cache.get(f1);
+						logger.info("performing comparisons for tile : " + tile[0] + ", " + tile[1]);
 						
-						for (int j = in.intValue() + 1 ; j < size ; j ++ ) {
-							File f2 = files.get(j);
-							TIntShortHashMap r2 =  cache.get(f2);
-							Comparison c = ComparisonUtil.compareRatiosUsingSnpsFloat(r1, r2, f1, f2);
-							myComps.add(c);
+						int iEnd = Math.min(tile[0] + TILE_SIZE, size);
+						int jEnd = Math.min(tile[1] + TILE_SIZE, size);
+						int [][] results = new int[TILE_SIZE * TILE_SIZE][2];
+						
+						for (int block = 0 ; block < maxBlocks ; block += BLOCKS_PER_CHUNK) {
+							for (int i = tile[0] ; i < iEnd ; i++) {
+								PackedGenotypes g1 = genotypes.get(i);
+								for (int j = Math.max(tile[1], i + 1) ; j < jEnd ; j++) {
+									g1.compare(genotypes.get(j), block, block + BLOCKS_PER_CHUNK, results[(i - tile[0]) * TILE_SIZE + j - tile[1]]);
+								}
+							}
+						}
+						
+						for (int i = tile[0] ; i < iEnd ; i++) {
+							for (int j = Math.max(tile[1], i + 1) ; j < jEnd ; j++) {
+								int [] r = results[(i - tile[0]) * TILE_SIZE + j - tile[1]];
+								myComps.add(ComparisonUtil.getComparison(genotypes.get(i), genotypes.get(j), files.get(i).getAbsolutePath(), files.get(j).getAbsolutePath(), r[0], r[1]));
+							}
 						}
 					}
 					/*
@@ -201,8 +236,15 @@ public class SignatureCompareRelatedSimpleGenotypeMT {
 		}
 	}
 	
-	private void populateCache(List<File> files) {
-		AbstractQueue<File> queue =  new ConcurrentLinkedQueue<>(files);
+	private void populateCache(List<File> files) throws IOException {
+		File cacheFile = null != genotypeCache ? new File(genotypeCache) : null;
+		if (null != cacheFile) {
+			cache.putAll(PackedGenotypesCache.load(cacheFile, files, minimumCoverage, homCutoff, hetUpperCutoff, hetLowerCutoff));
+		}
+		
+		AbstractQueue<File> queue =  files.stream().filter(f -> ! cache.containsKey(f)).collect(Collectors.toCollection(ConcurrentLinkedQueue::new));
+		int noOfFilesToLoad = queue.size();
+		logger.info("number of files to load genotypes from: " + noOfFilesToLoad);
 		ExecutorService service = Executors.newFixedThreadPool(nThreads);		
 		for (int i = 0 ; i < nThreads; i++) {
 			service.execute(() -> {
@@ -219,7 +261,8 @@ public class SignatureCompareRelatedSimpleGenotypeMT {
 							// TODO Auto-generated catch block
 							e.printStackTrace();
 						}
-						TIntShortHashMap prevGenotypes = cache.putIfAbsent(f, genotypes);
+						if (null == genotypes) continue;
+						PackedGenotypes prevGenotypes = cache.putIfAbsent(f, PackedGenotypes.pack(genotypes));
 						if (null != prevGenotypes) {
 							logger.warn("already genotypes associated with file: " + f.getAbsolutePath());
 						}
@@ -236,6 +279,9 @@ public class SignatureCompareRelatedSimpleGenotypeMT {
 			e.printStackTrace();
 		}
 		
+		if (null != cacheFile && noOfFilesToLoad > 0) {
+			PackedGenotypesCache.write(cacheFile, cache, minimumCoverage, homCutoff, hetUpperCutoff, hetLowerCutoff);
+		}
 	}
 	
 	private void addFilesToMap(List<File> orderedFiles) {
@@ -326,6 +372,11 @@ public class SignatureCompareRelatedSimpleGenotypeMT {
 			if (options.hasExcludeVcfsFileOption())
 				excludeVcfsFile = options.getExcludeVcfsFile();
 			
+			options.getGenotypeCache().ifPresent(s -> {
+				genotypeCache = s;
+				logger.tool("Setting genotypeCache to: " + genotypeCache);
+			});
+			
 			logger.logInitialExecutionStats("SignatureCompareRelatedSimpleGenotypeMT", SignatureCompareRelatedSimpleGenotypeMT.class.getPackage().getImplementationVersion(), args);
 			
 			return engage();
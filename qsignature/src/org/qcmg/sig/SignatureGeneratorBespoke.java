@@ -7,9 +7,12 @@
 package org.qcmg.sig;
 
 import gnu.trove.map.hash.THashMap;
+import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.SamReader;
 
 import java.io.BufferedReader;
@@ -34,8 +37,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
 
 import javax.xml.bind.DatatypeConverter;
@@ -58,6 +61,7 @@ import org.qcmg.picard.util.BAMFileUtils;
 import org.qcmg.picard.util.SAMUtils;
 import org.qcmg.record.Record;
 import org.qcmg.sig.model.BaseReadGroup;
+import org.qcmg.sig.model.ReadGroupBaseCounts;
 import org.qcmg.sig.util.SignatureUtil;
 import org.qcmg.tab.TabbedFileReader;
 import org.qcmg.tab.TabbedRecord;
@@ -86,11 +90,13 @@ public class SignatureGeneratorBespoke {
 	private int minBaseQuality = 10;
 	private static float minGCScore = 0.70000f ;
 	private String validationStringency;
+	private boolean sequential;
+	private int nThreads = 4;
 	
 	Comparator<String> chrComparator;
 	
 	private final List<VcfRecord> snps = new ArrayList<>();
-	private final Map<ChrPosition, List<BaseReadGroup>> results = new ConcurrentHashMap<>();
+	private final Map<ChrPosition, ReadGroupBaseCounts> results = new ConcurrentHashMap<>();
 	private final List<StringBuilder> resultsToWrite = new ArrayList<>();
 	private final AbstractQueue<SAMRecord> sams = new ConcurrentLinkedQueue<>();
 	private final Map<String, String[]> illuminaArraysDesignMap = new ConcurrentHashMap<>();
@@ -191,7 +197,11 @@ public class SignatureGeneratorBespoke {
 			
 			
 			try {
-				runSequentially(bamFile);
+				if ( ! sequential && hasIndex(bamFile)) {
+					runIndexed(bamFile, header);
+				} else {
+					runSequentially(bamFile);
+				}
 			} catch (Exception e1) {
 				// TODO Auto-generated catch block
 				e1.printStackTrace();
@@ -346,9 +356,9 @@ public class SignatureGeneratorBespoke {
 			if ("-".equals(ref)|| "+".equals(ref)) {
 				ref = "n";
 			}
-			final List<BaseReadGroup> bsps = results.get(cp);
+			final ReadGroupBaseCounts counts = results.get(cp);
 			
-			if (null == bsps || bsps.isEmpty()) {
+			if (null == counts || counts.size() == 0) {
 			} else {
 				final StringBuilder sb = new StringBuilder(cp.getChromosome());
 				sb.append(Constants.TAB);
@@ -360,13 +370,17 @@ public class SignatureGeneratorBespoke {
 				sb.append(Constants.MISSING_DATA).append(Constants.TAB);	// qual
 				sb.append(Constants.MISSING_DATA).append(Constants.TAB);	// filter
 				sb.append("QAF=t:");																	// info
- 				sb.append(getEncodedDist(bsps));
+ 				sb.append(counts.getEncodedDist());
 				
 				/*
 				 * now again for the readgroups that we have
+				 * readgroups are added to a HashMap in the order in which they were seen, so that they come out in the same order as they always have
 				 */
-				Map<String, List<BaseReadGroup>> mapOfRgToBases = bsps.stream().collect(Collectors.groupingBy(BaseReadGroup::getReadGroup));
-				mapOfRgToBases.forEach((s,l) -> sb.append(Constants.COMMA).append(rgIds.get(s)).append(Constants.COLON).append(getEncodedDist(l)));
+				Map<String, String> mapOfRgToBases = new HashMap<>();
+				for (int i = 0 ; i < counts.size() ; i++) {
+					mapOfRgToBases.put(counts.getReadGroup(i), counts.getEncodedDist(i));
+				}
+				mapOfRgToBases.forEach((s,d) -> sb.append(Constants.COMMA).append(rgIds.get(s)).append(Constants.COLON).append(d));
 				
 				resultsToWrite.add(sb);
 			}
@@ -569,20 +583,110 @@ public class SignatureGeneratorBespoke {
 	
 	private void updateResults(VcfRecord vcf, SAMRecord sam) {
 		if (null != sam && null != vcf) {
-			// get read index
-			final int indexInRead = SAMUtils.getIndexInReadFromPosition(sam, vcf.getPosition());
+			updateResults(vcf, sam, null);
+		}
+	}
+	
+	/**
+	 * Adds the base of the read at the position of the vcf to the supplied counts, or to the counts for the position in the results map if null.
+	 * Returns the counts that were updated, or the supplied counts if the read has no (good quality) base at this position.
+	 */
+	private ReadGroupBaseCounts updateResults(VcfRecord vcf, SAMRecord sam, ReadGroupBaseCounts counts) {
+		// get read index
+		final int indexInRead = SAMUtils.getIndexInReadFromPosition(sam, vcf.getPosition());
+		
+		if (indexInRead > -1 && indexInRead < sam.getReadLength()) {
 			
-			if (indexInRead > -1 && indexInRead < sam.getReadLength()) {
-				
-				if (sam.getBaseQualities()[indexInRead] < minBaseQuality) return;
-				
-				final char c = sam.getReadString().charAt(indexInRead);
-				String rgId = null != sam.getReadGroup() ? sam.getReadGroup().getId() : "null";
+			if (sam.getBaseQualities()[indexInRead] < minBaseQuality) return counts;
+			
+			final byte b = sam.getReadBases()[indexInRead];
+			String rgId = null != sam.getReadGroup() ? sam.getReadGroup().getId() : "null";
+			
+			if (null == counts) {
+				counts = results.computeIfAbsent(vcf.getChrPosition(), f -> new ReadGroupBaseCounts());
+			}
+			counts.add(b, rgId);
+		}
+		return counts;
+	}
+	
+	private boolean hasIndex(File bamFile) throws IOException {
+		try (SamReader reader = SAMFileReaderFactory.createSAMFileReader(bamFile, validationStringency)) {
+			return reader.hasIndex();
+		}
+	}
+	
+	/**
+	 * Rather than streaming the whole bam, uses its index to retrieve just the reads that overlap the snp positions.
+	 * Each contig that has snps is processed in its own task (up to nThreads at a time), each with its own reader.
+	 */
+	private void runIndexed(File bamFile, SAMFileHeader header) throws Exception {
+		
+		/*
+		 * snps are sorted by contig, so contiguous runs of the same contig make up the list for that contig
+		 */
+		Map<String, List<VcfRecord>> snpsByContig = new HashMap<>();
+		for (VcfRecord v : snps) {
+			snpsByContig.computeIfAbsent(v.getChromosome(), f -> new ArrayList<>()).add(v);
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+		List<Future<Long>> futures = new ArrayList<>();
+		for (SAMSequenceRecord ssr : header.getSequenceDictionary().getSequences()) {
+			// as in match(), snp contigs start with chr whether or not the bam contigs do
+			String contig = ssr.getSequenceName().startsWith(Constants.CHR) ? ssr.getSequenceName() : Constants.CHR + ssr.getSequenceName();
+			List<VcfRecord> contigSnps = snpsByContig.get(contig);
+			if (null != contigSnps) {
+				futures.add(executor.submit(() -> processContig(bamFile, ssr.getSequenceIndex(), contigSnps)));
+			}
+		}
+		executor.shutdown();
+		
+		long recordCount = 0;
+		for (Future<Long> f : futures) {
+			recordCount += f.get();
+		}
+		logger.info("processed " + recordCount + " records from " + futures.size() + " contigs");
+	}
+	
+	private long processContig(File bamFile, int sequenceIndex, List<VcfRecord> contigSnps) throws IOException {
+		int noOfSnps = contigSnps.size();
+		int [] positions = new int[noOfSnps];
+		QueryInterval [] intervals = new QueryInterval[noOfSnps];
+		for (int i = 0 ; i < noOfSnps ; i++) {
+			positions[i] = contigSnps.get(i).getPosition();
+			intervals[i] = new QueryInterval(sequenceIndex, positions[i], positions[i]);
+		}
+		
+		/*
+		 * counts for each snp, created when a read first covers it
+		 */
+		ReadGroupBaseCounts [] counts = new ReadGroupBaseCounts[noOfSnps];
+		long recordCount = 0;
+		int cursor = 0;
+		try (SamReader reader = SAMFileReaderFactory.createSAMFileReader(bamFile, validationStringency);
+				SAMRecordIterator iter = reader.query(QueryInterval.optimizeIntervals(intervals), false)) {
+			while (iter.hasNext()) {
+				SAMRecord rec = iter.next();
+				if ( ! SAMUtils.isSAMRecordValidForVariantCalling(rec) || rec.getMappingQuality() < minMappingQuality) {
+					continue;
+				}
+				recordCount++;
 				
-				results.computeIfAbsent(vcf.getChrPosition(), f -> new ArrayList<>())
-					.add(new BaseReadGroup(c, rgId));
+				/*
+				 * reads come back in start order, so any snps before the start of this read are done with
+				 */
+				int start = rec.getAlignmentStart();
+				while (cursor < noOfSnps && positions[cursor] < start) {
+					cursor++;
+				}
+				int end = rec.getAlignmentEnd();
+				for (int i = cursor ; i < noOfSnps && positions[i] <= end ; i++) {
+					counts[i] = updateResults(contigSnps.get(i), rec, counts[i]);
+				}
 			}
 		}
+		return recordCount;
 	}
 	
 	private void loadRandomSnpPositions(String randomSnpsFile) throws Exception {
@@ -695,6 +799,8 @@ public class SignatureGeneratorBespoke {
 			}
 			
 			validationStringency = options.getValidation();
+			sequential = options.runInSequentialMode();
+			options.getNoOfThreads().ifPresent(i -> {nThreads = Math.max(i.intValue(), nThreads);});
 			
 			return engage();
 		}
@@ -0,0 +1,143 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.sig.model;
+
+import gnu.trove.map.hash.TIntShortHashMap;
+
+/**
+ * The genotypes of a signature, bit packed so that two signatures can be compared a word (64 positions) at a time.
+ * <p>
+ * Positions are the indices handed out by {@link org.qcmg.common.util.ChrPositionCache#getChrPositionIndex(String, int)}.
+ * Each block of 64 positions takes {@link #PLANES} consecutive longs: a mask of the positions that have a genotype,
+ * followed by 4 bit planes holding the 4 bit code (see {@link #getCode(short)}) of each of those genotypes.
+ * Two genotypes match when the masks of both signatures are set and none of the planes differ, so a comparison is a handful of xors, ands and popcounts per word.
+ */
+public class PackedGenotypes {
+
+	public static final int PLANES = 5;
+
+	/*
+	 * the valid coded genotypes (see SignatureUtil.isCodedGenotypeValid), whose index + 1 is their 4 bit code
+	 */
+	private static final short [] GENOTYPES = {2000, 200, 20, 2, 1100, 1010, 1001, 110, 101, 11};
+
+	private final long [] words;
+	private final int count;
+
+	public PackedGenotypes(long [] words, int count) {
+		if (words.length % PLANES != 0) {
+			throw new IllegalArgumentException("words array length must be a multiple of " + PLANES + ": " + words.length);
+		}
+		this.words = words;
+		this.count = count;
+	}
+
+	/**
+	 * Packs the supplied map of position index to coded genotype. Invalid genotypes are treated as missing, but are still included in the count (as they are in the map size).
+	 */
+	public static PackedGenotypes pack(TIntShortHashMap genotypes) {
+		int [] maxIndex = new int[1];
+		genotypes.forEachKey(k -> {
+			maxIndex[0] = Math.max(maxIndex[0], k);
+			return true;
+		});
+		long [] words = new long[(maxIndex[0] / 64 + 1) * PLANES];
+		genotypes.forEachEntry((k, g) -> {
+			int code = getCode(g);
+			if (code > 0) {
+				int offset = (k >>> 6) * PLANES;
+				long bit = 1L << k;
+				words[offset] |= bit;
+				for (int p = 0 ; p < 4 ; p++) {
+					if ((code & (1 << p)) != 0) {
+						words[offset + 1 + p] |= bit;
+					}
+				}
+			}
+			return true;
+		});
+		return new PackedGenotypes(words, genotypes.size());
+	}
+
+	/**
+	 * @return the 4 bit code (1-10) of a valid coded genotype, or 0 if it is not valid
+	 */
+	public static int getCode(short genotype) {
+		for (int i = 0 ; i < GENOTYPES.length ; i++) {
+			if (GENOTYPES[i] == genotype) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	public static short getGenotype(int code) {
+		return code > 0 && code <= GENOTYPES.length ? GENOTYPES[code - 1] : 0;
+	}
+
+	/**
+	 * @return the coded genotype at the supplied position index, or 0 if there isn't one
+	 */
+	public short get(int index) {
+		int offset = (index >>> 6) * PLANES;
+		if (offset >= words.length) {
+			return 0;
+		}
+		long bit = 1L << index;
+		if ((words[offset] & bit) == 0) {
+			return 0;
+		}
+		int code = 0;
+		for (int p = 0 ; p < 4 ; p++) {
+			if ((words[offset + 1 + p] & bit) != 0) {
+				code |= 1 << p;
+			}
+		}
+		return getGenotype(code);
+	}
+
+	/**
+	 * Adds the number of matching genotypes, and the number of positions that have a genotype in both signatures,
+	 * over the blocks of 64 positions from <code>fromBlock</code> (inclusive) to <code>toBlock</code> (exclusive), to <code>results[0]</code> and <code>results[1]</code> respectively.
+	 */
+	public void compare(PackedGenotypes other, int fromBlock, int toBlock, int [] results) {
+		long [] a = words;
+		long [] b = other.words;
+		int end = Math.min(toBlock * PLANES, Math.min(a.length, b.length));
+		int matches = 0;
+		int compared = 0;
+		for (int i = fromBlock * PLANES ; i < end ; i += PLANES) {
+			long both = a[i] & b[i];
+			long diff = (a[i + 1] ^ b[i + 1]) | (a[i + 2] ^ b[i + 2]) | (a[i + 3] ^ b[i + 3]) | (a[i + 4] ^ b[i + 4]);
+			compared += Long.bitCount(both);
+			matches += Long.bitCount(both & ~diff);
+		}
+		results[0] += matches;
+		results[1] += compared;
+	}
+
+	/**
+	 * @return the number of blocks of 64 positions
+	 */
+	public int getBlockCount() {
+		return words.length / PLANES;
+	}
+
+	/**
+	 * @return the number of genotypes that this signature was created with
+	 */
+	public int size() {
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public long [] getWords() {
+		return words;
+	}
+}
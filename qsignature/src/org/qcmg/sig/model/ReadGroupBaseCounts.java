@@ -0,0 +1,91 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.sig.model;
+
+import java.util.Arrays;
+
+import org.qcmg.common.util.Constants;
+
+/**
+ * Counts of As, Cs, Gs and Ts seen at a single position, per read group.
+ * <p>
+ * Read groups are held in the order in which they were first seen at this position. A read group is recorded even if its only base is not one of ACGT,
+ * in which case its counts are all zero (as with a list of {@link BaseReadGroup}s).
+ * <p>
+ * Not thread safe.
+ */
+public class ReadGroupBaseCounts {
+
+	private String [] readGroups = new String[2];
+	private int [] counts = new int[8];
+	private int size;
+
+	public void add(byte base, String rg) {
+		int i = indexOf(rg);
+		if (i == -1) {
+			if (size == readGroups.length) {
+				readGroups = Arrays.copyOf(readGroups, size * 2);
+				counts = Arrays.copyOf(counts, size * 8);
+			}
+			i = size++;
+			readGroups[i] = rg;
+		}
+		switch (base) {
+		case 'A' : counts[i * 4]++; break;
+		case 'C' : counts[i * 4 + 1]++; break;
+		case 'G' : counts[i * 4 + 2]++; break;
+		case 'T' : counts[i * 4 + 3]++; break;
+		}
+	}
+
+	private int indexOf(String rg) {
+		for (int i = 0 ; i < size ; i++) {
+			if (readGroups[i].equals(rg)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of read groups seen at this position
+	 */
+	public int size() {
+		return size;
+	}
+
+	public String getReadGroup(int i) {
+		return readGroups[i];
+	}
+
+	/**
+	 * @return the counts of the i'th read group in the A-C-G-T format of {@link org.qcmg.sig.SignatureGeneratorBespoke#getEncodedDist(java.util.List)}
+	 */
+	public String getEncodedDist(int i) {
+		return encode(counts[i * 4], counts[i * 4 + 1], counts[i * 4 + 2], counts[i * 4 + 3]);
+	}
+
+	/**
+	 * @return the counts summed across all read groups, or null if nothing has been added
+	 */
+	public String getEncodedDist() {
+		if (size == 0) {
+			return null;
+		}
+		int as = 0, cs = 0, gs = 0, ts = 0;
+		for (int i = 0 ; i < size ; i++) {
+			as += counts[i * 4];
+			cs += counts[i * 4 + 1];
+			gs += counts[i * 4 + 2];
+			ts += counts[i * 4 + 3];
+		}
+		return encode(as, cs, gs, ts);
+	}
+
+	private static String encode(int as, int cs, int gs, int ts) {
+		return "" + as + Constants.MINUS + cs + Constants.MINUS + gs + Constants.MINUS + ts;
+	}
+}
@@ -0,0 +1,389 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.sig.util;
+
+import gnu.trove.map.hash.TIntShortHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.qcmg.common.log.QLogger;
+import org.qcmg.common.log.QLoggerFactory;
+import org.qcmg.common.model.ChrPointPosition;
+import org.qcmg.common.model.ChrPosition;
+import org.qcmg.common.util.ChrPositionCache;
+import org.qcmg.sig.QSignatureException;
+import org.qcmg.sig.model.Comparison;
+import org.qcmg.sig.model.PackedGenotypes;
+
+/**
+ * An append only index of the {@link PackedGenotypes} of a cohort of signatures, along with the results of comparing each signature with those added before it.
+ * Adding a signature to a cohort of N signatures therefore takes N comparisons, rather than the N(N+1)/2 needed to compare the whole cohort again.
+ * <p>
+ * The index file is a sequence of records, each of which is a type byte and a payload length followed by the payload:
+ * <ul>
+ * <li>a header, holding the coverage and cutoff settings that the genotypes were called with</li>
+ * <li>positions, appended whenever a signature has positions that are new to the index. Positions are numbered in the order in which they appear in the file,
+ * and the packed genotypes in the index use these numbers (rather than {@link ChrPositionCache} indices)</li>
+ * <li>a signature, holding its path, length, last modified time, genotype count and the non empty blocks of its packed genotypes</li>
+ * <li>the match and overlap counts of the comparisons of the signature that precedes it with each of the signatures before that</li>
+ * </ul>
+ * If the last record was only partly written (eg. the job was killed), it is dropped when the index is next opened.
+ */
+public class CohortIndex {
+
+	private static final QLogger logger = QLoggerFactory.getLogger(CohortIndex.class);
+
+	static final String MAGIC = "qsignature.cohort";
+	static final int VERSION = 1;
+
+	static final byte HEADER = 'H';
+	static final byte POSITIONS = 'P';
+	static final byte SIGNATURE = 'S';
+	static final byte COMPARISONS = 'C';
+
+	private final File file;
+	private final TObjectIntHashMap<ChrPosition> positionNumbers = new TObjectIntHashMap<>();
+	private final List<ChrPosition> newPositions = new ArrayList<>();
+	private final List<Signature> signatures = new ArrayList<>();
+
+	/**
+	 * A signature in the index. <code>matches[j]</code> and <code>compared[j]</code> are the counts of the comparison with the j'th signature, for all j before this one.
+	 */
+	public static final class Signature {
+		private final String path;
+		private final long length;
+		private final long lastModified;
+		private final PackedGenotypes genotypes;
+		private int [] matches;
+		private int [] compared;
+
+		Signature(String path, long length, long lastModified, PackedGenotypes genotypes) {
+			this.path = path;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.genotypes = genotypes;
+		}
+		public String getPath() {
+			return path;
+		}
+		public PackedGenotypes getGenotypes() {
+			return genotypes;
+		}
+		/**
+		 * @return true if the supplied file has the same length and last modified time as this signature did when it was added
+		 */
+		public boolean isUpToDate(File f) {
+			return f.length() == length && f.lastModified() == lastModified;
+		}
+	}
+
+	private CohortIndex(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens the index file, creating it if it doesn't exist.
+	 * Throws a {@link QSignatureException} if it exists, but was created with different settings.
+	 */
+	public static CohortIndex open(File file, int minCoverage, float homCutoff, float hetUpperCutoff, float hetLowerCutoff) throws IOException, QSignatureException {
+		CohortIndex index = new CohortIndex(file);
+		if ( ! file.exists() || file.length() == 0) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeUTF(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(minCoverage);
+			out.writeFloat(homCutoff);
+			out.writeFloat(hetUpperCutoff);
+			out.writeFloat(hetLowerCutoff);
+			try (DataOutputStream fileOut = new DataOutputStream(new FileOutputStream(file))) {
+				writeRecord(fileOut, HEADER, bytes);
+			}
+			return index;
+		}
+
+		long goodLength = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024 * 1024))) {
+			while (true) {
+				byte type;
+				byte [] payload;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				try {
+					payload = new byte[in.readInt()];
+					in.readFully(payload);
+				} catch (EOFException e) {
+					logger.warn("Last record of cohort index " + file.getAbsolutePath() + " is incomplete - it will be removed");
+					break;
+				}
+				DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+				if (goodLength == 0) {
+					if (type != HEADER || ! MAGIC.equals(record.readUTF()) || record.readInt() != VERSION) {
+						throw new QSignatureException("INVALID_COHORT_INDEX", file.getAbsolutePath());
+					}
+					if (record.readInt() != minCoverage || record.readFloat() != homCutoff || record.readFloat() != hetUpperCutoff || record.readFloat() != hetLowerCutoff) {
+						throw new QSignatureException("COHORT_INDEX_SETTINGS_MISMATCH", file.getAbsolutePath());
+					}
+				} else {
+					index.readRecord(type, record);
+				}
+				goodLength += 5 + payload.length;
+			}
+		}
+
+		/*
+		 * a signature without its comparisons is incomplete too
+		 */
+		if ( ! index.signatures.isEmpty() && null == index.signatures.get(index.signatures.size() - 1).matches) {
+			logger.warn("Last signature in cohort index " + file.getAbsolutePath() + " has no comparisons - it will be removed");
+			Signature last = index.signatures.remove(index.signatures.size() - 1);
+			goodLength -= getSignatureRecordLength(last);
+		}
+		if (goodLength < file.length()) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(goodLength);
+			}
+		}
+		logger.info("loaded " + index.signatures.size() + " signatures and " + index.positionNumbers.size() + " positions from cohort index " + file.getAbsolutePath());
+		return index;
+	}
+
+	private void readRecord(byte type, DataInputStream in) throws IOException {
+		switch (type) {
+		case POSITIONS:
+			for (int i = 0, n = in.readInt() ; i < n ; i++) {
+				positionNumbers.put(new ChrPointPosition(in.readUTF(), in.readInt()), positionNumbers.size() + 1);
+			}
+			break;
+		case SIGNATURE:
+			String path = in.readUTF();
+			long length = in.readLong();
+			long lastModified = in.readLong();
+			int count = in.readInt();
+			long [] words = new long[in.readInt() * PackedGenotypes.PLANES];
+			for (int b = 0, n = in.readInt() ; b < n ; b++) {
+				int offset = in.readInt() * PackedGenotypes.PLANES;
+				for (int p = 0 ; p < PackedGenotypes.PLANES ; p++) {
+					words[offset + p] = in.readLong();
+				}
+			}
+			signatures.add(new Signature(path, length, lastModified, new PackedGenotypes(words, count)));
+			break;
+		case COMPARISONS:
+			Signature s = signatures.get(signatures.size() - 1);
+			int n = in.readInt();
+			s.matches = new int[n];
+			s.compared = new int[n];
+			for (int i = 0 ; i < n ; i++) {
+				s.matches[i] = in.readInt();
+				s.compared[i] = in.readInt();
+			}
+			break;
+		default:
+			throw new IOException("Unknown record type " + type + " in cohort index " + file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Packs the supplied genotypes, which are keyed on {@link ChrPositionCache} indices (as returned by {@link SignatureUtil#loadSignatureRatiosFloatGenotype(File, int, float, float, float)}),
+	 * using the position numbers of this index. Positions that are new to the index are numbered, and are written out with the next signature that is added.
+	 */
+	public synchronized PackedGenotypes pack(TIntShortHashMap genotypes) {
+		ChrPosition [] cachePositions = ChrPositionCache.getChrPositionsByIndex();
+		TIntShortHashMap numbered = new TIntShortHashMap(genotypes.size() * 2);
+		genotypes.forEachEntry((k, g) -> {
+			ChrPosition cp = cachePositions[k];
+			int number = positionNumbers.get(cp);
+			if (number == 0) {
+				number = positionNumbers.size() + 1;
+				positionNumbers.put(cp, number);
+				newPositions.add(cp);
+			}
+			numbered.put(number, g);
+			return true;
+		});
+		PackedGenotypes packed = PackedGenotypes.pack(numbered);
+		return new PackedGenotypes(packed.getWords(), genotypes.size());
+	}
+
+	/**
+	 * Compares the genotypes (packed by {@link #pack(TIntShortHashMap)}) with each signature in the index, and appends them, along with the comparison results, to the index.
+	 * The comparisons are split across the supplied executor.
+	 *
+	 * @return the number of the new signature in the index
+	 */
+	public synchronized int add(File f, PackedGenotypes genotypes, ExecutorService executor, int noOfTasks) throws IOException, InterruptedException, ExecutionException {
+		int n = signatures.size();
+		int [] matches = new int[n];
+		int [] compared = new int[n];
+		int chunkSize = Math.max(1, (n + noOfTasks - 1) / noOfTasks);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int start = 0 ; start < n ; start += chunkSize) {
+			int from = start;
+			int to = Math.min(n, start + chunkSize);
+			futures.add(executor.submit(() -> {
+				int [] results = new int[2];
+				for (int j = from ; j < to ; j++) {
+					results[0] = 0;
+					results[1] = 0;
+					genotypes.compare(signatures.get(j).genotypes, 0, genotypes.getBlockCount(), results);
+					matches[j] = results[0];
+					compared[j] = results[1];
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+
+		Signature s = new Signature(f.getAbsolutePath(), f.length(), f.lastModified(), genotypes);
+		s.matches = matches;
+		s.compared = compared;
+		append(s);
+		signatures.add(s);
+		return n;
+	}
+
+	private void append(Signature s) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1024 * 1024))) {
+			if ( ! newPositions.isEmpty()) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream record = new DataOutputStream(bytes);
+				record.writeInt(newPositions.size());
+				for (ChrPosition cp : newPositions) {
+					record.writeUTF(cp.getChromosome());
+					record.writeInt(cp.getStartPosition());
+				}
+				writeRecord(out, POSITIONS, bytes);
+				newPositions.clear();
+			}
+			writeRecord(out, SIGNATURE, getSignatureRecord(s));
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream record = new DataOutputStream(bytes);
+			record.writeInt(s.matches.length);
+			for (int i = 0 ; i < s.matches.length ; i++) {
+				record.writeInt(s.matches[i]);
+				record.writeInt(s.compared[i]);
+			}
+			writeRecord(out, COMPARISONS, bytes);
+		}
+	}
+
+	private static ByteArrayOutputStream getSignatureRecord(Signature s) throws IOException {
+		long [] words = s.genotypes.getWords();
+		int blocks = s.genotypes.getBlockCount();
+		int nonEmptyBlocks = 0;
+		for (int b = 0 ; b < blocks ; b++) {
+			if (words[b * PackedGenotypes.PLANES] != 0) {
+				nonEmptyBlocks++;
+			}
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream record = new DataOutputStream(bytes);
+		record.writeUTF(s.path);
+		record.writeLong(s.length);
+		record.writeLong(s.lastModified);
+		record.writeInt(s.genotypes.size());
+		record.writeInt(blocks);
+		record.writeInt(nonEmptyBlocks);
+		for (int b = 0 ; b < blocks ; b++) {
+			if (words[b * PackedGenotypes.PLANES] != 0) {
+				record.writeInt(b);
+				for (int p = 0 ; p < PackedGenotypes.PLANES ; p++) {
+					record.writeLong(words[b * PackedGenotypes.PLANES + p]);
+				}
+			}
+		}
+		return bytes;
+	}
+
+	private static long getSignatureRecordLength(Signature s) throws IOException {
+		return 5 + getSignatureRecord(s).size();
+	}
+
+	private static void writeRecord(DataOutputStream out, byte type, ByteArrayOutputStream payload) throws IOException {
+		out.writeByte(type);
+		out.writeInt(payload.size());
+		payload.writeTo(out);
+	}
+
+	public int size() {
+		return signatures.size();
+	}
+
+	public Signature getSignature(int i) {
+		return signatures.get(i);
+	}
+
+	/**
+	 * @return the number of the signature with the supplied path, or -1 if it is not in the index
+	 */
+	public int indexOf(String path) {
+		for (int i = 0 ; i < signatures.size() ; i++) {
+			if (signatures.get(i).path.equals(path)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the comparison of the i'th and j'th signatures, as {@link ComparisonUtil#compareGenotypes(PackedGenotypes, PackedGenotypes, String, String)} would return it
+	 */
+	public Comparison getComparison(int i, int j) {
+		Signature si = signatures.get(i);
+		Signature sj = signatures.get(j);
+		int match = 0;
+		int compared = 0;
+		if (i > j) {
+			match = si.matches[j];
+			compared = si.compared[j];
+		} else if (j > i) {
+			match = sj.matches[i];
+			compared = sj.compared[i];
+		}
+		return ComparisonUtil.getComparison(si.genotypes, sj.genotypes, si.path, sj.path, match, compared);
+	}
+
+	/**
+	 * @return the comparisons of the i'th signature with the k others that it is most similar to, by score and then by overlap, ignoring those that have no overlap
+	 */
+	public List<Comparison> getTopK(int i, int k) {
+		List<Comparison> comparisons = new ArrayList<>();
+		for (int j = 0 ; j < signatures.size() ; j++) {
+			if (j != i) {
+				Comparison c = getComparison(i, j);
+				if (c.getOverlapCoverage() > 0) {
+					comparisons.add(c);
+				}
+			}
+		}
+		comparisons.sort(Comparator.comparingDouble(Comparison::getScore).thenComparingInt(Comparison::getOverlapCoverage).reversed());
+		return comparisons.size() > k ? new ArrayList<>(comparisons.subList(0, k)) : comparisons;
+	}
+}
@@ -18,6 +18,7 @@ import org.qcmg.common.log.QLogger;
 import org.qcmg.common.log.QLoggerFactory;
 import org.qcmg.common.model.ChrPosition;
 import org.qcmg.sig.model.Comparison;
+import org.qcmg.sig.model.PackedGenotypes;
 
 public class ComparisonUtil {
 	
@@ -184,5 +185,35 @@ public class ComparisonUtil {
 		return comp;
 		
 	}
+	
+	/**
+	 * Equivalent to {@link #compareRatiosUsingSnpsFloat(TIntShortHashMap, TIntShortHashMap, String, String)} for signatures that have been packed with {@link PackedGenotypes#pack(TIntShortHashMap)}
+	 */
+	public static Comparison compareGenotypes(PackedGenotypes file1Genotypes, PackedGenotypes file2Genotypes, String file1, String file2) {
+		if (null == file1Genotypes || null == file2Genotypes)
+			throw new IllegalArgumentException("null genotypes passed to compareGenotypes");
+		
+		if (null == file1 || null == file2)
+			throw new IllegalArgumentException("null files passed to compareGenotypes");
+		
+		int [] results = new int[2];
+		if ( ! file1Genotypes.isEmpty() && ! file2Genotypes.isEmpty() && ! file1.equals(file2)) {
+			file1Genotypes.compare(file2Genotypes, 0, file1Genotypes.getBlockCount(), results);
+		}
+		return getComparison(file1Genotypes, file2Genotypes, file1, file2, results[0], results[1]);
+	}
+	
+	/**
+	 * Creates the comparison for the supplied match and overlap counts, taking care of the same edge cases as {@link #compareRatiosUsingSnpsFloat(TIntShortHashMap, TIntShortHashMap, String, String)}
+	 */
+	public static Comparison getComparison(PackedGenotypes file1Genotypes, PackedGenotypes file2Genotypes, String file1, String file2, int match, int totalCompared) {
+		if (file1Genotypes.isEmpty() || file2Genotypes.isEmpty()) {
+			return new Comparison(file1, file1Genotypes.size(), file2, file2Genotypes.size(), 0, 0);
+		}
+		if (file1.equals(file2)) {
+			return new Comparison(file1, file1Genotypes.size(), file2, file2Genotypes.size(), 0, file1Genotypes.size());
+		}
+		return new Comparison(file1, file1Genotypes.size(), file2, file2Genotypes.size(), match, totalCompared);
+	}
 			
 }
@@ -0,0 +1,159 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.sig.util;
+
+import gnu.trove.map.hash.TIntShortHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.qcmg.common.log.QLogger;
+import org.qcmg.common.log.QLoggerFactory;
+import org.qcmg.common.model.ChrPosition;
+import org.qcmg.common.util.ChrPositionCache;
+import org.qcmg.sig.model.PackedGenotypes;
+
+/**
+ * Reads and writes the {@link PackedGenotypes} of a set of signature files, so that they don't need to be loaded from the signature files themselves next time round.
+ * <p>
+ * The cache file holds the settings that the genotypes were called with, the positions in the order of their indices, and then for each signature file
+ * its path, length and last modified time along with its packed genotypes. Entries are only used if the settings match and the signature file hasn't changed since.
+ * The whole file is rewritten by {@link #write(File, Map, int, float, float, float)}, so it holds the signatures of the last run that wrote it.
+ */
+public class PackedGenotypesCache {
+
+	private static final QLogger logger = QLoggerFactory.getLogger(PackedGenotypesCache.class);
+
+	static final String MAGIC = "qsignature.genotypes";
+	static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Returns the cached genotypes of those of the supplied files that are up to date in the cache file.
+	 * Returns an empty map if the cache file does not exist, or was written with different settings.
+	 */
+	public static Map<File, PackedGenotypes> load(File cacheFile, Collection<File> files, int minCoverage, float homCutoff, float hetUpperCutoff, float hetLowerCutoff) throws IOException {
+		Map<File, PackedGenotypes> genotypes = new HashMap<>();
+		if ( ! cacheFile.exists()) {
+			return genotypes;
+		}
+
+		Map<String, File> filesByPath = new HashMap<>();
+		for (File f : files) {
+			filesByPath.put(f.getAbsolutePath(), f);
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(cacheFile), BUFFER_SIZE)))) {
+			if ( ! MAGIC.equals(in.readUTF()) || in.readInt() != VERSION) {
+				logger.warn("Ignoring genotype cache " + cacheFile.getAbsolutePath() + " - not a genotype cache, or from a different version");
+				return genotypes;
+			}
+			if (in.readInt() != minCoverage || in.readFloat() != homCutoff || in.readFloat() != hetUpperCutoff || in.readFloat() != hetLowerCutoff) {
+				logger.info("Ignoring genotype cache " + cacheFile.getAbsolutePath() + " - written with different coverage or cutoff settings");
+				return genotypes;
+			}
+
+			/*
+			 * get the indices for the positions in this jvm - these will be the same as in the file unless positions have already been indexed
+			 */
+			int noOfPositions = in.readInt();
+			int [] indices = new int[noOfPositions + 1];
+			boolean sameIndices = true;
+			for (int i = 1 ; i <= noOfPositions ; i++) {
+				String chr = in.readUTF();
+				int position = in.readInt();
+				if ( ! chr.isEmpty()) {
+					indices[i] = ChrPositionCache.getChrPositionIndex(chr, position);
+					sameIndices &= indices[i] == i;
+				}
+			}
+
+			int noOfSignatures = in.readInt();
+			for (int s = 0 ; s < noOfSignatures ; s++) {
+				String path = in.readUTF();
+				long length = in.readLong();
+				long lastModified = in.readLong();
+				int count = in.readInt();
+				long [] words = new long[in.readInt()];
+				for (int w = 0 ; w < words.length ; w++) {
+					words[w] = in.readLong();
+				}
+
+				File f = filesByPath.get(path);
+				if (null != f && f.length() == length && f.lastModified() == lastModified) {
+					PackedGenotypes pg = new PackedGenotypes(words, count);
+					genotypes.put(f, sameIndices ? pg : reindex(pg, indices, count));
+				}
+			}
+		}
+		logger.info("loaded " + genotypes.size() + " signatures from genotype cache " + cacheFile.getAbsolutePath());
+		return genotypes;
+	}
+
+	static PackedGenotypes reindex(PackedGenotypes pg, int [] indices, int count) {
+		TIntShortHashMap map = new TIntShortHashMap();
+		for (int i = 1, len = Math.min(indices.length, pg.getBlockCount() * 64) ; i < len ; i++) {
+			short g = pg.get(i);
+			if (g > 0) {
+				map.put(indices[i], g);
+			}
+		}
+		PackedGenotypes reindexed = PackedGenotypes.pack(map);
+		return new PackedGenotypes(reindexed.getWords(), count);
+	}
+
+	/**
+	 * Writes the supplied genotypes to the cache file, replacing whatever was there before
+	 */
+	public static void write(File cacheFile, Map<File, PackedGenotypes> genotypes, int minCoverage, float homCutoff, float hetUpperCutoff, float hetLowerCutoff) throws IOException {
+		File tmpFile = new File(cacheFile.getAbsolutePath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE)))) {
+			out.writeUTF(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(minCoverage);
+			out.writeFloat(homCutoff);
+			out.writeFloat(hetUpperCutoff);
+			out.writeFloat(hetLowerCutoff);
+
+			ChrPosition [] positions = ChrPositionCache.getChrPositionsByIndex();
+			out.writeInt(positions.length - 1);
+			for (int i = 1 ; i < positions.length ; i++) {
+				// indices that were handed out but lost a race to be stored have no position
+				out.writeUTF(null == positions[i] ? "" : positions[i].getChromosome());
+				out.writeInt(null == positions[i] ? 0 : positions[i].getStartPosition());
+			}
+
+			out.writeInt(genotypes.size());
+			for (Map.Entry<File, PackedGenotypes> entry : genotypes.entrySet()) {
+				File f = entry.getKey();
+				long [] words = entry.getValue().getWords();
+				out.writeUTF(f.getAbsolutePath());
+				out.writeLong(f.length());
+				out.writeLong(f.lastModified());
+				out.writeInt(entry.getValue().size());
+				out.writeInt(words.length);
+				for (long w : words) {
+					out.writeLong(w);
+				}
+			}
+		}
+		Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		logger.info("wrote " + genotypes.size() + " signatures to genotype cache " + cacheFile.getAbsolutePath());
+	}
+}
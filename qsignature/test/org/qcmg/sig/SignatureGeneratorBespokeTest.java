@@ -2,9 +2,19 @@ package org.qcmg.sig;
 
 import static org.junit.Assert.*;
 
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -12,6 +22,8 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.qcmg.common.log.QLoggerFactory;
 import org.qcmg.common.vcf.VcfRecord;
+import org.qcmg.picard.SAMFileReaderFactory;
+import org.qcmg.picard.SAMOrBAMWriterFactory;
 import org.qcmg.sig.model.BaseReadGroup;
 import org.qcmg.vcf.VCFFileReader;
 
@@ -83,5 +95,78 @@ public class SignatureGeneratorBespokeTest {
 	       	
 	    	assertEquals(6, recs.size());
     }
+	
+	@Test
+    public void indexedMatchesSequential() throws Exception {
+	    	final File positionsOfInterestFile = testFolder.newFile("indexedMatchesSequential.snps.txt");
+	    	final File unsortedBamFile = testFolder.newFile("unsorted.bam");
+	    	final File bamFile = testFolder.newFile("indexedMatchesSequential.bam");
+	    	final File logFile = testFolder.newFile("indexedMatchesSequential.log");
+	    	final File sequentialDir = testFolder.newFolder("sequential");
+	    	final File indexedDir = testFolder.newFolder("indexed");
+	    	
+	    SignatureGeneratorTest.writeSnpPositionsFile(positionsOfInterestFile);
+	    SignatureGeneratorTest.getBamFile(unsortedBamFile, true, true);
+	    
+	    /*
+	     * sort and index, spreading the reads across a few readgroups
+	     */
+	    try (SamReader reader = SAMFileReaderFactory.createSAMFileReader(unsortedBamFile)) {
+	    		SAMFileHeader header = reader.getFileHeader().clone();
+	    		header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+	    		// some of the test reads lie beyond the end of their contig, which the indexer won't have
+	    		header.getSequenceDictionary().getSequences().forEach(ssr -> ssr.setSequenceLength(250000000));
+	    		for (String rg : new String[] {"rgC", "rgA", "rgB"}) {
+	    			header.addReadGroup(new SAMReadGroupRecord(rg));
+	    		}
+	    		SAMOrBAMWriterFactory factory = new SAMOrBAMWriterFactory(header, false, bamFile, true);
+	    		try {
+	    			SAMFileWriter writer = factory.getWriter();
+	    			List<SAMRecord> recs = new ArrayList<>();
+	    			int i = 0;
+	    			for (SAMRecord rec : reader) {
+	    				rec.setHeader(header);
+	    				if (i++ % 4 != 3) {
+	    					rec.setAttribute("RG", header.getReadGroups().get(i % 3).getId());
+	    				}
+	    				recs.add(rec);
+	    			}
+	    			recs.sort(new htsjdk.samtools.SAMRecordCoordinateComparator());
+	    			for (SAMRecord rec : recs) {
+	    				writer.addAlignment(rec);
+	    			}
+	    		} finally {
+	    			factory.closeWriter();
+	    		}
+	    }
+	    try (SamReader reader = SAMFileReaderFactory.createSAMFileReader(bamFile)) {
+	    		assertTrue(reader.hasIndex());
+	    }
+	    
+	    	assertEquals(0, new SignatureGeneratorBespoke().setup(new String[] {"--log" , logFile.getAbsolutePath(), "-snpPositions" , positionsOfInterestFile.getAbsolutePath(), "-i" , bamFile.getAbsolutePath(), "-d", sequentialDir.getAbsolutePath(), "--sequential"}));
+	    	assertEquals(0, new SignatureGeneratorBespoke().setup(new String[] {"--log" , logFile.getAbsolutePath(), "-snpPositions" , positionsOfInterestFile.getAbsolutePath(), "-i" , bamFile.getAbsolutePath(), "-d", indexedDir.getAbsolutePath(), "-noOfThreads", "2"}));
+	    	
+	    	List<String> sequential = getOutputLines(new File(sequentialDir, bamFile.getName() + ".qsig.vcf.gz"));
+	    	List<String> indexed = getOutputLines(new File(indexedDir, bamFile.getName() + ".qsig.vcf.gz"));
+	    	assertEquals(sequential, indexed);
+	    	assertTrue(sequential.stream().anyMatch(l -> l.contains("rg3:")));
+	    	assertEquals(6, sequential.stream().filter(l -> ! l.startsWith("#")).count());
+    }
+	
+	/**
+	 * @return the lines of the output file, less those that are expected to differ from one run to the next
+	 */
+	private static List<String> getOutputLines(File file) throws Exception {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file))))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if ( ! line.startsWith("##datetime") && ! line.startsWith("##cmd_line")) {
+					lines.add(line);
+				}
+			}
+		}
+		return lines;
+	}
 
 }
@@ -0,0 +1,90 @@
+package org.qcmg.sig.model;
+
+import static org.junit.Assert.assertEquals;
+
+import gnu.trove.map.hash.TIntShortHashMap;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.qcmg.sig.util.ComparisonUtil;
+import org.qcmg.sig.util.SignatureUtil;
+
+public class PackedGenotypesTest {
+	
+	private static final short [] GENOTYPES = {2000, 200, 20, 2, 1100, 1010, 1001, 110, 101, 11};
+	
+	@Test
+	public void codes() {
+		for (short g : GENOTYPES) {
+			int code = PackedGenotypes.getCode(g);
+			assertEquals(true, code > 0 && code < 16);
+			assertEquals(g, PackedGenotypes.getGenotype(code));
+		}
+		assertEquals(0, PackedGenotypes.getCode((short) 0));
+		assertEquals(0, PackedGenotypes.getCode((short) 1000));
+		assertEquals(false, SignatureUtil.isCodedGenotypeValid((short) 1000));
+	}
+	
+	@Test
+	public void packAndGet() {
+		TIntShortHashMap map = new TIntShortHashMap();
+		map.put(1, (short) 2000);
+		map.put(63, (short) 11);
+		map.put(64, (short) 1010);
+		map.put(1000, (short) 2);
+		PackedGenotypes pg = PackedGenotypes.pack(map);
+		assertEquals(4, pg.size());
+		assertEquals(1000 / 64 + 1, pg.getBlockCount());
+		for (int k : map.keys()) {
+			assertEquals(map.get(k), pg.get(k));
+		}
+		assertEquals(0, pg.get(2));
+		assertEquals(0, pg.get(100000));
+	}
+	
+	@Test
+	public void empty() {
+		PackedGenotypes pg = PackedGenotypes.pack(new TIntShortHashMap());
+		assertEquals(true, pg.isEmpty());
+		Comparison c = ComparisonUtil.compareGenotypes(pg, pg, "a", "b");
+		assertEquals(0, c.getOverlapCoverage());
+	}
+	
+	@Test
+	public void compareMatchesHashMapComparison() {
+		Random random = new Random(1);
+		for (int t = 0 ; t < 20 ; t++) {
+			TIntShortHashMap m1 = getRandomGenotypes(random, 5000);
+			TIntShortHashMap m2 = getRandomGenotypes(random, 3000 + random.nextInt(4000));
+			Comparison expected = ComparisonUtil.compareRatiosUsingSnpsFloat(m1, m2, "f1", "f2");
+			Comparison actual = ComparisonUtil.compareGenotypes(PackedGenotypes.pack(m1), PackedGenotypes.pack(m2), "f1", "f2");
+			assertEquals(expected.getMainCoverage(), actual.getMainCoverage());
+			assertEquals(expected.getTestCoverage(), actual.getTestCoverage());
+			assertEquals(expected.getOverlapCoverage(), actual.getOverlapCoverage());
+			assertEquals(expected.getScore(), actual.getScore(), 0.0);
+			
+			/*
+			 * and in chunks
+			 */
+			PackedGenotypes p1 = PackedGenotypes.pack(m1);
+			PackedGenotypes p2 = PackedGenotypes.pack(m2);
+			int [] results = new int[2];
+			for (int b = 0 ; b < p1.getBlockCount() ; b += 7) {
+				p1.compare(p2, b, b + 7, results);
+			}
+			assertEquals(expected.getOverlapCoverage(), results[1]);
+		}
+	}
+	
+	private static TIntShortHashMap getRandomGenotypes(Random random, int noOfPositions) {
+		TIntShortHashMap map = new TIntShortHashMap();
+		for (int i = 1 ; i < noOfPositions ; i++) {
+			if (random.nextInt(3) > 0) {
+				// mostly homozygous, as real signatures are
+				map.put(i, GENOTYPES[random.nextInt(10) < 7 ? random.nextInt(4) : random.nextInt(GENOTYPES.length)]);
+			}
+		}
+		return map;
+	}
+}
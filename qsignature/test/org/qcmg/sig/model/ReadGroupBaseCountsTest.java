@@ -0,0 +1,42 @@
+package org.qcmg.sig.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ReadGroupBaseCountsTest {
+	
+	@Test
+	public void empty() {
+		ReadGroupBaseCounts counts = new ReadGroupBaseCounts();
+		assertEquals(0, counts.size());
+		assertEquals(null, counts.getEncodedDist());
+	}
+	
+	@Test
+	public void readGroupsInOrderSeen() {
+		ReadGroupBaseCounts counts = new ReadGroupBaseCounts();
+		counts.add((byte) 'A', "rg2");
+		counts.add((byte) 'C', "rg1");
+		counts.add((byte) 'A', "rg2");
+		counts.add((byte) 'T', "rg3");
+		counts.add((byte) 'G', "rg1");
+		assertEquals(3, counts.size());
+		assertEquals("rg2", counts.getReadGroup(0));
+		assertEquals("rg1", counts.getReadGroup(1));
+		assertEquals("rg3", counts.getReadGroup(2));
+		assertEquals("2-0-0-0", counts.getEncodedDist(0));
+		assertEquals("0-1-1-0", counts.getEncodedDist(1));
+		assertEquals("0-0-0-1", counts.getEncodedDist(2));
+		assertEquals("2-1-1-1", counts.getEncodedDist());
+	}
+	
+	@Test
+	public void nonACGTStillRecordsReadGroup() {
+		ReadGroupBaseCounts counts = new ReadGroupBaseCounts();
+		counts.add((byte) 'N', "null");
+		assertEquals(1, counts.size());
+		assertEquals("0-0-0-0", counts.getEncodedDist(0));
+		assertEquals("0-0-0-0", counts.getEncodedDist());
+	}
+}
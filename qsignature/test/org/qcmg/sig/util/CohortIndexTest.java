@@ -0,0 +1,148 @@
+package org.qcmg.sig.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import gnu.trove.map.hash.TIntShortHashMap;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qcmg.common.util.ChrPositionCache;
+import org.qcmg.sig.QSignatureException;
+import org.qcmg.sig.model.Comparison;
+
+public class CohortIndexTest {
+	
+	private static final short [] GENOTYPES = {2000, 200, 20, 2, 1100, 1010, 1001, 110, 101, 11};
+	
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	
+	private final ExecutorService executor = Executors.newFixedThreadPool(2);
+	
+	@After
+	public void shutdown() {
+		executor.shutdown();
+	}
+	
+	@Test
+	public void addAndReopen() throws Exception {
+		File indexFile = new File(testFolder.getRoot(), "cohort.idx");
+		CohortIndex index = CohortIndex.open(indexFile, 10, 0.9f, 0.7f, 0.3f);
+		assertEquals(0, index.size());
+		
+		Random random = new Random(7);
+		List<TIntShortHashMap> genotypes = new ArrayList<>();
+		List<File> files = new ArrayList<>();
+		for (int i = 0 ; i < 5 ; i++) {
+			// later signatures have positions that the earlier ones don't
+			genotypes.add(getRandomGenotypes(random, "chr1", 2000 + i * 500));
+			files.add(testFolder.newFile(i + ".qsig.vcf"));
+		}
+		for (int i = 0 ; i < 3 ; i++) {
+			assertEquals(i, index.add(files.get(i), index.pack(genotypes.get(i)), executor, 2));
+		}
+		assertComparisons(index, genotypes);
+		
+		/*
+		 * reopen and add the rest
+		 */
+		index = CohortIndex.open(indexFile, 10, 0.9f, 0.7f, 0.3f);
+		assertEquals(3, index.size());
+		assertEquals(2, index.indexOf(files.get(2).getAbsolutePath()));
+		assertEquals(-1, index.indexOf(files.get(3).getAbsolutePath()));
+		assertEquals(true, index.getSignature(0).isUpToDate(files.get(0)));
+		for (int i = 3 ; i < 5 ; i++) {
+			assertEquals(i, index.add(files.get(i), index.pack(genotypes.get(i)), executor, 3));
+		}
+		assertComparisons(index, genotypes);
+		index = CohortIndex.open(indexFile, 10, 0.9f, 0.7f, 0.3f);
+		assertComparisons(index, genotypes);
+		
+		/*
+		 * top k
+		 */
+		List<Comparison> top = index.getTopK(0, 2);
+		assertEquals(2, top.size());
+		assertEquals(true, top.get(0).getScore() >= top.get(1).getScore());
+		for (int j = 1 ; j < 5 ; j++) {
+			if (index.getComparison(0, j).getOverlapCoverage() > 0) {
+				assertEquals(true, index.getComparison(0, j).getScore() <= top.get(0).getScore());
+			}
+		}
+		assertEquals(4, index.getTopK(0, 10).size());
+	}
+	
+	@Test
+	public void incompleteLastRecordIsDropped() throws Exception {
+		File indexFile = new File(testFolder.getRoot(), "cohort.idx");
+		CohortIndex index = CohortIndex.open(indexFile, 10, 0.9f, 0.7f, 0.3f);
+		Random random = new Random(3);
+		index.add(testFolder.newFile("1.qsig.vcf"), index.pack(getRandomGenotypes(random, "chr1", 1000)), executor, 2);
+		long length = indexFile.length();
+		index.add(testFolder.newFile("2.qsig.vcf"), index.pack(getRandomGenotypes(random, "chr1", 1000)), executor, 2);
+		
+		/*
+		 * chop off the end of the comparisons of the second signature
+		 */
+		long truncatedLength = indexFile.length() - 3;
+		try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+			raf.setLength(truncatedLength);
+		}
+		index = CohortIndex.open(indexFile, 10, 0.9f, 0.7f, 0.3f);
+		assertEquals(1, index.size());
+		// any positions that came with the second signature are kept
+		assertEquals(true, indexFile.length() >= length && indexFile.length() < truncatedLength);
+		
+		index.add(testFolder.newFile("3.qsig.vcf"), index.pack(getRandomGenotypes(random, "chr1", 1000)), executor, 2);
+		assertEquals(2, CohortIndex.open(indexFile, 10, 0.9f, 0.7f, 0.3f).size());
+	}
+	
+	@Test
+	public void differentSettings() throws Exception {
+		File indexFile = new File(testFolder.getRoot(), "cohort.idx");
+		CohortIndex.open(indexFile, 10, 0.9f, 0.7f, 0.3f);
+		try {
+			CohortIndex.open(indexFile, 20, 0.9f, 0.7f, 0.3f);
+			fail("Should have thrown a QSignatureException");
+		} catch (QSignatureException e) {}
+		try {
+			CohortIndex.open(testFolder.newFile("not_an_index"), 10, 0.9f, 0.7f, 0.3f);
+		} catch (QSignatureException e) {
+			fail("Empty file should be treated as a new index");
+		}
+	}
+	
+	private static void assertComparisons(CohortIndex index, List<TIntShortHashMap> genotypes) {
+		for (int i = 0 ; i < index.size() ; i++) {
+			for (int j = 0 ; j < index.size() ; j++) {
+				if (i == j) continue;
+				Comparison expected = ComparisonUtil.compareRatiosUsingSnpsFloat(genotypes.get(i), genotypes.get(j), index.getSignature(i).getPath(), index.getSignature(j).getPath());
+				Comparison actual = index.getComparison(i, j);
+				assertEquals(expected.getOverlapCoverage(), actual.getOverlapCoverage());
+				assertEquals(expected.getScore(), actual.getScore(), 0.0);
+				assertEquals(expected.getMainCoverage(), actual.getMainCoverage());
+			}
+		}
+	}
+	
+	private static TIntShortHashMap getRandomGenotypes(Random random, String chr, int noOfPositions) {
+		TIntShortHashMap map = new TIntShortHashMap();
+		for (int i = 1 ; i < noOfPositions ; i++) {
+			if (random.nextInt(3) > 0) {
+				map.put(ChrPositionCache.getChrPositionIndex(chr, i * 10), GENOTYPES[random.nextInt(10) < 7 ? random.nextInt(4) : random.nextInt(GENOTYPES.length)]);
+			}
+		}
+		return map;
+	}
+}
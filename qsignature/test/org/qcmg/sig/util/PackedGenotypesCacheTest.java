@@ -0,0 +1,92 @@
+package org.qcmg.sig.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import gnu.trove.map.hash.TIntShortHashMap;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qcmg.common.util.ChrPositionCache;
+import org.qcmg.sig.model.PackedGenotypes;
+
+public class PackedGenotypesCacheTest {
+	
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	
+	@Test
+	public void roundTrip() throws Exception {
+		File f1 = testFolder.newFile("1.qsig.vcf");
+		File f2 = testFolder.newFile("2.qsig.vcf");
+		try (FileWriter w = new FileWriter(f2)) {
+			w.write("##changed\n");
+		}
+		File cacheFile = new File(testFolder.getRoot(), "genotypes.cache");
+		
+		TIntShortHashMap m1 = new TIntShortHashMap();
+		m1.put(ChrPositionCache.getChrPositionIndex("chr1", 100), (short) 2000);
+		m1.put(ChrPositionCache.getChrPositionIndex("chr1", 200), (short) 1010);
+		TIntShortHashMap m2 = new TIntShortHashMap();
+		m2.put(ChrPositionCache.getChrPositionIndex("chr2", 100), (short) 11);
+		
+		Map<File, PackedGenotypes> genotypes = new HashMap<>();
+		genotypes.put(f1, PackedGenotypes.pack(m1));
+		genotypes.put(f2, PackedGenotypes.pack(m2));
+		PackedGenotypesCache.write(cacheFile, genotypes, 10, 0.9f, 0.7f, 0.3f);
+		assertTrue(cacheFile.exists());
+		
+		/*
+		 * indices are the same in this jvm, so the words should be too
+		 */
+		Map<File, PackedGenotypes> loaded = PackedGenotypesCache.load(cacheFile, Arrays.asList(f1, f2), 10, 0.9f, 0.7f, 0.3f);
+		assertEquals(2, loaded.size());
+		assertArrayEquals(genotypes.get(f1).getWords(), loaded.get(f1).getWords());
+		assertEquals(2, loaded.get(f1).size());
+		assertEquals(1010, loaded.get(f1).get(ChrPositionCache.getChrPositionIndex("chr1", 200)));
+		assertEquals(11, loaded.get(f2).get(ChrPositionCache.getChrPositionIndex("chr2", 100)));
+		
+		/*
+		 * different settings - nothing loaded
+		 */
+		assertEquals(0, PackedGenotypesCache.load(cacheFile, Arrays.asList(f1, f2), 20, 0.9f, 0.7f, 0.3f).size());
+		
+		/*
+		 * file that is not in the list, or that has changed, is not loaded
+		 */
+		assertEquals(1, PackedGenotypesCache.load(cacheFile, Arrays.asList(f1), 10, 0.9f, 0.7f, 0.3f).size());
+		try (FileWriter w = new FileWriter(f2, true)) {
+			w.write("##changed again\n");
+		}
+		loaded = PackedGenotypesCache.load(cacheFile, Arrays.asList(f1, f2), 10, 0.9f, 0.7f, 0.3f);
+		assertEquals(1, loaded.size());
+		assertTrue(loaded.containsKey(f1));
+	}
+	
+	@Test
+	public void reindex() {
+		TIntShortHashMap map = new TIntShortHashMap();
+		map.put(1, (short) 2000);
+		map.put(2, (short) 110);
+		map.put(3, (short) 2);
+		PackedGenotypes reindexed = PackedGenotypesCache.reindex(PackedGenotypes.pack(map), new int[] {0, 100, 3, 2}, 3);
+		assertEquals(3, reindexed.size());
+		assertEquals(2000, reindexed.get(100));
+		assertEquals(2, reindexed.get(2));
+		assertEquals(110, reindexed.get(3));
+		assertEquals(0, reindexed.get(1));
+	}
+	
+	@Test
+	public void missingFile() throws Exception {
+		assertEquals(0, PackedGenotypesCache.load(new File(testFolder.getRoot(), "missing"), Arrays.asList(testFolder.newFile()), 10, 0.9f, 0.7f, 0.3f).size());
+	}
+}
@@ -0,0 +1,307 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.snp;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.qcmg.common.model.Accumulator;
+
+/**
+ * Holds the Accumulators for a single sample for the part of the current contig that is still being worked on,
+ * ie. from where the Cleaner is up to, through to the furthest base added by the Consumer.
+ * <p>
+ * Accumulators are stored in a ring buffer indexed by position, so memory use depends on the span of the active reads rather than on the length of the contig.
+ * The ring is doubled in size should a read extend beyond its current capacity.
+ * A bitmap of occupied slots lets the Cleaner skip over empty positions,
+ * and Accumulators that the Cleaner has finished with (and not kept hold of) are recycled back to the Consumer.
+ * <p>
+ * The ring is written to by a single Consumer thread, and read and emptied by the Cleaner thread.
+ * These two threads never work on the same positions (the Cleaner stays behind the Consumers, see {@link BamWalkTracker}, which also provides the memory visibility between them).
+ * The lock is only needed when the ring is resized, and when recycled Accumulators are handed back to the Consumer.
+ */
+final class AccumulatorWindow {
+
+	/**
+	 * Called by the Cleaner for each position that has an Accumulator in either window
+	 */
+	interface AccumulatorHandler {
+		/**
+		 * @return true if the handler has kept hold of the accumulator(s), in which case they won't be recycled
+		 */
+		boolean process(Accumulator control, Accumulator test);
+	}
+
+	static final int DEFAULT_CAPACITY = 1 << 21;
+
+	/*
+	 * keeps the slots being written to by the Consumer at least a couple of bitmap words clear of those being emptied by the Cleaner
+	 */
+	private static final int GUARD = 128;
+	private static final int MAX_RECYCLED = 1 << 16;
+	private static final int REFILL_SIZE = 1024;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private Accumulator [] ring;
+	private long [] occupied;
+	private int mask;
+
+	/*
+	 * all positions below low have been dealt with by the Cleaner
+	 */
+	private volatile int low;
+	private int high;
+
+	/*
+	 * free is only touched by the Consumer, recycled is guarded by the lock
+	 */
+	private final ArrayDeque<Accumulator> free = new ArrayDeque<>(REFILL_SIZE);
+	private final ArrayDeque<Accumulator> recycled = new ArrayDeque<>();
+	private long recycledCount;
+	private long createdCount;
+
+	AccumulatorWindow() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity initial number of positions that the window can hold. Must be a power of 2, and at least 256
+	 */
+	AccumulatorWindow(int capacity) {
+		if (Integer.bitCount(capacity) != 1 || capacity < 2 * GUARD) {
+			throw new IllegalArgumentException("capacity must be a power of 2, and at least " + 2 * GUARD + ": " + capacity);
+		}
+		ring = new Accumulator[capacity];
+		occupied = new long[capacity >>> 6];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Consumer thread only.
+	 * Returns the Accumulator for this position, creating (or recycling) one if necessary.
+	 */
+	Accumulator getOrCreate(int position) {
+		if (position - low >= ring.length - GUARD) {
+			grow(position);
+		}
+		final int slot = position & mask;
+		Accumulator acc = ring[slot];
+		if (null == acc) {
+			acc = newAccumulator(position);
+			ring[slot] = acc;
+			occupied[slot >>> 6] |= 1L << slot;
+			if (position > high) {
+				high = position;
+			}
+		}
+		return acc;
+	}
+
+	/**
+	 * Returns the Accumulator for this position if there is one, null otherwise.
+	 * Should not be called whilst the Consumer and Cleaner threads are active.
+	 */
+	Accumulator get(int position) {
+		if (position < low || position - low >= ring.length) {
+			return null;
+		}
+		final Accumulator acc = ring[position & mask];
+		return null != acc && acc.getPosition() == position ? acc : null;
+	}
+
+	int capacity() {
+		return ring.length;
+	}
+
+	long getCreatedCount() {
+		return createdCount;
+	}
+
+	long getRecycledCount() {
+		return recycledCount;
+	}
+
+	private Accumulator newAccumulator(int position) {
+		if (free.isEmpty() && lock.tryLock()) {
+			/*
+			 * don't wait on the lock - the Cleaner may be holding it for a while
+			 */
+			try {
+				for (int i = 0 ; i < REFILL_SIZE && ! recycled.isEmpty() ; i++) {
+					free.add(recycled.poll());
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		Accumulator acc = free.poll();
+		if (null == acc) {
+			createdCount++;
+			return new Accumulator(position);
+		}
+		recycledCount++;
+		acc.reset(position);
+		return acc;
+	}
+
+	private void grow(int position) {
+		lock.lock();
+		try {
+			if (0 == high || high < low) {
+				/*
+				 * window is empty (eg. first read of the contig) - move it along rather than making it bigger
+				 */
+				low = position;
+				return;
+			}
+			int newCapacity = ring.length;
+			while (position - low >= newCapacity - GUARD) {
+				newCapacity <<= 1;
+				if (newCapacity <= 0) {
+					throw new IllegalStateException("Unable to grow accumulator window to hold position: " + position + ", lowest position: " + low);
+				}
+			}
+			if (newCapacity == ring.length) {
+				return;
+			}
+			final Accumulator [] newRing = new Accumulator[newCapacity];
+			final long [] newOccupied = new long[newCapacity >>> 6];
+			final int newMask = newCapacity - 1;
+			for (int w = 0 ; w < occupied.length ; w++) {
+				long word = occupied[w];
+				while (word != 0) {
+					final int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					final Accumulator acc = ring[slot];
+					final int newSlot = acc.getPosition() & newMask;
+					newRing[newSlot] = acc;
+					newOccupied[newSlot >>> 6] |= 1L << newSlot;
+				}
+			}
+			ring = newRing;
+			occupied = newOccupied;
+			mask = newMask;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cleaner thread only.
+	 * Passes every Accumulator held by these windows with a position less than <code>upTo</code> to the handler, in position order.
+	 * Control and test Accumulators at the same position are passed together.
+	 *
+	 * @param control window for the control sample, may be null (single sample mode)
+	 * @param test window for the test sample
+	 * @param upTo positions from this one onwards are left alone
+	 * @param handler
+	 * @return the number of positions passed to the handler
+	 */
+	static int drain(AccumulatorWindow control, AccumulatorWindow test, int upTo, AccumulatorHandler handler) {
+		if (null != control) {
+			control.lock.lock();
+		}
+		test.lock.lock();
+		try {
+			final int from = null != control ? Math.min(control.low, test.low) : test.low;
+			if (upTo <= from) {
+				return 0;
+			}
+			/*
+			 * nothing has been added beyond high, so no need to look there
+			 */
+			final int limit = Math.min(upTo, 1 + (null != control ? Math.max(control.high, test.high) : test.high));
+			int count = 0;
+			for (int block = from & ~63 ; block < limit ; block += 64) {
+				final long controlWord = null != control ? control.word(block, upTo) : 0;
+				final long testWord = test.word(block, upTo);
+				long word = controlWord | testWord;
+				while (word != 0) {
+					final int bit = Long.numberOfTrailingZeros(word);
+					final long bitMask = 1L << bit;
+					word &= word - 1;
+					final int position = block + bit;
+
+					final Accumulator controlAcc = (controlWord & bitMask) != 0 ? control.remove(position) : null;
+					final Accumulator testAcc = (testWord & bitMask) != 0 ? test.remove(position) : null;
+					count++;
+					if ( ! handler.process(controlAcc, testAcc)) {
+						if (null != controlAcc) {
+							control.recycle(controlAcc);
+						}
+						if (null != testAcc) {
+							test.recycle(testAcc);
+						}
+					}
+				}
+			}
+			if (null != control) {
+				control.low = Math.max(control.low, upTo);
+			}
+			test.low = Math.max(test.low, upTo);
+			return count;
+		} finally {
+			test.lock.unlock();
+			if (null != control) {
+				control.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Cleaner thread only, once the Consumers have finished with the contig.
+	 * Passes all remaining Accumulators to the handler, and then readies the windows for the next contig.
+	 *
+	 * @return the number of positions passed to the handler
+	 */
+	static int drainAll(AccumulatorWindow control, AccumulatorWindow test, AccumulatorHandler handler) {
+		final int count = drain(control, test, Integer.MAX_VALUE, handler);
+		if (null != control) {
+			control.startNextContig();
+		}
+		test.startNextContig();
+		return count;
+	}
+
+	private void startNextContig() {
+		low = 0;
+		high = 0;
+	}
+
+	/**
+	 * Returns the bitmap word for the 64 positions starting at <code>block</code>,
+	 * with any bits for positions outside of [low, min(upTo, high + 1)) cleared, as their slots may be in use by other positions.
+	 */
+	private long word(int block, int upTo) {
+		final int end = Math.min(upTo, high + 1);
+		if (block >= end || block + 64 <= low) {
+			return 0;
+		}
+		long word = occupied[(block & mask) >>> 6];
+		if (block < low) {
+			word &= -1L << (low - block);
+		}
+		if (end - block < 64) {
+			word &= (1L << (end - block)) - 1;
+		}
+		return word;
+	}
+
+	private Accumulator remove(int position) {
+		final int slot = position & mask;
+		final Accumulator acc = ring[slot];
+		ring[slot] = null;
+		occupied[slot >>> 6] &= ~(1L << slot);
+		return acc;
+	}
+
+	private void recycle(Accumulator acc) {
+		if (recycled.size() < MAX_RECYCLED) {
+			recycled.add(acc);
+		}
+	}
+}
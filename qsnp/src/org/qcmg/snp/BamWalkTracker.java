@@ -0,0 +1,188 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.snp;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps track of how far the control and test Consumers have got through the current contig, and how far the Cleaner has got in processing the accumulators they leave behind.
+ * <p>
+ * Consumers publish their position after every batch of records, and block here if they get too far ahead of the Cleaner.
+ * The Cleaner blocks here until there is something new for it to do.
+ * This replaces the sleep/poll loops (and CyclicBarrier.getNumberWaiting checks) that the Pipeline threads previously used to coordinate with one another.
+ */
+final class BamWalkTracker {
+
+	static final int CONTROL = 0;
+	static final int TEST = 1;
+
+	private static final int ACTIVE = 0;
+	private static final int END_OF_CONTIG = 1;
+	private static final int END_OF_STREAM = 2;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+
+	private final int [] minStartPositions = new int[2];
+	private final int [] states = new int[2];
+	private final int maxLead;
+	private int cleanerPosition;
+	private long updateCount;
+
+	/**
+	 * @param singleSampleMode if true, the control Consumer will never report in and so is deemed to have finished
+	 * @param maxLead the number of bases a Consumer may get ahead of the Cleaner before it is made to wait
+	 */
+	BamWalkTracker(boolean singleSampleMode, int maxLead) {
+		this.maxLead = maxLead;
+		if (singleSampleMode) {
+			states[CONTROL] = END_OF_STREAM;
+			minStartPositions[CONTROL] = Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Records the alignment start of the last record processed by this consumer, and then blocks while the consumer is more than <code>maxLead</code> bases ahead of the Cleaner.
+	 *
+	 * @return the time spent waiting on the Cleaner, in nanoseconds
+	 */
+	long publishPosition(int consumer, int position) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			minStartPositions[consumer] = position;
+			updated();
+
+			if (position - cleanerPosition <= maxLead) {
+				return 0;
+			}
+			long start = System.nanoTime();
+			while (states[consumer] == ACTIVE && minStartPositions[consumer] - cleanerPosition > maxLead) {
+				changed.await();
+			}
+			return System.nanoTime() - start;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void reachedEndOfContig(int consumer) {
+		setState(consumer, END_OF_CONTIG);
+	}
+
+	void reachedEndOfStream(int consumer) {
+		setState(consumer, END_OF_STREAM);
+	}
+
+	private void setState(int consumer, int state) {
+		lock.lock();
+		try {
+			states[consumer] = state;
+			/*
+			 * this consumer won't be adding any more bases to this contig, so it no longer holds back the Cleaner
+			 */
+			minStartPositions[consumer] = Integer.MAX_VALUE;
+			updated();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Called once all threads have finished with the current contig, and before any of them start on the next one.
+	 * Consumers that have reached the end of their stream stay that way.
+	 */
+	void startNextContig() {
+		lock.lock();
+		try {
+			for (int i = 0 ; i < states.length ; i++) {
+				if (states[i] == END_OF_CONTIG) {
+					states[i] = ACTIVE;
+					minStartPositions[i] = 0;
+				}
+			}
+			cleanerPosition = 0;
+			updated();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Lets any Consumers that are waiting on the Cleaner know that positions up to (but not including) this one have been dealt with.
+	 */
+	void setCleanerPosition(int position) {
+		lock.lock();
+		try {
+			if (position > cleanerPosition) {
+				cleanerPosition = position;
+				changed.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Blocks until something has changed since the caller last looked.
+	 *
+	 * @param lastSeen the value returned by the previous call to this method (or zero)
+	 * @return the current update count, to be passed in to the next call to this method
+	 */
+	long awaitUpdate(long lastSeen) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (updateCount == lastSeen) {
+				changed.await();
+			}
+			return updateCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the smallest alignment start position reported by the active consumers, or <code>Integer.MAX_VALUE</code> if there are none
+	 */
+	int getMinStartPosition() {
+		lock.lock();
+		try {
+			return Math.min(minStartPositions[CONTROL], minStartPositions[TEST]);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return true if no consumer is still working on the current contig, and at least one consumer will be moving on to the next contig
+	 */
+	boolean isContigComplete() {
+		lock.lock();
+		try {
+			return states[CONTROL] != ACTIVE && states[TEST] != ACTIVE
+					&& (states[CONTROL] == END_OF_CONTIG || states[TEST] == END_OF_CONTIG);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return true if all consumers have processed all of their records
+	 */
+	boolean isStreamComplete() {
+		lock.lock();
+		try {
+			return states[CONTROL] == END_OF_STREAM && states[TEST] == END_OF_STREAM;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void updated() {
+		updateCount++;
+		changed.signalAll();
+	}
+}
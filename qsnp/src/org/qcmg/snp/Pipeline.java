@@ -32,17 +32,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Phaser;
 import java.util.stream.Collectors;
 
 import org.ini4j.Ini;
@@ -107,6 +105,20 @@ public abstract class Pipeline {
 	static int sBiasAltPercentage = 5;
 	static int sBiasCovPercentage = 5;
 	
+	/*
+	 * Producer -> Consumer hand off
+	 * records are passed in batches through a bounded queue, with the marker batches below signalling the end of a contig, and the end of the bam file(s)
+	 */
+	static final int BATCH_SIZE = 1024;
+	static final int QUEUE_CAPACITY = 16;
+	static final List<SAMRecordFilterWrapper> END_OF_CONTIG = Collections.unmodifiableList(new ArrayList<>(0));
+	static final List<SAMRecordFilterWrapper> END_OF_STREAM = Collections.unmodifiableList(new ArrayList<>(0));
+	
+	/*
+	 * how far (in bases) a Consumer may get ahead of the Cleaner before it is made to wait
+	 */
+	static final int MAX_CONSUMER_LEAD = 1024 * 1024;
+	
 	// STATS FOR CLASSIFIER
 //	long classifyCount = 0;
 //	long classifyGermlineCount = 0;
@@ -641,7 +653,11 @@ public abstract class Pipeline {
 	}
 	
 	/**
-	 * Sets up 2 Producer threads, 2 Consumer threads and a Cleaner thread, along with the concurrent collections, queues, and barriers used by them all
+	 * Sets up 2 Producer threads, 2 Consumer threads and a Cleaner thread, along with the queues, phaser and tracker used by them all
+	 * <p>
+	 * Producers hand records to their Consumer in batches through a bounded blocking queue, so a Producer that gets too far ahead is made to wait rather than filling the heap.
+	 * The end of a contig is signalled by an {@link #END_OF_CONTIG} batch, and the end of the bam file(s) by an {@link #END_OF_STREAM} batch.
+	 * All threads then meet at the phaser before moving on to the next contig.
 	 * 
 	 * @param ignoreDuplicates indicates whether duplicate records should be discarded out right. Not useful for torrent mode
 	 * @throws Exception
@@ -652,28 +668,28 @@ public abstract class Pipeline {
 		final int noOfThreads = singleSampleMode ? 3 : 5;		// 2 for each bam, and a single cleaner
 		final int consumerLatchSize = singleSampleMode ? 1 : 2;		// 2 for each bam, and a single cleaner
 		
+		final BamWalkTracker tracker = new BamWalkTracker(singleSampleMode, MAX_CONSUMER_LEAD);
+		final BlockingQueue<List<SAMRecordFilterWrapper>> normalSAMQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		final BlockingQueue<List<SAMRecordFilterWrapper>> tumourSAMQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
 		
-		final AtomicInteger controlMinStart = new AtomicInteger();
-		final AtomicInteger testMinStart = new AtomicInteger();
-		final Queue<SAMRecordFilterWrapper> normalSAMQueue = new ConcurrentLinkedQueue<SAMRecordFilterWrapper>();
-		final Queue<SAMRecordFilterWrapper> tumourSAMQueue = new ConcurrentLinkedQueue<SAMRecordFilterWrapper>();
-		
-		// used by Cleaner3 threads
-		Accumulator [] cnormalAccs = new Accumulator[1024 * 1024 * 256];
-		Accumulator [] ctumourAccs = new Accumulator[1024 * 1024 * 256];
+		// written to by the Consumers, emptied by the Cleaner
+		final AccumulatorWindow controlWindow = singleSampleMode ? null : new AccumulatorWindow();
+		final AccumulatorWindow testWindow = new AccumulatorWindow();
 		
-		final CyclicBarrier barrier = new CyclicBarrier(noOfThreads, new Runnable() {
+		final Phaser phaser = new Phaser(noOfThreads) {
 			@Override
-			public void run() {
-				// reset the minStartPositions values to zero
-				controlMinStart.set(0);
-				testMinStart.set(0);
-				
+			protected boolean onAdvance(int phase, int registeredParties) {
+				if (registeredParties == 0) {
+					// all threads have deregistered - nothing more to do
+					return true;
+				}
 				// update the reference bases array
 				loadNextReferenceSequence();
-				logger.info("barrier has been reached by all threads - moving onto next chromosome");
+				tracker.startNextContig();
+				logger.info("end of contig has been reached by all threads - moving onto next chromosome");
+				return false;
 			}
-		});
+		};
 		final ExecutorService service = Executors.newFixedThreadPool(noOfThreads);
 		final CountDownLatch consumerLatch = new CountDownLatch(consumerLatchSize);
 		final CountDownLatch controlProducerLatch = new CountDownLatch(1);
@@ -688,19 +704,16 @@ public abstract class Pipeline {
 		
 		// Control threads (if not single sample)
 		if ( ! singleSampleMode) {
-			service.execute(new Producer(controlBams, controlProducerLatch, true, normalSAMQueue, Thread.currentThread(), query, barrier, includeDups));
-			service.execute(new Consumer(consumerLatch, controlProducerLatch, testProducerLatch, true, 
-					Thread.currentThread(), barrier, cnormalAccs, normalSAMQueue, controlMinStart));
+			service.execute(new Producer(controlBams, controlProducerLatch, true, normalSAMQueue, Thread.currentThread(), query, phaser, includeDups));
+			service.execute(new Consumer(consumerLatch, true, Thread.currentThread(), phaser, tracker, controlWindow, normalSAMQueue));
 		}
 		
 		// test threads
-		service.execute(new Producer(testBams, testProducerLatch, false, tumourSAMQueue, Thread.currentThread(), query, barrier, includeDups));
-		service.execute(new Consumer(consumerLatch, controlProducerLatch, testProducerLatch, false, 
-				Thread.currentThread(), barrier, ctumourAccs, tumourSAMQueue, testMinStart));
+		service.execute(new Producer(testBams, testProducerLatch, false, tumourSAMQueue, Thread.currentThread(), query, phaser, includeDups));
+		service.execute(new Consumer(consumerLatch, false, Thread.currentThread(), phaser, tracker, testWindow, tumourSAMQueue));
 		
 		// Cleaner
-		service.execute(new Cleaner(cleanerLatch, consumerLatch, Thread.currentThread(),
-				barrier, controlMinStart, testMinStart, cnormalAccs, ctumourAccs));
+		service.execute(new Cleaner(cleanerLatch, Thread.currentThread(), phaser, tracker, controlWindow, testWindow));
 		
 		service.shutdown();
 		try {
@@ -723,6 +736,13 @@ public abstract class Pipeline {
 		logger.info("bam file access finished!");
 	}
 	
+	/**
+	 * Returns records per second for the supplied count and elapsed time, guarding against a zero elapsed time
+	 */
+	static long perSecond(long count, long elapsedNanos) {
+		return elapsedNanos > 0 ? (long) (count / (elapsedNanos / 1000000000.0)) : count;
+	}
+	
 	
 	public class Producer implements Runnable {
 		
@@ -730,20 +750,23 @@ public abstract class Pipeline {
 		private final MultiSAMFileIterator iter;
 		private final boolean isControl;
 		private final CountDownLatch latch;
-		private final Queue<SAMRecordFilterWrapper> queue;
+		private final BlockingQueue<List<SAMRecordFilterWrapper>> queue;
 		private QueryExecutor qbamFilter;
 		private final Thread mainThread;
 		private long passedFilterCount = 0;
 		private long invalidCount = 0;
 		private long counter = 0;
+		private long batchCount = 0;
+		private long blockedNanos = 0;
 		private int chrCounter = 0;
-		private final CyclicBarrier barrier;
+		private final Phaser phaser;
 		private final boolean includeDups;
 		private final boolean runqBamFilter;
+		private List<SAMRecordFilterWrapper> batch = new ArrayList<>(BATCH_SIZE);
 		
 		public Producer(final String[] bamFiles, final CountDownLatch latch, final boolean isNormal, 
-				final Queue<SAMRecordFilterWrapper> samQueue, final Thread mainThread, final String query, 
-				final CyclicBarrier barrier, boolean includeDups) throws Exception {
+				final BlockingQueue<List<SAMRecordFilterWrapper>> samQueue, final Thread mainThread, final String query, 
+				final Phaser phaser, boolean includeDups) throws Exception {
 			this.latch = latch;
 			final Set<File> bams = new HashSet<File>();
 			for (final String bamFile : bamFiles) {
@@ -756,7 +779,7 @@ public abstract class Pipeline {
 			this.queue = samQueue;
 			if ( ! StringUtils.isNullOrEmpty(query) && ! "QCMG".equals(query))
 				qbamFilter = new QueryExecutor(query);
-			this.barrier = barrier;
+			this.phaser = phaser;
 			this.includeDups = includeDups;
 			runqBamFilter = null != qbamFilter;
 		}
@@ -765,77 +788,75 @@ public abstract class Pipeline {
 		public void run() {
 			logger.info("In Producer run method with isControl: " + isControl);
 			logger.info("Use qbamfilter? " + runqBamFilter);
+			final long start = System.nanoTime();
 			try {
 				
 				while (iter.hasNext()) {
 					final SAMRecord record = iter.next();
 					chrCounter++;
 					if (++ counter % 1000000 == 0) {
-						int qSize = queue.size();
-						logger.info("hit " + counter/1000000 + "M sam records, passed filter: " + passedFilterCount + ", qsize: " + qSize);
+						logger.info("hit " + counter/1000000 + "M sam records, passed filter: " + passedFilterCount + ", qsize: " + queue.size() 
+								+ ", records/sec: " + perSecond(counter, System.nanoTime() - start) + ", blocked on full queue (ms): " + blockedNanos / 1000000);
 						if (passedFilterCount == 0 && counter >= noOfRecordsFailingFilter) {
 							throw new SnpException("INVALID_FILTER", ""+counter);
 						}
-						while (qSize > 10000) {
-							try {
-								Thread.sleep(200);
-							} catch (final InterruptedException e) {
-								logger.warn("InterruptedException caught whilst Producer thread was sleeping");
-								throw e;
-							}
-							qSize = queue.size();
-						}
 					}
 					
-					if (record.getReferenceName().equals(currentChr)) {
-						processRecord(record);
-					} else if (null == currentChr) {
+					/*
+					 * the reference may contain contigs that this bam has no reads for, so keep moving on until we are in sync
+					 */
+					while (null != currentChr && ! record.getReferenceName().equals(currentChr)) {
+						logger.info("Producer: Processed all records in " + currentChr + ", waiting for other threads");
+						endOfContig();
+						// reset counter
+						chrCounter = 1;
+					}
+					if (null == currentChr) {
 						// no longer have reference details - exit
 						logger.warn("Exiting Producer despite records remaining in file - null reference chromosome");
 						logger.warn("extra record: " + SAMUtils.getSAMRecordAsSting(record));
 						break;
-					} else {
-						logger.info("Producer: Processed all records in " + currentChr + ", waiting at barrier");
-						try {
-							barrier.await();
-							// don't need to reset barrier, threads waiting at barrier are released when all threads reach barrier... oops
-//							if (isNormal) barrier.reset();		// reset the barrier
-						} catch (final InterruptedException e) {
-							logger.error("Producer: InterruptedException exception caught whilst processing record: " + SAMUtils.getSAMRecordAsSting(record), e);
-							throw e;
-						} catch (final BrokenBarrierException e) {
-							logger.error("Producer: BrokenBarrier exception caught whilst processing record: " + SAMUtils.getSAMRecordAsSting(record), e);
-							throw e;
-						}
-						
-						// reset counter
-						chrCounter = 1;
-						
-						// wait until queues are empty
-						int qSize = queue.size();
-						if (qSize > 0)
-							logger.info("Waiting for empty queue before continuing with next chr. qsize: " + qSize);
-						while (qSize > 0) {
-							try {
-								Thread.sleep(100);
-							} catch (final InterruptedException e) {
-								e.printStackTrace();
-								throw e;
-							}
-							qSize = queue.size();
-						}
-						// deal with this record
-						processRecord(record);
 					}
+					processRecord(record);
 				}
+				
+				flush();
+				put(END_OF_STREAM);
+				phaser.arriveAndDeregister();
 			} catch (final Exception e) {
 				e.printStackTrace();
 				mainThread.interrupt();
 			} finally {
 				latch.countDown();
 				logger.info("Producer: shutting down - processed " + counter + " records, passed filter: " 
-						+ passedFilterCount + ", invalidCount: " + invalidCount);
+						+ passedFilterCount + ", invalidCount: " + invalidCount + ", batches: " + batchCount 
+						+ ", records/sec: " + perSecond(counter, System.nanoTime() - start) + ", blocked on full queue (ms): " + blockedNanos / 1000000);
+			}
+		}
+		
+		/**
+		 * Sends the current batch on its way, followed by the end of contig marker, and then waits for all other threads to finish with this contig
+		 */
+		private void endOfContig() throws InterruptedException {
+			flush();
+			put(END_OF_CONTIG);
+			phaser.awaitAdvanceInterruptibly(phaser.arrive());
+		}
+		
+		private void flush() throws InterruptedException {
+			if ( ! batch.isEmpty()) {
+				put(batch);
+				batch = new ArrayList<>(BATCH_SIZE);
+			}
+		}
+		
+		private void put(List<SAMRecordFilterWrapper> list) throws InterruptedException {
+			if ( ! queue.offer(list)) {
+				final long blockedStart = System.nanoTime();
+				queue.put(list);
+				blockedNanos += System.nanoTime() - blockedStart;
 			}
+			batchCount++;
 		}
 		
 		private void processRecord(SAMRecord record) throws Exception {
@@ -852,15 +873,15 @@ public abstract class Pipeline {
 				/*
 				 * we now want to kep track of reads that don't pass the filter for test as well as control
 				 */
-					addRecordToQueue(record, passesFilter);
+					addRecordToBatch(record, passesFilter);
 //				}
 			} else {
 				// didn't have any filtering defined - add all
-				addRecordToQueue(record, true);
+				addRecordToBatch(record, true);
 			}
 		}
 		
-		private void addRecordToQueue(final SAMRecord record,  final boolean passesFilter) {
+		private void addRecordToBatch(final SAMRecord record,  final boolean passesFilter) throws InterruptedException {
 			
 			record.getReadBases();					// cache read bases in object
 			if (passesFilter) {
@@ -873,39 +894,40 @@ public abstract class Pipeline {
 			
 			final SAMRecordFilterWrapper wrapper = new SAMRecordFilterWrapper(record, chrCounter);
 			wrapper.setPassesFilter(passesFilter);
-			queue.add(wrapper);
+			batch.add(wrapper);
+			if (batch.size() == BATCH_SIZE) {
+				flush();
+			}
 		}
 	}
 	
 	public class Consumer implements Runnable {
 		
 		private final CountDownLatch consumerLatch;
-		private final CountDownLatch controlLatch;
-		private final CountDownLatch testLatch;
 		private final boolean isControl;
+		private final int trackerId;
 		private final Thread mainThread;
-		private final  Accumulator[] array;
-		private final CyclicBarrier barrier;
-		private final Queue<SAMRecordFilterWrapper> queue;
-		private final AtomicInteger minStartPosition;
-		
-		private final int maxMapSize = 100000;
-		
-		public Consumer(final CountDownLatch consumerLatch, final CountDownLatch normalLatch, 
-				final CountDownLatch tumourLatch, final boolean isNormal, final Thread mainThread, 
-				final CyclicBarrier barrier, final  Accumulator[] array,
-				final Queue<SAMRecordFilterWrapper> queue, final AtomicInteger minStartPosition){
+		private final AccumulatorWindow window;
+		private final Phaser phaser;
+		private final BamWalkTracker tracker;
+		private final BlockingQueue<List<SAMRecordFilterWrapper>> queue;
+		
+		private long recordCount = 0;
+		private long emptyQueueNanos = 0;
+		private long cleanerWaitNanos = 0;
+		
+		public Consumer(final CountDownLatch consumerLatch, final boolean isNormal, final Thread mainThread, 
+				final Phaser phaser, final BamWalkTracker tracker, final AccumulatorWindow window,
+				final BlockingQueue<List<SAMRecordFilterWrapper>> queue){
 			
 			this.consumerLatch = consumerLatch;
-			this.controlLatch = normalLatch;
-			this.testLatch = tumourLatch;
 			this.isControl = isNormal;
+			this.trackerId = isNormal ? BamWalkTracker.CONTROL : BamWalkTracker.TEST;
 			this.mainThread = mainThread;
-			this.array =  array;
-//			this.map =  map;
-			this.barrier = barrier;
+			this.window = window;
+			this.phaser = phaser;
+			this.tracker = tracker;
 			this.queue = queue;
-			this.minStartPosition = minStartPosition;
 		}
 		
 		public void processSAMRecord(final SAMRecordFilterWrapper record) {
@@ -960,11 +982,7 @@ public abstract class Pipeline {
 			final int startPosAndRefOffset = startPosition + referenceOffset;
 			
 			for (int i = 0 ; i < length ; i++) {
-				Accumulator acc = array[i + startPosAndRefOffset];
-				if (null == acc) {
-					acc = new Accumulator(i + startPosAndRefOffset);
-					array[i + startPosAndRefOffset] = acc;
-				}
+				final Accumulator acc = window.getOrCreate(i + startPosAndRefOffset);
 				if (passesFilter && qualities[i + offset] >= minBaseQual) {
 					acc.addBase(bases[i + offset], qualities[i + offset], forwardStrand, 
 							startPosition, i + startPosAndRefOffset, readEndPosition, readId);
@@ -980,77 +998,36 @@ public abstract class Pipeline {
 		@Override
 		public void run() {
 			logger.info("In Consumer run method with isControl: " + isControl);
+			final long start = System.nanoTime();
 			try {
-				long count = 0;
 				while (true) {
 					
-					final SAMRecordFilterWrapper rec = queue.poll();
-					if (null != rec) {
-						
-						processSAMRecord(rec);
-						minStartPosition.set(rec.getRecord().getAlignmentStart());
-//						int alignmentStart = rec.getRecord().getAlignmentStart(); 
-						
-						if (++count % maxMapSize == 0) {
-							
-							/*
-							 * check to see how many non-null entries we have in the acc array
-							 * if more than our max amount - have a rest...
-							 */
-							
-							int currentPos = minStartPosition.get();
-							int minPos = Math.max(0,currentPos - 10000000);
-							int nonNullPositions = 0;
-							for (int i = currentPos; i >= minPos ; i--) {
-								if (array[i] != null) {
-									nonNullPositions++;
-								}
-							}
-							
-							if (nonNullPositions > 1000000) {
-//							for (int i = 0 ; i < 100 ; i++) {
-								final int sleepInterval = nonNullPositions / 1000;
-//								if (sleepInterval > 1000) logger.info("sleeping for " + sleepInterval + ", nonNullPositions: " + nonNullPositions);
-								try {
-									Thread.sleep(sleepInterval);
-								} catch (final InterruptedException e) {
-									logger.error("InterruptedException caught in Consumer sleep",e);
-									throw e;
-								}
-							}
-						}
+					List<SAMRecordFilterWrapper> batch = queue.poll();
+					if (null == batch) {
+						final long takeStart = System.nanoTime();
+						batch = queue.take();
+						emptyQueueNanos += System.nanoTime() - takeStart;
+					}
+					
+					if (batch == END_OF_CONTIG) {
+						logger.info("Consumer: Processed all records in " + currentChr + ", waiting for other threads. Records processed so far: " + recordCount 
+								+ ", records/sec: " + perSecond(recordCount, System.nanoTime() - start) + ", waited on empty queue (ms): " + emptyQueueNanos / 1000000 
+								+ ", waited on cleaner (ms): " + cleanerWaitNanos / 1000000);
+						tracker.reachedEndOfContig(trackerId);
+						phaser.awaitAdvanceInterruptibly(phaser.arrive());
+					} else if (batch == END_OF_STREAM) {
+						tracker.reachedEndOfStream(trackerId);
+						phaser.arriveAndDeregister();
+						break;
 					} else {
-						if ((singleSampleMode || controlLatch.getCount() == 0) && testLatch.getCount() == 0) {
-							break;
-						}
-						// check the barrier - could be zero
-						if (barrier.getNumberWaiting() >= (singleSampleMode ? 1 : 2)) {
-//							logger.info("null record, barrier count > 2 - what now??? q.size: " + queue.size());
-							// just me left
-							if (queue.size() == 0 ) {
-								logger.info("Consumer: Processed all records in " + currentChr + ", waiting at barrier");
-								
-								try {
-									barrier.await();
-//									assert map.isEmpty() : "Consumer: map was not empty following barrier reset";
-									count = 0;
-								} catch (final InterruptedException e) {
-//									logger.error("Consumer: InterruptedException caught with map size: " + map.size(), e);
-									throw e;
-								} catch (final BrokenBarrierException e) {
-//									logger.error("Consumer: BrokenBarrierException caught with map size: " + map.size(), e);
-									throw e;
-								}
-							}
-						} else {
-							// sleep and try again
-							try {
-								Thread.sleep(50);
-							} catch (final InterruptedException e) {
-								logger.error("InterruptedException caught in Consumer sleep",e);
-								throw e;
-							}
+						for (final SAMRecordFilterWrapper rec : batch) {
+							processSAMRecord(rec);
 						}
+						recordCount += batch.size();
+						/*
+						 * let the cleaner know where we are up to - will block here if we are too far ahead of it
+						 */
+						cleanerWaitNanos += tracker.publishPosition(trackerId, batch.get(batch.size() - 1).getRecord().getAlignmentStart());
 					}
 				}
 			} catch (final Exception e) {
@@ -1058,7 +1035,9 @@ public abstract class Pipeline {
 				mainThread.interrupt();
 			} finally {
 				consumerLatch.countDown();
-				logger.info("Consumer: shutting down");
+				logger.info("Consumer: shutting down - processed " + recordCount + " records, records/sec: " + perSecond(recordCount, System.nanoTime() - start) 
+						+ ", waited on empty queue (ms): " + emptyQueueNanos / 1000000 + ", waited on cleaner (ms): " + cleanerWaitNanos / 1000000
+						+ ", accumulators created: " + window.getCreatedCount() + ", recycled: " + window.getRecycledCount() + ", window capacity: " + window.capacity());
 			}
 		}
 	}
@@ -1066,148 +1045,89 @@ public abstract class Pipeline {
 	
 	public class Cleaner implements Runnable {
 		private final CountDownLatch cleanerLatch;
-		private final CountDownLatch consumerLatch;
 		private final Thread mainThread;
 		private int previousPosition = 0;
-		private final CyclicBarrier barrier;
-		private final AtomicInteger controlMinStart;
-		private final AtomicInteger testMinStart;
-		private final  Accumulator[] controlAccums;
-		private final  Accumulator[] testAccums;
+		private final Phaser phaser;
+		private final BamWalkTracker tracker;
+		private final AccumulatorWindow controlWindow;
+		private final AccumulatorWindow testWindow;
+		private final AccumulatorWindow.AccumulatorHandler handler = Pipeline.this::processAccumulators;
 		private long processMapsCounter = 0;
+		private long positionsProcessed = 0;
+		private long waitNanos = 0;
 		private final int buffer = 1024;
 		private final boolean debugLoggingEnabled;
 		
-		public Cleaner(CountDownLatch cleanerLatch, CountDownLatch consumerLatch, Thread mainThread, CyclicBarrier barrier,
-				final AtomicInteger normalMinStart, final AtomicInteger tumourMinStart,
-				final  Accumulator[] cnormalAccs, final  Accumulator[] ctumourAccs) {
-			this.consumerLatch = consumerLatch;
+		public Cleaner(CountDownLatch cleanerLatch, Thread mainThread, Phaser phaser, BamWalkTracker tracker,
+				final AccumulatorWindow controlWindow, final AccumulatorWindow testWindow) {
 			this.cleanerLatch = cleanerLatch;
 			this.mainThread = mainThread;
-			this.barrier = barrier;
-			this.controlMinStart = normalMinStart;
-			this.testMinStart = tumourMinStart;
-			this.controlAccums = cnormalAccs;
-			this.testAccums = ctumourAccs;
+			this.phaser = phaser;
+			this.tracker = tracker;
+			this.controlWindow = controlWindow;
+			this.testWindow = testWindow;
 			debugLoggingEnabled = logger.isLevelEnabled(QLevel.DEBUG);
 		}
 		
 		private void processMaps() {
-			final int minStartPos = singleSampleMode ? testMinStart.intValue() - buffer : Math.min(controlMinStart.intValue(), testMinStart.intValue()) - buffer;
+			final int minStart = tracker.getMinStartPosition();
+			if (minStart == Integer.MAX_VALUE) {
+				// no consumers are active - will be dealt with by processMapsAll
+				return;
+			}
+			final int minStartPos = minStart - buffer;
 			if (debugLoggingEnabled && ++processMapsCounter % 10 == 0) {
 				logger.debug("min start position: " + minStartPos + ", no of keepers so far: " + snps.size());
 			}
-			if (minStartPos <= 0) return;
-				
-			for (int i = previousPosition ; i < minStartPos ; i++) {
-				final Accumulator controlAcc = controlAccums[i];
-				final Accumulator testAcc = testAccums[i];
-				if (null != testAcc && null != controlAcc) {
-					processControlAndTest(controlAcc, testAcc);
-					controlAccums[i] = null;
-					testAccums[i] = null;
-				} else if (null != controlAcc){
-					processControl(controlAcc);
-					controlAccums[i] = null;
-				} else if (null != testAcc){
-					processTest(testAcc);
-					testAccums[i] = null;
-				}
-			}
-				
+			if (minStartPos <= previousPosition) return;
+			
+			/*
+			 * only positions that have an accumulator are visited
+			 */
+			positionsProcessed += AccumulatorWindow.drain(controlWindow, testWindow, minStartPos, handler);
 			previousPosition = minStartPos;
 		}
 		
 		private void processMapsAll() {
 			if (null != referenceBases ) {
-			
+				positionsProcessed += AccumulatorWindow.drainAll(controlWindow, testWindow, handler);
+			} else {
 				/*
-				 * Don't need to look past the end of the contig
+				 * no reference for this contig - discard its accumulators
 				 */
-				int minStartPos = 0;
-				int limit = testAccums.length;
-				if ( ! singleSampleMode) {
-					
-					for (int i = minStartPos, len = limit ; i < len ; i++) {
-						Accumulator controlAcc = controlAccums[i];
-						Accumulator testAcc = testAccums[i];
-						if (null != controlAcc && null != testAcc) {
-							processControlAndTest(controlAcc, testAcc);
-							controlAccums[i] = null;
-							testAccums[i] = null;
-						} else if (null != testAcc) {
-							processTest(testAcc);
-							testAccums[i] = null;
-						} else if (null != controlAcc) {
-							processControl(controlAcc);
-							controlAccums[i] = null;
-						}
-					}
-				} else {
-					
-					for (int i = minStartPos, len = limit ; i < len ; i++) {
-						Accumulator testAcc = testAccums[i];
-						if (null != testAcc) {
-							processTest(testAcc);
-							testAccums[i] = null;
-						}
-					}
-				}
+				AccumulatorWindow.drainAll(controlWindow, testWindow, (control, test) -> false);
 			}
 		}
 		
 		@Override
 		public void run() {
 			logger.info("In Cleaner run method");
-			try {
-				Thread.sleep(500);	// sleep to allow initial population of both queues
-			} catch (final InterruptedException e1) {
-				e1.printStackTrace();
-			}
-			
+			final long start = System.nanoTime();
+			long lastSeen = 0;
 			try {
 				while (true) {
-//					logger.info("Cleaner - about to run processMaps");
+					final long waitStart = System.nanoTime();
+					lastSeen = tracker.awaitUpdate(lastSeen);
+					waitNanos += System.nanoTime() - waitStart;
 					
-					processMaps();
-//					logger.info("Cleaner - about to run processMaps - DONE, controlMinStart: " + controlMinStart.get() + ", testMinStart: " + testMinStart.get());
-						
-					if (barrier.getNumberWaiting() == barrier.getParties() - 1) {
-						logger.info("Cleaner: about to hit barrier - running processMapsAll");
+					if (tracker.isStreamComplete()) {
+						// consumers have finished - process remaining items in map and then exit
+						logger.info("Cleaner: consumers have finished - running processMapsAll");
+						processMapsAll();
+						phaser.arriveAndDeregister();
+						break;
+					} else if (tracker.isContigComplete()) {
+						logger.info("Cleaner: end of contig reached - running processMapsAll. Positions processed so far: " + positionsProcessed 
+								+ ", positions/sec: " + perSecond(positionsProcessed, System.nanoTime() - start) + ", waited on consumers (ms): " + waitNanos / 1000000);
 						
 						processMapsAll();
 						compoundSnps(true);
-						// lets try purging here...
-//						purgeNonAdjacentAccumulators();
-						try {
-							previousPosition = 0;
-							barrier.await();
-							logger.info("Cleaner: no of keepers so far: " + snps.size());
-							Thread.sleep(100);	// sleep to allow initial map population
-						} catch (final InterruptedException e) {
-							logger.error("InterruptedException caught in Cleaner thread: ", e);
-							throw e;
-						} catch (final BrokenBarrierException e) {
-							logger.error("BrokenBarrierException caught in Cleaner thread: ", e);
-							throw e;
-						}
-					} else if (consumerLatch.getCount() == 0) {
-						// if latches are shutdown - process remaining items in map and then exit
-						logger.info("Cleaner: consumer latch == 0 - running processMapsAll");
-						processMapsAll();
-						break;
+						previousPosition = 0;
+						phaser.awaitAdvanceInterruptibly(phaser.arrive());
+						logger.info("Cleaner: no of keepers so far: " + snps.size());
 					} else {
-						
-						/*
-						 * rather than sleeping, how about some compound snp work instead???
-						 */
-//						compoundSnps(false);
-						try {
-							Thread.sleep(5);	
-						} catch (final InterruptedException e) {
-							logger.error("InterruptedException caught in Cleaner sleep",e);
-							throw e;
-						}
+						processMaps();
+						tracker.setCleanerPosition(previousPosition);
 					}
 				}
 			} catch (final Exception e) {
@@ -1215,34 +1135,54 @@ public abstract class Pipeline {
 				mainThread.interrupt();
 			} finally {
 				cleanerLatch.countDown();
-				logger.info("Cleaner: finished - counting down cleanerLatch");
+				logger.info("Cleaner: finished - counting down cleanerLatch. Positions processed: " + positionsProcessed 
+						+ ", waited on consumers (ms): " + waitNanos / 1000000);
 			}
 		}
 	}
 	
-	private void processTest(Accumulator testAcc) {
+	/**
+	 * Called by the Cleaner for each position that has an accumulator for the control and/or test sample.
+	 * 
+	 * @return true if the accumulators have been kept (for compound snp processing), and so should not be recycled
+	 */
+	private boolean processAccumulators(Accumulator controlAcc, Accumulator testAcc) {
+		if (null != controlAcc && null != testAcc) {
+			return processControlAndTest(controlAcc, testAcc);
+		} else if (null != testAcc) {
+			return processTest(testAcc);
+		} else if (null != controlAcc) {
+			return processControl(controlAcc);
+		}
+		return false;
+	}
+	
+	private boolean processTest(Accumulator testAcc) {
 		if (testAcc.containsMultipleAlleles() || 
 				(testAcc.getPosition() -1 < referenceBasesLength 
 						&& ! baseEqualsReference(testAcc.getBase(),testAcc.getPosition() -1))) {
-			interrogateAccumulations(null, testAcc);
+			return interrogateAccumulations(null, testAcc);
 		}
+		return false;
 	}
-	private void processControl(Accumulator controlAcc) {
+	private boolean processControl(Accumulator controlAcc) {
 		if (controlAcc.containsMultipleAlleles() || 
 				(controlAcc.getPosition() -1 < referenceBasesLength
 						&& ! baseEqualsReference(controlAcc.getBase(), controlAcc.getPosition() -1))) {
-			interrogateAccumulations(controlAcc, null);
+			return interrogateAccumulations(controlAcc, null);
 		}
+		return false;
 	}
-	private void processControlAndTest(Accumulator controlAcc, Accumulator testAcc) {
+	private boolean processControlAndTest(Accumulator controlAcc, Accumulator testAcc) {
 		if (controlAcc.containsMultipleAlleles() || testAcc.containsMultipleAlleles() 
 				|| (controlAcc.getBase() != testAcc.getBase())
 				|| (testAcc.getPosition() -1 < referenceBasesLength 
 						&& ! baseEqualsReference(testAcc.getBase(), testAcc.getPosition() -1))
 				|| (controlAcc.getPosition() -1 < referenceBasesLength
 						&& ! baseEqualsReference(controlAcc.getBase(), controlAcc.getPosition() -1))) {
-			interrogateAccumulations(controlAcc, testAcc);
+			return interrogateAccumulations(controlAcc, testAcc);
 		}
+		return false;
 	}
 	
 	private boolean baseEqualsReference(char base, int position) {
@@ -1253,13 +1193,16 @@ public abstract class Pipeline {
 		} else return false;
 	}
 	
-	private void interrogateAccumulations(final Accumulator control, final Accumulator test) {
+	/**
+	 * @return true if a vcf record has been created for this position, in which case the accumulators are held on to in <code>adjacentAccumulators</code>
+	 */
+	private boolean interrogateAccumulations(final Accumulator control, final Accumulator test) {
 		
 		// get coverage for both normal and tumour
 		final int controlCoverage = null != control ? control.getCoverage() : 0;
 		final int testCoverage = null != test ? test.getCoverage() : 0;
 		
-		if (controlCoverage + testCoverage < initialTestSumOfCountsLimit) return;
+		if (controlCoverage + testCoverage < initialTestSumOfCountsLimit) return false;
 		
 		/*
 		 * if both test and control are not null, ensure that positions match
@@ -1272,7 +1215,7 @@ public abstract class Pipeline {
 		final int position = control != null ? control.getPosition() : test.getPosition();
 		
 		// if we are over the length of this particular sequence - return
-		if (position-1 >= referenceBasesLength) return;
+		if (position-1 >= referenceBasesLength) return false;
 		
 		char ref = (char) referenceBases[position-1];
 		if ( ! BaseUtils.isACGT(ref)) {
@@ -1346,8 +1289,10 @@ public abstract class Pipeline {
 				 * populate adjacentAccumulators so that compound snp decision can be made
 				 */
 				adjacentAccumulators.put(v, new Pair<Accumulator, Accumulator>(control, test));
+				return true;
 			}
 		}
+		return false;
 	}
 	
 	/**
@@ -0,0 +1,101 @@
+package org.qcmg.snp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.qcmg.common.model.Accumulator;
+
+public class AccumulatorWindowTest {
+
+	@Test(expected=IllegalArgumentException.class)
+	public void capacityMustBePowerOf2() {
+		new AccumulatorWindow(1000);
+	}
+
+	@Test
+	public void drainInPositionOrder() {
+		AccumulatorWindow test = new AccumulatorWindow(256);
+		test.getOrCreate(70);
+		test.getOrCreate(10);
+		test.getOrCreate(200);
+		test.getOrCreate(63);
+		test.getOrCreate(64);
+
+		final List<Integer> positions = new ArrayList<>();
+		assertEquals(4, AccumulatorWindow.drain(null, test, 100, (c, t) -> {positions.add(t.getPosition()); return false;}));
+		assertEquals(4, positions.size());
+		assertEquals(10, positions.get(0).intValue());
+		assertEquals(63, positions.get(1).intValue());
+		assertEquals(64, positions.get(2).intValue());
+		assertEquals(70, positions.get(3).intValue());
+		assertEquals(null, test.get(70));
+		assertEquals(200, test.get(200).getPosition());
+
+		positions.clear();
+		assertEquals(1, AccumulatorWindow.drainAll(null, test, (c, t) -> {positions.add(t.getPosition()); return false;}));
+		assertEquals(200, positions.get(0).intValue());
+	}
+
+	@Test
+	public void controlAndTestArePaired() {
+		AccumulatorWindow control = new AccumulatorWindow(256);
+		AccumulatorWindow test = new AccumulatorWindow(256);
+		control.getOrCreate(5);
+		control.getOrCreate(6);
+		test.getOrCreate(6);
+		test.getOrCreate(7);
+
+		final List<String> seen = new ArrayList<>();
+		assertEquals(3, AccumulatorWindow.drainAll(control, test, (c, t) -> {
+			seen.add((null == c ? "-" : "" + c.getPosition()) + ":" + (null == t ? "-" : "" + t.getPosition()));
+			return false;
+		}));
+		assertEquals("[5:-, 6:6, -:7]", seen.toString());
+	}
+
+	@Test
+	public void growKeepsAccumulators() {
+		AccumulatorWindow test = new AccumulatorWindow(256);
+		Accumulator first = test.getOrCreate(1);
+		Accumulator last = test.getOrCreate(800);
+		assertEquals(1024, test.capacity());
+		assertSame(first, test.get(1));
+		assertSame(last, test.get(800));
+		assertEquals(2, AccumulatorWindow.drainAll(null, test, (c, t) -> false));
+	}
+
+	@Test
+	public void emptyWindowMovesRatherThanGrows() {
+		AccumulatorWindow test = new AccumulatorWindow(256);
+		test.getOrCreate(5000000);
+		assertEquals(256, test.capacity());
+		assertEquals(5000000, test.get(5000000).getPosition());
+	}
+
+	@Test
+	public void keptAccumulatorsAreNotRecycled() {
+		AccumulatorWindow test = new AccumulatorWindow(256);
+		Accumulator kept = test.getOrCreate(10);
+		kept.addBase((byte)'A', (byte)30, true, 10, 10, 20, 1);
+		Accumulator discarded = test.getOrCreate(11);
+		discarded.addBase((byte)'C', (byte)30, true, 10, 11, 20, 1);
+		assertEquals(2, test.getCreatedCount());
+
+		AccumulatorWindow.drain(null, test, 100, (c, t) -> t == kept);
+
+		Accumulator recycled = test.getOrCreate(150);
+		assertSame(discarded, recycled);
+		assertEquals(150, recycled.getPosition());
+		assertEquals(0, recycled.getCoverage());
+		assertEquals(1, test.getRecycledCount());
+		assertEquals(10, kept.getPosition());
+		assertEquals(1, kept.getCoverage());
+
+		assertSame(test.getOrCreate(151), test.get(151));
+		assertEquals(3, test.getCreatedCount());
+	}
+}
@@ -0,0 +1,87 @@
+package org.qcmg.snp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BamWalkTrackerTest {
+
+	@Test
+	public void singleSampleMode() {
+		BamWalkTracker tracker = new BamWalkTracker(true, 100);
+		assertEquals(false, tracker.isContigComplete());
+		assertEquals(false, tracker.isStreamComplete());
+		assertEquals(0, tracker.getMinStartPosition());
+
+		tracker.reachedEndOfContig(BamWalkTracker.TEST);
+		assertEquals(true, tracker.isContigComplete());
+		assertEquals(false, tracker.isStreamComplete());
+		assertEquals(Integer.MAX_VALUE, tracker.getMinStartPosition());
+
+		tracker.startNextContig();
+		assertEquals(false, tracker.isContigComplete());
+		assertEquals(0, tracker.getMinStartPosition());
+
+		tracker.reachedEndOfStream(BamWalkTracker.TEST);
+		assertEquals(false, tracker.isContigComplete());
+		assertEquals(true, tracker.isStreamComplete());
+	}
+
+	@Test
+	public void contigCompleteNeedsBothConsumers() throws InterruptedException {
+		BamWalkTracker tracker = new BamWalkTracker(false, 100);
+		assertEquals(0, tracker.publishPosition(BamWalkTracker.CONTROL, 50));
+		assertEquals(0, tracker.publishPosition(BamWalkTracker.TEST, 20));
+		assertEquals(20, tracker.getMinStartPosition());
+
+		tracker.reachedEndOfContig(BamWalkTracker.TEST);
+		assertEquals(false, tracker.isContigComplete());
+		assertEquals(50, tracker.getMinStartPosition());
+
+		/*
+		 * control has run out of records - test moves onto the next contig by itself
+		 */
+		tracker.reachedEndOfStream(BamWalkTracker.CONTROL);
+		assertEquals(true, tracker.isContigComplete());
+		assertEquals(false, tracker.isStreamComplete());
+
+		tracker.startNextContig();
+		assertEquals(false, tracker.isContigComplete());
+		assertEquals(0, tracker.getMinStartPosition());
+		assertEquals(0, tracker.publishPosition(BamWalkTracker.TEST, 30));
+		assertEquals(30, tracker.getMinStartPosition());
+	}
+
+	@Test
+	public void consumerWaitsForCleaner() throws InterruptedException {
+		final BamWalkTracker tracker = new BamWalkTracker(false, 100);
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		Thread consumer = new Thread(() -> {
+			try {
+				tracker.publishPosition(BamWalkTracker.TEST, 1000);
+				latch.countDown();
+			} catch (InterruptedException e) {}
+		});
+		consumer.start();
+
+		assertEquals(false, latch.await(100, TimeUnit.MILLISECONDS));
+		tracker.setCleanerPosition(500);
+		assertEquals(false, latch.await(100, TimeUnit.MILLISECONDS));
+		tracker.setCleanerPosition(900);
+		assertEquals(true, latch.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void awaitUpdate() throws InterruptedException {
+		BamWalkTracker tracker = new BamWalkTracker(false, 100);
+		tracker.publishPosition(BamWalkTracker.CONTROL, 10);
+		long seen = tracker.awaitUpdate(0);
+		assertEquals(1, seen);
+		tracker.publishPosition(BamWalkTracker.TEST, 10);
+		assertEquals(2, tracker.awaitUpdate(seen));
+	}
+}
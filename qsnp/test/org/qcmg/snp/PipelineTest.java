@@ -8,7 +8,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -72,11 +71,9 @@ public class PipelineTest {
 		final Pipeline pipeline = new TestPipeline();
 		
 		CountDownLatch consumerLatch = new CountDownLatch(1);
-		CountDownLatch normalLatch = new CountDownLatch(1);
-		CountDownLatch tumourLatch = new CountDownLatch(1);
 		
-		Accumulator[] array = new Accumulator[5000000];
-		Pipeline.Consumer c = pipeline.new Consumer(consumerLatch, normalLatch, tumourLatch, true, null, null, array, null, new AtomicInteger(100));
+		AccumulatorWindow window = new AccumulatorWindow();
+		Pipeline.Consumer c = pipeline.new Consumer(consumerLatch, true, null, null, null, window, null);
 		List<SAMRecord> records = getRecords();
 		assertEquals(33, records.size());
 		int readId = 1;
@@ -97,7 +94,7 @@ public class PipelineTest {
 //				System.out.println("acc: " + acc.toString() + " at position " + i);
 //			}
 //		}
-		assertEquals("4511341:T9[24]18[36.44]", array[4511341].toString());
+		assertEquals("4511341:T9[24]18[36.44]", window.get(4511341).toString());
 	}
 	
 	private List<SAMRecord> getRecords() {
@@ -20,6 +20,7 @@ import org.ini4j.Ini;
 import org.ini4j.InvalidFileFormatException;
 import org.ini4j.Profile.Section;
 import org.qcmg.common.string.StringUtils;
+import org.qcmg.qsv.blat.ReferenceIndex;
 import org.qcmg.qsv.util.QSVConstants;
 import org.qcmg.qsv.util.QSVUtil;
 
@@ -67,6 +68,8 @@ public class Options {
 	private String blatPort;
 	private String bitFile;
 	private String blatPath;
+	private String aligner = QSVConstants.DEFAULT_ALIGNER;
+	private String alignerIndex;
 	private String mapper;
 	private String clipQuery;		
 	private String maxISizeCount;
@@ -303,13 +306,27 @@ public class Options {
 			if (clipSection.get("blatpath") != null) {
 				blatPath = clipSection.get("blatpath");
 			}
+			if (clipSection.get("aligner") != null) {
+				aligner = clipSection.get("aligner");
+			}
+			alignerIndex = clipSection.get("aligner_index");
+		}
+		if ( ! QSVConstants.BLAT_ALIGNER.equals(aligner) && ! QSVConstants.IN_PROCESS_ALIGNER.equals(aligner)) {
+			throw new QSVException("UNKNOWN_ALIGNER", aligner);
+		}
+		if (null == alignerIndex && null != reference) {
+			alignerIndex = reference + ReferenceIndex.FILE_EXTENSION;
 		}
 		if (analysisMode.equals("pair")) {
 			isSplitRead = false;
 		}
 		
 		if (analysisMode.equals("clip")) {
-			if (blatServer == null || blatPort == null || blatPath == null) {
+			if (QSVConstants.IN_PROCESS_ALIGNER.equals(aligner)) {
+				if (reference == null) {
+					throw new QSVException("NO_ALIGNER_REFERENCE");
+				}
+			} else if (blatServer == null || blatPort == null || blatPath == null) {
 				throw new QSVException("NO_BLAT");
 			}
 		}
@@ -596,6 +613,20 @@ public class Options {
 
 	public String getBlatPath() {
 		return blatPath;
+	}
+
+	/**
+	 * @return the aligner used to find the matching positions of soft clip consensus sequences: blat (the default) or inprocess
+	 */
+	public String getAligner() {
+		return aligner;
+	}
+
+	/**
+	 * @return the reference index used by the inprocess aligner. Defaults to the reference file with a .qsvidx extension
+	 */
+	public String getAlignerIndex() {
+		return alignerIndex;
 	}	
 
 	public String getMapper() {
@@ -35,6 +35,8 @@ import org.qcmg.common.meta.QExec;
 import org.qcmg.qsv.annotate.AnnotateFilterMT;
 import org.qcmg.qsv.annotate.PairingStats;
 import org.qcmg.qsv.blat.BLAT;
+import org.qcmg.qsv.blat.InProcessAligner;
+import org.qcmg.qsv.blat.ReferenceIndex;
 import org.qcmg.qsv.discordantpair.DiscordantPairCluster;
 import org.qcmg.qsv.discordantpair.FindDiscordantPairClustersMT;
 import org.qcmg.qsv.discordantpair.FindMatePairsMT;
@@ -479,7 +481,7 @@ public class QSVPipeline {
 	 */
 	private void findSoftClips() throws Exception {
 
-		BLAT blat = new BLAT(options.getBlatServer(), options.getBlatPort(), options.getBlatPath());
+		BLAT blat = getAligner();
 
 		FindClipClustersMT worker = new FindClipClustersMT(tumor, normal, softclipDir, blat, tumorRecords, options, analysisId, clipCount);
 		worker.execute();
@@ -488,13 +490,24 @@ public class QSVPipeline {
 		this.germlineCounts = worker.getQSVRecordWriter().getGermlineCount().intValue();
 
 		// log some blat stats
-		logger.info("BLAT server was accessed " + blat.getExecuteCount() + " times");
+		logger.info(options.getAligner() + " aligner was accessed " + blat.getExecuteCount() + " times");
 		
 		if (worker.getExitStatus().intValue() >= 1) {
 			throw new QSVException("CLIP_CLUSTER_EXCEPTION");
 		}          
 	}
 
+	/*
+	 * BLAT, or the in process aligner if it has been selected in the ini file
+	 */
+	private BLAT getAligner() throws IOException {
+		if (QSVConstants.IN_PROCESS_ALIGNER.equals(options.getAligner())) {
+			logger.info("Using in process aligner with reference index: " + options.getAlignerIndex());
+			return new InProcessAligner(ReferenceIndex.getIndex(new File(options.getReference()), new File(options.getAlignerIndex())));
+		}
+		return new BLAT(options.getBlatServer(), options.getBlatPort(), options.getBlatPath());
+	}
+
 	private int getThreadNo() {
 		if (options.isSingleFileMode()) {
 			return 1;
@@ -46,7 +46,14 @@ public class BLAT {
 	    commands.add("/");
 	    commands.add("-nohead");
 	}
-	
+
+	/**
+	 * For aligners that produce BLAT records without running BLAT
+	 */
+	protected BLAT() {
+		this.commands = new ArrayList<>(0);
+	}
+
 	public ArrayList<String> getCommands() {
 		return commands;
 	}
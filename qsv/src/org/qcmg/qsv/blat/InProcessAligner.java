@@ -0,0 +1,610 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.qsv.blat;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.qcmg.common.util.Constants;
+import org.qcmg.qsv.QSVException;
+import org.qcmg.qsv.util.QSVUtil;
+
+/**
+ * Aligns sequences to the reference in memory, producing the same {@link BLATRecord}s as BLAT, without forking gfClient for each batch
+ * or writing and reading fasta and psl files.
+ * <p>
+ * Tiles of the sequence (and of its reverse complement) are looked up in the {@link ReferenceIndex}, and tile hits that are on (nearly) the same
+ * diagonal are extended with a banded local alignment. Alignments on the same chromosome and strand that follow on from each other
+ * in both the sequence and the reference are chained into a single record with a block for each, as BLAT does for split reads.
+ * As with gfClient, records need a score of at least 30 and an identity of at least 90%.
+ * <p>
+ * Instances are thread safe, and can be shared by all the threads that would otherwise share a {@link BLAT}.
+ */
+public class InProcessAligner extends BLAT {
+
+	public static final int DEFAULT_MIN_SCORE = 30;
+	public static final int DEFAULT_MIN_IDENTITY = 90;
+
+	/*
+	 * as for gfServer, the number of tile hits needed to look at a diagonal, and the number of times a k-mer can appear in the reference
+	 * before it is treated as a repeat and ignored
+	 */
+	static final int MIN_TILE_HITS = 2;
+	static final int MAX_TILE_OCCURRENCES = 1024;
+	/*
+	 * the number of diagonals either side of the tile hits that the local alignment can move into,
+	 * and the largest spread of diagonals that the hits of an alignment can have
+	 */
+	static final int BAND = 8;
+	static final int MAX_BAND_WIDTH = 64;
+	static final int MAX_INTRON = 750000;
+
+	private static final int MATCH = 1;
+	private static final int MISMATCH = -3;
+	private static final int GAP = -5;
+
+	private static final byte STOP = 0;
+	private static final byte DIAGONAL = 1;
+	private static final byte INSERT = 2;
+	private static final byte DELETE = 3;
+
+	private static final int QUERY_BITS = 20;
+	private static final long QUERY_MASK = (1L << QUERY_BITS) - 1;
+
+	private final ReferenceIndex index;
+	private final int minScore;
+	private final int minIdentity;
+	private final AtomicInteger executeCount = new AtomicInteger();
+
+	public InProcessAligner(ReferenceIndex index) {
+		this(index, DEFAULT_MIN_SCORE, DEFAULT_MIN_IDENTITY);
+	}
+
+	public InProcessAligner(ReferenceIndex index, int minScore, int minIdentity) {
+		super();
+		this.index = index;
+		this.minScore = minScore;
+		this.minIdentity = minIdentity;
+	}
+
+	/**
+	 * Aligns the sequences of the fasta file, and writes the results to the psl file, as BLAT would
+	 */
+	@Override
+	public void execute(String fastaFile, String blatOutputFile) throws QSVException {
+		executeCount.incrementAndGet();
+		try {
+			List<String[]> sequences = readFasta(fastaFile);
+			try (FileWriter fw = new FileWriter(blatOutputFile);
+					BufferedWriter writer = new BufferedWriter(fw);) {
+				for (String[] sequence : sequences) {
+					for (String[] psl : alignToPsl(sequence[0], sequence[1])) {
+						writer.write(String.join(Constants.TAB_STRING, psl) + QSVUtil.getNewLine());
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new QSVException("BLAT_ERROR", QSVUtil.getStrackTrace(e));
+		}
+	}
+
+	/**
+	 * Aligns the sequences of the fasta file, returning the best record for each sequence. The psl file is not written.
+	 */
+	@Override
+	public Map<String, BLATRecord> align(String fastaFile, String blatOutputFile) throws QSVException, IOException {
+		executeCount.incrementAndGet();
+		Map<String, BLATRecord> records = new HashMap<>();
+		for (String[] sequence : readFasta(fastaFile)) {
+			for (BLATRecord record : alignSequence(sequence[0], sequence[1])) {
+				BLATRecord previous = records.get(record.getName());
+				if (null == previous || record.getScore() > previous.getScore()) {
+					records.put(record.getName(), record);
+				}
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Aligns the consensus in memory - no fasta or psl files are written
+	 */
+	@Override
+	public List<BLATRecord> alignConsensus(String softclipDir, String name, String consensus, String leftReference, String rightReference) {
+		executeCount.incrementAndGet();
+		List<BLATRecord> records = new ArrayList<>();
+		for (BLATRecord record : alignSequence(name, consensus)) {
+			if (leftReference == null || rightReference == null
+					|| record.getReference().equals(leftReference) || record.getReference().equals(rightReference)) {
+				records.add(record);
+			}
+		}
+		records.sort(null);
+		return records;
+	}
+
+	/**
+	 * Aligns a batch of sequences
+	 * @param sequences sequences keyed by name
+	 * @return the records of each sequence, keyed by name, in the order of the sequences
+	 */
+	public Map<String, List<BLATRecord>> alignSequences(Map<String, String> sequences) {
+		executeCount.incrementAndGet();
+		Map<String, List<BLATRecord>> results = new LinkedHashMap<>();
+		for (Entry<String, String> entry : sequences.entrySet()) {
+			results.put(entry.getKey(), alignSequence(entry.getKey(), entry.getValue()));
+		}
+		return results;
+	}
+
+	/**
+	 * @return the records for the sequence, with the highest scoring first
+	 */
+	public List<BLATRecord> alignSequence(String name, String sequence) {
+		List<String[]> psls = alignToPsl(name, sequence);
+		List<BLATRecord> records = new ArrayList<>(psls.size());
+		for (String[] psl : psls) {
+			records.add(new BLATRecord(psl));
+		}
+		return records;
+	}
+
+	@Override
+	public int getExecuteCount() {
+		return executeCount.get();
+	}
+
+	/*
+	 * name and sequence of each entry in the fasta file
+	 */
+	static List<String[]> readFasta(String fastaFile) throws IOException {
+		List<String[]> sequences = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(fastaFile))) {
+			String name = null;
+			StringBuilder sequence = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(">")) {
+					if (null != name) {
+						sequences.add(new String[] {name, sequence.toString()});
+					}
+					name = line.substring(1).trim();
+					sequence.setLength(0);
+				} else {
+					sequence.append(line.trim());
+				}
+			}
+			if (null != name) {
+				sequences.add(new String[] {name, sequence.toString()});
+			}
+		}
+		return sequences;
+	}
+
+	/*
+	 * the blocks of an alignment to one strand of a chromosome, as {query start, chromosome start, size},
+	 * with query positions on the aligned strand of the query
+	 */
+	private static final class Alignment {
+		private final char strand;
+		private final int chromosome;
+		private final List<int[]> blocks;
+		private final int score;
+
+		private Alignment(char strand, int chromosome, List<int[]> blocks, int score) {
+			this.strand = strand;
+			this.chromosome = chromosome;
+			this.blocks = blocks;
+			this.score = score;
+		}
+
+		private int qStart() {
+			return blocks.get(0)[0];
+		}
+		private int qEnd() {
+			int[] last = blocks.get(blocks.size() - 1);
+			return last[0] + last[2];
+		}
+		private int tStart() {
+			return blocks.get(0)[1];
+		}
+		private int tEnd() {
+			int[] last = blocks.get(blocks.size() - 1);
+			return last[1] + last[2];
+		}
+	}
+
+	List<String[]> alignToPsl(String name, String sequence) {
+		byte[] forward = sequence.toUpperCase().getBytes(StandardCharsets.US_ASCII);
+		byte[] reverse = QSVUtil.reverseComplement(sequence.toUpperCase()).getBytes(StandardCharsets.US_ASCII);
+		if (forward.length > QUERY_MASK) {
+			throw new IllegalArgumentException("Sequence " + name + " is too long to align: " + forward.length);
+		}
+
+		List<Alignment> alignments = new ArrayList<>();
+		findAlignments(forward, QSVUtil.PLUS, alignments);
+		findAlignments(reverse, QSVUtil.MINUS, alignments);
+		return chain(name, forward, reverse, alignments);
+	}
+
+	/*
+	 * Finds the tile hits of the (strand of the) query, and extends each group of hits on nearby diagonals
+	 */
+	private void findAlignments(byte[] query, char strand, List<Alignment> alignments) {
+		int tileSize = index.getTileSize();
+		int length = query.length;
+		int mask = (1 << (2 * tileSize)) - 1;
+
+		/*
+		 * each hit is its diagonal (reference position - query position, offset by the query length so that it is positive),
+		 * followed by its query position
+		 */
+		long[] hits = new long[64];
+		int hitCount = 0;
+		int kmer = 0;
+		int valid = 0;
+		for (int i = 0 ; i < length ; i++) {
+			int code = ReferenceIndex.BASE_CODES[query[i] & 0xff];
+			if (code < 0) {
+				valid = 0;
+				continue;
+			}
+			kmer = ((kmer << 2) | code) & mask;
+			if (++valid < tileSize) {
+				continue;
+			}
+			int queryPosition = i - tileSize + 1;
+			int count = index.getTileCount(kmer);
+			if (count > MAX_TILE_OCCURRENCES) {
+				continue;
+			}
+			for (int n = 0 ; n < count ; n++) {
+				long diagonal = index.getTilePosition(kmer, n) - queryPosition + length;
+				if (hitCount == hits.length) {
+					hits = Arrays.copyOf(hits, hitCount * 2);
+				}
+				hits[hitCount++] = (diagonal << QUERY_BITS) | queryPosition;
+			}
+		}
+		Arrays.sort(hits, 0, hitCount);
+
+		int i = 0;
+		while (i < hitCount) {
+			long firstDiagonal = hits[i] >>> QUERY_BITS;
+			int chromosome = index.getChromosome(firstDiagonal - length + (hits[i] & QUERY_MASK));
+			long lastDiagonal = firstDiagonal;
+			int j = i + 1;
+			while (j < hitCount) {
+				long diagonal = hits[j] >>> QUERY_BITS;
+				if (diagonal - lastDiagonal > BAND || diagonal - firstDiagonal > MAX_BAND_WIDTH
+						|| index.getChromosome(diagonal - length + (hits[j] & QUERY_MASK)) != chromosome) {
+					break;
+				}
+				lastDiagonal = diagonal;
+				j++;
+			}
+			if (chromosome >= 0 && j - i >= MIN_TILE_HITS) {
+				Alignment alignment = extend(query, strand, chromosome, firstDiagonal - length, lastDiagonal - length);
+				if (null != alignment) {
+					alignments.add(alignment);
+				}
+			}
+			i = j;
+		}
+	}
+
+	/*
+	 * Smith-Waterman alignment of the query against the reference, within BAND of the diagonals of the tile hits.
+	 * Cell (i, o) is the best local alignment that ends at query position i (exclusive) and reference position lowDiagonal + o + i (exclusive).
+	 */
+	private Alignment extend(byte[] query, char strand, int chromosome, long firstDiagonal, long lastDiagonal) {
+		long chromosomeStart = index.getChromosomeStart(chromosome);
+		long chromosomeEnd = chromosomeStart + index.getChromosomeLength(chromosome);
+		long lowDiagonal = firstDiagonal - BAND;
+		int width = (int) (lastDiagonal - firstDiagonal) + 2 * BAND + 1;
+		int length = query.length;
+
+		int[] previous = new int[width + 1];
+		int[] current = new int[width + 1];
+		byte[] trace = new byte[(length + 1) * width];
+		int best = 0;
+		int bestI = 0;
+		int bestO = 0;
+		for (int i = 1 ; i <= length ; i++) {
+			byte q = query[i - 1];
+			for (int o = 0 ; o < width ; o++) {
+				long r = lowDiagonal + o + i;
+				int h = 0;
+				byte t = STOP;
+				if (r > chromosomeStart && r <= chromosomeEnd) {
+					int diagonal = previous[o] + score(q, index.getBase(r - 1));
+					if (diagonal > h) {
+						h = diagonal;
+						t = DIAGONAL;
+					}
+					int insert = previous[o + 1] + GAP;
+					if (insert > h) {
+						h = insert;
+						t = INSERT;
+					}
+					if (o > 0) {
+						int delete = current[o - 1] + GAP;
+						if (delete > h) {
+							h = delete;
+							t = DELETE;
+						}
+					}
+				}
+				current[o] = h;
+				trace[i * width + o] = t;
+				if (h > best) {
+					best = h;
+					bestI = i;
+					bestO = o;
+				}
+			}
+			int[] tmp = previous;
+			previous = current;
+			current = tmp;
+		}
+		if (best == 0) {
+			return null;
+		}
+
+		/*
+		 * trace back, collecting the ungapped blocks from last to first
+		 */
+		List<int[]> blocks = new ArrayList<>();
+		int i = bestI;
+		int o = bestO;
+		int blockSize = 0;
+		int blockQueryEnd = 0;
+		int blockReferenceEnd = 0;
+		while (i > 0) {
+			byte t = trace[i * width + o];
+			if (t == DIAGONAL) {
+				if (blockSize == 0) {
+					blockQueryEnd = i;
+					blockReferenceEnd = (int) (lowDiagonal + o + i - chromosomeStart);
+				}
+				blockSize++;
+				i--;
+				continue;
+			}
+			if (blockSize > 0) {
+				blocks.add(new int[] {blockQueryEnd - blockSize, blockReferenceEnd - blockSize, blockSize});
+				blockSize = 0;
+			}
+			if (t == INSERT) {
+				i--;
+				o++;
+			} else if (t == DELETE) {
+				o--;
+			} else {
+				break;
+			}
+		}
+		if (blockSize > 0) {
+			blocks.add(new int[] {blockQueryEnd - blockSize, blockReferenceEnd - blockSize, blockSize});
+		}
+		if (blocks.isEmpty()) {
+			return null;
+		}
+		Collections.reverse(blocks);
+		return new Alignment(strand, chromosome, blocks, best);
+	}
+
+	private static int score(byte query, byte reference) {
+		if (query == 'N' || reference == 'N') {
+			return 0;
+		}
+		return query == reference ? MATCH : MISMATCH;
+	}
+
+	/*
+	 * Chains alignments that follow on from each other, and turns the best chains into psl records
+	 */
+	private List<String[]> chain(String name, byte[] forward, byte[] reverse, List<Alignment> alignments) {
+		alignments.sort(Comparator.comparingInt(Alignment::qStart).thenComparingInt(Alignment::tStart));
+		int n = alignments.size();
+		int[] best = new int[n];
+		int[] previous = new int[n];
+		for (int j = 0 ; j < n ; j++) {
+			Alignment b = alignments.get(j);
+			best[j] = b.score;
+			previous[j] = -1;
+			for (int i = 0 ; i < j ; i++) {
+				Alignment a = alignments.get(i);
+				if (a.strand != b.strand || a.chromosome != b.chromosome
+						|| a.qStart() >= b.qStart() || a.qEnd() >= b.qEnd() || a.tStart() >= b.tStart() || a.tEnd() >= b.tEnd()
+						|| b.tStart() - a.tEnd() > MAX_INTRON) {
+					continue;
+				}
+				int overlap = Math.max(0, Math.max(a.qEnd() - b.qStart(), a.tEnd() - b.tStart()));
+				int score = best[i] + b.score - overlap * MATCH - 1;
+				if (score > best[j]) {
+					best[j] = score;
+					previous[j] = i;
+				}
+			}
+		}
+
+		Integer[] order = new Integer[n];
+		for (int i = 0 ; i < n ; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (x, y) -> Integer.compare(best[y], best[x]));
+
+		boolean[] used = new boolean[n];
+		Set<String> seen = new HashSet<>();
+		List<String[]> psls = new ArrayList<>();
+		for (int end : order) {
+			List<Alignment> chain = new ArrayList<>();
+			boolean free = true;
+			for (int i = end ; i >= 0 ; i = previous[i]) {
+				if (used[i]) {
+					free = false;
+					break;
+				}
+				chain.add(alignments.get(i));
+			}
+			if ( ! free) {
+				continue;
+			}
+			for (int i = end ; i >= 0 ; i = previous[i]) {
+				used[i] = true;
+			}
+			Collections.reverse(chain);
+
+			List<int[]> blocks = mergeBlocks(chain);
+			Alignment first = chain.get(0);
+			String[] psl = toPsl(name, first.strand == QSVUtil.PLUS ? forward : reverse, first.strand, first.chromosome, blocks);
+			if (null != psl && seen.add(getKey(psl))) {
+				psls.add(psl);
+			}
+		}
+		psls.sort(Comparator.comparingInt(InProcessAligner::getScore).reversed());
+		return psls;
+	}
+
+	/*
+	 * the blocks of the chain, with any that overlap the previous alignment in the query or reference trimmed
+	 */
+	private static List<int[]> mergeBlocks(List<Alignment> chain) {
+		List<int[]> blocks = new ArrayList<>();
+		for (Alignment alignment : chain) {
+			for (int[] block : alignment.blocks) {
+				int[] b = block.clone();
+				if ( ! blocks.isEmpty()) {
+					int[] last = blocks.get(blocks.size() - 1);
+					int trim = Math.max(0, Math.max(last[0] + last[2] - b[0], last[1] + last[2] - b[1]));
+					if (trim >= b[2]) {
+						continue;
+					}
+					b[0] += trim;
+					b[1] += trim;
+					b[2] -= trim;
+					if (b[0] == last[0] + last[2] && b[1] == last[1] + last[2]) {
+						last[2] += b[2];
+						continue;
+					}
+				}
+				blocks.add(b);
+			}
+		}
+		return blocks;
+	}
+
+	/*
+	 * the psl columns for the blocks, or null if the alignment doesn't have the minimum score or identity
+	 */
+	private String[] toPsl(String name, byte[] query, char strand, int chromosome, List<int[]> blocks) {
+		long chromosomeStart = index.getChromosomeStart(chromosome);
+		int matches = 0;
+		int misMatches = 0;
+		int nCount = 0;
+		int qNumInsert = 0;
+		int qBaseInsert = 0;
+		int tNumInsert = 0;
+		int tBaseInsert = 0;
+		StringBuilder blockSizes = new StringBuilder();
+		StringBuilder qStarts = new StringBuilder();
+		StringBuilder tStarts = new StringBuilder();
+		int[] last = null;
+		for (int[] block : blocks) {
+			for (int x = 0 ; x < block[2] ; x++) {
+				byte q = query[block[0] + x];
+				byte t = index.getBase(chromosomeStart + block[1] + x);
+				if (q == 'N' || t == 'N') {
+					nCount++;
+				} else if (q == t) {
+					matches++;
+				} else {
+					misMatches++;
+				}
+			}
+			if (null != last) {
+				int qGap = block[0] - last[0] - last[2];
+				int tGap = block[1] - last[1] - last[2];
+				if (qGap > 0) {
+					qNumInsert++;
+					qBaseInsert += qGap;
+				}
+				if (tGap > 0) {
+					tNumInsert++;
+					tBaseInsert += tGap;
+				}
+			}
+			blockSizes.append(block[2]).append(',');
+			qStarts.append(block[0]).append(',');
+			tStarts.append(block[1]).append(',');
+			last = block;
+		}
+
+		int score = matches - misMatches - qNumInsert - tNumInsert;
+		int qStart = blocks.get(0)[0];
+		int qEnd = last[0] + last[2];
+		int tStart = blocks.get(0)[1];
+		int tEnd = last[1] + last[2];
+		if (score < minScore || 1000 - milliBad(matches, misMatches, qNumInsert, qEnd - qStart, tEnd - tStart) < minIdentity * 10) {
+			return null;
+		}
+
+		int size = query.length;
+		return new String[] {
+			String.valueOf(matches), String.valueOf(misMatches), "0", String.valueOf(nCount),
+			String.valueOf(qNumInsert), String.valueOf(qBaseInsert), String.valueOf(tNumInsert), String.valueOf(tBaseInsert),
+			String.valueOf(strand), name, String.valueOf(size),
+			String.valueOf(strand == QSVUtil.PLUS ? qStart : size - qEnd), String.valueOf(strand == QSVUtil.PLUS ? qEnd : size - qStart),
+			index.getChromosomeName(chromosome), String.valueOf(index.getChromosomeLength(chromosome)), String.valueOf(tStart), String.valueOf(tEnd),
+			String.valueOf(blocks.size()), blockSizes.toString(), qStarts.toString(), tStarts.toString()
+		};
+	}
+
+	/**
+	 * Identifies the hit that the psl record describes - its strand, reference, query and reference coordinates and block sizes - so that chains
+	 * ending up as the same hit are only reported once. The fields are tab separated, as in the psl file, so that different hits can't run together.
+	 */
+	static String getKey(String[] psl) {
+		return String.join("\t", psl[8], psl[13], psl[11], psl[12], psl[15], psl[16], psl[18]);
+	}
+
+	/*
+	 * the score of the psl record, as calculated by BLATRecord
+	 */
+	private static int getScore(String[] psl) {
+		return Integer.parseInt(psl[0]) - Integer.parseInt(psl[1]) - Integer.parseInt(psl[6]) - Integer.parseInt(psl[4]);
+	}
+
+	/**
+	 * BLAT's measure of the badness of an alignment, in parts per thousand, treating the sequence as mrna so that large gaps in the reference
+	 * (as for split reads) aren't penalised
+	 */
+	static int milliBad(int matches, int misMatches, int qNumInsert, int qAliSize, int tAliSize) {
+		int total = matches + misMatches;
+		if (Math.min(qAliSize, tAliSize) <= 0 || total <= 0) {
+			return 0;
+		}
+		int sizeDif = Math.max(0, qAliSize - tAliSize);
+		return (int) Math.round(1000.0 * (misMatches + qNumInsert + Math.round(3 * Math.log(1 + sizeDif))) / total);
+	}
+}
@@ -0,0 +1,431 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.qsv.blat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.qcmg.common.log.QLogger;
+import org.qcmg.common.log.QLoggerFactory;
+
+/**
+ * A k-mer index of a reference genome, in the style of the BLAT gfServer index: the genome is split into non-overlapping tiles,
+ * and the index holds, for every k-mer, the tiles that it appears in.
+ * <p>
+ * The index is built once from the reference fasta file (see {@link #build(File, File, int)}), and is memory mapped when it is loaded,
+ * so that it can be shared by all threads and doesn't need to be held on the heap.
+ * The index file contains a header (file length, tile size and chromosomes), the offset of each k-mer's tiles, the tiles, and the reference bases.
+ * Each chromosome starts at a multiple of the tile size in the reference bases, so that tiles never span chromosomes.
+ */
+public class ReferenceIndex {
+
+	private static final QLogger logger = QLoggerFactory.getLogger(ReferenceIndex.class);
+
+	public static final int DEFAULT_TILE_SIZE = 11;
+	public static final String FILE_EXTENSION = ".qsvidx";
+
+	private static final int MAGIC = 0x51535649;	// QSVI
+	private static final int VERSION = 2;
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+	private static final byte N = 'N';
+
+	static final byte[] BASE_CODES = new byte[256];
+	static {
+		Arrays.fill(BASE_CODES, (byte) -1);
+		BASE_CODES['A'] = 0;
+		BASE_CODES['C'] = 1;
+		BASE_CODES['G'] = 2;
+		BASE_CODES['T'] = 3;
+	}
+
+	private final int tileSize;
+	private final String[] names;
+	private final int[] lengths;
+	private final long[] starts;
+	/*
+	 * the tiles of k-mer i are at positions offsets[i] to offsets[i+1] of the tiles
+	 */
+	private final int[] offsets;
+	private final long tilesStart;
+	private final long sequenceStart;
+	private final MappedByteBuffer[] chunks;
+
+	private ReferenceIndex(int tileSize, String[] names, int[] lengths, long[] starts, int[] offsets, long tilesStart, long sequenceStart, MappedByteBuffer[] chunks) {
+		this.tileSize = tileSize;
+		this.names = names;
+		this.lengths = lengths;
+		this.starts = starts;
+		this.offsets = offsets;
+		this.tilesStart = tilesStart;
+		this.sequenceStart = sequenceStart;
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Loads the index, building it from the reference first if it doesn't exist.
+	 * The index only appears once it is complete (see {@link #build(File, File, int)}), so a run that is killed part way through a build
+	 * leaves no index behind, and the next run builds it again.
+	 */
+	public static ReferenceIndex getIndex(File reference, File index) throws IOException {
+		if ( ! index.exists()) {
+			logger.info("Building reference index " + index.getAbsolutePath() + " from " + reference.getAbsolutePath());
+			build(reference, index, DEFAULT_TILE_SIZE);
+			logger.info("Finished building reference index " + index.getAbsolutePath());
+		}
+		return load(index);
+	}
+
+	/**
+	 * Memory maps the index file
+	 */
+	public static ReferenceIndex load(File index) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+				RandomAccessFile file = new RandomAccessFile(index, "r");
+				FileChannel channel = file.getChannel();) {
+
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(index.getAbsolutePath() + " is not a qsv reference index, or was created by a different version of qsv");
+			}
+			long fileLength = in.readLong();
+			if (channel.size() != fileLength) {
+				throw new IOException(index.getAbsolutePath() + " is incomplete (" + channel.size() + " of " + fileLength + " bytes) - delete it so that it is rebuilt");
+			}
+			int tileSize = in.readInt();
+			int chromosomeCount = in.readInt();
+			String[] names = new String[chromosomeCount];
+			int[] lengths = new int[chromosomeCount];
+			long[] starts = new long[chromosomeCount];
+			for (int i = 0 ; i < chromosomeCount ; i++) {
+				names[i] = in.readUTF();
+				lengths[i] = in.readInt();
+				starts[i] = in.readLong();
+			}
+			int headerLength = in.readInt();
+			in.skipBytes(headerLength - (int) headerSize(names));
+
+			int[] offsets = new int[(1 << (2 * tileSize)) + 1];
+			for (int i = 0 ; i < offsets.length ; i++) {
+				offsets[i] = in.readInt();
+			}
+			long tilesStart = headerLength + 4L * offsets.length;
+			long sequenceStart = tilesStart + 4L * offsets[offsets.length - 1];
+
+			long size = channel.size();
+			MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+			for (int i = 0 ; i < chunks.length ; i++) {
+				long position = i * CHUNK_SIZE;
+				chunks[i] = channel.map(MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, size - position));
+			}
+			return new ReferenceIndex(tileSize, names, lengths, starts, offsets, tilesStart, sequenceStart, chunks);
+		}
+	}
+
+	/*
+	 * the number of bytes that the header up to and including the header length takes
+	 */
+	private static long headerSize(String[] names) throws IOException {
+		DataOutputStream out = new DataOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) {}
+		});
+		writeHeader(out, 0, 0, names, new int[names.length], new long[names.length], 0);
+		return out.size();
+	}
+
+	private static void writeHeader(DataOutputStream out, long fileLength, int tileSize, String[] names, int[] lengths, long[] starts, int headerLength) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(fileLength);
+		out.writeInt(tileSize);
+		out.writeInt(names.length);
+		for (int i = 0 ; i < names.length ; i++) {
+			out.writeUTF(names[i]);
+			out.writeInt(lengths[i]);
+			out.writeLong(starts[i]);
+		}
+		out.writeInt(headerLength);
+	}
+
+	/**
+	 * Builds the index of the reference fasta file.
+	 * <p>
+	 * The reference bases are written to a temporary file next to the index, which is read twice: once to count the tiles of each k-mer,
+	 * and once to write the tiles to their place in the (memory mapped) index.
+	 * The index is built in a temporary file in the same directory, which is atomically moved to the index file once it is complete,
+	 * so that a partly built index is never loaded, and concurrent builds of the same index don't write to the same file.
+	 */
+	public static void build(File reference, File index, int tileSize) throws IOException {
+		if (tileSize < 1 || tileSize > 15) {
+			throw new IllegalArgumentException("Tile size must be between 1 and 15: " + tileSize);
+		}
+		File directory = index.getAbsoluteFile().getParentFile();
+		File bases = File.createTempFile(index.getName() + ".bases.", ".tmp", directory);
+		File building = File.createTempFile(index.getName() + ".", ".tmp", directory);
+		try {
+			List<String> nameList = new ArrayList<>();
+			List<Integer> lengthList = new ArrayList<>();
+			List<Long> startList = new ArrayList<>();
+			long basesLength = writeBases(reference, bases, tileSize, nameList, lengthList, startList);
+			if (basesLength / tileSize > Integer.MAX_VALUE) {
+				throw new IOException("Reference " + reference.getAbsolutePath() + " is too large to index");
+			}
+
+			String[] names = nameList.toArray(new String[nameList.size()]);
+			int[] lengths = new int[names.length];
+			long[] starts = new long[names.length];
+			for (int i = 0 ; i < names.length ; i++) {
+				lengths[i] = lengthList.get(i);
+				starts[i] = startList.get(i);
+			}
+
+			int kmers = 1 << (2 * tileSize);
+			int[] counts = new int[kmers];
+			try (InputStream in = new BufferedInputStream(new FileInputStream(bases))) {
+				forEachTile(in, tileSize, (tile, kmer) -> counts[kmer]++);
+			}
+			int[] offsets = new int[kmers + 1];
+			for (int i = 0 ; i < kmers ; i++) {
+				long next = (long) offsets[i] + counts[i];
+				if (next > Integer.MAX_VALUE) {
+					throw new IOException("Reference " + reference.getAbsolutePath() + " is too large to index");
+				}
+				offsets[i + 1] = (int) next;
+			}
+
+			/*
+			 * pad the header so that the offsets and tiles are aligned
+			 */
+			int headerLength = (int) ((headerSize(names) + 7) & ~7L);
+			long tilesStart = headerLength + 4L * offsets.length;
+			long sequenceStart = tilesStart + 4L * offsets[kmers];
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(building)))) {
+				writeHeader(out, sequenceStart + basesLength, tileSize, names, lengths, starts, headerLength);
+				while (out.size() < headerLength) {
+					out.writeByte(0);
+				}
+				for (int offset : offsets) {
+					out.writeInt(offset);
+				}
+			}
+
+			try (RandomAccessFile file = new RandomAccessFile(building, "rw");
+					FileChannel channel = file.getChannel();) {
+				file.setLength(sequenceStart + basesLength);
+
+				/*
+				 * counts now holds the next free place for each k-mer's tiles
+				 */
+				System.arraycopy(offsets, 0, counts, 0, kmers);
+				MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((sequenceStart + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+				for (int i = 0 ; i < chunks.length ; i++) {
+					long position = i * CHUNK_SIZE;
+					chunks[i] = channel.map(MapMode.READ_WRITE, position, Math.min(CHUNK_SIZE, sequenceStart - position));
+				}
+				try (InputStream in = new BufferedInputStream(new FileInputStream(bases))) {
+					forEachTile(in, tileSize, (tile, kmer) -> {
+						long position = tilesStart + 4L * counts[kmer]++;
+						chunks[(int) (position >>> CHUNK_BITS)].putInt((int) (position & (CHUNK_SIZE - 1)), tile);
+					});
+				}
+				for (MappedByteBuffer chunk : chunks) {
+					chunk.force();
+				}
+
+				try (FileChannel basesChannel = new FileInputStream(bases).getChannel()) {
+					long copied = 0;
+					while (copied < basesLength) {
+						copied += channel.transferFrom(basesChannel, sequenceStart + copied, basesLength - copied);
+					}
+				}
+				channel.force(true);
+			}
+			Files.move(building.toPath(), index.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(bases.toPath());
+			Files.deleteIfExists(building.toPath());
+		}
+	}
+
+	/*
+	 * Writes the upper case bases of each sequence in the fasta file, with anything other than ACGT as an N,
+	 * starting each sequence at a multiple of the tile size.
+	 * Returns the number of bases written
+	 */
+	private static long writeBases(File reference, File bases, int tileSize, List<String> names, List<Integer> lengths, List<Long> starts) throws IOException {
+		long position = 0;
+		long length = 0;
+		try (BufferedReader reader = new BufferedReader(new FileReader(reference));
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(bases), 1 << 16);) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(">")) {
+					if ( ! names.isEmpty()) {
+						lengths.add((int) length);
+					}
+					while (position % tileSize != 0) {
+						out.write(N);
+						position++;
+					}
+					String name = line.substring(1).trim();
+					int space = indexOfWhitespace(name);
+					names.add(space < 0 ? name : name.substring(0, space));
+					starts.add(position);
+					length = 0;
+				} else if ( ! names.isEmpty()) {
+					for (int i = 0, len = line.length() ; i < len ; i++) {
+						char c = Character.toUpperCase(line.charAt(i));
+						out.write(c < 256 && BASE_CODES[c] >= 0 ? c : N);
+					}
+					position += line.length();
+					length += line.length();
+					if (length > Integer.MAX_VALUE) {
+						throw new IOException("Sequence " + names.get(names.size() - 1) + " in " + reference.getAbsolutePath() + " is too long to index");
+					}
+				}
+			}
+			if ( ! names.isEmpty()) {
+				lengths.add((int) length);
+			}
+		}
+		return position;
+	}
+
+	private static int indexOfWhitespace(String s) {
+		for (int i = 0 ; i < s.length() ; i++) {
+			if (Character.isWhitespace(s.charAt(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	interface TileConsumer {
+		void accept(int tile, int kmer);
+	}
+
+	/*
+	 * Calls the consumer with the k-mer of every tile that only contains ACGT
+	 */
+	private static void forEachTile(InputStream in, int tileSize, TileConsumer consumer) throws IOException {
+		byte[] tile = new byte[tileSize];
+		int index = 0;
+		while (true) {
+			int read = 0;
+			while (read < tileSize) {
+				int n = in.read(tile, read, tileSize - read);
+				if (n < 0) {
+					return;
+				}
+				read += n;
+			}
+			int kmer = encode(tile, 0, tileSize);
+			if (kmer >= 0) {
+				consumer.accept(index, kmer);
+			}
+			index++;
+		}
+	}
+
+	/**
+	 * @return the 2 bit encoding of the k-mer of the given length at the start of the bases, or -1 if it contains anything other than ACGT
+	 */
+	static int encode(byte[] bases, int start, int length) {
+		int kmer = 0;
+		for (int i = start ; i < start + length ; i++) {
+			int code = BASE_CODES[bases[i] & 0xff];
+			if (code < 0) {
+				return -1;
+			}
+			kmer = (kmer << 2) | code;
+		}
+		return kmer;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public int getChromosomeCount() {
+		return names.length;
+	}
+
+	public String getChromosomeName(int chromosome) {
+		return names[chromosome];
+	}
+
+	public int getChromosomeLength(int chromosome) {
+		return lengths[chromosome];
+	}
+
+	/**
+	 * @return the position of the start of the chromosome in the (genome wide) reference coordinates used by the index
+	 */
+	public long getChromosomeStart(int chromosome) {
+		return starts[chromosome];
+	}
+
+	/**
+	 * @return the chromosome that contains the genome wide position, or -1 if it is in the padding between chromosomes
+	 */
+	public int getChromosome(long position) {
+		int i = Arrays.binarySearch(starts, position);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		// empty chromosomes start at the same place as the next one
+		while (i >= 0 && i + 1 < starts.length && starts[i + 1] <= position) {
+			i++;
+		}
+		if (i < 0 || position >= starts[i] + lengths[i]) {
+			return -1;
+		}
+		return i;
+	}
+
+	/**
+	 * @return the number of tiles that the k-mer appears in
+	 */
+	public int getTileCount(int kmer) {
+		return offsets[kmer + 1] - offsets[kmer];
+	}
+
+	/**
+	 * @return the genome wide position of the start of the n'th tile of the k-mer
+	 */
+	public long getTilePosition(int kmer, int n) {
+		long position = tilesStart + 4L * (offsets[kmer] + n);
+		return (long) chunks[(int) (position >>> CHUNK_BITS)].getInt((int) (position & (CHUNK_SIZE - 1))) * tileSize;
+	}
+
+	/**
+	 * @return the base at the genome wide position
+	 */
+	public byte getBase(long position) {
+		long p = sequenceStart + position;
+		return chunks[(int) (p >>> CHUNK_BITS)].get((int) (p & (CHUNK_SIZE - 1)));
+	}
+}
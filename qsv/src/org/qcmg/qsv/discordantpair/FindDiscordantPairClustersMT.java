@@ -136,9 +136,10 @@ public class FindDiscordantPairClustersMT implements Callable <Map<String, List<
 
 			List<File> list = entry.getValue();
 
-			List<MatePair> findMatePairsList = findReader.getMatePairsListByFiles(list, true);
-			List<DiscordantPairCluster> tempClusters = findClusters(findMatePairsList);
-			findMatePairsList = null;
+			List<DiscordantPairCluster> tempClusters;
+			try (MatePairWindow findMatePairs = findReader.openMatePairsByFiles(list, true)) {
+				tempClusters = findClusters(findMatePairs);
+			}
 			
 			if ( ! tempClusters.isEmpty()) {
 				List<MatePair> compareMatePairsList = new ArrayList<MatePair>();
@@ -172,9 +173,18 @@ public class FindDiscordantPairClustersMT implements Callable <Map<String, List<
 		int startPos = -1;
 		int range = -1;
 		int finalRead = findMatePairs.size() - 1;
+		MatePairWindow window = findMatePairs instanceof MatePairWindow ? (MatePairWindow) findMatePairs : null;
 		List<DiscordantPairCluster> tempClusters = new ArrayList<DiscordantPairCluster>();
 		//iterate through currentPairs and start defining clusters
 		for (int i = 0, len = findMatePairs.size() ; i < len ;i++) {
+			/*
+			 * resolving a cluster restarts the search at most one pair before the current start pair
+			 * (findBestCluster can only step back over pairs it has removed from the cluster)
+			 * so anything before that can be dropped when streaming
+			 */
+			if (null != window) {
+				window.release(i - 1);
+			}
 			//start the new cluster;
 			MatePair startPair = findMatePairs.get(i);
 			currentCluster = null;
@@ -272,6 +282,7 @@ public class FindDiscordantPairClustersMT implements Callable <Map<String, List<
 	 */    
 	void classifyClusters(List<DiscordantPairCluster> tempClusters, final List<MatePair> compareMatePairsList)  {
 		Queue<DiscordantPairCluster> queue = new ConcurrentLinkedQueue<>(tempClusters);
+		MatePairIndex compareMatePairs = new MatePairIndex(compareMatePairsList);
 		
 		// number of threads - max out
 		int noOfThreads = 12;
@@ -279,7 +290,7 @@ public class FindDiscordantPairClustersMT implements Callable <Map<String, List<
 		
 		ExecutorService service = Executors.newFixedThreadPool(noOfThreads);
 		for (int i = 0 ; i < noOfThreads ; i++) {
-			service.execute(new ClusterClassifier(queue, compareMatePairsList, Thread.currentThread()));
+			service.execute(new ClusterClassifier(queue, compareMatePairs, Thread.currentThread()));
 		}
 		service.shutdown();
 		
@@ -294,12 +305,12 @@ public class FindDiscordantPairClustersMT implements Callable <Map<String, List<
 	private class ClusterClassifier implements Runnable {
 		
 		final Queue<DiscordantPairCluster> queue;
-		final List<MatePair> compareMatePairsList;
+		final MatePairIndex compareMatePairs;
 		final Thread callingThread;
 		
-		public ClusterClassifier(Queue<DiscordantPairCluster> queue, List<MatePair> compareMatePairsList, Thread callingThread) {
+		public ClusterClassifier(Queue<DiscordantPairCluster> queue, MatePairIndex compareMatePairs, Thread callingThread) {
 			this.queue = queue;
-			this.compareMatePairsList = compareMatePairsList;
+			this.compareMatePairs = compareMatePairs;
 			this.callingThread = callingThread;
 		}
 
@@ -319,7 +330,7 @@ public class FindDiscordantPairClustersMT implements Callable <Map<String, List<
 		
 						//filterCluster(cluster);
 						if (compareParameters != null) {
-							filterCluster(compareMatePairsList, cluster);
+							filterCluster(compareMatePairs, cluster);
 						}
 		
 						if (cluster.getMatchedReadPairs().size() >= findParameters.getCompareClusterSize()) {
@@ -367,43 +378,24 @@ public class FindDiscordantPairClustersMT implements Callable <Map<String, List<
 		}
 	}
 
-	private DiscordantPairCluster filterCluster(List<MatePair> compareReadPairs, DiscordantPairCluster cluster) {  
+	private DiscordantPairCluster filterCluster(MatePairIndex compareReadPairs, DiscordantPairCluster cluster) {  
 		//set normal window range
 
 		cluster.setNormalRange(compareParameters.getUpperInsertSize());
 
 
 		// if there are reads on this chromosome
-		if (compareReadPairs != null && ! compareReadPairs.isEmpty()) {
-			// check if the reads in the comparison reads map are in the
-			// window
-
-			int leftStart = cluster.getCompareLeftStart();
-			int leftEnd = cluster.getCompareLeftEnd();
-			int rightStart = cluster.getCompareRightStart();
-			int rightEnd = cluster.getCompareRightEnd();
-			
-			for (MatePair pairToCompare : compareReadPairs) {
-				//           	System.out.println(pairToCompare.toString());
-				//left start must be in the left window and right start must be in the right window
-				//  leftStart       leftEnd             rightStart          rightEnd
-				//      |               |                   |                   |
-				//      wwwwwwwwwwwwwwwww                   wwwwwwwwwwwwwwwwwwwww   window from foundCluster
-				//              xxxxxx--------------------------------xxxxxxxxxxxx  this compare read
-				//              |                                     |
-				//              read pair start (left read)           read pair start (right read)
-				//
-				//check the left start or end is within the left range
-
-				if (pairToCompare.getLeftMate().getStart() > leftEnd) {
-					break;
-				} else {
-					if (QSVUtil.doesMatePairOverlapRegions(pairToCompare, leftStart, leftEnd, rightStart, rightEnd)) {                    	
-						//						if (isGermlineMatchNormal(leftStart, leftEnd, rightStart, rightEnd, pairToCompare)) {                    	
-						cluster.getMatchedReadPairs().add(pairToCompare);
-					}
-				}      			                    
-			}
+		if ( ! compareReadPairs.isEmpty()) {
+			// check if the reads in the comparison reads are in the window
+			//left start must be in the left window and right start must be in the right window
+			//  leftStart       leftEnd             rightStart          rightEnd
+			//      |               |                   |                   |
+			//      wwwwwwwwwwwwwwwww                   wwwwwwwwwwwwwwwwwwwww   window from foundCluster
+			//              xxxxxx--------------------------------xxxxxxxxxxxx  this compare read
+			//              |                                     |
+			//              read pair start (left read)           read pair start (right read)
+			cluster.getMatchedReadPairs().addAll(compareReadPairs.getOverlappingPairs(cluster.getCompareLeftStart(), cluster.getCompareLeftEnd(),
+					cluster.getCompareRightStart(), cluster.getCompareRightEnd()));
 		}	
 
 		return cluster;
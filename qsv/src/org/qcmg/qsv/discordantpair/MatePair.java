@@ -70,6 +70,21 @@ public class MatePair implements Comparable<MatePair> {
 		checkSortOrder(); 
 	}
 
+	/**
+	 * For mates that are already in sorted order, as read back from a {@link MatePairsFile}
+	 */
+	MatePair(String readName, Mate leftMate, Mate rightMate, String pairOrder) {
+		this.readName = readName;
+		this.leftMate = leftMate;
+		this.rightMate = rightMate;
+		String zpString = leftMate.getZp();
+		if (zpString.equals(QSVConstants.C_STAR_STAR)) {
+			zpString = "Cxx";
+		}
+		this.zp = PairClassification.valueOf(zpString);
+		this.pairOrder = pairOrder;
+	}
+
 	private String getPairClassificationFromSamRecord(SAMRecord samRecord) {
 		String zp = (String) samRecord.getAttribute(QSVConstants.ZP_SHORT);
 		if (QSVConstants.C_STAR_STAR.equals(zp)) {
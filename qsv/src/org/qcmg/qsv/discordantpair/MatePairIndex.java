@@ -0,0 +1,82 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.qsv.discordantpair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.qcmg.qsv.util.QSVUtil;
+
+/**
+ * Read-only index over the mate pairs of a chromosome (or chromosome pair), for finding the pairs that overlap a cluster's windows.
+ * <p>
+ * Pairs are sorted by left mate start, and the longest left mate is kept. A pair can only overlap the left window
+ * if its left mate starts no more than that length before the window, so a lookup binary searches for the first such pair
+ * and walks forward until the pairs start after the window, checking each with {@link QSVUtil#doesMatePairOverlapRegions(MatePair, int, int, int, int)}.
+ * Matching pairs are returned in left mate start order, as the full scan did.
+ */
+public final class MatePairIndex {
+
+	private final MatePair [] pairs;
+	private final int [] leftStarts;
+	private final int maxLeftLength;
+
+	public MatePairIndex(List<MatePair> matePairs) {
+		List<MatePair> sorted = null == matePairs ? Collections.<MatePair>emptyList() : new ArrayList<>(matePairs);
+		// stable, and cheap when the pairs are already in order
+		sorted.sort(new MatePair.ReadMateLeftStartComparator());
+
+		int size = sorted.size();
+		pairs = sorted.toArray(new MatePair[size]);
+		leftStarts = new int[size];
+		int maxLength = 0;
+		for (int i = 0 ; i < size ; i++) {
+			Mate left = pairs[i].getLeftMate();
+			leftStarts[i] = left.getStart();
+			maxLength = Math.max(maxLength, left.getEnd() - left.getStart());
+		}
+		maxLeftLength = maxLength;
+	}
+
+	public int size() {
+		return pairs.length;
+	}
+
+	public boolean isEmpty() {
+		return pairs.length == 0;
+	}
+
+	/**
+	 * Returns the pairs whose left mate starts or ends in the left window and whose right mate starts or ends in the right window
+	 */
+	public List<MatePair> getOverlappingPairs(int leftStart, int leftEnd, int rightStart, int rightEnd) {
+		List<MatePair> overlapping = new ArrayList<>();
+		for (int i = firstIndexAtOrAfter(leftStart - maxLeftLength) ; i < pairs.length && leftStarts[i] <= leftEnd ; i++) {
+			if (QSVUtil.doesMatePairOverlapRegions(pairs[i], leftStart, leftEnd, rightStart, rightEnd)) {
+				overlapping.add(pairs[i]);
+			}
+		}
+		return overlapping;
+	}
+
+	/**
+	 * Index of the first pair with a left mate start at or after the position
+	 */
+	private int firstIndexAtOrAfter(int position) {
+		int low = 0;
+		int high = leftStarts.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (leftStarts[mid] < position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
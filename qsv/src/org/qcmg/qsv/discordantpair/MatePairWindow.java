@@ -0,0 +1,114 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.qsv.discordantpair;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Mate pairs sorted by left mate start, merged on demand from the sorted runs in the mate pair files.
+ * <p>
+ * Only the pairs between the last {@link #release(int)} and the furthest pair requested are held in memory, so callers
+ * that move forward through the list don't need to hold the whole chromosome.
+ */
+public class MatePairWindow extends AbstractList<MatePair> implements Closeable {
+
+	private final PriorityQueue<Head> heads;
+	private final List<MatePairsFile.Run> runs;
+	private final List<MatePair> buffer = new ArrayList<>();
+	private final int size;
+
+	/*
+	 * index of the first pair in the buffer
+	 */
+	private int offset;
+
+	MatePairWindow(List<Iterator<MatePair>> sortedRuns, List<MatePairsFile.Run> runs, int size) {
+		this.runs = runs;
+		this.size = size;
+		this.heads = new PriorityQueue<>(Math.max(1, sortedRuns.size()));
+		for (int i = 0 ; i < sortedRuns.size() ; i++) {
+			Iterator<MatePair> run = sortedRuns.get(i);
+			if (run.hasNext()) {
+				heads.add(new Head(run, i));
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @throws IndexOutOfBoundsException if the pair has been released
+	 */
+	@Override
+	public MatePair get(int index) {
+		if (index < offset || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", first available: " + offset + ", size: " + size);
+		}
+		while (offset + buffer.size() <= index) {
+			buffer.add(nextPair());
+		}
+		return buffer.get(index - offset);
+	}
+
+	/**
+	 * Pairs before this index are no longer needed
+	 */
+	public void release(int index) {
+		int n = Math.min(index - offset, buffer.size());
+		// only compact once at least half of the buffer can go
+		if (n > 0 && n * 2 >= buffer.size()) {
+			buffer.subList(0, n).clear();
+			offset += n;
+		}
+	}
+
+	private MatePair nextPair() {
+		Head head = heads.poll();
+		MatePair pair = head.pair;
+		if (head.run.hasNext()) {
+			head.pair = head.run.next();
+			heads.add(head);
+		}
+		return pair;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (MatePairsFile.Run run : runs) {
+			run.close();
+		}
+	}
+
+	/**
+	 * The next pair of a run. Ties are broken on run order so that the merge is stable.
+	 */
+	private static final class Head implements Comparable<Head> {
+		private final Iterator<MatePair> run;
+		private final int order;
+		private MatePair pair;
+
+		Head(Iterator<MatePair> run, int order) {
+			this.run = run;
+			this.order = order;
+			this.pair = run.next();
+		}
+
+		@Override
+		public int compareTo(Head o) {
+			int diff = Integer.compare(pair.getLeftMate().getStart(), o.pair.getLeftMate().getStart());
+			return diff != 0 ? diff : Integer.compare(order, o.order);
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/**
+ * © Copyright QIMR Berghofer Medical Research Institute 2014-2016.
+ *
+ * This code is released under the terms outlined in the included LICENSE file.
+ */
+package org.qcmg.qsv.discordantpair;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary spill format for the mate pairs written by {@link MatePairsWriter}.
+ * <p>
+ * Each call to {@link #appendRun(File, Collection)} appends a run of mate pairs, sorted by left mate start, to the end of the file:
+ * <pre>
+ * int magic | int record count | long record bytes | int dictionary size | dictionary strings
+ * records: query name | read group id | left mate | right mate | pair order id
+ * mate: reference id | start | end | zp id | flags (short) | negative orientation (byte)
+ * </pre>
+ * The read group, reference, zp and pair order strings are interned in the per run dictionary so that each record is
+ * the query name followed by fixed width primitives. Files written by earlier versions, with one comma separated
+ * {@link MatePair#toString()} per line, are still read.
+ */
+public final class MatePairsFile {
+
+	/**
+	 * Can't be the first byte of a text mate pair file
+	 */
+	static final int MAGIC = 0x00515356;
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int RUN_HEADER_LENGTH = 16;
+
+	private MatePairsFile() {}
+
+	/**
+	 * Appends the mate pairs to the end of the file as a single run sorted by left mate start
+	 */
+	public static void appendRun(File file, Collection<MatePair> pairs) throws IOException {
+		if (pairs.isEmpty()) {
+			return;
+		}
+		List<MatePair> sorted = new ArrayList<>(pairs);
+		sorted.sort(new MatePair.ReadMateLeftStartComparator());
+
+		Map<String, Integer> dictionary = new LinkedHashMap<>();
+		for (MatePair pair : sorted) {
+			intern(dictionary, getReadGroup(pair.getReadName()));
+			intern(dictionary, pair.getLeftMate().getReferenceName());
+			intern(dictionary, pair.getLeftMate().getZp());
+			intern(dictionary, pair.getRightMate().getReferenceName());
+			intern(dictionary, pair.getRightMate().getZp());
+			intern(dictionary, pair.getPairOrder());
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			long runStart = channel.size();
+			channel.position(runStart);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+			out.writeInt(MAGIC);
+			out.writeInt(sorted.size());
+			// record bytes are filled in once the records have been written
+			out.writeLong(0);
+			out.writeInt(dictionary.size());
+			for (String s : dictionary.keySet()) {
+				out.writeUTF(s);
+			}
+			int recordStart = out.size();
+			for (MatePair pair : sorted) {
+				String readName = pair.getReadName();
+				int colon = readName.lastIndexOf(':');
+				out.writeUTF(readName.substring(0, colon + 1));
+				out.writeInt(dictionary.get(getReadGroup(readName)));
+				writeMate(out, pair.getLeftMate(), dictionary);
+				writeMate(out, pair.getRightMate(), dictionary);
+				out.writeInt(dictionary.get(pair.getPairOrder()));
+			}
+			out.flush();
+
+			ByteBuffer recordBytes = ByteBuffer.allocate(8);
+			recordBytes.putLong(out.size() - recordStart).flip();
+			channel.write(recordBytes, runStart + 8);
+		}
+	}
+
+	private static void writeMate(DataOutputStream out, Mate mate, Map<String, Integer> dictionary) throws IOException {
+		out.writeInt(dictionary.get(mate.getReferenceName()));
+		out.writeInt(mate.getStart());
+		out.writeInt(mate.getEnd());
+		out.writeInt(dictionary.get(mate.getZp()));
+		out.writeShort(mate.getFlags());
+		out.writeByte(mate.getNegOrientation() ? 1 : 0);
+	}
+
+	private static void intern(Map<String, Integer> dictionary, String s) {
+		if ( ! dictionary.containsKey(s)) {
+			dictionary.put(s, dictionary.size());
+		}
+	}
+
+	/**
+	 * Read names are the query name and read group id separated by a colon
+	 */
+	private static String getReadGroup(String readName) {
+		return readName.substring(readName.lastIndexOf(':') + 1);
+	}
+
+	/**
+	 * Opens the files as a single stream of mate pairs sorted by left mate start.
+	 */
+	public static MatePairWindow open(List<File> files) throws IOException {
+		List<Iterator<MatePair>> runs = new ArrayList<>();
+		List<Run> binaryRuns = new ArrayList<>();
+		int size = 0;
+		try {
+			for (File file : files) {
+				if (isBinary(file)) {
+					for (Run run : Run.readRuns(file)) {
+						binaryRuns.add(run);
+						runs.add(run);
+						size += run.count;
+					}
+				} else {
+					List<MatePair> pairs = readTextFile(file);
+					runs.add(pairs.iterator());
+					size += pairs.size();
+				}
+			}
+		} catch (IOException e) {
+			for (Run run : binaryRuns) {
+				run.close();
+			}
+			throw e;
+		}
+		return new MatePairWindow(runs, binaryRuns, size);
+	}
+
+	static boolean isBinary(File file) throws IOException {
+		if (file.length() < RUN_HEADER_LENGTH) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			return in.readInt() == MAGIC;
+		}
+	}
+
+	private static List<MatePair> readTextFile(File file) throws IOException {
+		List<MatePair> pairs = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line = reader.readLine();
+			while (line != null) {
+				pairs.add(new MatePair(line));
+				line = reader.readLine();
+			}
+		}
+		Collections.sort(pairs, new MatePair.ReadMateLeftStartComparator());
+		return pairs;
+	}
+
+	/**
+	 * A sorted run of mate pairs in a binary file, read through its own buffered channel
+	 */
+	static final class Run implements Iterator<MatePair>, AutoCloseable {
+
+		private final FileChannel channel;
+		private final DataInputStream in;
+		private final String[] dictionary;
+		private final int count;
+		private int read;
+
+		private Run(File file, long position) throws IOException {
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				channel.position(position);
+				this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+				if (in.readInt() != MAGIC) {
+					throw new IOException("Corrupt mate pair file: " + file.getAbsolutePath() + " at " + position);
+				}
+				this.count = in.readInt();
+				in.readLong();
+				this.dictionary = new String[in.readInt()];
+				for (int i = 0 ; i < dictionary.length ; i++) {
+					dictionary[i] = in.readUTF();
+				}
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Skips through the run headers to open each run in the file
+		 */
+		static List<Run> readRuns(File file) throws IOException {
+			List<Long> positions = new ArrayList<>();
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_HEADER_LENGTH))) {
+				long position = 0;
+				long length = file.length();
+				while (position < length) {
+					positions.add(position);
+					if (in.readInt() != MAGIC) {
+						throw new IOException("Corrupt mate pair file: " + file.getAbsolutePath() + " at " + position);
+					}
+					in.readInt();
+					long recordBytes = in.readLong();
+					int dictionarySize = in.readInt();
+					long dictionaryBytes = 0;
+					for (int i = 0 ; i < dictionarySize ; i++) {
+						int utfLength = in.readUnsignedShort();
+						skipFully(in, utfLength);
+						dictionaryBytes += 2 + utfLength;
+					}
+					skipFully(in, recordBytes);
+					position += RUN_HEADER_LENGTH + 4 + dictionaryBytes + recordBytes;
+				}
+			}
+
+			List<Run> runs = new ArrayList<>(positions.size());
+			try {
+				for (long position : positions) {
+					runs.add(new Run(file, position));
+				}
+			} catch (IOException e) {
+				for (Run run : runs) {
+					run.close();
+				}
+				throw e;
+			}
+			return runs;
+		}
+
+		private static void skipFully(InputStream in, long n) throws IOException {
+			while (n > 0) {
+				long skipped = in.skip(n);
+				if (skipped <= 0) {
+					throw new EOFException();
+				}
+				n -= skipped;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return read < count;
+		}
+
+		@Override
+		public MatePair next() {
+			read++;
+			try {
+				String readName = in.readUTF() + dictionary[in.readInt()];
+				Mate left = readMate(readName);
+				Mate right = readMate(readName);
+				return new MatePair(readName, left, right, dictionary[in.readInt()]);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to read mate pair", e);
+			}
+		}
+
+		private Mate readMate(String readName) throws IOException {
+			String reference = dictionary[in.readInt()];
+			int start = in.readInt();
+			int end = in.readInt();
+			String zp = dictionary[in.readInt()];
+			int flags = in.readUnsignedShort();
+			boolean negOrientation = in.readByte() == 1;
+			return new Mate(readName, reference, start, end, zp, flags, negOrientation);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -6,11 +6,9 @@
  */
 package org.qcmg.qsv.discordantpair;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -105,26 +103,20 @@ public class MatePairsReader {
 		return this.categories;
 	}
 
-	public List<MatePair> getMatePairsListByFiles(List<File> files, boolean isFindMethod) throws Exception {
-
-		List<MatePair> readPairs = new ArrayList<MatePair>();
-
-		for (File file : files) {
-			try (FileReader fileReader = new FileReader(file);
-					BufferedReader reader = new BufferedReader(fileReader);) {
-				String line = reader.readLine();
-				while (line != null) {
-					if (isFindMethod) {
-						mateCount++;
-					}
-					MatePair readPair = new MatePair(line);
-					readPairs.add(readPair);
-					line = reader.readLine();
-				}
-			}
+	/**
+	 * Opens the mate pair files as a stream sorted by left mate start
+	 */
+	public MatePairWindow openMatePairsByFiles(List<File> files, boolean isFindMethod) throws IOException {
+		MatePairWindow pairs = MatePairsFile.open(files);
+		if (isFindMethod) {
+			mateCount += pairs.size();
 		}
+		return pairs;
+	}
 
-		Collections.sort(readPairs, new MatePair.ReadMateLeftStartComparator());
-		return readPairs;
+	public List<MatePair> getMatePairsListByFiles(List<File> files, boolean isFindMethod) throws IOException {
+		try (MatePairWindow pairs = openMatePairsByFiles(files, isFindMethod)) {
+			return new ArrayList<>(pairs);
+		}
 	}
 }
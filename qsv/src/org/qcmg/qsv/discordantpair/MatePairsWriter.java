@@ -3,9 +3,7 @@
  */
 package org.qcmg.qsv.discordantpair;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -84,21 +82,11 @@ public class MatePairsWriter {
     }
 
     public synchronized void writeMatePairsToFile() throws IOException {
-        // set to true to append rather than create
         Map<String, File> filesToWrite = createFilesToWrite();
 
         for (Map.Entry<String, Map<String, MatePair>> chrEntry : matePairs.entrySet()) {
-
-            File file = filesToWrite.get(chrEntry.getKey());
-            
-            FileWriter fileWriter = new FileWriter(file, true);
-            BufferedWriter writer = new BufferedWriter(fileWriter);
-            Map<String, MatePair> currentPairs = chrEntry.getValue();
-            for (Map.Entry<String, MatePair> entry : currentPairs.entrySet()) {
-                writer.write(entry.getValue().toString());
-            }
-            writer.flush();
-            writer.close();
+            // each write appends a run sorted by left mate start
+            MatePairsFile.appendRun(filesToWrite.get(chrEntry.getKey()), chrEntry.getValue().values());
         }
         matePairs.clear();
     }
@@ -13,6 +13,7 @@ import org.qcmg.qsv.Options;
 import org.qcmg.qsv.QSV;
 import org.qcmg.qsv.QSVParameters;
 import org.qcmg.qsv.annotate.RunTypeRecord;
+import org.qcmg.qsv.util.QSVConstants;
 
 public class SummaryReport extends QSVReport {
 
@@ -115,9 +116,14 @@ public class SummaryReport extends QSVReport {
 			writer.write("Soft clip filtering query: " + options.getClipQuery() + NEWLINE);
 			writer.write(("Soft clip reads size: " + options.getClipSize()) + NEWLINE);        	
 			writer.write(("Soft clip consensus length: " + options.getConsensusLength()) + NEWLINE);
-			writer.write("Path to blat: " + options.getBlatPath() + NEWLINE);
-			writer.write("BLAT Server: " + options.getBlatServer() + NEWLINE);			
-			writer.write("BLAT Port: " + options.getBlatPort() + NEWLINE + NEWLINE);
+			writer.write("Aligner: " + options.getAligner() + NEWLINE);
+			if (QSVConstants.IN_PROCESS_ALIGNER.equals(options.getAligner())) {
+				writer.write("Aligner reference index: " + options.getAlignerIndex() + NEWLINE + NEWLINE);
+			} else {
+				writer.write("Path to blat: " + options.getBlatPath() + NEWLINE);
+				writer.write("BLAT Server: " + options.getBlatServer() + NEWLINE);			
+				writer.write("BLAT Port: " + options.getBlatPort() + NEWLINE + NEWLINE);
+			}
 		}
 		
 	}
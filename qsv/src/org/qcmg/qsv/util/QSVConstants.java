@@ -39,6 +39,12 @@ public class QSVConstants {
 	
 	public static final int DEFAULT_CONSENSUS_LENGTH = 20;
 	
+	public static final String BLAT_ALIGNER = "blat";
+	
+	public static final String IN_PROCESS_ALIGNER = "inprocess";
+	
+	public static final String DEFAULT_ALIGNER = BLAT_ALIGNER;
+	
 	
 	public static final String LEVEL_HIGH = "1";
 	
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 
 import junit.framework.Assert;
@@ -16,6 +17,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.qcmg.qsv.util.QSVConstants;
 import org.qcmg.qsv.util.TestUtil;
 
 public class OptionsTest {
@@ -94,6 +96,31 @@ public class OptionsTest {
         assertEquals(options.getComparisonSampleId(), "ICGC-DBLG-20110506-01-ND");
     }
 
+    @Test
+    public void testAlignerOptions() throws Exception {
+        String[] args = TestUtil.getValidOptions(testFolder, file1, file2, "both", "both");
+        Options options = new Options(args);
+        options.parseIniFile();
+        assertEquals(QSVConstants.BLAT_ALIGNER, options.getAligner());
+        assertEquals(options.getReference() + ".qsvidx", options.getAlignerIndex());
+        
+        File ini = new File(options.getIniFile());
+        String content = new String(Files.readAllBytes(ini.toPath()));
+        Files.write(ini.toPath(), content.replace("blatport=50000", "blatport=50000\naligner=inprocess\naligner_index=/path/to/index").getBytes());
+        options = new Options(args);
+        options.parseIniFile();
+        assertEquals(QSVConstants.IN_PROCESS_ALIGNER, options.getAligner());
+        assertEquals("/path/to/index", options.getAlignerIndex());
+        
+        Files.write(ini.toPath(), content.replace("blatport=50000", "aligner=bwa").getBytes());
+        try {
+        	new Options(args).parseIniFile();
+        	Assert.fail("Should have thrown a QSVException");
+        } catch (QSVException e) {
+        	assertTrue(e.getMessage().contains("bwa"));
+        }
+    }
+    
     @Test
     public void testHelpOption() throws QSVException, InvalidFileFormatException, IOException {
         Options options = new Options(new String[] {"--help"});
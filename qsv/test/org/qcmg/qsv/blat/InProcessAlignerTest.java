@@ -0,0 +1,263 @@
+package org.qcmg.qsv.blat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qcmg.qsv.util.QSVUtil;
+
+public class InProcessAlignerTest {
+
+	@ClassRule
+	public static TemporaryFolder testFolder = new TemporaryFolder();
+
+	private static final String[] NAMES = {"chr1", "chr2", "chr3"};
+	private static final int[] LENGTHS = {50000, 30000, 20000};
+	private static final String[] SEQUENCES = new String[NAMES.length];
+
+	private static InProcessAligner aligner;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		Random random = new Random(42);
+		File fasta = testFolder.newFile("reference.fa");
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fasta))) {
+			for (int i = 0 ; i < NAMES.length ; i++) {
+				StringBuilder sb = new StringBuilder();
+				for (int j = 0 ; j < LENGTHS[i] ; j++) {
+					sb.append("ACGT".charAt(random.nextInt(4)));
+				}
+				SEQUENCES[i] = sb.toString();
+				writer.write(">" + NAMES[i] + "\n");
+				for (int j = 0 ; j < LENGTHS[i] ; j += 60) {
+					writer.write(SEQUENCES[i].substring(j, Math.min(LENGTHS[i], j + 60)) + "\n");
+				}
+			}
+		}
+		aligner = new InProcessAligner(ReferenceIndex.getIndex(fasta, new File(fasta.getAbsolutePath() + ReferenceIndex.FILE_EXTENSION)));
+	}
+
+	private static String reference(int chromosome, int start, int end) {
+		return SEQUENCES[chromosome].substring(start, end);
+	}
+
+	@Test
+	public void exactMatch() {
+		List<BLATRecord> records = aligner.alignSequence("exact", reference(0, 10000, 10100));
+		assertEquals(1, records.size());
+		BLATRecord record = records.get(0);
+		assertEquals("exact", record.getName());
+		assertEquals("chr1", record.getReference());
+		assertEquals(QSVUtil.PLUS, record.getStrand());
+		assertEquals(100, record.getScore());
+		assertEquals(100, record.getSize());
+		assertEquals(1, record.getQueryStart());
+		assertEquals(100, record.getQueryEnd());
+		assertEquals(10001, record.getStartPos());
+		assertEquals(10100, record.getEndPos());
+		assertEquals(1, record.getBlockCount());
+	}
+
+	@Test
+	public void reverseStrand() {
+		// 10 unaligned bases at the start of the sequence
+		String sequence = "CCCCCCCCCC" + QSVUtil.reverseComplement(reference(1, 2000, 2080));
+		List<BLATRecord> records = aligner.alignSequence("reverse", sequence);
+		assertEquals(1, records.size());
+		BLATRecord record = records.get(0);
+		assertEquals("chr2", record.getReference());
+		assertEquals(QSVUtil.MINUS, record.getStrand());
+		assertEquals(80, record.getScore());
+		assertEquals(90, record.getSize());
+		assertEquals(11, record.getQueryStart());
+		assertEquals(90, record.getQueryEnd());
+		assertEquals(2001, record.getStartPos());
+		assertEquals(2080, record.getEndPos());
+	}
+
+	@Test
+	public void mismatchAndInsertion() {
+		String ref = reference(0, 30000, 30100);
+		char mismatch = ref.charAt(30) == 'A' ? 'C' : 'A';
+		String sequence = ref.substring(0, 30) + mismatch + ref.substring(31, 70) + "TT" + ref.substring(70);
+		List<BLATRecord> records = aligner.alignSequence("indel", sequence);
+		assertEquals(1, records.size());
+		BLATRecord record = records.get(0);
+		assertEquals(30001, record.getStartPos());
+		assertEquals(30100, record.getEndPos());
+		assertEquals(102, record.getSize());
+		assertEquals(2, record.getBlockCount());
+		// 99 matches, 1 mismatch and 1 insertion in the sequence
+		assertEquals(97, record.getScore());
+		String[] psl = aligner.alignToPsl("indel", sequence).get(0);
+		assertEquals("1", psl[1]);
+		// qNumInsert, qBaseInsert, tNumInsert
+		assertEquals("1", psl[4]);
+		assertEquals("2", psl[5]);
+		assertEquals("0", psl[6]);
+	}
+
+	@Test
+	public void splitReadDeletion() {
+		String sequence = reference(1, 1000, 1060) + reference(1, 5000, 5060);
+		List<BLATRecord> records = aligner.alignSequence("deletion", sequence);
+		BLATRecord record = records.get(0);
+		assertEquals("chr2", record.getReference());
+		assertEquals(QSVUtil.PLUS, record.getStrand());
+		assertEquals(2, record.getBlockCount());
+		assertEquals(1001, record.getStartPos());
+		assertEquals(5060, record.getEndPos());
+		assertEquals(1, record.getQueryStart());
+		assertEquals(120, record.getQueryEnd());
+		assertEquals(1001, record.gettStarts()[0]);
+		int[] sizes = record.getBlockSizes();
+		assertEquals(120, sizes[0] + sizes[1]);
+		assertEquals(5061, record.gettStarts()[1] + sizes[1]);
+		assertArrayEquals(new int[] {1, 1 + sizes[0]}, record.getUnmodifiedStarts());
+		assertEquals(119, record.getScore());
+	}
+
+	@Test
+	public void splitReadTranslocation() {
+		String sequence = reference(0, 20000, 20060) + QSVUtil.reverseComplement(reference(2, 500, 560));
+		List<BLATRecord> records = aligner.alignSequence("translocation", sequence);
+		assertEquals(2, records.size());
+		BLATRecord chr1 = "chr1".equals(records.get(0).getReference()) ? records.get(0) : records.get(1);
+		BLATRecord chr3 = "chr3".equals(records.get(0).getReference()) ? records.get(0) : records.get(1);
+		assertEquals(QSVUtil.PLUS, chr1.getStrand());
+		assertEquals(1, chr1.getQueryStart());
+		assertEquals(20001, chr1.getStartPos());
+		assertEquals(QSVUtil.MINUS, chr3.getStrand());
+		assertEquals(120, chr3.getQueryEnd());
+		assertEquals(560, chr3.getEndPos());
+		assertTrue(chr1.getScore() >= 60 && chr3.getScore() >= 60);
+
+		// alignConsensus only returns the records on the references, sorted by score
+		assertEquals(1, aligner.alignConsensus(null, "translocation", sequence, "chr3", "chr2").size());
+		assertEquals(2, aligner.alignConsensus(null, "translocation", sequence, "chr3", "chr1").size());
+		assertEquals(2, aligner.alignConsensus(null, "translocation", sequence, null, null).size());
+	}
+
+	@Test
+	public void noAlignment() {
+		assertEquals(0, aligner.alignSequence("none", "ACGTTGCAACGTTGCAACGTTGCAACGTTGCAACGTTGCA").size());
+		assertEquals(0, aligner.alignSequence("short", reference(0, 100, 125)).size());
+		assertEquals(0, aligner.alignSequence("empty", "").size());
+		assertEquals(0, aligner.alignSequence("n", "NNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNN").size());
+	}
+
+	@Test
+	public void executeWritesPsl() throws Exception {
+		File fasta = testFolder.newFile("query.fa");
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fasta))) {
+			writer.write(">first\n" + reference(0, 40000, 40050) + "\n" + reference(0, 40050, 40100) + "\n");
+			writer.write(">second\n" + reference(2, 15000, 15070) + "\n");
+		}
+		File psl = new File(testFolder.getRoot(), "query.psl");
+		int count = aligner.getExecuteCount();
+		aligner.execute(fasta.getAbsolutePath(), psl.getAbsolutePath());
+		assertEquals(count + 1, aligner.getExecuteCount());
+
+		Map<String, BLATRecord> fromFile = aligner.parseResults(psl.getAbsolutePath());
+		assertEquals(2, fromFile.size());
+		assertEquals(40001, fromFile.get("first").getStartPos());
+		assertEquals(40100, fromFile.get("first").getEndPos());
+		assertEquals("chr3", fromFile.get("second").getReference());
+		assertEquals(70, fromFile.get("second").getScore());
+
+		List<BLATRecord> results = aligner.getBlatResults(fasta.getAbsolutePath(), "chr3", "chr1", "second");
+		assertEquals(1, results.size());
+		assertEquals(15001, results.get(0).getStartPos());
+
+		Map<String, BLATRecord> inMemory = aligner.align(fasta.getAbsolutePath(), null);
+		assertEquals(fromFile.keySet(), inMemory.keySet());
+		for (String name : fromFile.keySet()) {
+			assertEquals(fromFile.get(name).toString(), inMemory.get(name).toString());
+		}
+	}
+
+	@Test
+	public void batchesFromManyThreads() throws Exception {
+		Map<String, String> sequences = new LinkedHashMap<>();
+		Random random = new Random(7);
+		for (int i = 0 ; i < 50 ; i++) {
+			int chromosome = random.nextInt(NAMES.length);
+			int start = random.nextInt(LENGTHS[chromosome] - 200);
+			sequences.put("seq" + i, reference(chromosome, start, start + 40 + random.nextInt(100)));
+		}
+		Map<String, List<BLATRecord>> expected = aligner.alignSequences(sequences);
+		assertEquals(50, expected.size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Map<String, List<BLATRecord>>>> futures = new ArrayList<>();
+			for (int i = 0 ; i < 8 ; i++) {
+				futures.add(executor.submit(() -> aligner.alignSequences(sequences)));
+			}
+			for (Future<Map<String, List<BLATRecord>>> future : futures) {
+				Map<String, List<BLATRecord>> actual = future.get();
+				assertEquals(expected.keySet(), actual.keySet());
+				for (String name : expected.keySet()) {
+					assertEquals(expected.get(name).toString(), actual.get(name).toString());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		for (List<BLATRecord> records : expected.values()) {
+			assertTrue(records.get(0).getScore() >= 40);
+		}
+	}
+
+	@Test
+	public void keyDistinguishesHits() {
+		String[] chr1 = {"100", "0", "0", "0", "0", "0", "0", "0", "+", "hit", "110", "10", "110", "chr1", "50000", "2000", "2100", "1", "100,", "10,", "2000,"};
+		String[] chr11 = chr1.clone();
+		// run together, chr1 from query position 10 and chr11 from 0 are both "chr110"
+		chr11[13] = "chr11";
+		chr11[11] = "0";
+		assertNotEquals(InProcessAligner.getKey(chr1), InProcessAligner.getKey(chr11));
+
+		// and query start and end of 12 and 3, or 1 and 23, are both "123"
+		String[] first = chr1.clone();
+		first[11] = "12";
+		first[12] = "3";
+		String[] second = chr1.clone();
+		second[11] = "1";
+		second[12] = "23";
+		assertNotEquals(InProcessAligner.getKey(first), InProcessAligner.getKey(second));
+
+		// the same hit, however its score was reached
+		String[] rescored = chr1.clone();
+		rescored[0] = "98";
+		rescored[1] = "2";
+		assertEquals(InProcessAligner.getKey(chr1), InProcessAligner.getKey(rescored));
+	}
+
+	@Test
+	public void milliBad() {
+		assertEquals(0, InProcessAligner.milliBad(100, 0, 0, 100, 100));
+		assertEquals(10, InProcessAligner.milliBad(99, 1, 0, 100, 100));
+		// gaps in the reference are not penalised
+		assertEquals(0, InProcessAligner.milliBad(100, 0, 0, 100, 5000));
+		assertEquals(40, InProcessAligner.milliBad(99, 1, 0, 102, 100));
+	}
+}
@@ -0,0 +1,123 @@
+package org.qcmg.qsv.blat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReferenceIndexTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+
+	@Test
+	public void buildAndLoad() throws IOException {
+		File fasta = testFolder.newFile("reference.fa");
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fasta))) {
+			writer.write(">chr1 first\nACGTA\nCGTAC\nGTN\n>chr2\nacgtacgtAC\n>chrEmpty\n>chr3\nTTTT\n");
+		}
+		File indexFile = new File(testFolder.getRoot(), "reference.fa" + ReferenceIndex.FILE_EXTENSION);
+		ReferenceIndex.build(fasta, indexFile, 4);
+		ReferenceIndex index = ReferenceIndex.load(indexFile);
+		assertEquals(4, index.getTileSize());
+
+		assertEquals(4, index.getChromosomeCount());
+		assertEquals("chr1", index.getChromosomeName(0));
+		assertEquals(13, index.getChromosomeLength(0));
+		assertEquals(0, index.getChromosomeStart(0));
+		// chromosomes start at a multiple of the tile size
+		assertEquals("chr2", index.getChromosomeName(1));
+		assertEquals(10, index.getChromosomeLength(1));
+		assertEquals(16, index.getChromosomeStart(1));
+		assertEquals(0, index.getChromosomeLength(2));
+		assertEquals(28, index.getChromosomeStart(3));
+
+		assertEquals(0, index.getChromosome(12));
+		assertEquals(-1, index.getChromosome(13));
+		assertEquals(1, index.getChromosome(16));
+		assertEquals(3, index.getChromosome(31));
+		assertEquals(-1, index.getChromosome(32));
+
+		assertEquals('A', index.getBase(0));
+		assertEquals('N', index.getBase(12));
+		assertEquals('A', index.getBase(16));
+		assertEquals('C', index.getBase(25));
+		assertEquals('T', index.getBase(31));
+
+		// ACGT is the first three tiles of chr1 and the first two of chr2 (lower case bases are indexed)
+		int acgt = ReferenceIndex.encode("ACGT".getBytes(), 0, 4);
+		assertEquals(5, index.getTileCount(acgt));
+		List<Long> positions = new ArrayList<>();
+		for (int i = 0 ; i < index.getTileCount(acgt) ; i++) {
+			positions.add(index.getTilePosition(acgt, i));
+		}
+		assertTrue(positions.contains(0L));
+		assertTrue(positions.contains(4L));
+		assertTrue(positions.contains(8L));
+		assertTrue(positions.contains(16L));
+		assertTrue(positions.contains(20L));
+		// tiles don't overlap, and those with an N (including the end of chr2 and the padding after it) aren't indexed
+		assertEquals(0, index.getTileCount(ReferenceIndex.encode("CGTA".getBytes(), 0, 4)));
+		assertEquals(1, index.getTileCount(ReferenceIndex.encode("TTTT".getBytes(), 0, 4)));
+		assertEquals(-1, ReferenceIndex.encode("ACNT".getBytes(), 0, 4));
+	}
+
+	@Test
+	public void getIndexBuildsOnce() throws IOException {
+		File fasta = testFolder.newFile("reference.fa");
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fasta))) {
+			writer.write(">chr1\nACGTACGTACGTACGTACGTACGT\n");
+		}
+		File indexFile = new File(testFolder.getRoot(), "reference.fa" + ReferenceIndex.FILE_EXTENSION);
+		ReferenceIndex index = ReferenceIndex.getIndex(fasta, indexFile);
+		assertTrue(indexFile.exists());
+		assertEquals(ReferenceIndex.DEFAULT_TILE_SIZE, index.getTileSize());
+		assertEquals(24, index.getChromosomeLength(0));
+		long modified = indexFile.lastModified();
+		
+		index = ReferenceIndex.getIndex(fasta, indexFile);
+		assertEquals(modified, indexFile.lastModified());
+		assertEquals(1, index.getTileCount(ReferenceIndex.encode("ACGTACGTACG".getBytes(), 0, 11)));
+		assertEquals(1, index.getTileCount(ReferenceIndex.encode("TACGTACGTAC".getBytes(), 0, 11)));
+	}
+
+	@Test
+	public void incompleteIndexIsNotLoaded() throws IOException {
+		File fasta = testFolder.newFile("reference.fa");
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fasta))) {
+			writer.write(">chr1\nACGTACGTACGTACGTACGTACGT\n");
+		}
+		File indexFile = new File(testFolder.getRoot(), "reference.fa" + ReferenceIndex.FILE_EXTENSION);
+		ReferenceIndex.build(fasta, indexFile, 4);
+		// only the fasta and the index are left - the temporary files have been removed or moved into place
+		assertEquals(Arrays.asList("reference.fa", "reference.fa" + ReferenceIndex.FILE_EXTENSION), sortedNames(testFolder.getRoot()));
+
+		try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+			file.setLength(file.length() - 1);
+		}
+		try {
+			ReferenceIndex.load(indexFile);
+			fail("Should have thrown an IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("is incomplete"));
+		}
+	}
+
+	private static List<String> sortedNames(File directory) {
+		List<String> names = Arrays.asList(directory.list());
+		names.sort(null);
+		return names;
+	}
+}
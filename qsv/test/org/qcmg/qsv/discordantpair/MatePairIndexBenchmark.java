@@ -0,0 +1,101 @@
+package org.qcmg.qsv.discordantpair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.qcmg.qsv.util.QSVUtil;
+
+/**
+ * JMH benchmark comparing the {@link MatePairIndex} lookups that tumour clusters now use to find matching normal pairs
+ * with the scan of the normal mate pair list that FindDiscordantPairClustersMT used to do for every cluster.
+ * <p>
+ * Models a high SV burden chromosome: normal mate pairs spread over chr1 (hg19) with 1kb inserts, and tumour clusters
+ * whose compare windows are set as {@link DiscordantPairCluster#setNormalRange(int)} would for an upper insert size of 2360.
+ * Not a unit test - run with: java -cp &lt;test classpath&gt; org.qcmg.qsv.discordantpair.MatePairIndexBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatePairIndexBenchmark {
+
+	private static final int CHR1_LENGTH = 249250621;
+	private static final int UPPER_INSERT_SIZE = 2360;
+
+	@Param({"100000", "1000000"})
+	public int noOfNormalPairs;
+
+	@Param({"1000"})
+	public int noOfClusters;
+
+	private List<MatePair> normalPairs;
+	private MatePairIndex index;
+	private int [][] windows;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		normalPairs = new ArrayList<>(noOfNormalPairs);
+		for (int i = 0 ; i < noOfNormalPairs ; i++) {
+			int leftStart = random.nextInt(CHR1_LENGTH) + 1;
+			int rightStart = leftStart + 1000 + random.nextInt(500);
+			normalPairs.add(new MatePair("pair" + i + ":rg1,chr1," + leftStart + "," + (leftStart + 99) + ",AAC,129,false,pair" + i + ":rg1,chr1,"
+					+ rightStart + "," + (rightStart + 99) + ",AAC,65,false,F2F1"));
+		}
+		normalPairs.sort(new MatePair.ReadMateLeftStartComparator());
+		index = new MatePairIndex(normalPairs);
+
+		windows = new int[noOfClusters][];
+		for (int i = 0 ; i < noOfClusters ; i++) {
+			int leftMiddle = random.nextInt(CHR1_LENGTH) + 1;
+			int rightMiddle = leftMiddle + 1000 + random.nextInt(50000);
+			windows[i] = new int[] {leftMiddle - UPPER_INSERT_SIZE, leftMiddle + UPPER_INSERT_SIZE, rightMiddle - UPPER_INSERT_SIZE, rightMiddle + UPPER_INSERT_SIZE};
+		}
+	}
+
+	@Benchmark
+	public void linearScan(Blackhole bh) {
+		for (int [] w : windows) {
+			List<MatePair> matched = new ArrayList<>();
+			for (MatePair pair : normalPairs) {
+				if (pair.getLeftMate().getStart() > w[1]) {
+					break;
+				}
+				if (QSVUtil.doesMatePairOverlapRegions(pair, w[0], w[1], w[2], w[3])) {
+					matched.add(pair);
+				}
+			}
+			bh.consume(matched);
+		}
+	}
+
+	@Benchmark
+	public void matePairIndex(Blackhole bh) {
+		for (int [] w : windows) {
+			bh.consume(index.getOverlappingPairs(w[0], w[1], w[2], w[3]));
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MatePairIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+}
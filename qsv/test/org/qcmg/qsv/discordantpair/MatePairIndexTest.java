@@ -0,0 +1,88 @@
+package org.qcmg.qsv.discordantpair;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.qcmg.qsv.util.QSVUtil;
+
+public class MatePairIndexTest {
+
+	private static MatePair pair(String name, int leftStart, int leftEnd, int rightStart, int rightEnd) {
+		return new MatePair(name + ":rg1,chr7," + leftStart + "," + leftEnd + ",AAC,129,false," + name + ":rg1,chr7," + rightStart + "," + rightEnd + ",AAC,65,false,F2F1");
+	}
+
+	private static List<String> names(List<MatePair> pairs) {
+		List<String> names = new ArrayList<>();
+		for (MatePair p : pairs) {
+			names.add(p.getReadName());
+		}
+		return names;
+	}
+
+	@Test
+	public void emptyIndex() {
+		assertTrue(new MatePairIndex(null).isEmpty());
+		assertTrue(new MatePairIndex(Collections.<MatePair>emptyList()).isEmpty());
+		assertEquals(0, new MatePairIndex(null).getOverlappingPairs(0, 1000, 0, 1000).size());
+	}
+
+	@Test
+	public void overlappingPairs() {
+		MatePairIndex index = new MatePairIndex(Arrays.asList(
+				pair("d", 1500, 1600, 5000, 5100),
+				pair("a", 900, 1000, 5000, 5100),
+				pair("b", 950, 1100, 6000, 6100),
+				pair("c", 1001, 1050, 5100, 5150),
+				pair("e", 100, 200, 5000, 5100)));
+		assertEquals(5, index.size());
+
+		// a ends on the window start, b's right mate is outside the right window and d starts after the left window
+		assertEquals(Arrays.asList("a:rg1", "c:rg1"), names(index.getOverlappingPairs(1000, 1400, 4900, 5500)));
+		// right mate end in the right window
+		assertEquals(Arrays.asList("b:rg1"), names(index.getOverlappingPairs(1000, 1400, 6100, 7000)));
+		assertEquals(Arrays.asList("e:rg1", "a:rg1", "b:rg1", "c:rg1", "d:rg1"), names(index.getOverlappingPairs(0, 2000, 0, 7000)));
+		assertEquals(0, index.getOverlappingPairs(1601, 2000, 0, 7000).size());
+	}
+
+	@Test
+	public void sameAsFullScan() {
+		Random random = new Random(42);
+		List<MatePair> pairs = new ArrayList<>();
+		for (int i = 0 ; i < 5000 ; i++) {
+			int leftStart = random.nextInt(1000000);
+			int rightStart = leftStart + random.nextInt(20000);
+			// the odd long left mate (eg. a spliced or deleted read) must still be found
+			int leftLength = i % 500 == 0 ? 5000 : 50 + random.nextInt(100);
+			pairs.add(pair("p" + i, leftStart, leftStart + leftLength, rightStart, rightStart + 100));
+		}
+		pairs.sort(new MatePair.ReadMateLeftStartComparator());
+		MatePairIndex index = new MatePairIndex(pairs);
+
+		for (int i = 0 ; i < 1000 ; i++) {
+			int leftMiddle = random.nextInt(1000000);
+			int rightMiddle = leftMiddle + random.nextInt(20000);
+			int leftStart = leftMiddle - 2000;
+			int leftEnd = leftMiddle + 2000;
+			int rightStart = rightMiddle - 2000;
+			int rightEnd = rightMiddle + 2000;
+
+			List<MatePair> expected = new ArrayList<>();
+			for (MatePair p : pairs) {
+				if (p.getLeftMate().getStart() > leftEnd) {
+					break;
+				}
+				if (QSVUtil.doesMatePairOverlapRegions(p, leftStart, leftEnd, rightStart, rightEnd)) {
+					expected.add(p);
+				}
+			}
+			assertEquals(names(expected), names(index.getOverlappingPairs(leftStart, leftEnd, rightStart, rightEnd)));
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package org.qcmg.qsv.discordantpair;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.qcmg.qsv.QSVException;
+import org.qcmg.qsv.util.TestUtil;
+
+public class MatePairsFileTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+
+	private static MatePair pair(String name, int leftStart, int rightStart) {
+		return new MatePair(name + ":rg1,chr7," + leftStart + "," + (leftStart + 49) + ",AAC,129,false," + name + ":rg1,chr7," + rightStart + "," + (rightStart + 49) + ",AAC,65,true,F2F1");
+	}
+
+	@Test
+	public void roundTrip() throws IOException, QSVException {
+		File file = testFolder.newFile("chr7_TD_AAC");
+		List<MatePair> pairs = new ArrayList<>(TestUtil.setupMatePairs(testFolder, PairGroup.AAC));
+		pairs.add(new MatePair("722_126_792:20110412030837875,chr4,100,200,C**,129,false,722_126_792:20110412030837875,chr15,300,400,C**,65,false,F2F1"));
+		MatePairsFile.appendRun(file, pairs);
+		assertTrue(MatePairsFile.isBinary(file));
+
+		pairs.sort(new MatePair.ReadMateLeftStartComparator());
+		try (MatePairWindow window = MatePairsFile.open(Arrays.asList(file))) {
+			assertEquals(pairs.size(), window.size());
+			for (int i = 0 ; i < pairs.size() ; i++) {
+				assertEquals(pairs.get(i).toString(), window.get(i).toString());
+				assertEquals(pairs.get(i).getZpType(), window.get(i).getZpType());
+				assertEquals(pairs.get(i).getReadName(), window.get(i).getRightMate().getReadName());
+			}
+		}
+	}
+
+	@Test
+	public void runsAreMergedByLeftStart() throws IOException {
+		File first = testFolder.newFile("chr7-1_TD_AAC");
+		File second = testFolder.newFile("chr7-2_TD_AAC");
+		MatePairsFile.appendRun(first, Arrays.asList(pair("a", 500, 1000), pair("b", 100, 900)));
+		MatePairsFile.appendRun(first, Arrays.asList(pair("c", 300, 800), pair("d", 700, 1200)));
+		MatePairsFile.appendRun(first, new ArrayList<MatePair>());
+		MatePairsFile.appendRun(second, Arrays.asList(pair("e", 300, 600), pair("f", 200, 1100)));
+
+		try (MatePairWindow window = MatePairsFile.open(Arrays.asList(first, second))) {
+			List<String> names = new ArrayList<>();
+			for (MatePair p : window) {
+				names.add(p.getReadName());
+			}
+			// ties are in file and run order
+			assertEquals(Arrays.asList("b:rg1", "f:rg1", "c:rg1", "e:rg1", "a:rg1", "d:rg1"), names);
+		}
+	}
+
+	@Test
+	public void readsTextFiles() throws IOException {
+		File text = testFolder.newFile("chr7_test_TD_AAC");
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(text))) {
+			TestUtil.writeAACPairs(writer);
+		}
+		assertFalse(MatePairsFile.isBinary(text));
+		File binary = testFolder.newFile("chr7-1_test_TD_AAC");
+		MatePairsFile.appendRun(binary, Arrays.asList(pair("a", 140188300, 140191000)));
+
+		try (MatePairWindow window = MatePairsFile.open(Arrays.asList(text, binary))) {
+			assertEquals(7, window.size());
+			assertEquals("1789_1456_806:20110221052813657", window.get(0).getReadName());
+			assertEquals("a:rg1", window.get(1).getReadName());
+			assertEquals("1822_622_784:20110221052813657", window.get(6).getReadName());
+		}
+	}
+
+	@Test
+	public void releasedPairsAreUnavailable() throws IOException {
+		File file = testFolder.newFile("chr7_TD_AAC");
+		List<MatePair> pairs = new ArrayList<>();
+		for (int i = 0 ; i < 10 ; i++) {
+			pairs.add(pair("p" + i, 100 * i, 5000));
+		}
+		MatePairsFile.appendRun(file, pairs);
+
+		try (MatePairWindow window = MatePairsFile.open(Arrays.asList(file))) {
+			assertEquals("p5:rg1", window.get(5).getReadName());
+			window.release(4);
+			assertEquals("p4:rg1", window.get(4).getReadName());
+			assertEquals("p9:rg1", window.get(9).getReadName());
+			try {
+				window.get(3);
+				fail("Should have thrown an IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {}
+			try {
+				window.get(10);
+				fail("Should have thrown an IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {}
+		}
+	}
+
+	@Test
+	public void smallerThanText() throws IOException {
+		File binary = testFolder.newFile("binary");
+		File text = testFolder.newFile("text");
+		List<MatePair> pairs = new ArrayList<>();
+		for (int i = 0 ; i < 1000 ; i++) {
+			pairs.add(new MatePair("HWI-ST1240:47:D12NAACXX:7:1112:14008:" + i + ":20120608113919562,chr10," + (89700049 + i) + "," + (89700149 + i)
+					+ ",AAC,97,false,HWI-ST1240:47:D12NAACXX:7:1112:14008:" + i + ":20120608113919562,chr10," + (89712348 + i) + "," + (89712448 + i) + ",AAC,145,true,F1R2"));
+		}
+		MatePairsFile.appendRun(binary, pairs);
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(text))) {
+			for (MatePair p : pairs) {
+				writer.write(p.toString());
+			}
+		}
+		assertTrue(binary.length() * 2 < text.length());
+	}
+}
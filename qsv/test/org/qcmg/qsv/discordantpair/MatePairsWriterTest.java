@@ -57,4 +57,28 @@ public class MatePairsWriterTest {
         assertTrue(file.length() > 100);
     }
 
+    @Test
+    public void testWrittenPairsAreReadBackSorted() throws Exception {
+        for (MatePair pair : matePairs.subList(0, 3)) {
+            writer.addNewMatePair(pair);
+        }
+        writer.writeMatePairsToFile();
+        for (MatePair pair : matePairs.subList(3, matePairs.size())) {
+            writer.addNewMatePair(pair);
+        }
+        writer.writeMatePairsToFile();
+
+        MatePairsReader reader = new MatePairsReader(PairGroup.AAC, testFolder.getRoot().toString() + FILE_SEPERATOR, "test", "TD");
+        List<File> files = reader.getFilesToRead().get("chr7-1");
+        List<MatePair> pairs = reader.getMatePairsListByFiles(files, true);
+        assertEquals(matePairs.size(), pairs.size());
+        assertEquals(matePairs.size(), reader.getMateCount());
+        for (int i = 1 ; i < pairs.size() ; i++) {
+            assertTrue(pairs.get(i - 1).getLeftMate().getStart() <= pairs.get(i).getLeftMate().getStart());
+        }
+        for (MatePair pair : matePairs) {
+            assertTrue(pairs.contains(pair));
+        }
+    }
+
 }